@@ -16,17 +16,104 @@
 
 package org.example.fitness;
 
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+
 /** The application to be built */
 public class Application {
     /**
-     * The entry point to the fitness application.
+     * The entry point to the fitness application. Without arguments, the interactive menus are
+     * shown. Otherwise, each argument is a script to be run without interaction (see
+     * <code>FitnessScript</code>), or <code>-</code> for the standard input. With
+     * <code>--serve PORT</code> before the scripts, the application is served over HTTP (see
+     * <code>FitnessServer</code>) after they're run. With <code>--verify</code>, the arguments
+     * after it are saved files to be checked for corruption, without being loaded.
      *
      * @param args Application startup arguments.
      */
     public static void main(String[] args) {
         FitnessModel      model      = new FitnessModel();
         FitnessController controller = new FitnessController(model);
-        FitnessView       view       = new FitnessView(controller);
-        view.run();
+        if (args.length == 0) {
+            FitnessView view = new FitnessView(controller);
+            view.run();
+            return;
+        }
+
+        if (args[0].equals("--verify"))
+            System.exit(Application.verify(controller, Arrays.copyOfRange(args, 1, args.length)));
+
+        int port = -1;
+        if (args[0].equals("--serve")) {
+            try {
+                port = Integer.parseInt(args.length > 1 ? args[1] : "");
+            } catch (NumberFormatException e) {
+                System.err.println("--serve: expected a port");
+                System.exit(1);
+            }
+            args = Arrays.copyOfRange(args, 2, args.length);
+        }
+
+        FitnessScript script = new FitnessScript(controller, new OutputStreamWriter(System.out));
+        for (String path : args) {
+            try (Reader in = path.equals("-") ? new InputStreamReader(System.in)
+                                              : new FileReader(path)) {
+                script.run(in);
+            } catch (FitnessScriptException e) {
+                System.err.println(path + ": " + e.getMessage());
+                System.exit(1);
+            } catch (IOException e) {
+                System.err.println(path + ": " + e.getMessage());
+                System.exit(2);
+            }
+        }
+
+        if (port >= 0) {
+            // Responses are written in a few small segments (headers and body). With Nagle's
+            // algorithm, the last one waits for the client's delayed acknowledgement of the
+            // previous ones, which adds tens of milliseconds to every request. The JDK's server
+            // reads this property when the first server is created, and only disables the
+            // algorithm if set.
+            if (System.getProperty("sun.net.httpserver.nodelay") == null)
+                System.setProperty("sun.net.httpserver.nodelay", "true");
+
+            FitnessServer server = new FitnessServer(controller,
+                                                     new InetSocketAddress(port),
+                                                     FitnessServer.DEFAULT_THREADS);
+            try {
+                server.start();
+            } catch (IOException e) {
+                System.err.println("--serve: " + e.getMessage());
+                System.exit(2);
+            }
+        }
+    }
+
+    /**
+     * Checks saved files for corruption, printing the result for each one.
+     *
+     * @param controller Controller to check the files with.
+     * @param paths Paths to the files.
+     * @return The exit status: <code>0</code> if all files are intact, <code>1</code> otherwise.
+     */
+    private static int verify(FitnessController controller, String[] paths) {
+        int ret = 0;
+        for (String path : paths) {
+            try {
+                long   start   = System.nanoTime();
+                long   bytes   = controller.verifyFile(path);
+                double seconds = (System.nanoTime() - start) / 1e9;
+                System.out.printf("%s: OK (%d bytes, %.0f ms)%n", path, bytes, seconds * 1e3);
+            } catch (FitnessControllerException e) {
+                System.err.println(path + ": " + e.getMessage());
+                ret = 1;
+            }
+        }
+        return ret;
     }
 }
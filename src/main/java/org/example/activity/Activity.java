@@ -32,11 +32,18 @@ public abstract class Activity implements Serializable, Comparable {
     /** Cardiac rhythm of the user while executing this activity. */
     private int bpm;
 
+    /**
+     * Calories a user with a calorie multiplier of 1 burns executing this activity, calculated when
+     * first needed. <code>0.0</code> when not calculated, as valid activities burn calories.
+     */
+    private transient volatile double baseCalories;
+
     /** Creates a new empty activity. */
     public Activity() {
         this.executionTime = Duration.ofSeconds(1);
         this.executionDate = LocalDateTime.MIN;
         this.bpm           = 1;
+        this.baseCalories  = 0.0;
     }
 
     /**
@@ -64,6 +71,7 @@ public abstract class Activity implements Serializable, Comparable {
         this.executionTime = activity.getExecutionTime();
         this.executionDate = activity.getExecutionDate();
         this.bpm           = activity.getBPM();
+        this.baseCalories  = activity.baseCalories;
     }
 
     /**
@@ -112,6 +120,7 @@ public abstract class Activity implements Serializable, Comparable {
         if (executionTime.toSeconds() == 0)
             throw new ActivityException("An activity should be at least one second long!");
         this.executionTime = executionTime;
+        this.invalidateBaseCalories();
     }
 
     /**
@@ -133,6 +142,7 @@ public abstract class Activity implements Serializable, Comparable {
         if (bpm <= 0)
             throw new ActivityException("Average BPM during exercise must be positive!");
         this.bpm = bpm;
+        this.invalidateBaseCalories();
     }
 
     /**
@@ -150,13 +160,48 @@ public abstract class Activity implements Serializable, Comparable {
         return thisStart.isBefore(activityEnd) && activityStart.isBefore(thisEnd);
     }
 
+    /**
+     * Counts the calories that a user with a calorie multiplier of 1 burns executing this activity.
+     * They're only calculated the first time this method is called after this activity changes.
+     *
+     * @return The calories that a user with a calorie multiplier of 1 burns executing this
+     *     activity.
+     */
+    public double countBaseCalories() {
+        double calories = this.baseCalories;
+        if (calories == 0.0) {
+            calories          = this.computeBaseCalories();
+            this.baseCalories = calories;
+        }
+        return calories;
+    }
+
+    /**
+     * Calculates the calories that a user with a calorie multiplier of 1 burns executing this
+     * activity, without using the value calculated before.
+     *
+     * @return The calories that a user with a calorie multiplier of 1 burns executing this
+     *     activity.
+     */
+    protected abstract double computeBaseCalories();
+
+    /**
+     * Forgets the calories calculated before, for them to be calculated again. Must be called by
+     * every setter of a field that affects the calories burned.
+     */
+    protected void invalidateBaseCalories() {
+        this.baseCalories = 0.0;
+    }
+
     /**
      * Counts the calories that the user executing this activity burns.
      *
      * @param user User executing this activity.
      * @return The calories that the user executing this activity burns.
      */
-    public abstract double countCalories(User user);
+    public double countCalories(User user) {
+        return this.countBaseCalories() * user.getCalorieMultiplier();
+    }
 
     /**
      * Calculates the hash code of this activity.
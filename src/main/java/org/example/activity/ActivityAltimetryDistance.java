@@ -83,10 +83,11 @@ public abstract class ActivityAltimetryDistance extends ActivityDistance {
         if (altimetry < 0.0 || altimetry > 1.0)
             throw new ActivityException("Altimetry of activity must be in [0.0; 1.0]!");
         this.altimetry = altimetry;
+        this.invalidateBaseCalories();
     }
 
     @Override
-    public abstract double countCalories(User user);
+    protected abstract double computeBaseCalories();
 
     @Override
     public int hashCode() {
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Converts activities to and from a compact binary form, for them to be stored outside of memory.
+ * Each activity starts with a byte identifying its class, followed by the fields common to all
+ * activities and by the fields specific to that class.
+ */
+public class ActivityCodec {
+    /** Tag of an <code>ActivityTrackRun</code>. */
+    private static final byte TRACK_RUN = 1;
+
+    /** Tag of an <code>ActivityMountainRun</code>. */
+    private static final byte MOUNTAIN_RUN = 2;
+
+    /** Tag of an <code>ActivityPushUp</code>. */
+    private static final byte PUSH_UP = 3;
+
+    /** Tag of an <code>ActivityDiamondPushUp</code>. */
+    private static final byte DIAMOND_PUSH_UP = 4;
+
+    /** Tag of an <code>ActivityWeightLifting</code>. */
+    private static final byte WEIGHT_LIFTING = 5;
+
+    /**
+     * Writes an activity in binary form.
+     *
+     * @param out Where to write the activity to.
+     * @param activity Activity to be written.
+     * @throws IOException Failed to write to <code>out</code>, or unknown type of activity.
+     */
+    public static void encode(DataOutput out, Activity activity) throws IOException {
+        Class<?> type = activity.getClass();
+        if (type == ActivityTrackRun.class)
+            out.writeByte(ActivityCodec.TRACK_RUN);
+        else if (type == ActivityMountainRun.class)
+            out.writeByte(ActivityCodec.MOUNTAIN_RUN);
+        else if (type == ActivityPushUp.class)
+            out.writeByte(ActivityCodec.PUSH_UP);
+        else if (type == ActivityDiamondPushUp.class)
+            out.writeByte(ActivityCodec.DIAMOND_PUSH_UP);
+        else if (type == ActivityWeightLifting.class)
+            out.writeByte(ActivityCodec.WEIGHT_LIFTING);
+        else
+            throw new IOException("Unknown activity type: " + type.getSimpleName());
+
+        LocalDateTime date = activity.getExecutionDate();
+        Duration      time = activity.getExecutionTime();
+        out.writeLong(date.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(date.getNano());
+        out.writeLong(time.getSeconds());
+        out.writeInt(time.getNano());
+        out.writeInt(activity.getBPM());
+
+        if (activity instanceof ActivityDistance)
+            out.writeDouble(((ActivityDistance) activity).getDistanceToTraverse());
+        if (activity instanceof ActivityAltimetryDistance)
+            out.writeDouble(((ActivityAltimetryDistance) activity).getAltimetry());
+        if (activity instanceof ActivityRepetition)
+            out.writeInt(((ActivityRepetition) activity).getNumberOfReps());
+        if (activity instanceof ActivityRepetitionWeighted)
+            out.writeDouble(((ActivityRepetitionWeighted) activity).getWeightsHeft());
+    }
+
+    /**
+     * Reads an activity written by <code>encode</code>.
+     *
+     * @param in Where to read the activity from.
+     * @return The activity that was read.
+     * @throws IOException Failed to read from <code>in</code>, or corrupted data.
+     */
+    public static Activity decode(DataInput in) throws IOException {
+        byte          tag  = in.readByte();
+        long          secs = in.readLong();
+        LocalDateTime date = LocalDateTime.ofEpochSecond(secs, in.readInt(), ZoneOffset.UTC);
+        Duration      time = Duration.ofSeconds(in.readLong(), in.readInt());
+        int           bpm  = in.readInt();
+
+        try {
+            if (tag == ActivityCodec.TRACK_RUN) {
+                return new ActivityTrackRun(time, date, bpm, in.readDouble());
+            } else if (tag == ActivityCodec.MOUNTAIN_RUN) {
+                double distance = in.readDouble();
+                return new ActivityMountainRun(time, date, bpm, distance, in.readDouble());
+            } else if (tag == ActivityCodec.PUSH_UP) {
+                return new ActivityPushUp(time, date, bpm, in.readInt());
+            } else if (tag == ActivityCodec.DIAMOND_PUSH_UP) {
+                return new ActivityDiamondPushUp(time, date, bpm, in.readInt());
+            } else if (tag == ActivityCodec.WEIGHT_LIFTING) {
+                int reps = in.readInt();
+                return new ActivityWeightLifting(time, date, bpm, reps, in.readDouble());
+            } else {
+                throw new IOException("Unknown activity tag: " + tag);
+            }
+        } catch (ActivityException e) {
+            throw new IOException("Corrupted activity: " + e.getMessage());
+        }
+    }
+}
@@ -56,15 +56,14 @@ public class ActivityDiamondPushUp extends ActivityRepetition implements Activit
     }
 
     @Override
-    public double countCalories(User user) {
+    protected double computeBaseCalories() {
         double MET; /* Metabolic Equivalent of Task */
         if (this.getNumberOfReps() <= 40)
             MET = 4.5;
         else
             MET = 9;
 
-        return MET * this.getBPM() * (this.getExecutionTime().toSeconds() / 3600.0) *
-            user.getCalorieMultiplier();
+        return MET * this.getBPM() * (this.getExecutionTime().toSeconds() / 3600.0);
     }
 
     @Override
@@ -80,10 +80,11 @@ public abstract class ActivityDistance extends Activity {
         if (distanceToTraverse <= 0)
             throw new ActivityException("Distance to traverse should be positive!");
         this.distanceToTraverse = distanceToTraverse;
+        this.invalidateBaseCalories();
     }
 
     @Override
-    public abstract double countCalories(User user);
+    protected abstract double computeBaseCalories();
 
     @Override
     public int hashCode() {
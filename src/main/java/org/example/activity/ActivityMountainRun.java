@@ -59,7 +59,7 @@ public class ActivityMountainRun extends ActivityAltimetryDistance {
     }
 
     @Override
-    public double countCalories(User user) {
+    protected double computeBaseCalories() {
         double MET; /* Metabolic Equivalent of Task */
         double kmPerHour =
             this.getDistanceToTraverse() / (this.getExecutionTime().toSeconds() / 3600.0);
@@ -72,7 +72,7 @@ public class ActivityMountainRun extends ActivityAltimetryDistance {
             MET = 15.5;
 
         return MET * this.getBPM() * (this.getExecutionTime().toSeconds() / 3600.0) *
-            (1.0 + this.getAltimetry()) * user.getCalorieMultiplier();
+            (1.0 + this.getAltimetry());
     }
 
     @Override
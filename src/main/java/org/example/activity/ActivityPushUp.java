@@ -56,15 +56,14 @@ public class ActivityPushUp extends ActivityRepetition {
     }
 
     @Override
-    public double countCalories(User user) {
+    protected double computeBaseCalories() {
         double MET; /* Metabolic Equivalent of Task */
         if (this.getNumberOfReps() <= 40)
             MET = 3.8;
         else
             MET = 7.5;
 
-        return MET * this.getBPM() * (this.getExecutionTime().toSeconds() / 3600.0) *
-            user.getCalorieMultiplier();
+        return MET * this.getBPM() * (this.getExecutionTime().toSeconds() / 3600.0);
     }
 
     @Override
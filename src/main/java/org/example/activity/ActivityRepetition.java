@@ -80,10 +80,11 @@ public abstract class ActivityRepetition extends Activity {
         if (numberOfReps <= 0)
             throw new ActivityException("Number of repetitions should be positive!");
         this.numberOfReps = numberOfReps;
+        this.invalidateBaseCalories();
     }
 
     @Override
-    public abstract double countCalories(User user);
+    protected abstract double computeBaseCalories();
 
     @Override
     public int hashCode() {
@@ -83,10 +83,11 @@ public abstract class ActivityRepetitionWeighted extends ActivityRepetition {
         if (weightsHeft <= 0)
             throw new ActivityException("Weights' heft should be positive!");
         this.weightsHeft = weightsHeft;
+        this.invalidateBaseCalories();
     }
 
     @Override
-    public abstract double countCalories(User user);
+    protected abstract double computeBaseCalories();
 
     @Override
     public int hashCode() {
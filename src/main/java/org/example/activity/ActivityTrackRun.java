@@ -56,7 +56,7 @@ public class ActivityTrackRun extends ActivityDistance {
     }
 
     @Override
-    public double countCalories(User user) {
+    protected double computeBaseCalories() {
         double MET; /* Metabolic Equivalent of Task */
         double kmPerHour =
             this.getDistanceToTraverse() / (this.getExecutionTime().toSeconds() / 3600.0);
@@ -70,7 +70,7 @@ public class ActivityTrackRun extends ActivityDistance {
         else
             MET = 18.0; /* High competition track racing */
 
-        return MET * this.getBPM() * this.getDistanceToTraverse() * user.getCalorieMultiplier();
+        return MET * this.getBPM() * this.getDistanceToTraverse();
     }
 
     @Override
@@ -59,7 +59,7 @@ public class ActivityWeightLifting extends ActivityRepetitionWeighted {
     }
 
     @Override
-    public double countCalories(User user) {
+    protected double computeBaseCalories() {
         double MET; /* Metabolic Equivalent of Task */
         if (this.getNumberOfReps() <= 15)
             MET = 3.5;
@@ -68,7 +68,7 @@ public class ActivityWeightLifting extends ActivityRepetitionWeighted {
         else
             MET = 6.0;
 
-        return MET * this.getBPM() * (this.getWeightsHeft() / 200.0) * user.getCalorieMultiplier();
+        return MET * this.getBPM() * (this.getWeightsHeft() / 200.0);
     }
 
     @Override
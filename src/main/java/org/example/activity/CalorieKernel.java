@@ -0,0 +1,127 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+/**
+ * Calculates the base calories of many activities of the same class at once, from primitive
+ * arrays with the values of their fields. The MET brackets are selected without branching on each
+ * activity, and every result is equal (bit for bit) to the one of <code>countBaseCalories</code>
+ * for the same activity.
+ */
+public class CalorieKernel {
+    /**
+     * Calculates the base calories of track runs.
+     *
+     * @param n Number of activities.
+     * @param seconds Seconds each activity lasted for.
+     * @param bpms Average heart rate in each activity.
+     * @param distances Distance traversed in each activity.
+     * @param out Where to write the base calories of each activity to.
+     */
+    public static void trackRun(int      n,
+                                long[]   seconds,
+                                int[]    bpms,
+                                double[] distances,
+                                double[] out) {
+        for (int i = 0; i < n; ++i) {
+            double kmPerHour = distances[i] / (seconds[i] / 3600.0);
+            double met       = kmPerHour <= 6.7593 ? 6.5 : 11.8;
+            met              = kmPerHour <= 12.0701 ? met : 14.8;
+            met              = kmPerHour <= 15.4497 ? met : 18.0;
+            out[i]           = met * bpms[i] * distances[i];
+        }
+    }
+
+    /**
+     * Calculates the base calories of mountain runs.
+     *
+     * @param n Number of activities.
+     * @param seconds Seconds each activity lasted for.
+     * @param bpms Average heart rate in each activity.
+     * @param distances Distance traversed in each activity.
+     * @param altimetries Altimetry of each activity.
+     * @param out Where to write the base calories of each activity to.
+     */
+    public static void mountainRun(int      n,
+                                   long[]   seconds,
+                                   int[]    bpms,
+                                   double[] distances,
+                                   double[] altimetries,
+                                   double[] out) {
+        for (int i = 0; i < n; ++i) {
+            double hours     = seconds[i] / 3600.0;
+            double kmPerHour = distances[i] / hours;
+            double met       = kmPerHour <= 7.24 ? 10.3 : 13.3;
+            met              = kmPerHour <= 9.66 ? met : 15.5;
+            out[i]           = met * bpms[i] * hours * (1.0 + altimetries[i]);
+        }
+    }
+
+    /**
+     * Calculates the base calories of push-ups.
+     *
+     * @param n Number of activities.
+     * @param seconds Seconds each activity lasted for.
+     * @param bpms Average heart rate in each activity.
+     * @param reps Number of repetitions in each activity.
+     * @param out Where to write the base calories of each activity to.
+     */
+    public static void pushUp(int n, long[] seconds, int[] bpms, int[] reps, double[] out) {
+        for (int i = 0; i < n; ++i) {
+            double met = reps[i] <= 40 ? 3.8 : 7.5;
+            out[i]     = met * bpms[i] * (seconds[i] / 3600.0);
+        }
+    }
+
+    /**
+     * Calculates the base calories of diamond push-ups.
+     *
+     * @param n Number of activities.
+     * @param seconds Seconds each activity lasted for.
+     * @param bpms Average heart rate in each activity.
+     * @param reps Number of repetitions in each activity.
+     * @param out Where to write the base calories of each activity to.
+     */
+    public static void diamondPushUp(int n, long[] seconds, int[] bpms, int[] reps, double[] out) {
+        for (int i = 0; i < n; ++i) {
+            double met = reps[i] <= 40 ? 4.5 : 9.0;
+            out[i]     = met * bpms[i] * (seconds[i] / 3600.0);
+        }
+    }
+
+    /**
+     * Calculates the base calories of weight lifting activities.
+     *
+     * @param n Number of activities.
+     * @param bpms Average heart rate in each activity.
+     * @param reps Number of repetitions in each activity.
+     * @param weights Heft of the weights in each activity.
+     * @param out Where to write the base calories of each activity to.
+     */
+    public static void weightLifting(int      n,
+                                     int[]    bpms,
+                                     int[]    reps,
+                                     double[] weights,
+                                     double[] out) {
+        for (int i = 0; i < n; ++i) {
+            double met = reps[i] <= 15 ? 3.5 : 5.0;
+            met        = reps[i] <= 30 ? met : 6.0;
+            out[i]     = met * bpms[i] * (weights[i] / 200.0);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+
+/**
+ * Encodes activities into rows of fields that a view can show. The same buffers are reused for
+ * every row, and dates and numbers are written directly into them, so that encoding many
+ * activities creates almost no garbage.
+ */
+public class ActivityRowEncoder {
+    /** Number of fields in the row of a single activity. */
+    public static final int FIELDS = 9;
+
+    /** Number of fields in the row of an activity in a training plan. */
+    public static final int PLAN_FIELDS = 10;
+
+    /** Buffers of the fields of the last row encoded. */
+    private StringBuilder[] fields;
+
+    /** The row of a single activity, backed by <code>fields</code>. */
+    private CharSequence[] row;
+
+    /** The row of an activity in a training plan, backed by <code>fields</code>. */
+    private CharSequence[] planRow;
+
+    /** Creates a new row encoder. */
+    public ActivityRowEncoder() {
+        this.fields = new StringBuilder[ActivityRowEncoder.PLAN_FIELDS];
+        for (int i = 0; i < this.fields.length; ++i)
+            this.fields[i] = new StringBuilder(32);
+
+        this.row     = Arrays.copyOf(this.fields, ActivityRowEncoder.FIELDS, CharSequence[].class);
+        this.planRow =
+            Arrays.copyOf(this.fields, ActivityRowEncoder.PLAN_FIELDS, CharSequence[].class);
+    }
+
+    /**
+     * Copy constructor of a row encoder. Buffers aren't shared, so the last row encoded by
+     * <code>encoder</code> isn't copied.
+     *
+     * @param encoder Row encoder to be copied.
+     */
+    public ActivityRowEncoder(ActivityRowEncoder encoder) {
+        this();
+    }
+
+    /**
+     * Encodes a single activity.
+     *
+     * @param user User used for calory counting.
+     * @param activity Activity to be encoded.
+     * @return The fields of the activity (date, duration, calories, class, bpm, reps, weight,
+     *     distance, altimetry). Only valid until another activity is encoded.
+     */
+    public CharSequence[] encode(User user, Activity activity) {
+        this.clear();
+        ActivityRowEncoder.appendDate(this.fields[0], activity.getExecutionDate());
+        this.encodeFields(user, activity, 1, 3);
+        return this.row;
+    }
+
+    /**
+     * Encodes an activity in a training plan.
+     *
+     * @param user User used for calory counting.
+     * @param activity Activity to be encoded.
+     * @param times Number of times the activity is executed each day of the training plan.
+     * @return The fields of the activity (time, duration, calories, plan repetitions, class, bpm,
+     *     reps, weight, distance, altimetry). Only valid until another activity is encoded.
+     */
+    public CharSequence[] encodePlan(User user, Activity activity, int times) {
+        this.clear();
+        ActivityRowEncoder.appendTime(this.fields[0], activity.getExecutionDate());
+        this.fields[3].append(times);
+        this.encodeFields(user, activity, times, 4);
+        return this.planRow;
+    }
+
+    /** Empties the buffers of all fields. */
+    private void clear() {
+        for (StringBuilder field : this.fields)
+            field.setLength(0);
+    }
+
+    /**
+     * Encodes the fields of an activity after its date.
+     *
+     * @param user User used for calory counting.
+     * @param activity Activity to be encoded.
+     * @param times Number of times the activity is executed, to multiply its calories by.
+     * @param next Index of the field of the class of the activity.
+     */
+    private void encodeFields(User user, Activity activity, int times, int next) {
+        this.fields[1].append(activity.getExecutionTime().toMinutes());
+        this.fields[2].append(activity.countCalories(user) * times);
+        this.fields[next].append(activity.getClass().getSimpleName());
+        this.fields[next + 1].append(activity.getBPM());
+
+        if (activity instanceof ActivityRepetition)
+            this.fields[next + 2].append(((ActivityRepetition) activity).getNumberOfReps());
+        if (activity instanceof ActivityRepetitionWeighted)
+            this.fields[next + 3].append(((ActivityRepetitionWeighted) activity).getWeightsHeft());
+        if (activity instanceof ActivityDistance)
+            this.fields[next + 4].append(((ActivityDistance) activity).getDistanceToTraverse());
+        if (activity instanceof ActivityAltimetryDistance)
+            this.fields[next + 5].append(((ActivityAltimetryDistance) activity).getAltimetry());
+    }
+
+    /**
+     * Writes a date in the <code>yyyy/MM/dd HH:mm</code> format.
+     *
+     * @param out Where to write the date to.
+     * @param date Date to be written.
+     */
+    private static void appendDate(StringBuilder out, LocalDateTime date) {
+        ActivityRowEncoder.appendPadded(out, date.getYear(), 4);
+        out.append('/');
+        ActivityRowEncoder.appendPadded(out, date.getMonthValue(), 2);
+        out.append('/');
+        ActivityRowEncoder.appendPadded(out, date.getDayOfMonth(), 2);
+        out.append(' ');
+        ActivityRowEncoder.appendTime(out, date);
+    }
+
+    /**
+     * Writes the time of a date in the <code>HH:mm</code> format.
+     *
+     * @param out Where to write the time to.
+     * @param date Date whose time is written.
+     */
+    private static void appendTime(StringBuilder out, LocalDateTime date) {
+        ActivityRowEncoder.appendPadded(out, date.getHour(), 2);
+        out.append(':');
+        ActivityRowEncoder.appendPadded(out, date.getMinute(), 2);
+    }
+
+    /**
+     * Writes a non-negative integer, padded with zeros on the left.
+     *
+     * @param out Where to write the integer to.
+     * @param value Integer to be written.
+     * @param width Minimum number of digits.
+     */
+    private static void appendPadded(StringBuilder out, int value, int width) {
+        for (int limit = 10; width > 1; --width, limit *= 10)
+            if (value < limit)
+                out.append('0');
+        out.append(value);
+    }
+
+    /**
+     * Checks if this row encoder is equal to another object. Encoders hold no meaningful state, so
+     * all encoders are equal.
+     *
+     * @param obj Object to be compared with this row encoder.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && this.getClass() == obj.getClass();
+    }
+
+    /**
+     * Calculates the hash code of this row encoder.
+     *
+     * @return The hash code of this row encoder.
+     */
+    @Override
+    public int hashCode() {
+        return ActivityRowEncoder.class.hashCode();
+    }
+
+    /**
+     * Creates a copy of this row encoder.
+     *
+     * @return A copy of this row encoder.
+     */
+    @Override
+    public ActivityRowEncoder clone() {
+        return new ActivityRowEncoder(this);
+    }
+
+    /**
+     * Creates a debug string representation of this row encoder.
+     *
+     * @return A debug string representation of this row encoder.
+     */
+    @Override
+    public String toString() {
+        return "ActivityRowEncoder";
+    }
+}
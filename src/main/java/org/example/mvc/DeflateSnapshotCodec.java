@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * A codec that compresses the blocks of a snapshot file with DEFLATE (zlib format), from the JDK.
+ * Lower levels compress faster, and higher levels create smaller files. Decompressing is about as
+ * fast for every level.
+ */
+public class DeflateSnapshotCodec implements SnapshotCodec {
+    /** Default compression level, that favors speed. */
+    public static final int DEFAULT_LEVEL = Deflater.BEST_SPEED;
+
+    /** Compression level, from <code>0</code> (stored) to <code>9</code> (smallest). */
+    private int level;
+
+    /** Creates a new codec with the default compression level. */
+    public DeflateSnapshotCodec() {
+        this(DeflateSnapshotCodec.DEFAULT_LEVEL);
+    }
+
+    /**
+     * Creates a new codec from the value of its fields.
+     *
+     * @param level Compression level, from <code>0</code> (stored) to <code>9</code> (smallest).
+     *              Levels out of that range are clamped to it.
+     */
+    public DeflateSnapshotCodec(int level) {
+        this.level = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, level));
+    }
+
+    /**
+     * Copy constructor of a codec.
+     *
+     * @param codec Codec to be copied.
+     */
+    public DeflateSnapshotCodec(DeflateSnapshotCodec codec) {
+        this(codec.getLevel());
+    }
+
+    /**
+     * Gets the name of this codec.
+     *
+     * @return <code>"deflate"</code>.
+     */
+    @Override
+    public String getName() {
+        return "deflate";
+    }
+
+    /**
+     * Gets the compression level.
+     *
+     * @return The compression level, from <code>0</code> (stored) to <code>9</code> (smallest).
+     */
+    public int getLevel() {
+        return this.level;
+    }
+
+    /**
+     * Compresses a block.
+     *
+     * @param block Bytes in the block.
+     * @param length Number of bytes in the block, at the start of <code>block</code>.
+     * @return The compressed block.
+     */
+    @Override
+    public byte[] compress(byte[] block, int length) {
+        Deflater deflater = new Deflater(this.level);
+        try {
+            deflater.setInput(block, 0, length);
+            deflater.finish();
+
+            // Enough for incompressible data in most cases, grown otherwise
+            byte[] ret = new byte[length + (length >> 8) + 64];
+            int    n   = 0;
+            while (!deflater.finished()) {
+                if (n == ret.length)
+                    ret = Arrays.copyOf(ret, ret.length * 2);
+                n += deflater.deflate(ret, n, ret.length - n);
+            }
+            return Arrays.copyOf(ret, n);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompresses a block.
+     *
+     * @param data Compressed block.
+     * @param block Where to place the bytes in the block.
+     * @param length Number of bytes in the block, placed at the start of <code>block</code>.
+     * @throws IOException Corrupt block.
+     */
+    @Override
+    public void decompress(byte[] data, byte[] block, int length) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            int n = 0;
+            while (n < length) {
+                int read = inflater.inflate(block, n, length - n);
+                if (read == 0 && (inflater.finished() || inflater.needsInput() ||
+                                  inflater.needsDictionary()))
+                    break;
+                n += read;
+            }
+
+            if (n != length || !inflater.finished())
+                throw new IOException("Corrupt snapshot block!");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupt snapshot block!");
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Checks if this codec is equal to another object.
+     *
+     * @param obj Object to be compared with this codec.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        DeflateSnapshotCodec codec = (DeflateSnapshotCodec) obj;
+        return this.level == codec.getLevel();
+    }
+
+    /**
+     * Calculates the hash code of this codec.
+     *
+     * @return The hash code of this codec.
+     */
+    @Override
+    public int hashCode() {
+        return this.level;
+    }
+
+    /**
+     * Creates a copy of this codec.
+     *
+     * @return A copy of this codec.
+     */
+    @Override
+    public DeflateSnapshotCodec clone() {
+        return new DeflateSnapshotCodec(this);
+    }
+
+    /**
+     * Creates a debug string representation of this codec.
+     *
+     * @return A debug string representation of this codec.
+     */
+    @Override
+    public String toString() {
+        return String.format("DeflateSnapshotCodec(level = %d)", this.level);
+    }
+}
@@ -22,7 +22,6 @@ import java.lang.reflect.InvocationTargetException;
 import java.time.DayOfWeek;
 import java.time.Duration;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -31,6 +30,7 @@ import java.util.Map;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /** Adapter between <code>FitnessView</code> and the <code>FitnessModel</code>. */
@@ -197,7 +197,7 @@ public class FitnessController {
      * @return Whether a user with the given identifier exists in the application.
      */
     public boolean userExists(long userCode) {
-        return this.model.getUser(userCode) != null;
+        return this.model.containsUser(userCode);
     }
 
     /**
@@ -206,57 +206,49 @@ public class FitnessController {
      * @return A list of presented user field arrays (code, name, class, address, email and bpm).
      */
     public List<String[]> getUsers() {
-        return model.getUsers()
-            .values()
-            .stream()
-            .map(u
-                 -> new String[] { Long.toString(u.getCode()),
-                                   u.getName(),
-                                   u.getClass().getSimpleName(),
-                                   u.getAddress(),
-                                   u.getEmail(),
-                                   Integer.toString(u.getAverageBPM()) })
-            .collect(Collectors.toList());
+        return this.getUsers(new long[] { Long.MIN_VALUE }, Integer.MAX_VALUE);
     }
 
     /**
-     * Transforms a set of activities into a list of entries that a view can show.
+     * Gets a page of the list of users in a presentable form, without copying them.
      *
-     * @param user User used for calory counting.
-     * @param activities Set of activities to be shown.
-     * @returns For each activity, its fields (class, duration, date, bpm, reps, weight, distance,
-     *     altimetry).
+     * @param after Only users with codes greater than <code>after[0]</code> are listed. Updated
+     *     to the code of the last user in the page, so that it can be used for the next page.
+     * @param limit Maximum number of users in the page.
+     * @return A list of presented user field arrays (code, name, class, address, email and bpm).
      */
-    private List<String[]> showActivities(User user, SortedSet<Activity> activities) {
+    public List<String[]> getUsers(long[] after, int limit) {
         List<String[]> ret = new ArrayList<String[]>();
-        for (Activity a : activities) {
-            String[] fields = new String[] { a.getExecutionDate().format(
-                                                 DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm")),
-                                             Long.toString(a.getExecutionTime().toMinutes()),
-                                             Double.toString(a.countCalories(user)),
-                                             a.getClass().getSimpleName(),
-                                             Integer.toString(a.getBPM()),
-                                             "",
-                                             "",
-                                             "",
-                                             "" };
-
-            SortedSet<ActivityExtraField> extraFields =
-                this.activityFields.get(a.getClass().getSimpleName());
-            if (extraFields.contains(ActivityExtraField.REPETITIONS))
-                fields[5] = Integer.toString(((ActivityRepetition) a).getNumberOfReps());
-            if (extraFields.contains(ActivityExtraField.WEIGHT))
-                fields[6] = Double.toString(((ActivityRepetitionWeighted) a).getWeightsHeft());
-            if (extraFields.contains(ActivityExtraField.DISTANCE))
-                fields[7] = Double.toString(((ActivityDistance) a).getDistanceToTraverse());
-            if (extraFields.contains(ActivityExtraField.ALTIMETRY))
-                fields[8] = Double.toString(((ActivityAltimetryDistance) a).getAltimetry());
-
-            ret.add(fields);
-        }
+        this.streamUsers(after, limit, row -> ret.add(RowSink.toStrings(row)));
         return ret;
     }
 
+    /**
+     * Streams a page of the list of users, without copying them. See <code>getUsers</code>.
+     *
+     * @param after Only users with codes greater than <code>after[0]</code> are streamed. Updated
+     *     to the code of the last user in the page.
+     * @param limit Maximum number of users in the page.
+     * @param sink Consumer of the fields of each user (code, name, class, address, email and bpm).
+     */
+    public void streamUsers(long[] after, int limit, RowSink sink) {
+        StringBuilder  code = new StringBuilder();
+        StringBuilder  bpm  = new StringBuilder();
+        CharSequence[] row  = new CharSequence[6];
+        this.model.runQuery(u -> {
+            code.setLength(0);
+            bpm.setLength(0);
+            row[0] = code.append(u.getCode());
+            row[1] = u.getName();
+            row[2] = u.getClass().getSimpleName();
+            row[3] = u.getAddress();
+            row[4] = u.getEmail();
+            row[5] = bpm.append(u.getAverageBPM());
+            sink.accept(row);
+            after[0] = u.getCode();
+        }, after[0], limit);
+    }
+
     /**
      * Gets the activities a user still needs to do.
      *
@@ -266,10 +258,51 @@ public class FitnessController {
      *     distance, altimetry).
      */
     public List<String[]> getTodoActivities(long userCode) throws FitnessControllerException {
-        User user = this.model.getUser(userCode);
-        if (user == null)
-            throw new FitnessControllerException("User doesn't exist!");
-        return this.showActivities(user, user.getActivities().getTodo());
+        return this.getTodoActivities(userCode,
+                                      new LocalDateTime[] { LocalDateTime.MIN },
+                                      Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets a page of the activities a user still needs to do, without copying the user.
+     *
+     * @param userCode Identifier code of the user to get the activities from.
+     * @param after Only activities executed after <code>after[0]</code> are listed. Updated to the
+     *     execution date of the last activity in the page, so that it can be used for the next
+     *     page.
+     * @param limit Maximum number of activities in the page.
+     * @throws FitnessControllerException User not found.
+     * @return For each activity, its fields (date, duration, calories, class, bpm, reps, weight,
+     *     distance, altimetry).
+     */
+    public List<String[]> getTodoActivities(long userCode, LocalDateTime[] after, int limit)
+        throws FitnessControllerException {
+
+        List<String[]> ret = new ArrayList<String[]>();
+        this.streamTodoActivities(userCode, after, limit, row -> ret.add(RowSink.toStrings(row)));
+        return ret;
+    }
+
+    /**
+     * Streams a page of the activities a user still needs to do, encoding each one into reused
+     * buffers. See <code>getTodoActivities</code>.
+     *
+     * @param userCode Identifier code of the user to get the activities from.
+     * @param after Only activities executed after <code>after[0]</code> are streamed. Updated to
+     *     the execution date of the last activity in the page.
+     * @param limit Maximum number of activities in the page.
+     * @param sink Consumer of the fields of each activity. See
+     *     <code>ActivityRowEncoder.encode</code>.
+     * @throws FitnessControllerException User not found.
+     */
+    public void streamTodoActivities(long            userCode,
+                                     LocalDateTime[] after,
+                                     int             limit,
+                                     RowSink         sink) throws FitnessControllerException {
+
+        this.runUserQuery(u -> {
+            FitnessController.encodeActivities(u, u.getTodoPage(after[0], limit), after, sink);
+        }, userCode);
     }
 
     /**
@@ -281,10 +314,89 @@ public class FitnessController {
      *     distance, altimetry).
      */
     public List<String[]> getDoneActivities(long userCode) throws FitnessControllerException {
-        User user = this.model.getUser(userCode);
-        if (user == null)
+        return this.getDoneActivities(userCode,
+                                      new LocalDateTime[] { LocalDateTime.MIN },
+                                      Integer.MAX_VALUE);
+    }
+
+    /**
+     * Gets a page of the activities a user has completed, without copying the user nor the rest of
+     * their history.
+     *
+     * @param userCode Identifier code of the user to get the activities from.
+     * @param after Only activities executed after <code>after[0]</code> are listed. Updated to the
+     *     execution date of the last activity in the page, so that it can be used for the next
+     *     page.
+     * @param limit Maximum number of activities in the page.
+     * @throws FitnessControllerException User not found.
+     * @return For each activity, its fields (date, duration, calories, class, bpm, reps, weight,
+     *     distance, altimetry).
+     */
+    public List<String[]> getDoneActivities(long userCode, LocalDateTime[] after, int limit)
+        throws FitnessControllerException {
+
+        List<String[]> ret = new ArrayList<String[]>();
+        this.streamDoneActivities(userCode, after, limit, row -> ret.add(RowSink.toStrings(row)));
+        return ret;
+    }
+
+    /**
+     * Streams a page of the activities a user has completed, encoding each one into reused
+     * buffers. See <code>getDoneActivities</code>.
+     *
+     * @param userCode Identifier code of the user to get the activities from.
+     * @param after Only activities executed after <code>after[0]</code> are streamed. Updated to
+     *     the execution date of the last activity in the page.
+     * @param limit Maximum number of activities in the page.
+     * @param sink Consumer of the fields of each activity. See
+     *     <code>ActivityRowEncoder.encode</code>.
+     * @throws FitnessControllerException User not found.
+     */
+    public void streamDoneActivities(long            userCode,
+                                     LocalDateTime[] after,
+                                     int             limit,
+                                     RowSink         sink) throws FitnessControllerException {
+
+        this.runUserQuery(u -> {
+            FitnessController.encodeActivities(u, u.getDonePage(after[0], limit), after, sink);
+        }, userCode);
+    }
+
+    /**
+     * Encodes a page of activities into rows.
+     *
+     * @param user User used for calory counting.
+     * @param activities Activities to be encoded.
+     * @param after Updated to the execution date of the last activity, if there are any.
+     * @param sink Consumer of the fields of each activity.
+     */
+    private static void encodeActivities(User                user,
+                                         SortedSet<Activity> activities,
+                                         LocalDateTime[]     after,
+                                         RowSink             sink) {
+
+        ActivityRowEncoder encoder = new ActivityRowEncoder();
+        for (Activity a : activities)
+            sink.accept(encoder.encode(user, a));
+        if (!activities.isEmpty())
+            after[0] = activities.last().getExecutionDate();
+    }
+
+    /**
+     * Runs a query that consumes only one user, without copying it.
+     *
+     * @param query Query to be run, that must not modify nor keep the user.
+     * @param userCode Identifier code of the user to consider.
+     * @throws FitnessControllerException User not found.
+     */
+    private void runUserQuery(Consumer<User> query, long userCode)
+        throws FitnessControllerException {
+
+        try {
+            this.model.runQuery(query, userCode);
+        } catch (FitnessModelException e) {
             throw new FitnessControllerException("User doesn't exist!");
-        return this.showActivities(user, user.getActivities().getDone());
+        }
     }
 
     /**
@@ -307,33 +419,52 @@ public class FitnessController {
      *
      * @param userCode Identifier code of the user to get the activities from.
      * @throws FitnessControllerException User not found.
-     * @return For each activity, its fields (date, duration, plan repetitions, calories, class,
+     * @return For each activity, its fields (time, duration, calories, plan repetitions, class,
      *     bpm, reps, weight, distance, altimetry).
      */
     public List<String[]> getPlanActivities(long userCode) throws FitnessControllerException {
-        User user = this.model.getUser(userCode);
-        if (user == null)
-            throw new FitnessControllerException("User doesn't exist!");
+        return this.getPlanActivities(userCode, 0, Integer.MAX_VALUE);
+    }
 
-        List<String[]>         ret        = new ArrayList<String[]>();
-        Map<Activity, Integer> activities = user.getActivities().getTrainingPlan().getActivities();
-        for (Map.Entry<Activity, Integer> entry : activities.entrySet()) {
-            SortedSet<Activity> single = new TreeSet<Activity>();
-            single.add(entry.getKey());
-
-            List<String> fields = new ArrayList<String>(
-                Arrays.asList(this.showActivities(user, single).iterator().next()));
-            fields.set(
-                0,
-                entry.getKey().getExecutionDate().format(DateTimeFormatter.ofPattern("HH:mm")));
-            fields.add(3, Integer.toString(entry.getValue()));
-            fields.set(2, Double.toString(Double.parseDouble(fields.get(2)) * entry.getValue()));
-            ret.add(fields.toArray(String[] ::new));
-        }
+    /**
+     * Gets a page of the activities a user has in their training plan, without copying the user.
+     *
+     * @param userCode Identifier code of the user to get the activities from.
+     * @param offset Number of activities before the page.
+     * @param limit Maximum number of activities in the page.
+     * @throws FitnessControllerException User not found.
+     * @return For each activity, its fields (time, duration, calories, plan repetitions, class,
+     *     bpm, reps, weight, distance, altimetry).
+     */
+    public List<String[]> getPlanActivities(long userCode, int offset, int limit)
+        throws FitnessControllerException {
 
+        List<String[]> ret = new ArrayList<String[]>();
+        this.streamPlanActivities(userCode, offset, limit, row -> ret.add(RowSink.toStrings(row)));
         return ret;
     }
 
+    /**
+     * Streams a page of the activities a user has in their training plan, encoding each one into
+     * reused buffers. See <code>getPlanActivities</code>.
+     *
+     * @param userCode Identifier code of the user to get the activities from.
+     * @param offset Number of activities before the page.
+     * @param limit Maximum number of activities in the page.
+     * @param sink Consumer of the fields of each activity. See
+     *     <code>ActivityRowEncoder.encodePlan</code>.
+     * @throws FitnessControllerException User not found.
+     */
+    public void streamPlanActivities(long userCode, int offset, int limit, RowSink sink)
+        throws FitnessControllerException {
+
+        this.runUserQuery(u -> {
+            ActivityRowEncoder encoder = new ActivityRowEncoder();
+            for (Map.Entry<Activity, Integer> e : u.getTrainingPlanPage(offset, limit).entrySet())
+                sink.accept(encoder.encodePlan(u, e.getKey(), e.getValue()));
+        }, userCode);
+    }
+
     /**
      * Adds a user from the value of its fields.
      *
@@ -368,7 +499,8 @@ public class FitnessController {
     }
 
     /**
-     * Creates a new activity from data gotten from a view.
+     * Creates a new activity from data gotten from a view, so that it can be added in a batch
+     * (see <code>addActivities</code>).
      *
      * @param className Name of the activity's class. Unchecked.
      * @param duration Duration of the activity in minutes.
@@ -378,10 +510,10 @@ public class FitnessController {
      * @throws FitnessControllerException Error instantiating the new activity.
      * @return The created activity.
      */
-    private Activity constructActivity(String                                className,
-                                       int                                   duration,
-                                       LocalDateTime                         date,
-                                       SortedMap<ActivityExtraField, Object> fields)
+    public Activity constructActivity(String                                className,
+                                      int                                   duration,
+                                      LocalDateTime                         date,
+                                      SortedMap<ActivityExtraField, Object> fields)
         throws FitnessControllerException {
 
         Class<?>     activityClass            = this.activityClasses.get(className);
@@ -443,6 +575,26 @@ public class FitnessController {
         }
     }
 
+    /**
+     * Adds many activities to a user's collection of isolated activities at once, which is much
+     * faster than adding them one by one. Either all activities are added or none is.
+     *
+     * @param userCode Identifier code of the user to add the activities to.
+     * @param activities Activities to be added (see <code>constructActivity</code>).
+     * @throws FitnessControllerException User not found.
+     * @throws FitnessControllerException Activity starts before current date.
+     * @throws FitnessControllerException Activity overlaps with existing activities.
+     */
+    public void addActivities(long userCode, List<Activity> activities)
+        throws FitnessControllerException {
+
+        try {
+            this.model.addActivities(userCode, activities);
+        } catch (FitnessModelException | ActivityOverlapException e) {
+            throw new FitnessControllerException(e.getMessage());
+        }
+    }
+
     /**
      * Adds an activity to a user's training plan.
      *
@@ -466,6 +618,22 @@ public class FitnessController {
                                           int repetitions) throws FitnessControllerException {
 
         Activity activity = this.constructActivity(className, duration, date, fields);
+        this.addActivityToTrainingPlan(userCode, activity, repetitions);
+    }
+
+    /**
+     * Adds an activity that has already been created to a user's training plan.
+     *
+     * @param userCode Identifier code of the user to add the activity to.
+     * @param activity Activity to be added (see <code>constructActivity</code>). Its bpm will be
+     *     replaced by the user's and its YYYY/MM/DD part of the date will be ignored.
+     * @param repetitions Number of activity repetitions in the training plan.
+     * @throws FitnessControllerException User not found.
+     * @throws FitnessControllerException Activity overlaps with existing activities.
+     */
+    public void addActivityToTrainingPlan(long userCode, Activity activity, int repetitions)
+        throws FitnessControllerException {
+
         try {
             this.model.addActivityToTrainingPlan(userCode, activity, repetitions);
         } catch (FitnessModelException | ActivityOverlapException e) {
@@ -527,26 +695,24 @@ public class FitnessController {
         if (className.equals("QueryDistance")) {
             Class<? extends ActivityDistance> filterClass =
                 altimetryOnly ? ActivityAltimetryDistance.class : ActivityDistance.class;
-            QueryDistance q = new QueryDistance(filterClass, start, end);
+            QueryDistance q;
 
             try {
-                this.model.runQuery(q, userCode);
+                q = this.model.runCachedQuery(new QueryDistance(filterClass, start, end), userCode);
             } catch (FitnessModelException e) {
                 throw new FitnessControllerException(e.getMessage());
             }
 
             return String.format("%f km", q.getDistance());
         } else if (className.equals("QueryHardestTrainingPlan")) {
-            QueryHardestTrainingPlan q = new QueryHardestTrainingPlan();
-            this.model.runQuery(q);
+            QueryHardestTrainingPlan q = this.model.runCachedQuery(new QueryHardestTrainingPlan());
             User u = q.getMaxUser();
 
             if (u == null)
                 return "No users!";
             return String.format("(%d) %s - %f kcal", u.getCode(), u.getName(), q.getMaxCalories());
         } else if (className.equals("QueryMostActivities")) {
-            QueryMostActivities q = new QueryMostActivities(start, end);
-            this.model.runQuery(q);
+            QueryMostActivities q = this.model.runCachedQuery(new QueryMostActivities(start, end));
             User u = q.getMaxUser();
 
             if (u == null)
@@ -556,16 +722,14 @@ public class FitnessController {
                                  u.getName(),
                                  q.getMaxActivities());
         } else if (className.equals("QueryMostCalories")) {
-            QueryMostCalories q = new QueryMostCalories(start, end);
-            this.model.runQuery(q);
+            QueryMostCalories q = this.model.runCachedQuery(new QueryMostCalories(start, end));
             User u = q.getMaxUser();
 
             if (u == null)
                 return "No users!";
             return String.format("(%d) %s - %f kcal", u.getCode(), u.getName(), q.getMaxCalories());
         } else if (className.equals("QueryMostCommonActivity")) {
-            QueryMostCommonActivity q = new QueryMostCommonActivity();
-            this.model.runQuery(q);
+            QueryMostCommonActivity q = this.model.runCachedQuery(new QueryMostCommonActivity());
             Map.Entry<String, Integer> activity = q.getTopActivity();
 
             if (activity == null)
@@ -576,6 +740,31 @@ public class FitnessController {
         return "No such query " + className;
     }
 
+    /**
+     * Runs an aggregation query over all users in parallel, outputting one row per group.
+     *
+     * @param query Query to be run, that must not have consumed any user.
+     * @param rows Consumer of each output row, in the order of the keys of the groups.
+     * @throws FitnessControllerException Compacted activities can't answer the query.
+     */
+    public void runAggregation(ActivityQuery query, Consumer<String> rows)
+        throws FitnessControllerException {
+
+        ActivityQuery q = this.model.runParallelQuery(query);
+        try {
+            if (q.getGroupBy() == ActivityQuery.GroupBy.NONE) {
+                rows.accept(String.format("Total - %f", q.getResult()));
+                return;
+            }
+
+            for (Map.Entry<Long, Double> group : q.getGroups().entrySet())
+                rows.accept(
+                    String.format("%s - %f", q.getGroupName(group.getKey()), group.getValue()));
+        } catch (QueryException e) {
+            throw new FitnessControllerException(e.getMessage());
+        }
+    }
+
     /**
      * Advances time to another date, updating which activities have been completed.
      *
@@ -620,6 +809,33 @@ public class FitnessController {
         }
     }
 
+    /**
+     * Saves the data of the application to a file in the background. See
+     * <code>FitnessModel.saveToFileAsync</code>.
+     *
+     * @param path Path to the file.
+     * @return The progress of the save, whose future fails with an <code>IOException</code> if
+     *         the file can't be written.
+     */
+    public SaveProgress saveToFileAsync(String path) {
+        return this.model.saveToFileAsync(path);
+    }
+
+    /**
+     * Checks the integrity of a file saved by this application, without loading it.
+     *
+     * @param path Path to the file.
+     * @return The number of bytes in the file, after being decompressed.
+     * @throws FitnessControllerException Failure to read the file, or corrupt file.
+     */
+    public long verifyFile(String path) throws FitnessControllerException {
+        try {
+            return FitnessModel.verifyFile(path);
+        } catch (IOException e) {
+            throw new FitnessControllerException("Invalid file: " + e.getMessage());
+        }
+    }
+
     /**
      * Calculates the hash code of this fitness controller.
      *
@@ -16,19 +16,25 @@
 
 package org.example.fitness;
 
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.nio.file.Paths;
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
@@ -43,11 +49,58 @@ public class FitnessModel implements Serializable {
     /** The identifier code that will be attributed to the next user added. */
     private long nextUserCode;
 
+    /** Difference between the codes attributed to consecutive users added. */
+    private long codeStride;
+
+    /** When completed activities are compacted (<code>null</code> to keep them forever). */
+    private RetentionPolicy retentionPolicy;
+
+    /** Where old completed activities are moved out of memory (<code>null</code> to keep them). */
+    private ColdStorage coldStorage;
+
+    /** Whether completed activities are stored as columns outside of the Java heap. */
+    private boolean columnarHistory;
+
+    /** Number of changes made to this application, that increases with every change. */
+    private long version;
+
+    /** Relation between user codes and the version of this application when they last changed. */
+    private Map<Long, Long> userVersions;
+
+    /** Results of previous queries, created when first needed. */
+    private transient QueryCache queryCache;
+
+    /** Results of queries kept up to date as users change (<code>null</code> if none). */
+    private transient List<StandingView> views;
+
+    /** Snapshot this application was last saved to or loaded from (<code>null</code> if none). */
+    private transient FitnessSnapshot snapshot;
+
+    /** Codes of the users added, changed or removed since the last snapshot. */
+    private transient Set<Long> dirtyUsers;
+
+    /**
+     * Users being saved in the background, shared with this application until they're changed
+     * (copy-on-write). <code>null</code> if nothing was ever saved in the background.
+     */
+    private transient List<SortedMap<Long, User>> frozen;
+
     /** Creates a new empty fitness application. */
     public FitnessModel() {
-        this.users        = new TreeMap<Long, User>();
-        this.now          = LocalDateTime.now();
-        this.nextUserCode = 1;
+        this.users           = new TreeMap<Long, User>();
+        this.now             = LocalDateTime.now();
+        this.nextUserCode    = 1;
+        this.codeStride      = 1;
+        this.retentionPolicy = null;
+        this.coldStorage     = null;
+        this.columnarHistory = false;
+        this.version         = 0;
+        this.userVersions    = new HashMap<Long, Long>();
+        this.queryCache      = null;
+        this.views           = null;
+        this.snapshot        = null;
+        this.dirtyUsers      = null;
+        this.frozen          = null;
     }
 
     /**
@@ -57,9 +110,20 @@ public class FitnessModel implements Serializable {
      * @param now Current time in this applications.
      */
     public FitnessModel(Map<Long, User> users, LocalDateTime now) {
+        this.version         = 0;
+        this.userVersions    = new HashMap<Long, Long>();
+        this.queryCache      = null;
+        this.views           = null;
+        this.snapshot        = null;
+        this.dirtyUsers      = null;
+        this.frozen          = null;
         this.setUsers(users);
-        this.now          = now;
-        this.nextUserCode = 1;
+        this.now             = now;
+        this.nextUserCode    = 1;
+        this.codeStride      = 1;
+        this.retentionPolicy = null;
+        this.coldStorage     = null;
+        this.columnarHistory = false;
     }
 
     /**
@@ -68,9 +132,20 @@ public class FitnessModel implements Serializable {
      * @param fitness Fitness application to be copied.
      */
     public FitnessModel(FitnessModel fitness) {
-        this.users        = fitness.getUsers();
-        this.now          = fitness.getNow();
-        this.nextUserCode = fitness.getNextUserCode();
+        this.users           = fitness.getUsers();
+        this.now             = fitness.getNow();
+        this.nextUserCode    = fitness.getNextUserCode();
+        this.codeStride      = fitness.getCodeStride();
+        this.retentionPolicy = fitness.getRetentionPolicy();
+        this.coldStorage     = fitness.getColdStorage();
+        this.columnarHistory = fitness.isColumnarHistory();
+        this.version         = fitness.getVersion();
+        this.userVersions    = new HashMap<Long, Long>(fitness.userVersions);
+        this.queryCache      = null;
+        this.views           = null;
+        this.snapshot        = null;
+        this.dirtyUsers      = null;
+        this.frozen          = null;
     }
 
     /**
@@ -98,6 +173,16 @@ public class FitnessModel implements Serializable {
             return u.clone();
     }
 
+    /**
+     * Checks if a user with a given code exists, without copying it.
+     *
+     * @param userCode Identifier code of the user.
+     * @return Whether a user of code <code>userCode</code> exists.
+     */
+    public boolean containsUser(long userCode) {
+        return this.users.containsKey(userCode);
+    }
+
     /**
      * Gets the current time in this application.
      *
@@ -116,6 +201,71 @@ public class FitnessModel implements Serializable {
         return this.nextUserCode;
     }
 
+    /**
+     * Gets the difference between the codes attributed to consecutive users added.
+     *
+     * @return The difference between the codes attributed to consecutive users added.
+     */
+    public long getCodeStride() {
+        return this.codeStride;
+    }
+
+    /**
+     * Gets the policy that tells for how long completed activities are kept before being compacted.
+     *
+     * @return The retention policy of this application, <code>null</code> if completed activities
+     *     are kept forever.
+     */
+    public RetentionPolicy getRetentionPolicy() {
+        if (this.retentionPolicy == null)
+            return null;
+        else
+            return this.retentionPolicy.clone();
+    }
+
+    /**
+     * Gets where old completed activities are moved out of memory to.
+     *
+     * @return The cold storage of this application, <code>null</code> if completed activities are
+     *     kept in memory.
+     */
+    public ColdStorage getColdStorage() {
+        if (this.coldStorage == null)
+            return null;
+        else
+            return this.coldStorage.clone();
+    }
+
+    /**
+     * Checks if completed activities are stored as columns outside of the Java heap.
+     *
+     * @return Whether completed activities are stored as columns outside of the Java heap.
+     */
+    public boolean isColumnarHistory() {
+        return this.columnarHistory;
+    }
+
+    /**
+     * Gets the number of changes made to this application. It increases with every change to its
+     * users or to the current date.
+     *
+     * @return The number of changes made to this application.
+     */
+    public long getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the version of this application when a user last changed.
+     *
+     * @param userCode Identifier code of the user.
+     * @return The version of this application when the user of code <code>userCode</code> last
+     *     changed, <code>0</code> if it never did.
+     */
+    public long getUserVersion(long userCode) {
+        return this.userVersions.getOrDefault(userCode, 0L);
+    }
+
     /**
      * Checks if there aren't users in the application.
      *
@@ -134,6 +284,56 @@ public class FitnessModel implements Serializable {
         this.users = users.entrySet().stream().collect(
             Collectors
                 .toMap(e -> e.getKey(), e -> e.getValue().clone(), (o1, o2) -> o1, TreeMap::new));
+        this.touchAll();
+    }
+
+    /**
+     * Sets the policy that tells for how long completed activities are kept before being compacted.
+     * It's applied the next time the application leaps forward in time.
+     *
+     * @param policy The retention policy of this application, <code>null</code> to keep completed
+     *     activities forever.
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        this.retentionPolicy = policy == null ? null : policy.clone();
+    }
+
+    /**
+     * Sets where old completed activities are moved out of memory to. It's applied the next time
+     * the application leaps forward in time, and activities already moved stay where they are.
+     *
+     * @param storage The cold storage of this application, <code>null</code> to keep completed
+     *     activities in memory.
+     */
+    public void setColdStorage(ColdStorage storage) {
+        this.coldStorage = storage == null ? null : storage.clone();
+    }
+
+    /**
+     * Sets whether completed activities are stored as columns outside of the Java heap. It's
+     * applied the next time the application leaps forward in time.
+     *
+     * @param columnarHistory Whether completed activities are stored as columns outside of the Java
+     *     heap (see <code>ActivityColumns</code>).
+     */
+    public void setColumnarHistory(boolean columnarHistory) {
+        this.columnarHistory = columnarHistory;
+    }
+
+    /**
+     * Sets which identifier codes are attributed to the users added from now on. Applications that
+     * share users between them (see <code>ShardedFitnessModel</code>) can attribute codes without
+     * coordination, each starting at a different code with the same stride.
+     *
+     * @param nextUserCode The identifier code that will be attributed to the next user added.
+     * @param codeStride Difference between the codes attributed to consecutive users added.
+     * @throws FitnessModelException Non-positive code or stride.
+     */
+    public void setCodeAllocation(long nextUserCode, long codeStride) throws FitnessModelException {
+        if (nextUserCode < 1 || codeStride < 1)
+            throw new FitnessModelException("Non-positive user code or stride!");
+        this.nextUserCode = nextUserCode;
+        this.codeStride   = codeStride;
     }
 
     /**
@@ -143,11 +343,13 @@ public class FitnessModel implements Serializable {
      * @return The identifier code that was attributed to the user.
      */
     public long addUser(User user) {
+        long code  = this.nextUserCode;
         User toAdd = user.clone();
-        toAdd.setCode(this.nextUserCode);
-        this.users.put(this.nextUserCode, toAdd);
-        this.nextUserCode++;
-        return this.nextUserCode - 1;
+        toAdd.setCode(code);
+        this.users.put(code, toAdd);
+        this.touch(code);
+        this.nextUserCode += this.codeStride;
+        return code;
     }
 
     /**
@@ -160,7 +362,7 @@ public class FitnessModel implements Serializable {
      */
     public void setTrainingPlanDays(long userCode, SortedSet<DayOfWeek> days)
         throws FitnessModelException, ActivityOverlapException {
-        User user = this.users.get(userCode);
+        User user = this.getWritableUser(userCode);
         if (user == null)
             throw new FitnessModelException("User does not exist!");
 
@@ -169,6 +371,7 @@ public class FitnessModel implements Serializable {
         plan.setRepetitions(days);
         activities.setTrainingPlan(plan);
         user.setActivities(activities);
+        this.touch(userCode);
     }
 
     /**
@@ -177,7 +380,8 @@ public class FitnessModel implements Serializable {
      * @param userCode Identifier code of the user to be removed.
      */
     public void removeUser(long userCode) {
-        this.users.remove(userCode);
+        if (this.users.remove(userCode) != null)
+            this.touch(userCode);
     }
 
     /**
@@ -192,20 +396,42 @@ public class FitnessModel implements Serializable {
     public void addActivity(long userCode, Activity activity)
         throws FitnessModelException, ActivityOverlapException {
 
-        if (activity.getExecutionDate().isBefore(this.getNow()))
-            throw new FitnessModelException("Activity added starts before current date!");
+        this.addActivities(userCode, List.of(activity));
+    }
 
-        User user = this.users.get(userCode);
+    /**
+     * Adds many isolated activities to an user at once. The user's other activities aren't copied,
+     * and either all activities are added or none is.
+     *
+     * @param userCode Identifier code of the user to add the activities to.
+     * @param activities Activities to be added to the user. Their bpm will be replaced by the
+     *     user's.
+     * @throws FitnessModelException User not found.
+     * @throws FitnessModelException Activity starts before current date.
+     * @throws ActivityOverlapException Activity overlaps with existing activities or with another
+     *     activity in the batch.
+     */
+    public void addActivities(long userCode, List<Activity> activities)
+        throws FitnessModelException, ActivityOverlapException {
+
+        for (Activity a : activities)
+            if (a.getExecutionDate().isBefore(this.getNow()))
+                throw new FitnessModelException("Activity added starts before current date!");
+
+        User user = this.getWritableUser(userCode);
         if (user == null)
             throw new FitnessModelException("User does not exist!");
 
-        UserActivities activities = user.getActivities();
-        Activity       toAdd      = activity.clone();
-        try {
-            toAdd.setBPM(user.getAverageBPM());
-        } catch (ActivityException e) {} // Can't happen
-        activities.addActivity(toAdd);
-        user.setActivities(activities);
+        List<Activity> toAdd = new ArrayList<Activity>();
+        for (Activity a : activities) {
+            Activity activity = a.clone();
+            try {
+                activity.setBPM(user.getAverageBPM());
+            } catch (ActivityException e) {} // Can't happen
+            toAdd.add(activity);
+        }
+        user.addActivities(toAdd); // In place, as the user's other activities don't change
+        this.touch(userCode);
     }
 
     /**
@@ -221,7 +447,7 @@ public class FitnessModel implements Serializable {
     public void addActivityToTrainingPlan(long userCode, Activity activity, int times)
         throws FitnessModelException, ActivityOverlapException {
 
-        User user = this.users.get(userCode);
+        User user = this.getWritableUser(userCode);
         if (user == null)
             throw new FitnessModelException("User does not exist!");
 
@@ -234,24 +460,53 @@ public class FitnessModel implements Serializable {
         plan.addActivity(toAdd, times);
         activities.setTrainingPlan(plan);
         user.setActivities(activities);
+        this.touch(userCode);
     }
 
     /**
-     * Advances time to another date, updating which activities have been completed.
+     * Advances time to another date, updating which activities have been completed, and compacting
+     * old completed activities according to the retention policy. Completed activities older than
+     * the horizon of the cold storage are then moved to disk. Only the users whose activities
+     * changed are registered as changed.
      *
      * @param date Date to make the new current date.
      * @throws FitnessModelException Date not after current date.
+     * @throws FitnessModelException Failed to move activities to disk. The current date isn't
+     *     changed, but the users processed before the failure keep (and register) their changes, so
+     *     that leaping to the same date again finishes the leap.
      */
     public void leapForward(LocalDateTime date) throws FitnessModelException {
         if (!date.isAfter(this.now))
             throw new FitnessModelException("Date not after current date!");
 
-        for (User u : this.users.values()) {
-            UserActivities activities = u.getActivities();
-            activities.leapForward(this.now, date);
-            u.setActivities(activities);
+        for (Map.Entry<Long, User> entry : this.users.entrySet()) {
+            // Changed in place, so it's only copied if it's being saved in the background
+            User    u           = this.getWritableUser(entry.getKey());
+            boolean userChanged = u.isColumnar() != this.columnarHistory;
+            u.setColumnar(this.columnarHistory);
+
+            userChanged |= u.leapForward(this.now, date);
+            if (this.retentionPolicy != null)
+                userChanged |= u.compact(this.retentionPolicy.getCompactionDate(date),
+                                         this.retentionPolicy.getGranularity());
+            IOException failure = null;
+            try {
+                if (this.coldStorage != null)
+                    userChanged |= u.spill(this.coldStorage.getSpillDate(date), this.coldStorage);
+            } catch (IOException e) {
+                failure = e;
+            }
+
+            // Registered right away, in case this or a later user fails to leap
+            if (userChanged)
+                this.touch(entry.getKey());
+            if (failure != null)
+                throw new FitnessModelException(
+                    "Failed to move activities to disk: " + failure.getMessage(), failure);
         }
+
         this.now = date;
+        this.version++;
     }
 
     /**
@@ -264,6 +519,26 @@ public class FitnessModel implements Serializable {
             query.accept(u);
     }
 
+    /**
+     * Runs a query that consumes a page of users, sorted by code, without copying them.
+     *
+     * @param query Query to be run, that must not modify nor keep the users.
+     * @param after Only consider users with codes greater than this one (the code of the last user
+     *     in the previous page).
+     * @param limit Maximum number of users to consume.
+     */
+    public void runQuery(Consumer<User> query, long after, int limit) {
+        if (after == Long.MAX_VALUE)
+            return;
+
+        int consumed = 0;
+        for (User u : this.users.tailMap(after + 1).values()) {
+            if (consumed++ >= limit)
+                break;
+            query.accept(u);
+        }
+    }
+
     /**
      * Runs a query that consumes only one user.
      *
@@ -278,6 +553,191 @@ public class FitnessModel implements Serializable {
         query.accept(user);
     }
 
+    /**
+     * Runs a query that consumes all users, or gets its result from a previous run if no user has
+     * changed since then.
+     *
+     * @param <Q> Type of the query.
+     * @param query Query to be run.
+     * @return The query after consuming all users, that must not be modified.
+     */
+    @SuppressWarnings("unchecked")
+    public <Q extends CacheableQuery> Q runCachedQuery(Q query) {
+        QueryCache     cache  = this.getQueryCache();
+        QueryKey       key    = query.getKey();
+        CacheableQuery cached = cache.get(key, this.version);
+        if (cached != null)
+            return (Q) cached;
+
+        this.runQuery(query);
+        cache.put(key, this.version, query);
+        return query;
+    }
+
+    /**
+     * Runs a query that consumes only one user, or gets its result from a previous run if that user
+     * hasn't changed since then.
+     *
+     * @param <Q> Type of the query.
+     * @param query Query to be run.
+     * @param userCode Identifier code of the user to consider.
+     * @return The query after consuming the user, that must not be modified.
+     * @throws FitnessModelException User not found.
+     */
+    @SuppressWarnings("unchecked")
+    public <Q extends CacheableQuery> Q runCachedQuery(Q query, long userCode)
+        throws FitnessModelException {
+
+        QueryCache     cache       = this.getQueryCache();
+        QueryKey       key         = query.getKey().forUser(userCode);
+        long           userVersion = this.getUserVersion(userCode);
+        CacheableQuery cached      = cache.get(key, userVersion);
+        if (cached != null && this.users.containsKey(userCode))
+            return (Q) cached;
+
+        this.runQuery(query, userCode);
+        cache.put(key, userVersion, query);
+        return query;
+    }
+
+    /**
+     * Runs an aggregation query over all users in parallel. Each thread consumes a part of the
+     * users with its own copy of the query, and those partial results are merged at the end.
+     *
+     * @param query Query to be run, that must not have consumed any user. Not modified.
+     * @return A copy of <code>query</code> after consuming all users.
+     */
+    public ActivityQuery runParallelQuery(ActivityQuery query) {
+        return this.users.values().parallelStream().collect(() -> query.clone(),
+                                                             ActivityQuery::accept,
+                                                             FitnessModel::mergeQueries);
+    }
+
+    /**
+     * Adds the results of a partial run of a query to another partial run of the same query.
+     *
+     * @param query Query to add to.
+     * @param partial Query whose results are added.
+     */
+    private static void mergeQueries(ActivityQuery query, ActivityQuery partial) {
+        try {
+            query.merge(partial);
+        } catch (QueryException e) {} // Can't happen
+    }
+
+    /**
+     * Registers a view whose result is kept up to date as users are added, changed or removed. All
+     * current users are provided to it immediately.
+     *
+     * @param view View to be registered. Not copied, so that its result can be read at any time.
+     * @throws QueryException Rollups can't answer the query of the view, so it couldn't be kept up
+     *     to date once old activities are compacted.
+     */
+    public void registerView(StandingView view) throws QueryException {
+        view.validate();
+        if (this.views == null)
+            this.views = new ArrayList<StandingView>();
+        this.views.add(view);
+
+        view.clear();
+        this.users.forEach((code, u) -> view.update(code, u));
+    }
+
+    /**
+     * Stops keeping a view up to date, if it was registered.
+     *
+     * @param view View to be unregistered.
+     */
+    public void unregisterView(StandingView view) {
+        if (this.views != null)
+            this.views.removeIf((v) -> v == view);
+    }
+
+    /**
+     * Gets the cache of the results of previous queries, creating it if needed.
+     *
+     * @return The cache of the results of previous queries.
+     */
+    private synchronized QueryCache getQueryCache() {
+        if (this.queryCache == null)
+            this.queryCache = new QueryCache();
+        return this.queryCache;
+    }
+
+    /**
+     * Checks if a user is being saved in the background, and so can't be changed in place.
+     *
+     * @param userCode Identifier code of the user.
+     * @param user The user, as in this application.
+     * @return Whether <code>user</code> is shared with a save in progress.
+     */
+    private boolean isFrozen(long userCode, User user) {
+        if (this.frozen != null)
+            for (SortedMap<Long, User> users : this.frozen)
+                if (users.get(userCode) == user)
+                    return true;
+        return false;
+    }
+
+    /**
+     * Gets a user to be changed in place. If it's being saved in the background, it's replaced by
+     * a copy first, so that the save isn't affected.
+     *
+     * @param userCode Identifier code of the user.
+     * @return The user of code <code>userCode</code> (not copied), <code>null</code> if not found.
+     */
+    private User getWritableUser(long userCode) {
+        User user = this.users.get(userCode);
+        if (user != null && this.isFrozen(userCode, user)) {
+            user = user.clone();
+            this.users.put(userCode, user);
+        }
+        return user;
+    }
+
+    /**
+     * Registers a change to a user, increasing the version of this application and updating the
+     * registered views.
+     *
+     * @param userCode Identifier code of the user that changed.
+     */
+    private void touch(long userCode) {
+        this.version++;
+        this.userVersions.put(userCode, this.version);
+        if (this.snapshot != null)
+            this.dirtyUsers.add(userCode);
+
+        if (this.views != null) {
+            User user = this.users.get(userCode);
+            for (StandingView view : this.views) {
+                if (user == null)
+                    view.remove(userCode);
+                else
+                    view.update(userCode, user);
+            }
+        }
+    }
+
+    /**
+     * Registers a change to all users, increasing the version of this application and updating the
+     * registered views. The next snapshot saved will be a full one.
+     */
+    private void touchAll() {
+        this.snapshot   = null;
+        this.dirtyUsers = null;
+        this.version++;
+        this.userVersions.clear();
+        for (Long code : this.users.keySet())
+            this.userVersions.put(code, this.version);
+
+        if (this.views != null) {
+            for (StandingView view : this.views) {
+                view.clear();
+                this.users.forEach((code, u) -> view.update(code, u));
+            }
+        }
+    }
+
     /**
      * Loads the data of this application from a file.
      *
@@ -288,28 +748,276 @@ public class FitnessModel implements Serializable {
      */
     public void loadFromFile(String path)
         throws IOException, ClassNotFoundException, ClassCastException {
-        FileInputStream   fileStream   = new FileInputStream(path);
-        ObjectInputStream objectStream = new ObjectInputStream(fileStream);
-        FitnessModel      fitness      = (FitnessModel) objectStream.readObject();
-        objectStream.close();
 
-        this.users        = fitness.getUsers();
-        this.now          = fitness.getNow();
-        this.nextUserCode = fitness.getNextUserCode();
+        SortedMap<Long, User> users = new TreeMap<Long, User>();
+        FitnessModel          header;
+        try (ObjectInputStream in = new ObjectInputStream(
+                 SnapshotFile.newInputStream(Paths.get(path), SnapshotFile.DEFAULT_THREADS))) {
+            header    = (FitnessModel) in.readObject();
+            int count = in.readInt();
+            for (int i = 0; i < count; ++i) {
+                long code = in.readLong();
+                users.put(code, (User) in.readObject());
+            }
+        }
+        this.load(header, users);
+    }
+
+    /**
+     * Loads the data of this application from a snapshot made of a manifest and many segment files
+     * (see <code>FitnessSnapshot</code>), that are read in parallel.
+     *
+     * @param path Path to the manifest.
+     * @throws IOException Failed to read file.
+     * @throws IOException Corrupt snapshot.
+     * @throws ClassNotFoundException Bad file type.
+     * @throws ClassCastException Bad file type.
+     */
+    public void loadSnapshot(String path)
+        throws IOException, ClassNotFoundException, ClassCastException {
+
+        SortedMap<Long, User> users    = new TreeMap<Long, User>();
+        FitnessSnapshot       snapshot = new FitnessSnapshot(path);
+        FitnessModel          header   = snapshot.load(users);
+        this.load(header, users);
+
+        this.snapshot   = snapshot;
+        this.dirtyUsers = new HashSet<Long>();
+    }
+
+    /**
+     * Replaces the data of this application with the data of another.
+     *
+     * @param fitness Application whose data (except for its users) is loaded. Not copied.
+     * @param users Users to be loaded. Not copied.
+     */
+    private void load(FitnessModel fitness, SortedMap<Long, User> users) {
+        this.users           = users;
+        this.now             = fitness.getNow();
+        this.nextUserCode    = fitness.getNextUserCode();
+        this.codeStride      = fitness.getCodeStride();
+        this.retentionPolicy = fitness.getRetentionPolicy();
+        this.coldStorage     = fitness.getColdStorage();
+        this.columnarHistory = fitness.isColumnarHistory();
+        this.version         = Math.max(this.version, fitness.getVersion());
+        this.touchAll();
     }
 
     /**
-     * Saves the data of this application to a file.
+     * Saves the data of this application to a file compressed with the default codec, waiting for
+     * it to be written.
      *
      * @param path Path to the file.
      * @throws IOException Failed to write to fail.
      */
     public void saveToFile(String path) throws IOException {
-        FileOutputStream   fileStream   = new FileOutputStream(path);
-        ObjectOutputStream objectStream = new ObjectOutputStream(fileStream);
-        objectStream.writeObject(this);
-        objectStream.close();
-        fileStream.close();
+        this.saveToFile(path, SnapshotFile.DEFAULT_CODEC);
+    }
+
+    /**
+     * Saves the data of this application to a file, waiting for it to be written. The file is
+     * compressed in blocks, in parallel, and only replaces the previous one once it's fully written
+     * to disk (see <code>SnapshotFile</code>).
+     *
+     * @param path Path to the file.
+     * @param codec Codec the file is compressed with.
+     * @throws IOException Failed to write to fail.
+     */
+    public void saveToFile(String path, SnapshotCodec codec) throws IOException {
+        FitnessModel.writeFile(path,
+                               this.getHeader(),
+                               this.users,
+                               codec,
+                               new SaveProgress(path, this.users.size()));
+    }
+
+    /**
+     * Saves the data of this application to a file compressed with the default codec, in the
+     * background. See <code>saveToFileAsync(String, SnapshotCodec)</code>.
+     *
+     * @param path Path to the file.
+     * @return The progress of the save, whose future is completed when the file is fully written.
+     */
+    public SaveProgress saveToFileAsync(String path) {
+        return this.saveToFileAsync(path, SnapshotFile.DEFAULT_CODEC);
+    }
+
+    /**
+     * Saves the data of this application to a file in the background. The application is frozen
+     * at the time of the call: the users are shared with the save without being copied, and only
+     * copied when they're changed before the save is over (copy-on-write). So, the application can
+     * keep being changed (from the thread that called this method) while it's saved.
+     *
+     * @param path Path to the file.
+     * @param codec Codec the file is compressed with.
+     * @return The progress of the save, whose future is completed when the file is fully written.
+     */
+    public SaveProgress saveToFileAsync(String path, SnapshotCodec codec) {
+        FitnessModel          header   = this.getHeader();
+        SortedMap<Long, User> users    = new TreeMap<Long, User>(this.users);
+        SaveProgress          progress = new SaveProgress(path, users.size());
+
+        if (this.frozen == null)
+            this.frozen = new CopyOnWriteArrayList<SortedMap<Long, User>>();
+        List<SortedMap<Long, User>> frozen = this.frozen;
+        frozen.add(users);
+
+        Thread thread = new Thread(() -> {
+            Throwable error = null;
+            try {
+                FitnessModel.writeFile(path, header, users, codec, progress);
+            } catch (Throwable e) {
+                error = e;
+            }
+
+            frozen.removeIf((f) -> f == users);
+            if (error == null)
+                progress.getFuture().complete(null);
+            else
+                progress.getFuture().completeExceptionally(error);
+        }, "FitnessModel save");
+        thread.start();
+        return progress;
+    }
+
+    /**
+     * Writes a fitness application to a file: everything except its users, followed by the number
+     * of users and each of them, preceded by its code.
+     *
+     * @param path Path to the file.
+     * @param header Everything in the application except its users.
+     * @param users Users in the application, that must not be changed while they're written.
+     * @param codec Codec the file is compressed with.
+     * @param progress Where to register the users and bytes written.
+     * @throws IOException Failed to write to the file.
+     */
+    private static void writeFile(String                path,
+                                  FitnessModel          header,
+                                  SortedMap<Long, User> users,
+                                  SnapshotCodec         codec,
+                                  SaveProgress          progress) throws IOException {
+
+        try (SnapshotFile.BlockOutputStream file =
+                 SnapshotFile.newOutputStream(Paths.get(path),
+                                              codec,
+                                              SnapshotFile.DEFAULT_THREADS,
+                                              progress::addBytesWritten);
+             ObjectOutputStream out = new ObjectOutputStream(file)) {
+            out.writeObject(header);
+            out.writeInt(users.size());
+            for (Map.Entry<Long, User> e : users.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeObject(e.getValue());
+                progress.addUserWritten();
+            }
+            out.flush();
+            file.commit();
+        }
+    }
+
+    /**
+     * Saves the data of this application to a snapshot made of a manifest and many segment files
+     * (see <code>FitnessSnapshot</code>), that are written in parallel. The previous snapshot in
+     * the same path is replaced atomically.
+     *
+     * @param path Path to the manifest.
+     * @throws IOException Failed to write to file.
+     */
+    public void saveSnapshot(String path) throws IOException {
+        this.saveSnapshot(path, SnapshotFile.DEFAULT_CODEC);
+    }
+
+    /**
+     * Saves the data of this application to a snapshot whose segments are compressed with a given
+     * codec. See <code>saveSnapshot(String)</code>.
+     *
+     * @param path Path to the manifest.
+     * @param codec Codec the segments are compressed with.
+     * @throws IOException Failed to write to file.
+     */
+    public void saveSnapshot(String path, SnapshotCodec codec) throws IOException {
+        FitnessSnapshot snapshot = new FitnessSnapshot(path,
+                                                       FitnessSnapshot.DEFAULT_SEGMENTS,
+                                                       FitnessSnapshot.DEFAULT_THREADS,
+                                                       FitnessSnapshot.DEFAULT_MAX_DELTAS,
+                                                       codec);
+        snapshot.save(this.getHeader(), this.users);
+
+        this.snapshot   = snapshot;
+        this.dirtyUsers = new HashSet<Long>();
+    }
+
+    /**
+     * Saves the data of this application to a snapshot, only writing the users added, changed or
+     * removed since it was last saved to or loaded from the same snapshot (a delta). A full
+     * snapshot is saved instead if there's no such snapshot, or if it has been replaced since, or
+     * if it already has too many deltas (see <code>FitnessSnapshot.saveDelta</code>).
+     *
+     * @param path Path to the manifest.
+     * @throws IOException Failed to write to file.
+     */
+    public void saveSnapshotDelta(String path) throws IOException {
+        if (this.snapshot == null || !this.snapshot.getPath().equals(path)) {
+            this.saveSnapshot(path);
+            return;
+        }
+
+        SortedMap<Long, User> changed = new TreeMap<Long, User>();
+        SortedSet<Long>       removed = new TreeSet<Long>();
+        for (long code : this.dirtyUsers) {
+            User u = this.users.get(code);
+            if (u == null)
+                removed.add(code);
+            else
+                changed.put(code, u);
+        }
+
+        if (this.snapshot.saveDelta(this.getHeader(), changed, removed))
+            this.dirtyUsers.clear();
+        else
+            this.saveSnapshot(path, this.snapshot.getCodec());
+    }
+
+    /**
+     * Checks the integrity of a file saved by <code>saveToFile</code>, at the speed it's read from
+     * disk, without loading it (see <code>SnapshotFile.verify</code>).
+     *
+     * @param path Path to the file.
+     * @return The number of bytes in the file, after being decompressed.
+     * @throws IOException Failed to read file.
+     * @throws IOException Truncated or corrupt file.
+     */
+    public static long verifyFile(String path) throws IOException {
+        return SnapshotFile.verify(Paths.get(path));
+    }
+
+    /**
+     * Checks the integrity of a snapshot saved by <code>saveSnapshot</code>, without loading it
+     * (see <code>FitnessSnapshot.verify</code>).
+     *
+     * @param path Path to the manifest.
+     * @return The number of bytes in the snapshot, after being decompressed.
+     * @throws IOException Failed to read file.
+     * @throws IOException Corrupt snapshot.
+     */
+    public static long verifySnapshot(String path) throws IOException {
+        return new FitnessSnapshot(path).verify();
+    }
+
+    /**
+     * Gets everything in this application except its users, without copying them.
+     *
+     * @return A fitness application without users, but otherwise equal to this one.
+     */
+    private FitnessModel getHeader() {
+        FitnessModel header    = new FitnessModel(new TreeMap<Long, User>(), this.now);
+        header.nextUserCode    = this.nextUserCode;
+        header.codeStride      = this.codeStride;
+        header.retentionPolicy = this.retentionPolicy;
+        header.coldStorage     = this.coldStorage;
+        header.columnarHistory = this.columnarHistory;
+        header.version         = this.version;
+        return header;
     }
 
     /**
@@ -327,7 +1035,11 @@ public class FitnessModel implements Serializable {
 
         FitnessModel fitness = (FitnessModel) obj;
         return this.users.equals(fitness.getUsers()) && this.now.equals(fitness.getNow()) &&
-            this.nextUserCode == fitness.getNextUserCode();
+            this.nextUserCode == fitness.getNextUserCode() &&
+            this.codeStride == fitness.getCodeStride() &&
+            Objects.equals(this.retentionPolicy, fitness.getRetentionPolicy()) &&
+            Objects.equals(this.coldStorage, fitness.getColdStorage()) &&
+            this.columnarHistory == fitness.isColumnarHistory();
     }
 
     /**
@@ -337,7 +1049,13 @@ public class FitnessModel implements Serializable {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(this.users, this.now, this.nextUserCode);
+        return Objects.hash(this.users,
+                            this.now,
+                            this.nextUserCode,
+                            this.codeStride,
+                            this.retentionPolicy,
+                            this.coldStorage,
+                            this.columnarHistory);
     }
 
     /**
@@ -27,4 +27,14 @@ public class FitnessModelException extends Exception {
     public FitnessModelException(String msg) {
         super(msg);
     }
+
+    /**
+     * Constructor for FitnessModelException caused by another exception.
+     *
+     * @param msg Exception message.
+     * @param cause Exception that caused this one.
+     */
+    public FitnessModelException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
 }
@@ -0,0 +1,492 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * Client of a <code>FitnessRpcServer</code>. Requests are buffered and only sent when the buffer
+ * fills, when flushed, or when waiting for a response, so that many requests can be pipelined
+ * before any response is read. Responses arrive in the order requests were sent. Not thread-safe.
+ */
+public class FitnessRpcClient implements AutoCloseable {
+    /** Size of the buffers of the client. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** The response to a request. */
+    public static class Response {
+        /** Identifier of the request. */
+        private int id;
+
+        /** Number of activities in the request that were added. */
+        private int accepted;
+
+        /** Why the request failed, or <code>null</code> if it succeeded. */
+        private String error;
+
+        /** Creates a new response to request <code>0</code>, without any added activities. */
+        public Response() {
+            this(0, 0, null);
+        }
+
+        /**
+         * Creates a new response from the value of its fields.
+         *
+         * @param id Identifier of the request.
+         * @param accepted Number of activities in the request that were added.
+         * @param error Why the request failed, or <code>null</code> if it succeeded.
+         */
+        public Response(int id, int accepted, String error) {
+            this.id       = id;
+            this.accepted = accepted;
+            this.error    = error;
+        }
+
+        /**
+         * Copy constructor of a response.
+         *
+         * @param response Response to be copied.
+         */
+        public Response(Response response) {
+            this(response.getId(), response.getAccepted(), response.getError());
+        }
+
+        /**
+         * Gets the identifier of the request.
+         *
+         * @return The identifier of the request.
+         */
+        public int getId() {
+            return this.id;
+        }
+
+        /**
+         * Gets the number of activities in the request that were added.
+         *
+         * @return The number of activities in the request that were added.
+         */
+        public int getAccepted() {
+            return this.accepted;
+        }
+
+        /**
+         * Gets why the request failed.
+         *
+         * @return Why the request failed, or <code>null</code> if it succeeded.
+         */
+        public String getError() {
+            return this.error;
+        }
+
+        /**
+         * Checks if the request succeeded.
+         *
+         * @return Whether the request succeeded.
+         */
+        public boolean isSuccess() {
+            return this.error == null;
+        }
+
+        /**
+         * Checks if this response is equal to another object.
+         *
+         * @param obj Object to be compared with this response.
+         * @return Whether <code>this</code> is equal to <code>obj</code>.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || this.getClass() != obj.getClass())
+                return false;
+
+            Response response = (Response) obj;
+            return this.id == response.getId() && this.accepted == response.getAccepted() &&
+                (this.error == null ? response.getError() == null
+                                    : this.error.equals(response.getError()));
+        }
+
+        /**
+         * Calculates the hash code of this response.
+         *
+         * @return The hash code of this response.
+         */
+        @Override
+        public int hashCode() {
+            return this.id * 31 + this.accepted;
+        }
+
+        /**
+         * Creates a copy of this response. See the copy constructor.
+         *
+         * @return A copy of this response.
+         */
+        @Override
+        public Response clone() {
+            return new Response(this);
+        }
+
+        /**
+         * Creates a debug string representation of this response.
+         *
+         * @return A debug string representation of this response.
+         */
+        @Override
+        public String toString() {
+            return String.format("Response(id = %d, accepted = %d, error = %s)",
+                                 this.id,
+                                 this.accepted,
+                                 this.error);
+        }
+    }
+
+    /** Address of the server. */
+    private InetSocketAddress address;
+
+    /** Connection to the server. */
+    private SocketChannel channel;
+
+    /** Requests not yet sent, ready to be written to. */
+    private ByteBuffer out;
+
+    /** Bytes received but not yet decoded, ready to be read from. */
+    private ByteBuffer in;
+
+    /** Identifier of the next request. */
+    private int nextId;
+
+    /** Number of requests sent whose responses haven't been read. */
+    private int inFlight;
+
+    /**
+     * Creates a new client connected to a server.
+     *
+     * @param address Address of the server.
+     * @throws IOException Failed to connect to the server.
+     */
+    public FitnessRpcClient(InetSocketAddress address) throws IOException {
+        this.address  = address;
+        this.channel  = SocketChannel.open(address);
+        this.out      = ByteBuffer.allocate(FitnessRpcClient.BUFFER_SIZE);
+        this.in       = ByteBuffer.allocate(FitnessRpcClient.BUFFER_SIZE).flip();
+        this.nextId   = 0;
+        this.inFlight = 0;
+        this.channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+    }
+
+    /**
+     * Copy constructor of a client. The copy has its own connection to the same server.
+     *
+     * @param client Client to be copied.
+     * @throws IOException Failed to connect to the server.
+     */
+    public FitnessRpcClient(FitnessRpcClient client) throws IOException {
+        this(client.getAddress());
+    }
+
+    /**
+     * Gets the address of the server.
+     *
+     * @return The address of the server.
+     */
+    public InetSocketAddress getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Gets the number of requests sent whose responses haven't been read.
+     *
+     * @return The number of requests sent whose responses haven't been read.
+     */
+    public int getInFlight() {
+        return this.inFlight;
+    }
+
+    /**
+     * Requests an isolated activity to be added to a user.
+     *
+     * @param user Code of the user.
+     * @param activity Activity to be added.
+     * @return The identifier of the request.
+     * @throws IOException Failed to send the buffered requests.
+     */
+    public int addActivity(long user, Activity activity) throws IOException {
+        this.beginFrame(FitnessRpcServer.ADD_ACTIVITY, FitnessRpcClient.activitySize(activity));
+        FitnessRpcClient.putActivity(this.out, user, activity);
+        return this.endFrame();
+    }
+
+    /**
+     * Requests an activity to be added to the training plan of a user.
+     *
+     * @param user Code of the user.
+     * @param activity Activity to be added.
+     * @param times Number of times the activity is executed each day of the training plan.
+     * @return The identifier of the request.
+     * @throws IOException Failed to send the buffered requests.
+     */
+    public int addActivityToTrainingPlan(long user, Activity activity, int times)
+        throws IOException {
+
+        this.beginFrame(FitnessRpcServer.ADD_PLAN_ACTIVITY,
+                        FitnessRpcClient.activitySize(activity) + 4);
+        FitnessRpcClient.putActivity(this.out, user, activity);
+        this.out.putInt(times);
+        return this.endFrame();
+    }
+
+    /**
+     * Requests many isolated activities to be added, in a single frame. Each run of consecutive
+     * activities of the same user is added atomically, and the activities after a run that fails
+     * aren't added.
+     *
+     * @param users Code of the user of each activity.
+     * @param activities Activities to be added.
+     * @return The identifier of the request.
+     * @throws IllegalArgumentException No activities, more than
+     *     <code>FitnessRpcServer.MAX_BATCH</code>, or not as many users as activities.
+     * @throws IOException Failed to send the buffered requests.
+     */
+    public int addActivities(long[] users, List<Activity> activities) throws IOException {
+        if (activities.isEmpty() || activities.size() > FitnessRpcServer.MAX_BATCH ||
+            users.length != activities.size())
+            throw new IllegalArgumentException("Invalid batch");
+
+        int size = 2;
+        for (Activity activity : activities)
+            size += FitnessRpcClient.activitySize(activity);
+
+        this.beginFrame(FitnessRpcServer.BATCH, size);
+        this.out.putShort((short) activities.size());
+        for (int i = 0; i < users.length; ++i)
+            FitnessRpcClient.putActivity(this.out, users[i], activities.get(i));
+        return this.endFrame();
+    }
+
+    /**
+     * Sends all buffered requests.
+     *
+     * @throws IOException Failed to send the requests.
+     */
+    public void flush() throws IOException {
+        this.out.flip();
+        while (this.out.hasRemaining())
+            this.channel.write(this.out);
+        this.out.clear();
+    }
+
+    /**
+     * Waits for the response to the oldest request whose response hasn't been read, sending all
+     * buffered requests first.
+     *
+     * @return The response.
+     * @throws IllegalStateException No requests waiting for a response.
+     * @throws IOException Failed to communicate with the server.
+     * @throws FitnessRpcException Invalid response.
+     */
+    public Response receive() throws IOException, FitnessRpcException {
+        if (this.inFlight == 0)
+            throw new IllegalStateException("No requests waiting for a response");
+        this.flush();
+
+        this.fill(4);
+        int length = this.in.getInt();
+        if (length < 9 || length > FitnessRpcServer.MAX_FRAME_SIZE)
+            throw new FitnessRpcException("Invalid frame length " + length);
+        this.fill(length);
+
+        int    end      = this.in.position() + length;
+        byte   type     = this.in.get();
+        int    id       = this.in.getInt();
+        int    accepted = this.in.getInt();
+        String error    = null;
+        if (type == FitnessRpcServer.ERROR) {
+            int    messageLength = this.in.getShort() & 0xFFFF;
+            byte[] message       = new byte[messageLength];
+            this.in.get(message);
+            error = new String(message, StandardCharsets.UTF_8);
+        } else if (type != FitnessRpcServer.ACK) {
+            throw new FitnessRpcException("Unknown frame type " + type);
+        }
+
+        this.in.position(end);
+        this.inFlight--;
+        return new Response(id, accepted, error);
+    }
+
+    /**
+     * Closes the connection to the server, without sending buffered requests.
+     *
+     * @throws IOException Failed to close the connection.
+     */
+    @Override
+    public void close() throws IOException {
+        this.channel.close();
+    }
+
+    /**
+     * Starts a request frame, sending the buffered requests first if it doesn't fit.
+     *
+     * @param type Type of the frame.
+     * @param size Size of the contents of the frame, after its identifier.
+     * @throws IOException Failed to send the buffered requests.
+     */
+    private void beginFrame(byte type, int size) throws IOException {
+        if (this.out.remaining() < 9 + size) {
+            this.flush();
+            if (this.out.capacity() < 9 + size)
+                this.out = ByteBuffer.allocate(9 + size);
+        }
+
+        this.out.putInt(5 + size);
+        this.out.put(type);
+        this.out.putInt(this.nextId);
+    }
+
+    /**
+     * Ends a request frame.
+     *
+     * @return The identifier of the request.
+     */
+    private int endFrame() {
+        this.inFlight++;
+        return this.nextId++;
+    }
+
+    /**
+     * Reads from the server until at least a number of bytes are waiting to be decoded.
+     *
+     * @param size Number of bytes needed.
+     * @throws IOException Failed to read from the server, or connection closed.
+     */
+    private void fill(int size) throws IOException {
+        if (this.in.remaining() >= size)
+            return;
+
+        this.in.compact();
+        if (this.in.capacity() < size)
+            this.in = ByteBuffer.allocate(size).put(this.in.flip());
+
+        while (this.in.position() < size)
+            if (this.channel.read(this.in) < 0)
+                throw new EOFException("Connection closed by the server");
+        this.in.flip();
+    }
+
+    /**
+     * Calculates the size of an encoded activity, including the code of its user.
+     *
+     * @param activity Activity to be encoded.
+     * @return The size of the encoded activity.
+     */
+    private static int activitySize(Activity activity) {
+        int size = 21 + activity.getClass().getSimpleName().length();
+        if (activity instanceof ActivityRepetition)
+            size += 4;
+        if (activity instanceof ActivityRepetitionWeighted)
+            size += 8;
+        if (activity instanceof ActivityDistance)
+            size += 8;
+        if (activity instanceof ActivityAltimetryDistance)
+            size += 8;
+        return size;
+    }
+
+    /**
+     * Encodes an activity. See <code>FitnessRpcServer</code> for the format.
+     *
+     * @param out Where to write the activity to.
+     * @param user Code of the user of the activity.
+     * @param activity Activity to be encoded.
+     */
+    private static void putActivity(ByteBuffer out, long user, Activity activity) {
+        byte[] name = activity.getClass().getSimpleName().getBytes(StandardCharsets.US_ASCII);
+        out.putLong(user);
+        out.put((byte) name.length);
+        out.put(name);
+        out.putLong(activity.getExecutionDate().toEpochSecond(ZoneOffset.UTC));
+        out.putInt((int) activity.getExecutionTime().toMinutes());
+
+        if (activity instanceof ActivityRepetition)
+            out.putInt(((ActivityRepetition) activity).getNumberOfReps());
+        if (activity instanceof ActivityRepetitionWeighted)
+            out.putDouble(((ActivityRepetitionWeighted) activity).getWeightsHeft());
+        if (activity instanceof ActivityDistance)
+            out.putDouble(((ActivityDistance) activity).getDistanceToTraverse());
+        if (activity instanceof ActivityAltimetryDistance)
+            out.putDouble(((ActivityAltimetryDistance) activity).getAltimetry());
+    }
+
+    /**
+     * Checks if this client is equal to another object. Clients are only equal to themselves, as
+     * each has its own connection.
+     *
+     * @param obj Object to be compared with this client.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return this == obj;
+    }
+
+    /**
+     * Calculates the hash code of this client.
+     *
+     * @return The hash code of this client.
+     */
+    @Override
+    public int hashCode() {
+        return System.identityHashCode(this);
+    }
+
+    /**
+     * Creates a copy of this client. See the copy constructor.
+     *
+     * @return A copy of this client.
+     * @throws UncheckedIOException Failed to connect to the server.
+     */
+    @Override
+    public FitnessRpcClient clone() {
+        try {
+            return new FitnessRpcClient(this);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Creates a debug string representation of this client.
+     *
+     * @return A debug string representation of this client.
+     */
+    @Override
+    public String toString() {
+        return String.format("FitnessRpcClient(address = %s, inFlight = %d)",
+                             this.address.toString(),
+                             this.inFlight);
+    }
+}
@@ -0,0 +1,703 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Receives activities over a compact binary protocol, for clients that add activities at a high
+ * rate (see <code>FitnessRpcClient</code>). A single thread serves all connections, decoding frames
+ * directly into activities. All frames received in each pass over the connections are applied
+ * together before being acknowledged, so that consecutive isolated activities of the same user are
+ * added in a single batch. Activities are only added to the application in memory: an
+ * acknowledgement doesn't mean they were saved to disk. Clients don't need to wait for a frame's
+ * acknowledgement before sending the next frame.
+ *
+ * <p>Every frame starts with its length (excluding the length itself) as a 32-bit integer,
+ * followed by its type (a byte) and an identifier chosen by the client (a 32-bit integer). All
+ * numbers are big-endian. Requests:
+ *
+ * <ul>
+ *   <li><code>ADD_ACTIVITY</code>: an activity;</li>
+ *   <li><code>ADD_PLAN_ACTIVITY</code>: an activity and the number of times it's executed (a
+ *     32-bit integer);</li>
+ *   <li><code>BATCH</code>: the number of activities (an unsigned 16-bit integer, up to
+ *     <code>MAX_BATCH</code>) and the activities. Each run of consecutive activities of the same
+ *     user is added atomically, and the activities after a run that fails are skipped.</li>
+ * </ul>
+ *
+ * An activity is written as the code of its user (64 bits), the length (a byte) and the ASCII name
+ * of its class, its date in seconds since the epoch in UTC (64 bits), its duration in minutes (32
+ * bits) and its extra fields, in the order of <code>FitnessController.ActivityExtraField</code>
+ * (repetitions as a 32-bit integer, others as doubles).
+ *
+ * <p>Every request is answered in order, with an <code>ACK</code> or an <code>ERROR</code> frame
+ * with the identifier of the request and how many of its activities were added (a 32-bit integer).
+ * Errors are followed by the length (an unsigned 16-bit integer) and the UTF-8 bytes of a message.
+ */
+public class FitnessRpcServer {
+    /** Type of a frame with an isolated activity. */
+    public static final byte ADD_ACTIVITY = 1;
+
+    /** Type of a frame with an activity for a training plan. */
+    public static final byte ADD_PLAN_ACTIVITY = 2;
+
+    /** Type of a frame with many isolated activities. */
+    public static final byte BATCH = 3;
+
+    /** Type of a frame acknowledging that a request succeeded. */
+    public static final byte ACK = 16;
+
+    /** Type of a frame telling that a request failed. */
+    public static final byte ERROR = 17;
+
+    /** Maximum number of activities in a <code>BATCH</code> frame. */
+    public static final int MAX_BATCH = 4096;
+
+    /** Maximum length of a frame, excluding its length. */
+    public static final int MAX_FRAME_SIZE = 1 << 21;
+
+    /** Size of the buffers of new connections. */
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /**
+     * Number of bytes of responses waiting to be sent to a connection above which no more requests
+     * are read from it, so that clients that don't read responses can't exhaust memory.
+     */
+    private static final int MAX_PENDING_OUTPUT = 1 << 20;
+
+    /** The controller activities are added to. */
+    private FitnessController controller;
+
+    /** Address the server listens on. */
+    private InetSocketAddress address;
+
+    /** Selector of the connections, or <code>null</code> when not started. */
+    private Selector selector;
+
+    /** Channel accepting connections, or <code>null</code> when not started. */
+    private ServerSocketChannel channel;
+
+    /** Thread serving all connections, or <code>null</code> when not started. */
+    private Thread thread;
+
+    /** Whether the server should keep running. */
+    private volatile boolean running;
+
+    /** A connection to a client. */
+    private static final class Connection {
+        /** Channel of the connection. */
+        private SocketChannel channel;
+
+        /** Key of <code>channel</code> in the selector. */
+        private SelectionKey key;
+
+        /** Bytes received but not yet decoded, ready to be written to. */
+        private ByteBuffer in;
+
+        /** Responses not yet sent, ready to be written to. */
+        private ByteBuffer out;
+
+        /**
+         * Creates a new connection.
+         *
+         * @param channel Channel of the connection.
+         * @param key Key of <code>channel</code> in the selector.
+         */
+        private Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key     = key;
+            this.in      = ByteBuffer.allocate(FitnessRpcServer.BUFFER_SIZE);
+            this.out     = ByteBuffer.allocate(FitnessRpcServer.BUFFER_SIZE);
+        }
+    }
+
+    /** A decoded request, waiting to be applied and answered. */
+    private static final class Request {
+        /** Connection the request was received from. */
+        private Connection connection;
+
+        /** Identifier of the request, chosen by the client. */
+        private int id;
+
+        /** Type of the request frame. */
+        private byte type;
+
+        /** Code of the user of each activity. */
+        private long[] users;
+
+        /** Activities in the request. */
+        private List<Activity> activities;
+
+        /** Number of times the activity is executed in a training plan. */
+        private int times;
+
+        /** Why the request can't be applied, or <code>null</code> if it's valid. */
+        private String error;
+
+        /** Number of activities in the request that were added, once it's applied. */
+        private int accepted;
+
+        /** Why applying the request failed, or <code>null</code> if it succeeded. */
+        private String failure;
+
+        /**
+         * Creates a new request without any activities.
+         *
+         * @param connection Connection the request was received from.
+         * @param id Identifier of the request, chosen by the client.
+         * @param type Type of the request frame.
+         */
+        private Request(Connection connection, int id, byte type) {
+            this.connection = connection;
+            this.id         = id;
+            this.type       = type;
+            this.users      = new long[0];
+            this.activities = new ArrayList<Activity>();
+            this.times      = 1;
+            this.error      = null;
+            this.accepted   = 0;
+            this.failure    = null;
+        }
+    }
+
+    /** Creates a new server with its own application, on port 8081 of all interfaces. */
+    public FitnessRpcServer() {
+        this(new FitnessController(), new InetSocketAddress(8081));
+    }
+
+    /**
+     * Creates a new server from the value of its fields. It must be started to accept connections.
+     *
+     * @param controller The controller activities are added to. While the server is running, it
+     *     must not be used by anything else.
+     * @param address Address the server listens on. Port <code>0</code> picks any free port.
+     */
+    public FitnessRpcServer(FitnessController controller, InetSocketAddress address) {
+        this.controller = controller;
+        this.address    = address;
+        this.selector   = null;
+        this.channel    = null;
+        this.thread     = null;
+        this.running    = false;
+    }
+
+    /**
+     * Copy constructor of a server. The copy adds activities to the same controller, but isn't
+     * started.
+     *
+     * @param server Server to be copied.
+     */
+    public FitnessRpcServer(FitnessRpcServer server) {
+        this(server.getController(), server.getAddress());
+    }
+
+    /**
+     * Gets the controller activities are added to.
+     *
+     * @return The controller activities are added to.
+     */
+    public FitnessController getController() {
+        return this.controller;
+    }
+
+    /**
+     * Gets the address the server listens on.
+     *
+     * @return The address the server listens on, as given when it was created.
+     */
+    public InetSocketAddress getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port the server listens on. If port <code>0</code> was asked for, the port that
+     *     was picked is only known once the server is started.
+     */
+    public synchronized int getPort() {
+        if (this.channel == null)
+            return this.address.getPort();
+        return this.channel.socket().getLocalPort();
+    }
+
+    /**
+     * Starts accepting connections, if not yet started.
+     *
+     * @throws IOException Failed to listen on the address.
+     */
+    public synchronized void start() throws IOException {
+        if (this.thread != null)
+            return;
+
+        this.selector = Selector.open();
+        this.channel  = ServerSocketChannel.open();
+        try {
+            this.channel.bind(this.address);
+            this.channel.configureBlocking(false);
+            this.channel.register(this.selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            this.channel.close();
+            this.selector.close();
+            this.channel  = null;
+            this.selector = null;
+            throw e;
+        }
+
+        this.running = true;
+        this.thread  = new Thread(this::serve, "FitnessRpcServer");
+        this.thread.start();
+    }
+
+    /**
+     * Stops the server, if started, closing all connections. Requests already received but not yet
+     * applied are discarded.
+     *
+     * @throws InterruptedException Interrupted while waiting for the server to stop.
+     */
+    public synchronized void stop() throws InterruptedException {
+        if (this.thread == null)
+            return;
+
+        this.running = false;
+        this.selector.wakeup();
+        this.thread.join();
+
+        for (SelectionKey key : this.selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {} // Nothing else to do
+        }
+        try {
+            this.selector.close();
+        } catch (IOException e) {} // Nothing else to do
+
+        this.thread   = null;
+        this.channel  = null;
+        this.selector = null;
+    }
+
+    /** Serves all connections until the server is stopped. */
+    private void serve() {
+        List<Request> requests = new ArrayList<Request>();
+        while (this.running) {
+            try {
+                this.selector.select();
+            } catch (IOException e) {
+                return;
+            }
+
+            for (SelectionKey key : this.selector.selectedKeys()) {
+                try {
+                    if (key.isAcceptable()) {
+                        this.accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        if (key.isReadable())
+                            this.read(connection, requests);
+                        if (key.isValid() && key.isWritable())
+                            FitnessRpcServer.write(connection);
+                    }
+                } catch (IOException | FitnessRpcException | CancelledKeyException e) {
+                    FitnessRpcServer.close(key);
+                }
+            }
+            this.selector.selectedKeys().clear();
+
+            this.apply(requests);
+            requests.clear();
+        }
+    }
+
+    /**
+     * Accepts a pending connection.
+     *
+     * @throws IOException Failed to accept the connection.
+     */
+    private void accept() throws IOException {
+        SocketChannel client = this.channel.accept();
+        if (client == null)
+            return;
+
+        client.configureBlocking(false);
+        client.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        SelectionKey key = client.register(this.selector, SelectionKey.OP_READ);
+        key.attach(new Connection(client, key));
+    }
+
+    /**
+     * Reads from a connection, decoding all complete frames received.
+     *
+     * @param connection Connection to read from.
+     * @param requests Where to add the decoded requests to.
+     * @throws IOException Failed to read from the connection, or connection closed by the client.
+     * @throws FitnessRpcException Invalid frame length, after which frames can't be told apart.
+     */
+    private void read(Connection connection, List<Request> requests)
+        throws IOException, FitnessRpcException {
+
+        if (connection.channel.read(connection.in) < 0)
+            throw new IOException("Connection closed");
+
+        ByteBuffer in = connection.in;
+        in.flip();
+        while (in.remaining() >= 4) {
+            int length = in.getInt(in.position());
+            if (length < 5 || length > FitnessRpcServer.MAX_FRAME_SIZE)
+                throw new FitnessRpcException("Invalid frame length " + length);
+
+            if (in.remaining() < 4 + length) {
+                if (in.capacity() < 4 + length) {
+                    int capacity  = Math.max(in.capacity() * 2, 4 + length);
+                    connection.in = ByteBuffer.allocate(capacity).put(in);
+                    return;
+                }
+                break;
+            }
+
+            requests.add(this.decode(connection, in.slice(in.position() + 4, length)));
+            in.position(in.position() + 4 + length);
+        }
+        in.compact();
+    }
+
+    /**
+     * Decodes a request frame. Invalid requests are still decoded, with their error set, so that
+     * they can be answered in order.
+     *
+     * @param connection Connection the frame was received from.
+     * @param frame Frame to be decoded, without its length.
+     * @return The decoded request.
+     */
+    private Request decode(Connection connection, ByteBuffer frame) {
+        Request request = new Request(connection, frame.getInt(1), frame.get(0));
+        frame.position(5);
+
+        try {
+            int count = 1;
+            if (request.type == FitnessRpcServer.BATCH) {
+                count = frame.getShort() & 0xFFFF;
+                if (count == 0 || count > FitnessRpcServer.MAX_BATCH)
+                    throw new FitnessRpcException("Invalid batch size " + count);
+            } else if (request.type != FitnessRpcServer.ADD_ACTIVITY &&
+                       request.type != FitnessRpcServer.ADD_PLAN_ACTIVITY) {
+                throw new FitnessRpcException("Unknown frame type " + request.type);
+            }
+
+            request.users = new long[count];
+            for (int i = 0; i < count; ++i) {
+                request.users[i] = frame.getLong();
+                request.activities.add(this.decodeActivity(frame));
+            }
+            if (request.type == FitnessRpcServer.ADD_PLAN_ACTIVITY)
+                request.times = frame.getInt();
+            if (frame.hasRemaining())
+                throw new FitnessRpcException("Unexpected data at the end of the frame!");
+        } catch (BufferUnderflowException e) {
+            request.error = "Truncated frame!";
+        } catch (FitnessRpcException | FitnessControllerException e) {
+            request.error = e.getMessage();
+        }
+        return request;
+    }
+
+    /**
+     * Decodes an activity, after the code of its user, creating it straight away.
+     *
+     * @param frame Frame the activity is read from.
+     * @return The decoded activity.
+     * @throws BufferUnderflowException Truncated activity.
+     * @throws FitnessRpcException Unknown activity class or invalid date.
+     * @throws FitnessControllerException Invalid activity.
+     */
+    private Activity decodeActivity(ByteBuffer frame)
+        throws FitnessRpcException, FitnessControllerException {
+
+        int nameLength = frame.get() & 0xFF;
+        if (frame.remaining() < nameLength)
+            throw new BufferUnderflowException();
+
+        String className =
+            StandardCharsets.US_ASCII.decode(frame.slice(frame.position(), nameLength)).toString();
+        frame.position(frame.position() + nameLength);
+        if (!this.controller.getActivityClasses().contains(className))
+            throw new FitnessRpcException("Unknown activity class " + className);
+
+        LocalDateTime date;
+        long          seconds = frame.getLong();
+        int           minutes = frame.getInt();
+        try {
+            date = LocalDateTime.ofEpochSecond(seconds, 0, ZoneOffset.UTC);
+        } catch (DateTimeException e) {
+            throw new FitnessRpcException("Invalid date " + seconds);
+        }
+
+        SortedMap<FitnessController.ActivityExtraField, Object> fields =
+            new TreeMap<FitnessController.ActivityExtraField, Object>();
+        for (FitnessController.ActivityExtraField field :
+             this.controller.getActivityExtraFields(className)) {
+
+            if (field == FitnessController.ActivityExtraField.REPETITIONS)
+                fields.put(field, frame.getInt());
+            else
+                fields.put(field, frame.getDouble());
+        }
+
+        return this.controller.constructActivity(className, minutes, date, fields);
+    }
+
+    /**
+     * Applies all requests received in a pass over the connections, and sends their responses in
+     * the order the requests were received. Consecutive <code>ADD_ACTIVITY</code> requests are
+     * applied together.
+     *
+     * @param requests Requests to be applied.
+     */
+    private void apply(List<Request> requests) {
+        for (int i = 0; i < requests.size();) {
+            int j = i;
+            while (j < requests.size() && requests.get(j).error == null &&
+                   requests.get(j).type == FitnessRpcServer.ADD_ACTIVITY)
+                j++;
+
+            if (j > i) {
+                this.applyActivities(requests.subList(i, j));
+            } else {
+                this.applyRequest(requests.get(i));
+                j = i + 1;
+            }
+            i = j;
+        }
+
+        // Batches are applied by user, but answered in the order of the requests
+        Set<Connection> answered = new LinkedHashSet<Connection>();
+        for (Request request : requests) {
+            FitnessRpcServer.respond(request);
+            answered.add(request.connection);
+        }
+
+        for (Connection connection : answered) {
+            try {
+                FitnessRpcServer.write(connection);
+            } catch (IOException e) {
+                FitnessRpcServer.close(connection.key);
+            }
+        }
+    }
+
+    /**
+     * Applies <code>ADD_ACTIVITY</code> requests, adding the activities of each user in a single
+     * batch. If a batch fails, its activities are added one by one, so that only the requests that
+     * fail by themselves are rejected.
+     *
+     * @param requests Requests to be applied.
+     */
+    private void applyActivities(List<Request> requests) {
+        Map<Long, List<Request>> users = new LinkedHashMap<Long, List<Request>>();
+        for (Request request : requests)
+            users.computeIfAbsent(request.users[0], u -> new ArrayList<Request>()).add(request);
+
+        for (Map.Entry<Long, List<Request>> user : users.entrySet()) {
+            List<Activity> activities = new ArrayList<Activity>();
+            for (Request request : user.getValue())
+                activities.add(request.activities.get(0));
+
+            try {
+                this.controller.addActivities(user.getKey(), activities);
+                for (Request request : user.getValue())
+                    request.accepted = 1;
+            } catch (FitnessControllerException e) {
+                for (Request request : user.getValue())
+                    this.applyRequest(request);
+            }
+        }
+    }
+
+    /**
+     * Applies a single request, registering its result in it.
+     *
+     * @param request Request to be applied.
+     */
+    private void applyRequest(Request request) {
+        if (request.error != null) {
+            request.failure = request.error;
+            return;
+        }
+
+        int accepted = 0;
+        try {
+            if (request.type == FitnessRpcServer.ADD_PLAN_ACTIVITY) {
+                this.controller.addActivityToTrainingPlan(request.users[0],
+                                                          request.activities.get(0),
+                                                          request.times);
+                accepted = 1;
+            } else {
+                for (int i = 0; i < request.users.length;) {
+                    int j = i;
+                    while (j < request.users.length && request.users[j] == request.users[i])
+                        j++;
+
+                    this.controller.addActivities(request.users[i],
+                                                  request.activities.subList(i, j));
+                    accepted += j - i;
+                    i         = j;
+                }
+            }
+            request.accepted = accepted;
+        } catch (FitnessControllerException e) {
+            request.accepted = accepted;
+            request.failure  = e.getMessage();
+        }
+    }
+
+    /**
+     * Queues the response to a request, that has been applied.
+     *
+     * @param request Request to be answered.
+     */
+    private static void respond(Request request) {
+        String error    = request.failure;
+        int    accepted = request.accepted;
+        byte[] message  = error == null ? new byte[0] : error.getBytes(StandardCharsets.UTF_8);
+        int    length   = Math.min(message.length, 0xFFFF);
+        int    size     = 13 + (error == null ? 0 : 2 + length);
+
+        Connection connection = request.connection;
+        if (connection.out.remaining() < size) {
+            ByteBuffer bigger = ByteBuffer.allocate(Math.max(connection.out.capacity() * 2,
+                                                             connection.out.position() + size));
+            connection.out.flip();
+            connection.out = bigger.put(connection.out);
+        }
+
+        connection.out.putInt(size - 4);
+        connection.out.put(error == null ? FitnessRpcServer.ACK : FitnessRpcServer.ERROR);
+        connection.out.putInt(request.id);
+        connection.out.putInt(accepted);
+        if (error != null) {
+            connection.out.putShort((short) length);
+            connection.out.put(message, 0, length);
+        }
+    }
+
+    /**
+     * Sends as many queued responses to a connection as possible without blocking. Waits for the
+     * connection to be writable while any are left, and stops reading requests from it while too
+     * many are left.
+     *
+     * @param connection Connection to write to.
+     * @throws IOException Failed to write to the connection.
+     */
+    private static void write(Connection connection) throws IOException {
+        connection.out.flip();
+        connection.channel.write(connection.out);
+        connection.out.compact();
+
+        int pending = connection.out.position();
+        int ops     = 0;
+        if (pending > 0)
+            ops |= SelectionKey.OP_WRITE;
+        if (pending <= FitnessRpcServer.MAX_PENDING_OUTPUT)
+            ops |= SelectionKey.OP_READ;
+        connection.key.interestOps(ops);
+    }
+
+    /**
+     * Closes a connection, discarding any responses not yet sent.
+     *
+     * @param key Key of the connection in the selector.
+     */
+    private static void close(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {} // Nothing else to do
+    }
+
+    /**
+     * Checks if this server is equal to another object.
+     *
+     * @param obj Object to be compared with this server.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        FitnessRpcServer server = (FitnessRpcServer) obj;
+        return this.controller.equals(server.getController()) &&
+            this.address.equals(server.getAddress());
+    }
+
+    /**
+     * Calculates the hash code of this server.
+     *
+     * @return The hash code of this server.
+     */
+    @Override
+    public int hashCode() {
+        return this.controller.hashCode() * 31 + this.address.hashCode();
+    }
+
+    /**
+     * Creates a copy of this server. See the copy constructor.
+     *
+     * @return A copy of this server.
+     */
+    @Override
+    public FitnessRpcServer clone() {
+        return new FitnessRpcServer(this);
+    }
+
+    /**
+     * Creates a debug string representation of this server.
+     *
+     * @return A debug string representation of this server.
+     */
+    @Override
+    public String toString() {
+        return String.format("FitnessRpcServer(controller = %s, address = %s)",
+                             this.controller.toString(),
+                             this.address.toString());
+    }
+}
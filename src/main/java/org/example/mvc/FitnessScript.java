@@ -0,0 +1,675 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Runs commands from a script against a <code>FitnessController</code>, without any interaction,
+ * one command per line. Consecutive isolated activities added to the same user are added in a
+ * single batch, with the same result as adding them one by one. Empty lines and lines starting
+ * with <code>#</code> are ignored. Commands:
+ *
+ * <ul>
+ *   <li><code>user CLASS NAME ADDRESS EMAIL BPM</code></li>
+ *   <li><code>activity USER CLASS DATE MINUTES [FIELD=VALUE ...]</code></li>
+ *   <li><code>plan USER CLASS DATE MINUTES TIMES [FIELD=VALUE ...]</code></li>
+ *   <li><code>days USER [DAY ...]</code></li>
+ *   <li><code>remove USER</code></li>
+ *   <li><code>leap DATE</code></li>
+ *   <li><code>query CLASS [START END] [user=USER] [altimetry]</code></li>
+ *   <li><code>aggregate AGGREGATE FIELD [START END] [by=GROUP]</code></li>
+ *   <li><code>list users</code> or <code>list todo|done|plan USER</code></li>
+ *   <li><code>load PATH</code> and <code>save PATH</code>, unless file access is disabled</li>
+ * </ul>
+ *
+ * Arguments are separated by spaces, unless between double quotes. Dates are written like
+ * <code>2024-01-31T18:30</code>, and fields are the lowercase names of
+ * <code>FitnessController.ActivityExtraField</code>. Aggregations, fields and groups are the
+ * lowercase names of <code>ActivityQuery.Aggregate</code>, <code>ActivityQuery.Field</code> and
+ * <code>ActivityQuery.GroupBy</code>. Listings are written as tab-separated rows.
+ */
+public class FitnessScript {
+    /** Number of entities fetched from the controller at once by listings. */
+    private static final int FETCH_SIZE = 1024;
+
+    /** The controller commands are run against. */
+    private FitnessController controller;
+
+    /** Where the output of queries and listings is written to. */
+    private Writer out;
+
+    /** Output not yet written to <code>out</code>. */
+    private StringBuilder buffer;
+
+    /** User the activities in <code>batch</code> are added to. */
+    private long batchUser;
+
+    /** Isolated activities not yet added to <code>batchUser</code>. */
+    private List<Activity> batch;
+
+    /** Line of each activity in <code>batch</code>. */
+    private List<Integer> batchLines;
+
+    /** Whether the <code>load</code> and <code>save</code> commands are allowed. */
+    private boolean fileAccess;
+
+    /** Creates a new script runner with its own application, that discards all output. */
+    public FitnessScript() {
+        this(new FitnessController(), Writer.nullWriter());
+    }
+
+    /**
+     * Creates a new script runner that allows file access.
+     *
+     * @param controller The controller commands are run against.
+     * @param out Where the output of queries and listings is written to. Not closed.
+     */
+    public FitnessScript(FitnessController controller, Writer out) {
+        this(controller, out, true);
+    }
+
+    /**
+     * Creates a new script runner from the value of its fields.
+     *
+     * @param controller The controller commands are run against.
+     * @param out Where the output of queries and listings is written to. Not closed.
+     * @param fileAccess Whether the <code>load</code> and <code>save</code> commands are allowed.
+     */
+    public FitnessScript(FitnessController controller, Writer out, boolean fileAccess) {
+        this.controller = controller;
+        this.out        = out;
+        this.buffer     = new StringBuilder(TableRenderer.BUFFER_SIZE);
+        this.batchUser  = 0;
+        this.batch      = new ArrayList<Activity>();
+        this.batchLines = new ArrayList<Integer>();
+        this.fileAccess = fileAccess;
+    }
+
+    /**
+     * Copy constructor of a script runner. Both runners run commands against the same controller.
+     *
+     * @param script Script runner to be copied.
+     */
+    public FitnessScript(FitnessScript script) {
+        this(script.getController(), script.out, script.hasFileAccess());
+    }
+
+    /**
+     * Gets the controller commands are run against.
+     *
+     * @return The controller commands are run against.
+     */
+    public FitnessController getController() {
+        return this.controller;
+    }
+
+    /**
+     * Checks whether the <code>load</code> and <code>save</code> commands are allowed.
+     *
+     * @return Whether the <code>load</code> and <code>save</code> commands are allowed.
+     */
+    public boolean hasFileAccess() {
+        return this.fileAccess;
+    }
+
+    /**
+     * Runs all commands in a script. Output is flushed before returning, even on failure.
+     *
+     * @param script Script to be run. Not closed.
+     * @throws FitnessScriptException Invalid command, or command that failed, with its line number.
+     *     Commands before it (including the activities before it in its batch) have been run.
+     * @throws IOException Failed to read the script or to write output.
+     */
+    public void run(Reader script) throws FitnessScriptException, IOException {
+        BufferedReader in = new BufferedReader(script, TableRenderer.BUFFER_SIZE);
+        try {
+            String line;
+            int    number = 0;
+            while ((line = in.readLine()) != null) {
+                number++;
+                try {
+                    this.runCommand(FitnessScript.tokenize(line), number);
+                } catch (FitnessControllerException e) {
+                    throw new FitnessScriptException("Line " + number + ": " + e.getMessage());
+                }
+            }
+            this.flushBatch();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            this.write();
+            this.out.flush();
+        }
+    }
+
+    /**
+     * Runs a single command.
+     *
+     * @param args Command and its arguments.
+     * @param line Number of the line of the command.
+     * @throws FitnessScriptException Invalid command.
+     * @throws FitnessControllerException Command failed.
+     */
+    private void runCommand(List<String> args, int line)
+        throws FitnessScriptException, FitnessControllerException {
+
+        if (args.isEmpty() || args.get(0).startsWith("#"))
+            return;
+
+        String command = args.get(0);
+        if (command.equals("activity")) {
+            FitnessScript.checkArguments(args, 5, line);
+            long     user     = this.parseUser(args.get(1), line);
+            Activity activity = this.controller.constructActivity(
+                this.parseActivityClass(args.get(2), line),
+                FitnessScript.parseInt(args.get(4), line),
+                FitnessScript.parseDate(args.get(3), line),
+                this.parseFields(args.get(2), args.subList(5, args.size()), line));
+
+            if (!this.batch.isEmpty() && this.batchUser != user)
+                this.flushBatch();
+            if (this.batch.isEmpty())
+                this.batchUser = user;
+            this.batch.add(activity);
+            this.batchLines.add(line);
+            return;
+        }
+
+        // Other commands may depend on the activities added so far
+        this.flushBatch();
+        if (command.equals("user")) {
+            FitnessScript.checkArguments(args, 6, line);
+            if (!this.controller.getUserClasses().contains(args.get(1)))
+                throw new FitnessScriptException("Line " + line + ": Unknown user class!");
+            this.controller.addUser(args.get(1),
+                                    args.get(2),
+                                    args.get(3),
+                                    args.get(4),
+                                    FitnessScript.parseInt(args.get(5), line));
+        } else if (command.equals("plan")) {
+            FitnessScript.checkArguments(args, 6, line);
+            this.controller.addActivityToTrainingPlan(
+                this.parseUser(args.get(1), line),
+                this.parseActivityClass(args.get(2), line),
+                FitnessScript.parseInt(args.get(4), line),
+                FitnessScript.parseDate(args.get(3), line),
+                this.parseFields(args.get(2), args.subList(6, args.size()), line),
+                FitnessScript.parseInt(args.get(5), line));
+        } else if (command.equals("days")) {
+            FitnessScript.checkArguments(args, 2, line);
+            SortedSet<DayOfWeek> days = new TreeSet<DayOfWeek>();
+            for (String day : args.subList(2, args.size())) {
+                try {
+                    days.add(DayOfWeek.valueOf(day.toUpperCase()));
+                } catch (IllegalArgumentException e) {
+                    throw new FitnessScriptException("Line " + line + ": Invalid day " + day);
+                }
+            }
+            this.controller.setTrainingPlanDays(this.parseUser(args.get(1), line), days);
+        } else if (command.equals("remove")) {
+            FitnessScript.checkArguments(args, 2, line);
+            this.controller.removeUser(this.parseUser(args.get(1), line));
+        } else if (command.equals("leap")) {
+            FitnessScript.checkArguments(args, 2, line);
+            this.controller.leapForward(FitnessScript.parseDate(args.get(1), line));
+        } else if (command.equals("query")) {
+            FitnessScript.checkArguments(args, 2, line);
+            this.runQuery(args, line);
+        } else if (command.equals("aggregate")) {
+            FitnessScript.checkArguments(args, 3, line);
+            this.runAggregation(args, line);
+        } else if (command.equals("list")) {
+            FitnessScript.checkArguments(args, 2, line);
+            this.list(args, line);
+        } else if ((command.equals("load") || command.equals("save")) && !this.fileAccess) {
+            throw new FitnessScriptException("Line " + line + ": File access is disabled!");
+        } else if (command.equals("load")) {
+            FitnessScript.checkArguments(args, 2, line);
+            this.controller.loadFromFile(args.get(1));
+        } else if (command.equals("save")) {
+            FitnessScript.checkArguments(args, 2, line);
+            this.controller.saveToFile(args.get(1));
+        } else {
+            throw new FitnessScriptException("Line " + line + ": Unknown command " + command);
+        }
+    }
+
+    /**
+     * Adds the activities in the current batch to their user. If the batch fails as a whole, its
+     * activities are added one by one, to find the line that failed.
+     *
+     * @throws FitnessScriptException Failed to add an activity, with its line number. Activities
+     *     before it in the batch have been added.
+     */
+    private void flushBatch() throws FitnessScriptException {
+        if (this.batch.isEmpty())
+            return;
+
+        try {
+            this.controller.addActivities(this.batchUser, this.batch);
+        } catch (FitnessControllerException e) {
+            for (int i = 0; i < this.batch.size(); ++i) {
+                try {
+                    this.controller.addActivities(this.batchUser, this.batch.subList(i, i + 1));
+                } catch (FitnessControllerException f) {
+                    throw new FitnessScriptException("Line " + this.batchLines.get(i) + ": " +
+                                                     f.getMessage());
+                }
+            }
+        } finally {
+            this.batch.clear();
+            this.batchLines.clear();
+        }
+    }
+
+    /**
+     * Runs a <code>query</code> command, writing its result as a line.
+     *
+     * @param args Command and its arguments.
+     * @param line Number of the line of the command.
+     * @throws FitnessScriptException Invalid arguments.
+     * @throws FitnessControllerException Query failed.
+     */
+    private void runQuery(List<String> args, int line)
+        throws FitnessScriptException, FitnessControllerException {
+
+        LocalDateTime start     = null;
+        LocalDateTime end       = null;
+        long          user      = 0;
+        boolean       altimetry = false;
+
+        for (int i = 2; i < args.size(); ++i) {
+            String arg = args.get(i);
+            if (arg.equals("altimetry")) {
+                altimetry = true;
+            } else if (arg.startsWith("user=")) {
+                user = this.parseUser(arg.substring(5), line);
+            } else if (start == null && i + 1 < args.size()) {
+                start = FitnessScript.parseDate(arg, line);
+                end   = FitnessScript.parseDate(args.get(++i), line);
+            } else {
+                throw new FitnessScriptException("Line " + line + ": Invalid argument " + arg);
+            }
+        }
+
+        this.buffer.append(this.controller.runQuery(args.get(1), start, end, user, altimetry))
+            .append('\n');
+        this.writeIfFull();
+    }
+
+    /**
+     * Runs an <code>aggregate</code> command over the completed activities of all users, writing
+     * each group as a line.
+     *
+     * @param args Command and its arguments.
+     * @param line Number of the line of the command.
+     * @throws FitnessScriptException Invalid arguments.
+     * @throws FitnessControllerException Query failed.
+     */
+    private void runAggregation(List<String> args, int line)
+        throws FitnessScriptException, FitnessControllerException {
+
+        ActivityQuery query = new ActivityQuery().aggregate(
+            FitnessScript.parseEnum(ActivityQuery.Aggregate.class, args.get(1), line),
+            FitnessScript.parseEnum(ActivityQuery.Field.class, args.get(2), line));
+
+        boolean dates = false;
+        for (int i = 3; i < args.size(); ++i) {
+            String arg = args.get(i);
+            if (arg.startsWith("by=")) {
+                query = query.groupBy(
+                    FitnessScript.parseEnum(ActivityQuery.GroupBy.class, arg.substring(3), line));
+            } else if (!dates && i + 1 < args.size()) {
+                query = query.between(FitnessScript.parseDate(arg, line),
+                                      FitnessScript.parseDate(args.get(++i), line));
+                dates = true;
+            } else {
+                throw new FitnessScriptException("Line " + line + ": Invalid argument " + arg);
+            }
+        }
+
+        this.controller.runAggregation(query, row -> {
+            this.buffer.append(row).append('\n');
+            this.writeIfFull();
+        });
+    }
+
+    /**
+     * Runs a <code>list</code> command, writing each entity as a tab-separated row.
+     *
+     * @param args Command and its arguments.
+     * @param line Number of the line of the command.
+     * @throws FitnessScriptException Invalid arguments.
+     * @throws FitnessControllerException User not found.
+     */
+    private void list(List<String> args, int line)
+        throws FitnessScriptException, FitnessControllerException {
+
+        String what = args.get(1);
+        if (what.equals("users")) {
+            long[] after = { Long.MIN_VALUE };
+            this.listAll(sink -> this.controller.streamUsers(after, FETCH_SIZE, sink));
+            return;
+        }
+
+        FitnessScript.checkArguments(args, 3, line);
+        long            user  = this.parseUser(args.get(2), line);
+        LocalDateTime[] after = { LocalDateTime.MIN };
+        int[]           plan  = { 0 };
+        if (what.equals("todo")) {
+            this.listAll(
+                sink -> this.controller.streamTodoActivities(user, after, FETCH_SIZE, sink));
+        } else if (what.equals("done")) {
+            this.listAll(
+                sink -> this.controller.streamDoneActivities(user, after, FETCH_SIZE, sink));
+        } else if (what.equals("plan")) {
+            this.listAll(sink -> {
+                this.controller.streamPlanActivities(user, plan[0], FETCH_SIZE, sink);
+                plan[0] += FETCH_SIZE;
+            });
+        } else {
+            throw new FitnessScriptException("Line " + line + ": Unknown entities " + what);
+        }
+    }
+
+    /** A source of a page of rows, that may fail like the controller. */
+    @FunctionalInterface
+    private interface PageSource {
+        /**
+         * Streams a page of rows.
+         *
+         * @param sink Consumer of the rows in the page.
+         * @throws FitnessControllerException Failed to get the rows.
+         */
+        public void stream(RowSink sink) throws FitnessControllerException;
+    }
+
+    /**
+     * Writes rows as tab-separated lines, getting pages from a source until one isn't full.
+     *
+     * @param source Source of the pages of rows.
+     * @throws FitnessControllerException Failed to get the rows.
+     */
+    private void listAll(PageSource source) throws FitnessControllerException {
+        int[]   rows      = { 0 };
+        RowSink delimited = RowSink.delimited(this.buffer, '\t');
+        RowSink sink      = row -> {
+            rows[0]++;
+            delimited.accept(row);
+            this.writeIfFull();
+        };
+
+        do {
+            rows[0] = 0;
+            source.stream(sink);
+        } while (rows[0] == FETCH_SIZE);
+    }
+
+    /**
+     * Writes the output buffered so far, if the buffer is full.
+     *
+     * @throws UncheckedIOException Failed to write output.
+     */
+    private void writeIfFull() {
+        if (this.buffer.length() >= TableRenderer.BUFFER_SIZE)
+            this.write();
+    }
+
+    /**
+     * Writes the output buffered so far.
+     *
+     * @throws UncheckedIOException Failed to write output.
+     */
+    private void write() {
+        try {
+            this.out.append(this.buffer);
+            this.buffer.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Splits a line into arguments, separated by whitespace unless between double quotes.
+     *
+     * @param line Line to be split.
+     * @return The arguments in <code>line</code>.
+     */
+    private static List<String> tokenize(String line) {
+        List<String>  ret     = new ArrayList<String>();
+        StringBuilder current = null;
+        boolean       quoted  = false;
+
+        for (int i = 0; i < line.length(); ++i) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+                if (current == null)
+                    current = new StringBuilder();
+            } else if (Character.isWhitespace(c) && !quoted) {
+                if (current != null)
+                    ret.add(current.toString());
+                current = null;
+            } else {
+                if (current == null)
+                    current = new StringBuilder();
+                current.append(c);
+            }
+        }
+
+        if (current != null)
+            ret.add(current.toString());
+        return ret;
+    }
+
+    /**
+     * Checks that a command has at least a given number of arguments.
+     *
+     * @param args Command and its arguments.
+     * @param n Minimum number of elements in <code>args</code>, including the command.
+     * @param line Number of the line of the command.
+     * @throws FitnessScriptException Too few arguments.
+     */
+    private static void checkArguments(List<String> args, int n, int line)
+        throws FitnessScriptException {
+
+        if (args.size() < n)
+            throw new FitnessScriptException("Line " + line + ": Too few arguments to " +
+                                             args.get(0));
+    }
+
+    /**
+     * Parses an integer argument.
+     *
+     * @param arg Argument to be parsed.
+     * @param line Number of the line of the argument.
+     * @return The value of the argument.
+     * @throws FitnessScriptException Invalid integer.
+     */
+    private static int parseInt(String arg, int line) throws FitnessScriptException {
+        try {
+            return Integer.parseInt(arg);
+        } catch (NumberFormatException e) {
+            throw new FitnessScriptException("Line " + line + ": Invalid integer " + arg);
+        }
+    }
+
+    /**
+     * Parses a date argument.
+     *
+     * @param arg Argument to be parsed, like <code>2024-01-31T18:30</code>.
+     * @param line Number of the line of the argument.
+     * @return The value of the argument.
+     * @throws FitnessScriptException Invalid date.
+     */
+    private static LocalDateTime parseDate(String arg, int line) throws FitnessScriptException {
+        try {
+            return LocalDateTime.parse(arg);
+        } catch (DateTimeParseException e) {
+            throw new FitnessScriptException("Line " + line + ": Invalid date " + arg);
+        }
+    }
+
+    /**
+     * Parses an argument that is the lowercase name of a constant of an enum.
+     *
+     * @param type Class of the enum.
+     * @param arg Argument to be parsed.
+     * @param line Number of the line of the argument.
+     * @return The value of the argument.
+     * @throws FitnessScriptException No such constant.
+     */
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String arg, int line)
+        throws FitnessScriptException {
+
+        try {
+            return Enum.valueOf(type, arg.toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new FitnessScriptException("Line " + line + ": Invalid argument " + arg);
+        }
+    }
+
+    /**
+     * Parses the code of an existing user.
+     *
+     * @param arg Argument to be parsed.
+     * @param line Number of the line of the argument.
+     * @return The code of the user.
+     * @throws FitnessScriptException Invalid code or user not found.
+     */
+    private long parseUser(String arg, int line) throws FitnessScriptException {
+        try {
+            long code = Long.parseLong(arg);
+            if (this.controller.userExists(code))
+                return code;
+        } catch (NumberFormatException e) {}
+        throw new FitnessScriptException("Line " + line + ": User doesn't exist!");
+    }
+
+    /**
+     * Checks the name of an activity class.
+     *
+     * @param arg Argument to be checked.
+     * @param line Number of the line of the argument.
+     * @return <code>arg</code>.
+     * @throws FitnessScriptException Unknown activity class.
+     */
+    private String parseActivityClass(String arg, int line) throws FitnessScriptException {
+        if (!this.controller.getActivityClasses().contains(arg))
+            throw new FitnessScriptException("Line " + line + ": Unknown activity class!");
+        return arg;
+    }
+
+    /**
+     * Parses the extra fields of an activity.
+     *
+     * @param className Name of the class of the activity.
+     * @param args Arguments like <code>distance=5.0</code>.
+     * @param line Number of the line of the arguments.
+     * @return The value of each extra field.
+     * @throws FitnessScriptException Invalid field, invalid value or missing field.
+     */
+    private SortedMap<FitnessController.ActivityExtraField, Object>
+    parseFields(String className, List<String> args, int line) throws FitnessScriptException {
+        SortedMap<FitnessController.ActivityExtraField, Object> ret =
+            new TreeMap<FitnessController.ActivityExtraField, Object>();
+
+        for (String arg : args) {
+            int separator = arg.indexOf('=');
+            try {
+                FitnessController.ActivityExtraField field = FitnessController.ActivityExtraField
+                    .valueOf(arg.substring(0, Math.max(separator, 0)).toUpperCase());
+                String value = arg.substring(separator + 1);
+                if (field == FitnessController.ActivityExtraField.REPETITIONS)
+                    ret.put(field, FitnessScript.parseInt(value, line));
+                else
+                    ret.put(field, Double.parseDouble(value));
+            } catch (IllegalArgumentException e) { // Includes NumberFormatException
+                throw new FitnessScriptException("Line " + line + ": Invalid field " + arg);
+            }
+        }
+
+        if (!ret.keySet().equals(this.controller.getActivityExtraFields(className)))
+            throw new FitnessScriptException("Line " + line + ": Expected fields " +
+                                             this.controller.getActivityExtraFields(className));
+        return ret;
+    }
+
+    /**
+     * Checks if this script runner is equal to another object.
+     *
+     * @param obj Object to be compared with this script runner.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        FitnessScript script = (FitnessScript) obj;
+        return this.controller.equals(script.getController()) && this.out == script.out &&
+            this.batch.equals(script.batch) && this.fileAccess == script.hasFileAccess();
+    }
+
+    /**
+     * Calculates the hash code of this script runner.
+     *
+     * @return The hash code of this script runner.
+     */
+    @Override
+    public int hashCode() {
+        return this.controller.hashCode();
+    }
+
+    /**
+     * Creates a copy of this script runner. See the copy constructor.
+     *
+     * @return A copy of this script runner.
+     */
+    @Override
+    public FitnessScript clone() {
+        return new FitnessScript(this);
+    }
+
+    /**
+     * Creates a debug string representation of this script runner.
+     *
+     * @return A debug string representation of this script runner.
+     */
+    @Override
+    public String toString() {
+        return String.format("FitnessScript(controller = %s, batch = %d activities)",
+                             this.controller.toString(),
+                             this.batch.size());
+    }
+}
@@ -0,0 +1,1111 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Serves a <code>FitnessController</code> over HTTP, answering with JSON. Parameters are given in
+ * the query string, and dates are written like <code>2024-01-31T18:30</code>. Endpoints:
+ *
+ * <ul>
+ *   <li><code>GET /users?after=CODE&amp;limit=N</code></li>
+ *   <li><code>POST /users?class=CLASS&amp;name=NAME&amp;address=ADDRESS&amp;email=EMAIL&amp;bpm=BPM
+ *     </code></li>
+ *   <li><code>GET /users/USER</code> and <code>DELETE /users/USER</code></li>
+ *   <li><code>GET /users/USER/todo?after=DATE&amp;limit=N</code>, and the same for
+ *     <code>done</code></li>
+ *   <li><code>POST /users/USER/activities?class=CLASS&amp;date=DATE&amp;minutes=N[&amp;FIELD=VALUE
+ *     ...]</code></li>
+ *   <li><code>GET /users/USER/plan?offset=N&amp;limit=N</code></li>
+ *   <li><code>POST /users/USER/plan?class=CLASS&amp;date=DATE&amp;minutes=N&amp;times=N[&amp;
+ *     FIELD=VALUE ...]</code></li>
+ *   <li><code>PUT /users/USER/days?days=MONDAY,FRIDAY</code></li>
+ *   <li><code>GET /now</code> and <code>POST /leap?date=DATE</code></li>
+ *   <li><code>GET /query/CLASS?start=DATE&amp;end=DATE&amp;user=USER&amp;altimetry=true</code></li>
+ *   <li><code>POST /batch</code>, whose body is a script run without file access (see
+ *     <code>FitnessScript</code>), so that many changes can be made in a single request</li>
+ * </ul>
+ *
+ * Listings answer with a page of entities and the <code>next</code> value of <code>after</code>
+ * (or <code>offset</code>), which is <code>null</code> on the last page. Errors are answered with
+ * an <code>error</code> message.
+ *
+ * <p>Requests are handled by a pool of threads. Since the model isn't thread-safe, requests that
+ * only read from it share a lock, while requests that change it hold the lock alone. Responses are
+ * rendered while holding the lock, but only sent once it's released, so that slow clients don't
+ * hold back other requests.
+ */
+public class FitnessServer {
+    /** Number of threads handling requests, when not specified. */
+    public static final int DEFAULT_THREADS = 4 * Runtime.getRuntime().availableProcessors();
+
+    /** Number of entities in a page of a listing, when not specified. */
+    public static final int DEFAULT_LIMIT = 100;
+
+    /** Maximum number of entities in a page of a listing. */
+    public static final int MAX_LIMIT = 1024;
+
+    /** Maximum number of connections waiting to be accepted. */
+    private static final int BACKLOG = 1024;
+
+    /** Names of the fields of users in listings. See <code>FitnessController.streamUsers</code>. */
+    private static final String[] USER_FIELDS = {
+        "code", "name", "class", "address", "email", "bpm"
+    };
+
+    /** Names of the fields of activities in listings. See <code>ActivityRowEncoder</code>. */
+    private static final String[] ACTIVITY_FIELDS = {
+        "date", "duration", "calories", "class", "bpm", "repetitions", "weight", "distance",
+        "altimetry"
+    };
+
+    /** Names of the fields of training plan activities in listings. */
+    private static final String[] PLAN_FIELDS = {
+        "time", "duration", "calories", "times", "class", "bpm", "repetitions", "weight",
+        "distance", "altimetry"
+    };
+
+    /** Fields in listings that are written as strings. All others are numbers. */
+    private static final Set<String> TEXT_FIELDS =
+        Set.of("name", "class", "address", "email", "date", "time");
+
+    /** The controller requests are run against. */
+    private FitnessController controller;
+
+    /** Address the server listens on. */
+    private InetSocketAddress address;
+
+    /** Number of threads handling requests. */
+    private int threads;
+
+    /** Lock shared by requests that read from the model and held alone by ones that change it. */
+    private ReadWriteLock lock;
+
+    /** The underlying HTTP server, or <code>null</code> when not started. */
+    private HttpServer server;
+
+    /** Threads handling requests, or <code>null</code> when not started. */
+    private ExecutorService executor;
+
+    /** Creates a new server with its own application, on port 8080 of all interfaces. */
+    public FitnessServer() {
+        this(new FitnessController(), new InetSocketAddress(8080), FitnessServer.DEFAULT_THREADS);
+    }
+
+    /**
+     * Creates a new server from the value of its fields. It must be started to accept requests.
+     *
+     * @param controller The controller requests are run against. While the server is running, it
+     *     must not be used by anything else.
+     * @param address Address the server listens on. Port <code>0</code> picks any free port.
+     * @param threads Number of threads handling requests.
+     */
+    public FitnessServer(FitnessController controller, InetSocketAddress address, int threads) {
+        this.controller = controller;
+        this.address    = address;
+        this.threads    = threads;
+        this.lock       = new ReentrantReadWriteLock();
+        this.server     = null;
+        this.executor   = null;
+    }
+
+    /**
+     * Copy constructor of a server. The copy serves the same controller, but isn't started.
+     *
+     * @param server Server to be copied.
+     */
+    public FitnessServer(FitnessServer server) {
+        this(server.getController(), server.getAddress(), server.getThreads());
+    }
+
+    /**
+     * Gets the controller requests are run against.
+     *
+     * @return The controller requests are run against.
+     */
+    public FitnessController getController() {
+        return this.controller;
+    }
+
+    /**
+     * Gets the address the server listens on.
+     *
+     * @return The address the server listens on, as given when it was created.
+     */
+    public InetSocketAddress getAddress() {
+        return this.address;
+    }
+
+    /**
+     * Gets the port the server listens on.
+     *
+     * @return The port the server listens on. If port <code>0</code> was asked for, the port that
+     *     was picked is only known once the server is started.
+     */
+    public synchronized int getPort() {
+        if (this.server == null)
+            return this.address.getPort();
+        return this.server.getAddress().getPort();
+    }
+
+    /**
+     * Gets the number of threads handling requests.
+     *
+     * @return The number of threads handling requests.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Starts accepting requests, if not yet started.
+     *
+     * @throws IOException Failed to listen on the address.
+     */
+    public synchronized void start() throws IOException {
+        if (this.server != null)
+            return;
+
+        this.server   = HttpServer.create(this.address, FitnessServer.BACKLOG);
+        this.executor = Executors.newFixedThreadPool(this.threads);
+        this.server.createContext("/", this::handle);
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /** Stops accepting requests, without waiting for the ones being handled, if started. */
+    public synchronized void stop() {
+        if (this.server == null)
+            return;
+
+        this.server.stop(0);
+        this.executor.shutdown();
+        this.server   = null;
+        this.executor = null;
+    }
+
+    /** Code run while holding the lock of the model, that renders the response. */
+    @FunctionalInterface
+    private interface Action {
+        /**
+         * Runs the action.
+         *
+         * @return The response to the request.
+         * @throws FitnessServerException Invalid request.
+         * @throws FitnessControllerException Failed to run the request.
+         * @throws FitnessScriptException Failed to run a script.
+         * @throws IOException Failed to communicate with the client.
+         */
+        public Response run()
+            throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+                   IOException;
+    }
+
+    /** A rendered response, to be sent once the lock of the model is released. */
+    private static class Response {
+        /** HTTP status code of the response. */
+        private final int status;
+
+        /** Body of the response, encoded in UTF-8. */
+        private final byte[] body;
+
+        /**
+         * Creates a new response from the value of its fields.
+         *
+         * @param status HTTP status code of the response.
+         * @param body Body of the response, encoded in UTF-8.
+         */
+        public Response(int status, byte[] body) {
+            this.status = status;
+            this.body   = body;
+        }
+    }
+
+    /** Writer of the body of a response. */
+    @FunctionalInterface
+    private interface Body {
+        /**
+         * Writes the body of a response.
+         *
+         * @param json Where to write the body to.
+         * @throws FitnessControllerException Failed to get the contents of the body.
+         */
+        public void write(JsonWriter json) throws FitnessControllerException;
+    }
+
+    /**
+     * Handles a request, answering it with an error if it fails.
+     *
+     * @param exchange Request and its response.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            this.route(exchange);
+        } catch (FitnessServerException e) {
+            FitnessServer.sendError(exchange, e.getStatus(), e.getMessage());
+        } catch (FitnessControllerException | FitnessScriptException e) {
+            FitnessServer.sendError(exchange, 400, e.getMessage());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } catch (RuntimeException e) {
+            FitnessServer.sendError(exchange, 500, "Internal error!");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Runs the request for an endpoint, according to its path.
+     *
+     * @param exchange Request and its response.
+     * @throws FitnessServerException Invalid request.
+     * @throws FitnessControllerException Failed to run the request.
+     * @throws FitnessScriptException Failed to run a script.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void route(HttpExchange exchange)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        List<String> path = new ArrayList<String>();
+        for (String part : exchange.getRequestURI().getPath().split("/"))
+            if (!part.isEmpty())
+                path.add(part);
+
+        Map<String, String> params =
+            FitnessServer.parseQuery(exchange.getRequestURI().getRawQuery());
+        String resource = path.isEmpty() ? "" : path.get(0);
+
+        if (resource.equals("users") && path.size() == 1) {
+            if (exchange.getRequestMethod().equals("POST"))
+                this.addUser(exchange, params);
+            else
+                this.listUsers(exchange, params);
+        } else if (resource.equals("users") && path.size() == 2) {
+            if (exchange.getRequestMethod().equals("DELETE"))
+                this.removeUser(exchange, path.get(1));
+            else
+                this.showUser(exchange, path.get(1));
+        } else if (resource.equals("users") && path.size() == 3) {
+            String what = path.get(2);
+            if (what.equals("todo") || what.equals("done")) {
+                this.listActivities(exchange, path.get(1), what, params);
+            } else if (what.equals("activities")) {
+                this.addActivity(exchange, path.get(1), params, false);
+            } else if (what.equals("plan")) {
+                if (exchange.getRequestMethod().equals("POST"))
+                    this.addActivity(exchange, path.get(1), params, true);
+                else
+                    this.listPlan(exchange, path.get(1), params);
+            } else if (what.equals("days")) {
+                this.setDays(exchange, path.get(1), params);
+            } else {
+                throw new FitnessServerException(404, "Not found!");
+            }
+        } else if (resource.equals("now") && path.size() == 1) {
+            FitnessServer.checkMethod(exchange, "GET");
+            this.read(exchange, () -> FitnessServer.renderNow(this.controller.getNow()));
+        } else if (resource.equals("leap") && path.size() == 1) {
+            this.leap(exchange, params);
+        } else if (resource.equals("query") && path.size() == 2) {
+            this.runQuery(exchange, path.get(1), params);
+        } else if (resource.equals("batch") && path.size() == 1) {
+            this.runBatch(exchange);
+        } else {
+            throw new FitnessServerException(404, "Not found!");
+        }
+    }
+
+    /**
+     * Runs an action while sharing the lock of the model with other readers, and then sends its
+     * response.
+     *
+     * @param exchange Request and its response.
+     * @param action Action to be run.
+     * @throws FitnessServerException Invalid request.
+     * @throws FitnessControllerException Failed to run the request.
+     * @throws FitnessScriptException Failed to run a script.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void read(HttpExchange exchange, Action action)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        Response response;
+        this.lock.readLock().lock();
+        try {
+            response = action.run();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        FitnessServer.send(exchange, response);
+    }
+
+    /**
+     * Runs an action while holding the lock of the model alone, and then sends its response.
+     *
+     * @param exchange Request and its response.
+     * @param action Action to be run.
+     * @throws FitnessServerException Invalid request.
+     * @throws FitnessControllerException Failed to run the request.
+     * @throws FitnessScriptException Failed to run a script.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void write(HttpExchange exchange, Action action)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        Response response;
+        this.lock.writeLock().lock();
+        try {
+            response = action.run();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+        FitnessServer.send(exchange, response);
+    }
+
+    /**
+     * Answers <code>GET /users</code>.
+     *
+     * @param exchange Request and its response.
+     * @param params Parameters of the request.
+     * @throws FitnessServerException Invalid request.
+     * @throws FitnessControllerException Can't happen.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void listUsers(HttpExchange exchange, Map<String, String> params)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "GET");
+        String after = params.get("after");
+        long[] code  = { after == null ? Long.MIN_VALUE : FitnessServer.parseLong(after, "after") };
+        int    limit = FitnessServer.parseLimit(params);
+
+        this.read(exchange, () -> FitnessServer.render(200, json -> {
+            int[] rows = { 0 };
+            json.beginObject().name("users").beginArray();
+            this.controller.streamUsers(code, limit, row -> {
+                rows[0]++;
+                FitnessServer.writeRow(json, FitnessServer.USER_FIELDS, row);
+            });
+            json.endArray().name("next");
+            if (rows[0] == limit)
+                json.value(code[0]);
+            else
+                json.nullValue();
+            json.endObject();
+        }));
+    }
+
+    /**
+     * Answers <code>GET /users/USER</code>.
+     *
+     * @param exchange Request and its response.
+     * @param user Code of the user in the path.
+     * @throws FitnessServerException Invalid request or user not found.
+     * @throws FitnessControllerException Can't happen.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void showUser(HttpExchange exchange, String user)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "GET");
+        this.read(exchange, () -> {
+            long[] code = { this.parseUser(user) - 1 };
+            return FitnessServer.render(200, json -> {
+                this.controller.streamUsers(
+                    code,
+                    1,
+                    row -> FitnessServer.writeRow(json, FitnessServer.USER_FIELDS, row));
+            });
+        });
+    }
+
+    /**
+     * Answers <code>POST /users</code>.
+     *
+     * @param exchange Request and its response.
+     * @param params Parameters of the request.
+     * @throws FitnessServerException Invalid request.
+     * @throws FitnessControllerException Failed to create the user.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void addUser(HttpExchange exchange, Map<String, String> params)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        String className = FitnessServer.getParameter(params, "class");
+        String name      = FitnessServer.getParameter(params, "name");
+        String address   = FitnessServer.getParameter(params, "address");
+        String email     = FitnessServer.getParameter(params, "email");
+        int    bpm       = FitnessServer.parseInt(FitnessServer.getParameter(params, "bpm"), "bpm");
+        if (!this.controller.getUserClasses().contains(className))
+            throw new FitnessServerException(400, "Unknown user class!");
+
+        this.write(exchange, () -> {
+            long code = this.controller.addUser(className, name, address, email, bpm);
+            return FitnessServer.render(
+                201,
+                json -> json.beginObject().name("code").value(code).endObject());
+        });
+    }
+
+    /**
+     * Answers <code>DELETE /users/USER</code>.
+     *
+     * @param exchange Request and its response.
+     * @param user Code of the user in the path.
+     * @throws FitnessServerException User not found.
+     * @throws FitnessControllerException Can't happen.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void removeUser(HttpExchange exchange, String user)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        this.write(exchange, () -> {
+            long code = this.parseUser(user);
+            this.controller.removeUser(code);
+            return FitnessServer.render(
+                200,
+                json -> json.beginObject().name("code").value(code).endObject());
+        });
+    }
+
+    /**
+     * Answers <code>GET /users/USER/todo</code> and <code>GET /users/USER/done</code>.
+     *
+     * @param exchange Request and its response.
+     * @param user Code of the user in the path.
+     * @param what <code>todo</code> or <code>done</code>.
+     * @param params Parameters of the request.
+     * @throws FitnessServerException Invalid request or user not found.
+     * @throws FitnessControllerException Can't happen.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void listActivities(HttpExchange        exchange,
+                                String              user,
+                                String              what,
+                                Map<String, String> params)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "GET");
+        String          start = params.get("after");
+        LocalDateTime[] after = {
+            start == null ? LocalDateTime.MIN : FitnessServer.parseDate(start, "after")
+        };
+        int             limit = FitnessServer.parseLimit(params);
+
+        this.read(exchange, () -> {
+            long code = this.parseUser(user);
+            return FitnessServer.render(200, json -> {
+                int[]   rows = { 0 };
+                RowSink sink = row -> {
+                    rows[0]++;
+                    FitnessServer.writeRow(json, FitnessServer.ACTIVITY_FIELDS, row);
+                };
+
+                json.beginObject().name("activities").beginArray();
+                if (what.equals("todo"))
+                    this.controller.streamTodoActivities(code, after, limit, sink);
+                else
+                    this.controller.streamDoneActivities(code, after, limit, sink);
+                json.endArray().name("next");
+                json.value(rows[0] == limit ? after[0].toString() : null);
+                json.endObject();
+            });
+        });
+    }
+
+    /**
+     * Answers <code>GET /users/USER/plan</code>.
+     *
+     * @param exchange Request and its response.
+     * @param user Code of the user in the path.
+     * @param params Parameters of the request.
+     * @throws FitnessServerException Invalid request or user not found.
+     * @throws FitnessControllerException Can't happen.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void listPlan(HttpExchange exchange, String user, Map<String, String> params)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "GET");
+        String start  = params.get("offset");
+        int    offset = start == null ? 0 : FitnessServer.parseInt(start, "offset");
+        int    limit  = FitnessServer.parseLimit(params);
+        if (offset < 0)
+            throw new FitnessServerException(400, "Invalid offset " + start);
+
+        this.read(exchange, () -> {
+            long code = this.parseUser(user);
+            return FitnessServer.render(200, json -> {
+                int[] rows = { 0 };
+                json.beginObject().name("activities").beginArray();
+                this.controller.streamPlanActivities(code, offset, limit, row -> {
+                    rows[0]++;
+                    FitnessServer.writeRow(json, FitnessServer.PLAN_FIELDS, row);
+                });
+                json.endArray().name("next");
+                if (rows[0] == limit)
+                    json.value(offset + limit);
+                else
+                    json.nullValue();
+                json.endObject();
+            });
+        });
+    }
+
+    /**
+     * Answers <code>POST /users/USER/activities</code> and <code>POST /users/USER/plan</code>.
+     *
+     * @param exchange Request and its response.
+     * @param user Code of the user in the path.
+     * @param params Parameters of the request.
+     * @param plan Whether to add the activity to the training plan of the user.
+     * @throws FitnessServerException Invalid request or user not found.
+     * @throws FitnessControllerException Failed to add the activity.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void addActivity(HttpExchange        exchange,
+                             String              user,
+                             Map<String, String> params,
+                             boolean             plan)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "POST");
+        String className = FitnessServer.getParameter(params, "class");
+        if (!this.controller.getActivityClasses().contains(className))
+            throw new FitnessServerException(400, "Unknown activity class!");
+
+        String        minutes     = FitnessServer.getParameter(params, "minutes");
+        String        times       = plan ? FitnessServer.getParameter(params, "times") : "1";
+        LocalDateTime date        =
+            FitnessServer.parseDate(FitnessServer.getParameter(params, "date"), "date");
+        int           duration    = FitnessServer.parseInt(minutes, "minutes");
+        int           repetitions = FitnessServer.parseInt(times, "times");
+        SortedMap<FitnessController.ActivityExtraField, Object> fields =
+            this.parseFields(className, params);
+
+        this.write(exchange, () -> {
+            long code = this.parseUser(user);
+            if (plan)
+                this.controller.addActivityToTrainingPlan(code,
+                                                          className,
+                                                          duration,
+                                                          date,
+                                                          fields,
+                                                          repetitions);
+            else
+                this.controller.addActivity(code, className, duration, date, fields);
+            return FitnessServer.render(
+                201,
+                json -> json.beginObject().name("user").value(code).endObject());
+        });
+    }
+
+    /**
+     * Answers <code>PUT /users/USER/days</code>.
+     *
+     * @param exchange Request and its response.
+     * @param user Code of the user in the path.
+     * @param params Parameters of the request.
+     * @throws FitnessServerException Invalid request or user not found.
+     * @throws FitnessControllerException Failed to set the days of the training plan.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void setDays(HttpExchange exchange, String user, Map<String, String> params)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "PUT");
+        SortedSet<DayOfWeek> days = new TreeSet<DayOfWeek>();
+        for (String day : FitnessServer.getParameter(params, "days").split(",")) {
+            try {
+                if (!day.isEmpty())
+                    days.add(DayOfWeek.valueOf(day.toUpperCase()));
+            } catch (IllegalArgumentException e) {
+                throw new FitnessServerException(400, "Invalid day " + day);
+            }
+        }
+
+        this.write(exchange, () -> {
+            long code = this.parseUser(user);
+            this.controller.setTrainingPlanDays(code, days);
+            return FitnessServer.render(200, json -> {
+                json.beginObject().name("days").beginArray();
+                for (DayOfWeek day : days)
+                    json.value(day.toString());
+                json.endArray().endObject();
+            });
+        });
+    }
+
+    /**
+     * Answers <code>POST /leap</code>.
+     *
+     * @param exchange Request and its response.
+     * @param params Parameters of the request.
+     * @throws FitnessServerException Invalid request.
+     * @throws FitnessControllerException Date not after the current date.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void leap(HttpExchange exchange, Map<String, String> params)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "POST");
+        LocalDateTime date =
+            FitnessServer.parseDate(FitnessServer.getParameter(params, "date"), "date");
+
+        this.write(exchange, () -> {
+            this.controller.leapForward(date);
+            return FitnessServer.renderNow(this.controller.getNow());
+        });
+    }
+
+    /**
+     * Answers <code>GET /query/CLASS</code>.
+     *
+     * @param exchange Request and its response.
+     * @param className Name of the class of the query.
+     * @param params Parameters of the request.
+     * @throws FitnessServerException Invalid request, unknown query or user not found.
+     * @throws FitnessControllerException Failed to run the query.
+     * @throws FitnessScriptException Can't happen.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void runQuery(HttpExchange exchange, String className, Map<String, String> params)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        FitnessServer.checkMethod(exchange, "GET");
+        if (!this.controller.getQueryClasses().contains(className))
+            throw new FitnessServerException(404, "No such query " + className);
+
+        String        startParam = params.get("start");
+        String        endParam   = params.get("end");
+        LocalDateTime start      =
+            startParam == null ? null : FitnessServer.parseDate(startParam, "start");
+        LocalDateTime end        =
+            endParam == null ? null : FitnessServer.parseDate(endParam, "end");
+        boolean       altimetry  = "true".equals(params.get("altimetry"));
+        if ((start == null) != (end == null))
+            throw new FitnessServerException(400, "Expected both start and end!");
+
+        this.read(exchange, () -> {
+            long   user   = params.containsKey("user") ? this.parseUser(params.get("user")) : 0;
+            String result = this.controller.runQuery(className, start, end, user, altimetry);
+            return FitnessServer.render(200, json -> {
+                json.beginObject().name("query").value(className);
+                json.name("result").value(result).endObject();
+            });
+        });
+    }
+
+    /**
+     * Answers <code>POST /batch</code>.
+     *
+     * @param exchange Request and its response.
+     * @throws FitnessServerException Invalid request.
+     * @throws FitnessControllerException Can't happen.
+     * @throws FitnessScriptException Failed to run the script. Commands before the one that
+     *     failed have been run.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private void runBatch(HttpExchange exchange)
+        throws FitnessServerException, FitnessControllerException, FitnessScriptException,
+               IOException {
+
+        // Read before taking the lock, so that slow clients don't hold it
+        FitnessServer.checkMethod(exchange, "POST");
+        Reader       in  = new StringReader(
+            new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+        StringWriter out = new StringWriter();
+
+        this.write(exchange, () -> {
+            new FitnessScript(this.controller, out, false).run(in);
+            return FitnessServer.render(200, json -> {
+                json.beginObject().name("output").value(out.getBuffer()).endObject();
+            });
+        });
+    }
+
+    /**
+     * Writes a row of a listing as an object, leaving out empty fields.
+     *
+     * @param json Where to write the row to.
+     * @param names Name of each field in the row.
+     * @param row Fields of the row.
+     */
+    private static void writeRow(JsonWriter json, String[] names, CharSequence[] row) {
+        json.beginObject();
+        for (int i = 0; i < row.length; ++i) {
+            if (row[i].length() == 0)
+                continue;
+
+            json.name(names[i]);
+            if (FitnessServer.TEXT_FIELDS.contains(names[i]))
+                json.value(row[i]);
+            else
+                json.number(row[i]);
+        }
+        json.endObject();
+    }
+
+    /**
+     * Renders an answer with the current date.
+     *
+     * @param now Current date.
+     * @return The response with <code>now</code>.
+     */
+    private static Response renderNow(LocalDateTime now) {
+        try {
+            return FitnessServer.render(
+                200,
+                json -> json.beginObject().name("now").value(now.toString()).endObject());
+        } catch (FitnessControllerException e) {
+            return null; // Can't happen
+        }
+    }
+
+    /**
+     * Answers with an error, unless the response has already started.
+     *
+     * @param exchange Request and its response.
+     * @param status HTTP status code of the response.
+     * @param message Description of the error.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private static void sendError(HttpExchange exchange, int status, String message)
+        throws IOException {
+
+        if (exchange.getResponseCode() != -1)
+            return;
+
+        try {
+            FitnessServer.send(
+                exchange,
+                FitnessServer.render(
+                    status,
+                    json -> json.beginObject().name("error").value(message).endObject()));
+        } catch (FitnessControllerException e) {} // Can't happen
+    }
+
+    /**
+     * Renders a response with a JSON body, to be sent later.
+     *
+     * @param status HTTP status code of the response.
+     * @param body Writer of the body of the response.
+     * @return The rendered response.
+     * @throws FitnessControllerException Failed to get the contents of the body. Nothing is sent.
+     */
+    private static Response render(int status, Body body) throws FitnessControllerException {
+        StringWriter out  = new StringWriter();
+        JsonWriter   json = new JsonWriter(out);
+        body.write(json);
+        json.flush();
+        return new Response(status, out.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Sends a rendered response.
+     *
+     * @param exchange Request and its response.
+     * @param response Response to be sent.
+     * @throws IOException Failed to communicate with the client.
+     */
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(response.status, response.body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(response.body);
+        }
+    }
+
+    /**
+     * Checks the method of a request.
+     *
+     * @param exchange Request and its response.
+     * @param method Expected method.
+     * @throws FitnessServerException Other method.
+     */
+    private static void checkMethod(HttpExchange exchange, String method)
+        throws FitnessServerException {
+
+        if (!exchange.getRequestMethod().equals(method))
+            throw new FitnessServerException(405, "Expected " + method + " method!");
+    }
+
+    /**
+     * Parses the parameters in a query string.
+     *
+     * @param query Query string, without decoding, or <code>null</code>.
+     * @return The value of each parameter. The last value of repeated parameters is kept.
+     * @throws FitnessServerException Invalid encoding.
+     */
+    private static Map<String, String> parseQuery(String query) throws FitnessServerException {
+        Map<String, String> ret = new HashMap<String, String>();
+        if (query == null)
+            return ret;
+
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty())
+                continue;
+
+            int separator = pair.indexOf('=');
+            try {
+                String key   = separator < 0 ? pair : pair.substring(0, separator);
+                String value = separator < 0 ? "" : pair.substring(separator + 1);
+                ret.put(URLDecoder.decode(key, StandardCharsets.UTF_8),
+                        URLDecoder.decode(value, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw new FitnessServerException(400, "Invalid parameter " + pair);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Gets a parameter that must be given.
+     *
+     * @param params Parameters of the request.
+     * @param name Name of the parameter.
+     * @return The value of the parameter.
+     * @throws FitnessServerException Missing parameter.
+     */
+    private static String getParameter(Map<String, String> params, String name)
+        throws FitnessServerException {
+
+        String ret = params.get(name);
+        if (ret == null)
+            throw new FitnessServerException(400, "Missing parameter " + name);
+        return ret;
+    }
+
+    /**
+     * Parses the <code>limit</code> parameter of a listing.
+     *
+     * @param params Parameters of the request.
+     * @return The number of entities in the page.
+     * @throws FitnessServerException Invalid limit.
+     */
+    private static int parseLimit(Map<String, String> params) throws FitnessServerException {
+        String limit = params.get("limit");
+        if (limit == null)
+            return FitnessServer.DEFAULT_LIMIT;
+
+        int ret = FitnessServer.parseInt(limit, "limit");
+        if (ret <= 0 || ret > FitnessServer.MAX_LIMIT)
+            throw new FitnessServerException(400, "Limit must be between 1 and " +
+                                                      FitnessServer.MAX_LIMIT);
+        return ret;
+    }
+
+    /**
+     * Parses an integer parameter.
+     *
+     * @param value Value of the parameter.
+     * @param name Name of the parameter.
+     * @return The parsed value.
+     * @throws FitnessServerException Invalid integer.
+     */
+    private static int parseInt(String value, String name) throws FitnessServerException {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new FitnessServerException(400, "Invalid integer " + name + "=" + value);
+        }
+    }
+
+    /**
+     * Parses a long integer parameter.
+     *
+     * @param value Value of the parameter.
+     * @param name Name of the parameter.
+     * @return The parsed value.
+     * @throws FitnessServerException Invalid integer.
+     */
+    private static long parseLong(String value, String name) throws FitnessServerException {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            throw new FitnessServerException(400, "Invalid integer " + name + "=" + value);
+        }
+    }
+
+    /**
+     * Parses a date parameter.
+     *
+     * @param value Value of the parameter, like <code>2024-01-31T18:30</code>.
+     * @param name Name of the parameter.
+     * @return The parsed value.
+     * @throws FitnessServerException Invalid date.
+     */
+    private static LocalDateTime parseDate(String value, String name)
+        throws FitnessServerException {
+
+        try {
+            return LocalDateTime.parse(value);
+        } catch (DateTimeParseException e) {
+            throw new FitnessServerException(400, "Invalid date " + name + "=" + value);
+        }
+    }
+
+    /**
+     * Parses the code of an existing user. Must be called while holding the lock of the model.
+     *
+     * @param value Code of the user.
+     * @return The code of the user.
+     * @throws FitnessServerException Invalid code or user not found.
+     */
+    private long parseUser(String value) throws FitnessServerException {
+        try {
+            long code = Long.parseLong(value);
+            if (this.controller.userExists(code))
+                return code;
+        } catch (NumberFormatException e) {}
+        throw new FitnessServerException(404, "User doesn't exist!");
+    }
+
+    /**
+     * Parses the extra fields of an activity, one parameter per field.
+     *
+     * @param className Name of the class of the activity.
+     * @param params Parameters of the request, like <code>distance=5.0</code>.
+     * @return The value of each extra field.
+     * @throws FitnessServerException Missing field or invalid value.
+     */
+    private SortedMap<FitnessController.ActivityExtraField, Object>
+    parseFields(String className, Map<String, String> params) throws FitnessServerException {
+        SortedMap<FitnessController.ActivityExtraField, Object> ret =
+            new TreeMap<FitnessController.ActivityExtraField, Object>();
+
+        for (FitnessController.ActivityExtraField field :
+             this.controller.getActivityExtraFields(className)) {
+
+            String name  = field.toString().toLowerCase();
+            String value = FitnessServer.getParameter(params, name);
+            if (field == FitnessController.ActivityExtraField.REPETITIONS) {
+                ret.put(field, FitnessServer.parseInt(value, name));
+            } else {
+                try {
+                    ret.put(field, Double.parseDouble(value));
+                } catch (NumberFormatException e) {
+                    throw new FitnessServerException(400, "Invalid number " + name + "=" + value);
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Checks if this server is equal to another object.
+     *
+     * @param obj Object to be compared with this server.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        FitnessServer server = (FitnessServer) obj;
+        return this.controller.equals(server.getController()) &&
+            this.address.equals(server.getAddress()) && this.threads == server.getThreads();
+    }
+
+    /**
+     * Calculates the hash code of this server.
+     *
+     * @return The hash code of this server.
+     */
+    @Override
+    public int hashCode() {
+        return (this.controller.hashCode() * 31 + this.address.hashCode()) * 31 + this.threads;
+    }
+
+    /**
+     * Creates a copy of this server. See the copy constructor.
+     *
+     * @return A copy of this server.
+     */
+    @Override
+    public FitnessServer clone() {
+        return new FitnessServer(this);
+    }
+
+    /**
+     * Creates a debug string representation of this server.
+     *
+     * @return A debug string representation of this server.
+     */
+    @Override
+    public String toString() {
+        return String.format("FitnessServer(controller = %s, address = %s, threads = %d)",
+                             this.controller.toString(),
+                             this.address.toString(),
+                             this.threads);
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+/** An exception thrown by <code>FitnessServer</code>, that becomes an HTTP error response. */
+public class FitnessServerException extends Exception {
+    /** HTTP status code of the response. */
+    private int status;
+
+    /**
+     * Constructor for FitnessServerException.
+     *
+     * @param status HTTP status code of the response.
+     * @param msg Exception message.
+     */
+    public FitnessServerException(int status, String msg) {
+        super(msg);
+        this.status = status;
+    }
+
+    /**
+     * Gets the HTTP status code of the response.
+     *
+     * @return The HTTP status code of the response.
+     */
+    public int getStatus() {
+        return this.status;
+    }
+}
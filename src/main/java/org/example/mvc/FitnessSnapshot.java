@@ -0,0 +1,711 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * A snapshot of a fitness application on disk, laid out as a manifest and many segment files. Each
+ * segment holds the users of a contiguous range of codes, and segments are written and read in
+ * parallel. The manifest holds everything else in the application and lists the segments, and it's
+ * replaced atomically once the segments are on disk, so that a snapshot is either fully saved or
+ * not at all. Segments have unique names, so that the ones of the previous snapshot are only
+ * deleted after it's replaced.
+ *
+ * <p>A snapshot is made of layers: a full snapshot of all users, followed by deltas that only hold
+ * the users changed since the previous layer and the codes of the users removed. Users that didn't
+ * change while time advanced are brought up to date as they're loaded.</p>
+ *
+ * <p>The manifest and each segment are snapshot files (see <code>SnapshotFile</code>), compressed
+ * and checksummed on their own, so that segments are decompressed and verified in parallel as
+ * well.</p>
+ */
+public class FitnessSnapshot {
+    /** Default number of segments users are split into. */
+    public static final int DEFAULT_SEGMENTS = Runtime.getRuntime().availableProcessors();
+
+    /** Default number of threads segments are written and read by. */
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Default maximum number of deltas chained onto a full snapshot. */
+    public static final int DEFAULT_MAX_DELTAS = 24;
+
+    /** Version of the format of the manifest. */
+    private static final int FORMAT = 4;
+
+    /** Path of the manifest. */
+    private String path;
+
+    /** Maximum number of segments users are split into. */
+    private int segments;
+
+    /** Number of threads segments are written and read by. */
+    private int threads;
+
+    /** Maximum number of deltas chained onto a full snapshot. */
+    private int maxDeltas;
+
+    /** Codec segments are compressed with when saved. Segments are loaded with their own. */
+    private SnapshotCodec codec;
+
+    /** Name of the last layer saved or loaded by this object (<code>null</code> if none). */
+    private String generation;
+
+    /** A segment file, as listed in the manifest. */
+    private static class Segment {
+        /** Name of the file, in the directory of the manifest. */
+        private final String name;
+
+        /** Code of the first user in the segment. */
+        private final long firstCode;
+
+        /** Code of the last user in the segment. */
+        private final long lastCode;
+
+        /** Number of users in the segment. */
+        private final int count;
+
+        /**
+         * Creates a new segment from the value of its fields.
+         *
+         * @param name Name of the file, in the directory of the manifest.
+         * @param firstCode Code of the first user in the segment.
+         * @param lastCode Code of the last user in the segment.
+         * @param count Number of users in the segment.
+         */
+        public Segment(String name, long firstCode, long lastCode, int count) {
+            this.name      = name;
+            this.firstCode = firstCode;
+            this.lastCode  = lastCode;
+            this.count     = count;
+        }
+    }
+
+    /** A full snapshot or a delta, with the users saved and removed at once. */
+    private static class Layer {
+        /** Name of the layer, that its segments are named after. */
+        private final String generation;
+
+        /** Current time in the application when the layer was saved. */
+        private final LocalDateTime now;
+
+        /** Codes of the users removed since the previous layer. */
+        private final long[] removed;
+
+        /** Segments with the users added or changed since the previous layer. */
+        private final List<Segment> segments;
+
+        /**
+         * Creates a new layer from the value of its fields.
+         *
+         * @param generation Name of the layer, that its segments are named after.
+         * @param now Current time in the application when the layer was saved.
+         * @param removed Codes of the users removed since the previous layer.
+         * @param segments Segments with the users added or changed since the previous layer.
+         */
+        public Layer(String generation, LocalDateTime now, long[] removed, List<Segment> segments) {
+            this.generation = generation;
+            this.now        = now;
+            this.removed    = removed;
+            this.segments   = segments;
+        }
+
+        /**
+         * Counts the users saved in this layer.
+         *
+         * @return The number of users saved in this layer.
+         */
+        public long countUsers() {
+            return this.segments.stream().mapToLong(s -> s.count).sum();
+        }
+    }
+
+    /** Creates a new snapshot in the working directory. */
+    public FitnessSnapshot() {
+        this("fitness.snapshot");
+    }
+
+    /**
+     * Creates a new snapshot with the default number of segments, threads and deltas, and the
+     * default codec.
+     *
+     * @param path Path of the manifest.
+     */
+    public FitnessSnapshot(String path) {
+        this(path,
+             FitnessSnapshot.DEFAULT_SEGMENTS,
+             FitnessSnapshot.DEFAULT_THREADS,
+             FitnessSnapshot.DEFAULT_MAX_DELTAS,
+             SnapshotFile.DEFAULT_CODEC);
+    }
+
+    /**
+     * Creates a new snapshot from the value of its fields.
+     *
+     * @param path Path of the manifest.
+     * @param segments Maximum number of segments users are split into.
+     * @param threads Number of threads segments are written and read by.
+     * @param maxDeltas Maximum number of deltas chained onto a full snapshot.
+     * @param codec Codec segments are compressed with when saved.
+     */
+    public FitnessSnapshot(String        path,
+                           int           segments,
+                           int           threads,
+                           int           maxDeltas,
+                           SnapshotCodec codec) {
+        this.path       = path;
+        this.segments   = Math.max(1, segments);
+        this.threads    = Math.max(1, threads);
+        this.maxDeltas  = Math.max(0, maxDeltas);
+        this.codec      = codec;
+        this.generation = null;
+    }
+
+    /**
+     * Copy constructor of a snapshot.
+     *
+     * @param snapshot Snapshot to be copied.
+     */
+    public FitnessSnapshot(FitnessSnapshot snapshot) {
+        this(snapshot.getPath(),
+             snapshot.getSegments(),
+             snapshot.getThreads(),
+             snapshot.getMaxDeltas(),
+             snapshot.getCodec());
+        this.generation = snapshot.generation;
+    }
+
+    /**
+     * Gets the path of the manifest.
+     *
+     * @return The path of the manifest.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Gets the maximum number of segments users are split into.
+     *
+     * @return The maximum number of segments users are split into.
+     */
+    public int getSegments() {
+        return this.segments;
+    }
+
+    /**
+     * Gets the number of threads segments are written and read by.
+     *
+     * @return The number of threads segments are written and read by.
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Gets the maximum number of deltas chained onto a full snapshot.
+     *
+     * @return The maximum number of deltas chained onto a full snapshot.
+     */
+    public int getMaxDeltas() {
+        return this.maxDeltas;
+    }
+
+    /**
+     * Gets the codec segments are compressed with when saved.
+     *
+     * @return The codec segments are compressed with when saved.
+     */
+    public SnapshotCodec getCodec() {
+        return this.codec;
+    }
+
+    /**
+     * Saves a fitness application to this snapshot in full, replacing the previous one if it
+     * exists.
+     *
+     * @param header Everything in the application except its users.
+     * @param users Users in the application, that must not be modified while they're saved.
+     * @throws IOException Failed to write to a file.
+     */
+    public void save(FitnessModel header, SortedMap<Long, User> users) throws IOException {
+        String generation = this.newGeneration();
+        Layer  layer      = new Layer(generation,
+                                      header.getNow(),
+                                      new long[0],
+                                      this.writeSegments(generation, users));
+
+        List<Layer> layers = new ArrayList<Layer>();
+        layers.add(layer);
+        this.commit(layers, header);
+    }
+
+    /**
+     * Saves the changes made to a fitness application since it was last saved to or loaded from
+     * this snapshot, as a delta chained onto it. Nothing is saved if the snapshot on disk isn't the
+     * one last saved or loaded by this object, if it already has the maximum number of deltas, or
+     * if its deltas would hold more users than its full snapshot, so that a full snapshot is saved
+     * instead.
+     *
+     * @param header Everything in the application except its users.
+     * @param changed Users added or changed since the last save, that must not be modified while
+     *     they're saved.
+     * @param removed Codes of the users removed since the last save.
+     * @return Whether the delta was saved.
+     * @throws IOException Failed to write to a file.
+     */
+    public boolean saveDelta(FitnessModel          header,
+                             SortedMap<Long, User> changed,
+                             SortedSet<Long>       removed) throws IOException {
+
+        List<Layer> layers = this.readCurrentLayers();
+        if (this.generation == null || layers == null || layers.size() > this.maxDeltas ||
+            !layers.get(layers.size() - 1).generation.equals(this.generation))
+            return false;
+
+        long deltaUsers = changed.size();
+        for (Layer l : layers.subList(1, layers.size()))
+            deltaUsers += l.countUsers();
+        if (deltaUsers > layers.get(0).countUsers())
+            return false;
+
+        String generation = this.newGeneration();
+        layers.add(new Layer(generation,
+                             header.getNow(),
+                             removed.stream().mapToLong(Long::longValue).toArray(),
+                             this.writeSegments(generation, changed)));
+        this.commit(layers, header);
+        return true;
+    }
+
+    /**
+     * Loads a fitness application from this snapshot, merging its full snapshot with its deltas.
+     *
+     * @param users Where to place the users in the application.
+     * @return Everything in the application except its users.
+     * @throws IOException Failed to read a file.
+     * @throws IOException Corrupt snapshot.
+     * @throws ClassNotFoundException Bad file type.
+     * @throws ClassCastException Bad file type.
+     */
+    public FitnessModel load(SortedMap<Long, User> users)
+        throws IOException, ClassNotFoundException, ClassCastException {
+
+        List<Layer>  layers;
+        FitnessModel header;
+        try (ObjectInputStream in = this.openManifest()) {
+            layers = FitnessSnapshot.readLayers(in);
+            header = (FitnessModel) in.readObject();
+        }
+
+        List<Callable<SortedMap<Long, User>>> tasks =
+            new ArrayList<Callable<SortedMap<Long, User>>>();
+        for (Layer l : layers)
+            for (Segment s : l.segments)
+                tasks.add(() -> this.readSegment(s));
+        List<SortedMap<Long, User>> parts = this.runAll(tasks);
+
+        // From the newest layer to the oldest, so that only the latest version of a user is kept
+        Set<Long> removed = new HashSet<Long>();
+        int       part    = parts.size();
+        for (int i = layers.size() - 1; i >= 0; --i) {
+            Layer layer = layers.get(i);
+            for (int j = 0; j < layer.segments.size(); ++j) {
+                for (User u : parts.get(--part).values()) {
+                    if (removed.contains(u.getCode()) || users.containsKey(u.getCode()))
+                        continue;
+
+                    if (layer.now.isBefore(header.getNow())) {
+                        // Users that didn't change in the leaps since they were saved
+                        UserActivities activities = u.getActivities();
+                        activities.leapForward(layer.now, header.getNow());
+                        u.setActivities(activities);
+                    }
+                    users.put(u.getCode(), u);
+                }
+            }
+            for (long code : layer.removed)
+                removed.add(code);
+        }
+
+        this.generation = layers.get(layers.size() - 1).generation;
+        return header;
+    }
+
+    /**
+     * Writes users to new segment files, split into contiguous ranges of codes, in parallel.
+     *
+     * @param generation Name of the layer the segments belong to.
+     * @param users Users to be written, that must not be modified while they're written.
+     * @return The segments written.
+     * @throws IOException Failed to write to a file.
+     */
+    private List<Segment> writeSegments(String generation, SortedMap<Long, User> users)
+        throws IOException {
+
+        List<User> all   = new ArrayList<User>(users.values());
+        int        count = Math.min(this.segments, all.size());
+
+        List<Callable<Segment>> tasks = new ArrayList<Callable<Segment>>();
+        for (int i = 0; i < count; ++i) {
+            List<User> part = all.subList(i * all.size() / count, (i + 1) * all.size() / count);
+            String     name = this.getSegmentName(generation, i);
+            tasks.add(() -> this.writeSegment(name, part));
+        }
+        return this.runAll(tasks);
+    }
+
+    /**
+     * Replaces the manifest atomically, and deletes the segments only listed in the previous one.
+     *
+     * @param layers Layers to be listed in the new manifest.
+     * @param header Everything in the application except its users.
+     * @throws IOException Failed to write to a file.
+     */
+    private void commit(List<Layer> layers, FitnessModel header) throws IOException {
+        Set<String> previous = new HashSet<String>();
+        List<Layer> old      = this.readCurrentLayers();
+        if (old != null)
+            for (Layer l : old)
+                for (Segment s : l.segments)
+                    previous.add(s.name);
+
+        // Segments are synced to disk before the manifest that lists them replaces the old one
+        try (SnapshotFile.BlockOutputStream file =
+                 SnapshotFile.newOutputStream(Paths.get(this.path), this.codec, 1);
+             ObjectOutputStream out = new ObjectOutputStream(file)) {
+            out.writeInt(FitnessSnapshot.FORMAT);
+            out.writeInt(layers.size());
+            for (Layer l : layers) {
+                out.writeUTF(l.generation);
+                out.writeObject(l.now);
+                out.writeInt(l.removed.length);
+                for (long code : l.removed)
+                    out.writeLong(code);
+
+                out.writeInt(l.segments.size());
+                for (Segment s : l.segments) {
+                    out.writeUTF(s.name);
+                    out.writeLong(s.firstCode);
+                    out.writeLong(s.lastCode);
+                    out.writeInt(s.count);
+                }
+            }
+            out.writeObject(header);
+            out.flush();
+            file.commit();
+        }
+        this.generation = layers.get(layers.size() - 1).generation;
+
+        for (Layer l : layers)
+            for (Segment s : l.segments)
+                previous.remove(s.name);
+        for (String name : previous)
+            Files.deleteIfExists(this.resolve(name));
+    }
+
+    /**
+     * Checks the integrity of this snapshot, at the speed its files are read from disk. The
+     * manifest and the segments it lists are checked against their checksums, in parallel, without
+     * reading the users in them (see <code>SnapshotFile.verify</code>).
+     *
+     * @return The number of bytes in the manifest and its segments, after being decompressed.
+     * @throws IOException Failed to read a file.
+     * @throws IOException Corrupt snapshot, or missing segment.
+     */
+    public long verify() throws IOException {
+        long        ret    = SnapshotFile.verify(Paths.get(this.path));
+        List<Layer> layers;
+        try (ObjectInputStream in = this.openManifest()) {
+            layers = FitnessSnapshot.readLayers(in);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Corrupt snapshot manifest!");
+        }
+
+        List<Callable<Long>> tasks = new ArrayList<Callable<Long>>();
+        for (Layer l : layers)
+            for (Segment s : l.segments)
+                tasks.add(() -> SnapshotFile.verify(this.resolve(s.name)));
+        for (long bytes : this.runAll(tasks))
+            ret += bytes;
+        return ret;
+    }
+
+    /**
+     * Opens the manifest for reading.
+     *
+     * @return A stream that reads from the manifest.
+     * @throws IOException Failed to open or read from the manifest.
+     */
+    private ObjectInputStream openManifest() throws IOException {
+        return new ObjectInputStream(SnapshotFile.newInputStream(Paths.get(this.path), 1));
+    }
+
+    /**
+     * Reads the layers listed in the current manifest, if it can be read.
+     *
+     * @return The layers in the current manifest, <code>null</code> if there's none.
+     */
+    private List<Layer> readCurrentLayers() {
+        try (ObjectInputStream in = this.openManifest()) {
+            return FitnessSnapshot.readLayers(in);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Reads the layers listed in a manifest.
+     *
+     * @param in Stream to read the manifest from.
+     * @return The layers in the manifest, from the full snapshot to the newest delta.
+     * @throws IOException Failed to read from the file.
+     * @throws IOException Unknown manifest format.
+     * @throws ClassNotFoundException Bad file type.
+     * @throws ClassCastException Bad file type.
+     */
+    private static List<Layer> readLayers(ObjectInputStream in)
+        throws IOException, ClassNotFoundException, ClassCastException {
+
+        if (in.readInt() != FitnessSnapshot.FORMAT)
+            throw new IOException("Unknown snapshot format!");
+
+        int         count = in.readInt();
+        List<Layer> ret   = new ArrayList<Layer>();
+        for (int i = 0; i < count; ++i) {
+            String        generation = in.readUTF();
+            LocalDateTime now        = (LocalDateTime) in.readObject();
+            long[]        removed    = new long[in.readInt()];
+            for (int j = 0; j < removed.length; ++j)
+                removed[j] = in.readLong();
+
+            int           segmentCount = in.readInt();
+            List<Segment> segments     = new ArrayList<Segment>();
+            for (int j = 0; j < segmentCount; ++j)
+                segments.add(new Segment(in.readUTF(), in.readLong(), in.readLong(), in.readInt()));
+            ret.add(new Layer(generation, now, removed, segments));
+        }
+
+        if (ret.isEmpty())
+            throw new IOException("Snapshot without layers!");
+        return ret;
+    }
+
+    /**
+     * Writes the users in a segment to its file.
+     *
+     * @param name Name of the segment file.
+     * @param users Users in the segment, sorted by code.
+     * @return The segment written.
+     * @throws IOException Failed to write to the file.
+     */
+    private Segment writeSegment(String name, List<User> users) throws IOException {
+        // Segments are already written in parallel, so each one is compressed by a single thread
+        try (SnapshotFile.BlockOutputStream file =
+                 SnapshotFile.newOutputStream(this.resolve(name), this.codec, 1);
+             ObjectOutputStream out = new ObjectOutputStream(file)) {
+            out.writeInt(users.size());
+            for (User u : users)
+                out.writeObject(u);
+            out.flush();
+            file.commit();
+        }
+        return new Segment(name,
+                           users.get(0).getCode(),
+                           users.get(users.size() - 1).getCode(),
+                           users.size());
+    }
+
+    /**
+     * Reads the users in a segment from its file.
+     *
+     * @param segment Segment to be read.
+     * @return The users in the segment, by code.
+     * @throws IOException Failed to read from the file.
+     * @throws IOException Segment doesn't match the manifest.
+     * @throws ClassNotFoundException Bad file type.
+     * @throws ClassCastException Bad file type.
+     */
+    private SortedMap<Long, User> readSegment(Segment segment)
+        throws IOException, ClassNotFoundException, ClassCastException {
+
+        SortedMap<Long, User> users = new TreeMap<Long, User>();
+        try (ObjectInputStream in = new ObjectInputStream(
+                 SnapshotFile.newInputStream(this.resolve(segment.name), 1))) {
+            int count = in.readInt();
+            if (count != segment.count)
+                throw new IOException("Snapshot segment doesn't match its manifest!");
+
+            for (int i = 0; i < count; ++i) {
+                User u = (User) in.readObject();
+                if (u.getCode() < segment.firstCode || u.getCode() > segment.lastCode)
+                    throw new IOException("Snapshot segment doesn't match its manifest!");
+                users.put(u.getCode(), u);
+            }
+        }
+        return users;
+    }
+
+    /**
+     * Creates a name for the segments of a new snapshot, unused by any existing segment.
+     *
+     * @return A name for the segments of a new snapshot.
+     */
+    private String newGeneration() {
+        long generation = System.currentTimeMillis();
+        while (Files.exists(this.resolve(this.getSegmentName(Long.toString(generation, 36), 0))))
+            generation++;
+        return Long.toString(generation, 36);
+    }
+
+    /**
+     * Gets the name of a segment file.
+     *
+     * @param generation Name of the snapshot the segment belongs to.
+     * @param index Index of the segment in the snapshot.
+     * @return The name of segment <code>index</code> of snapshot <code>generation</code>.
+     */
+    private String getSegmentName(String generation, int index) {
+        return String.format("%s.%s.%d",
+                             Paths.get(this.path).getFileName().toString(),
+                             generation,
+                             index);
+    }
+
+    /**
+     * Gets the path of a file in the directory of the manifest.
+     *
+     * @param name Name of the file.
+     * @return The path of file <code>name</code>.
+     */
+    private Path resolve(String name) {
+        return Paths.get(this.path).resolveSibling(name);
+    }
+
+    /**
+     * Runs many tasks in parallel, in a pool of threads that only lives while they're run.
+     *
+     * @param <T> Type of the results of the tasks.
+     * @param tasks Tasks to be run.
+     * @return The results of the tasks, in the same order.
+     * @throws IOException A task failed to read or write a file, or found a bad file type.
+     */
+    private <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+        if (tasks.isEmpty())
+            return new ArrayList<T>();
+
+        ExecutorService executor =
+            Executors.newFixedThreadPool(Math.min(this.threads, tasks.size()));
+        try {
+            List<T> ret = new ArrayList<T>();
+            for (Future<T> future : executor.invokeAll(tasks))
+                ret.add(future.get());
+            return ret;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while accessing snapshot!");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause.getMessage(), cause);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Calculates the hash code of this snapshot.
+     *
+     * @return The hash code of this snapshot.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.path, this.segments, this.threads, this.maxDeltas, this.codec);
+    }
+
+    /**
+     * Checks if this snapshot is equal to another object.
+     *
+     * @param obj Object to be compared with this snapshot.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        FitnessSnapshot snapshot = (FitnessSnapshot) obj;
+        return this.path.equals(snapshot.getPath()) && this.segments == snapshot.getSegments() &&
+            this.threads == snapshot.getThreads() && this.maxDeltas == snapshot.getMaxDeltas() &&
+            this.codec.equals(snapshot.getCodec());
+    }
+
+    /**
+     * Creates a copy of this snapshot.
+     *
+     * @return A copy of this snapshot.
+     */
+    @Override
+    public FitnessSnapshot clone() {
+        return new FitnessSnapshot(this);
+    }
+
+    /**
+     * Creates a debug string representation of this snapshot.
+     *
+     * @return A debug string representation of this snapshot.
+     */
+    @Override
+    public String toString() {
+        return String.format(
+            "FitnessSnapshot(path = \"%s\", segments = %d, threads = %d, maxDeltas = %d, " +
+                "codec = %s)",
+            this.path,
+            this.segments,
+            this.threads,
+            this.maxDeltas,
+            this.codec.toString());
+    }
+}
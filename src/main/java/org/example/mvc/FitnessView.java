@@ -16,6 +16,7 @@
 
 package org.example.fitness;
 
+import java.io.OutputStreamWriter;
 import java.time.DayOfWeek;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
@@ -31,6 +32,12 @@ import java.util.function.Consumer;
 
 /** The user interaction layer of the fitness application. */
 public class FitnessView {
+    /** Number of entities shown at once in a terminal. */
+    private static final int PAGE_SIZE = 20;
+
+    /** Number of entities fetched from the controller at once. */
+    private static final int FETCH_SIZE = 1024;
+
     /** The controller that this view interacts with. */
     private FitnessController controller;
 
@@ -210,47 +217,81 @@ public class FitnessView {
     /** Asks the user which entities they wish to list. */
     private void listEntities() {
         Consumer<Integer> doOperation = i -> {
-            String[]       header;
-            String         format;
-            List<String[]> entities = null;
+            String[] header;
+            int[]    widths;
+            long     code = 0;
             if (i == 0) {
-                header   = new String[] { "Code", "Name", "Class", "Address", "Email", "BPM" };
-                format   = "%5s %-25s %-25s %-25s %-25s %5s\n";
-                entities = this.controller.getUsers();
+                header = new String[] { "Code", "Name", "Class", "Address", "Email", "BPM" };
+                widths = new int[] { 5, -25, -25, -25, -25, 5 };
             } else {
-                long code = (new UserInput())
-                                .readInt("User code > ",
-                                         "User doesn't exist!",
-                                         j -> this.controller.userExists(j));
+                code = (new UserInput())
+                           .readInt("User code > ",
+                                    "User doesn't exist!",
+                                    j -> this.controller.userExists(j));
 
                 header = new String[] { "Date",        "Duration", "Calories", "Class",    "BPM",
                                         "Repetitions", "Weight",   "Distance", "Altimetry" };
-                format = "%-20s %8s %8s %-25s %5s %11s %6s %8s %9s\n";
+                widths = new int[] { -20, 8, 8, -25, 5, 11, 6, 8, 9 };
 
-                try {
-                    if (i == 1)
-                        entities = this.controller.getTodoActivities(code);
-                    else if (i == 2)
-                        entities = this.controller.getDoneActivities(code);
-                    else if (i == 3) {
-                        showPlanDays(code);
-                        format = "%-10s %8s %8s %9s %-25s %5s %11s %6s %8s %9s\n";
+                if (i == 3) {
+                    showPlanDays(code);
+                    widths = new int[] { -10, 8, 8, 9, -25, 5, 11, 6, 8, 9 };
 
-                        List<String> headerMod = new ArrayList<String>(Arrays.asList(header));
-                        headerMod.add(3, "Plan reps");
-                        header = headerMod.toArray(String[] ::new);
+                    List<String> headerMod = new ArrayList<String>(Arrays.asList(header));
+                    headerMod.add(3, "Plan reps");
+                    header = headerMod.toArray(String[] ::new);
+                }
+            }
+
+            // Rows are fetched in large batches, but only shown one page at a time in a terminal
+            TableRenderer renderer =
+                new TableRenderer(new OutputStreamWriter(System.out),
+                                  widths,
+                                  System.console() == null ? 0 : FitnessView.PAGE_SIZE,
+                                  () -> (boolean) (new UserInput())
+                                            .read("More? (y/n) > ",
+                                                  "Must be y/n!",
+                                                  s -> s.equals("y") || s.equals("n"),
+                                                  s -> s.equals("y")));
+            renderer.accept(header);
+
+            long[]          users   = { Long.MIN_VALUE };
+            LocalDateTime[] dates   = { LocalDateTime.MIN };
+            int             plan    = 0;
+            int[]           fetched = { 0 };
+            RowSink         sink    = row -> {
+                fetched[0]++;
+                renderer.accept(row);
+            };
 
-                        entities = this.controller.getPlanActivities(code);
-                    }
+            do {
+                fetched[0] = 0;
+                try {
+                    if (i == 0)
+                        this.controller.streamUsers(users, FitnessView.FETCH_SIZE, sink);
+                    else if (i == 1)
+                        this.controller.streamTodoActivities(code,
+                                                             dates,
+                                                             FitnessView.FETCH_SIZE,
+                                                             sink);
+                    else if (i == 2)
+                        this.controller.streamDoneActivities(code,
+                                                             dates,
+                                                             FitnessView.FETCH_SIZE,
+                                                             sink);
+                    else
+                        this.controller.streamPlanActivities(code,
+                                                             plan,
+                                                             FitnessView.FETCH_SIZE,
+                                                             sink);
                 } catch (FitnessControllerException e) {
+                    renderer.flush();
                     System.err.println(e.getMessage());
+                    return;
                 }
-            }
-
-            System.out.printf(format, (Object[]) header);
-            for (String[] entity : entities) {
-                System.out.printf(format, (Object[]) entity);
-            }
+                plan += fetched[0];
+            } while (fetched[0] == FitnessView.FETCH_SIZE && !renderer.isStopped());
+            renderer.flush();
         };
 
         MenuEntry[] entries = {
@@ -390,10 +431,20 @@ public class FitnessView {
             try {
                 if (i == 0) {
                     this.controller.loadFromFile(path);
+                    System.out.println("Operation successful!");
+                } else if (i == 2) {
+                    long bytes = this.controller.verifyFile(path);
+                    System.out.printf("File is intact (%d bytes)!%n", bytes);
                 } else {
-                    this.controller.saveToFile(path);
+                    SaveProgress progress = this.controller.saveToFileAsync(path);
+                    progress.getFuture().whenComplete((v, e) -> {
+                        if (e == null)
+                            System.out.println("Saved to " + path + "!");
+                        else
+                            System.err.println("Failed to write to file!");
+                    });
+                    System.out.println("Saving in the background ...");
                 }
-                System.out.println("Operation successful!");
             } catch (FitnessControllerException e) {
                 System.err.println(e.getMessage());
             }
@@ -402,6 +453,7 @@ public class FitnessView {
         MenuEntry[] entries = {
             new MenuEntry("Load state from file", doOperation),
             new MenuEntry("Save state to file", doOperation),
+            new MenuEntry("Verify file", doOperation),
             new MenuEntry("Go back", i -> {}),
         };
         new Menu(entries).run();
@@ -0,0 +1,381 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Writes JSON directly to its output as values are given, without building a tree of them first.
+ * Values are formatted into a large buffer that is only written when full (or when flushed). It's
+ * up to the caller to nest values correctly: commas and colons are placed by this writer, but
+ * misplaced names or values aren't detected.
+ */
+public class JsonWriter {
+    /** Where JSON is written to. */
+    private Writer out;
+
+    /** JSON formatted but not yet written. */
+    private StringBuilder buffer;
+
+    /** For each open object or array (and the top level), whether it already has any value. */
+    private boolean[] nonEmpty;
+
+    /** Number of open objects and arrays. */
+    private int depth;
+
+    /** Whether a name was just written, so that no comma is needed before the next value. */
+    private boolean named;
+
+    /** Creates a new JSON writer that discards everything. */
+    public JsonWriter() {
+        this(Writer.nullWriter());
+    }
+
+    /**
+     * Creates a new JSON writer from the value of its fields.
+     *
+     * @param out Where JSON is written to. Not closed by this writer.
+     */
+    public JsonWriter(Writer out) {
+        this.out      = out;
+        this.buffer   = new StringBuilder(TableRenderer.BUFFER_SIZE);
+        this.nonEmpty = new boolean[16];
+        this.depth    = 0;
+        this.named    = false;
+    }
+
+    /**
+     * Copy constructor of a JSON writer. Both writers write to the same place, but JSON not yet
+     * written by <code>writer</code> isn't copied.
+     *
+     * @param writer JSON writer to be copied.
+     */
+    public JsonWriter(JsonWriter writer) {
+        this(writer.out);
+    }
+
+    /**
+     * Starts an object.
+     *
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter beginObject() {
+        this.separate();
+        this.buffer.append('{');
+        this.open();
+        return this;
+    }
+
+    /**
+     * Ends the current object.
+     *
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter endObject() {
+        this.depth--;
+        this.buffer.append('}');
+        return this;
+    }
+
+    /**
+     * Starts an array.
+     *
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter beginArray() {
+        this.separate();
+        this.buffer.append('[');
+        this.open();
+        return this;
+    }
+
+    /**
+     * Ends the current array.
+     *
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter endArray() {
+        this.depth--;
+        this.buffer.append(']');
+        return this;
+    }
+
+    /**
+     * Writes the name of the next member of the current object.
+     *
+     * @param name Name of the member.
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter name(CharSequence name) {
+        this.separate();
+        this.appendString(name);
+        this.buffer.append(':');
+        this.named = true;
+        return this;
+    }
+
+    /**
+     * Writes a string.
+     *
+     * @param value String to be written, or <code>null</code>.
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter value(CharSequence value) {
+        if (value == null)
+            return this.nullValue();
+
+        this.separate();
+        this.appendString(value);
+        this.writeIfFull();
+        return this;
+    }
+
+    /**
+     * Writes an integer.
+     *
+     * @param value Integer to be written.
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter value(long value) {
+        this.separate();
+        this.buffer.append(value);
+        this.writeIfFull();
+        return this;
+    }
+
+    /**
+     * Writes a number. Numbers JSON can't represent (infinities and NaN) are written as
+     * <code>null</code>.
+     *
+     * @param value Number to be written.
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter value(double value) {
+        if (!Double.isFinite(value))
+            return this.nullValue();
+
+        this.separate();
+        this.buffer.append(value);
+        this.writeIfFull();
+        return this;
+    }
+
+    /**
+     * Writes a boolean.
+     *
+     * @param value Boolean to be written.
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter value(boolean value) {
+        this.separate();
+        this.buffer.append(value);
+        this.writeIfFull();
+        return this;
+    }
+
+    /**
+     * Writes a number that has already been formatted, such as the numeric fields of rows from
+     * <code>ActivityRowEncoder</code>, without parsing it. Infinities and NaN (as formatted by
+     * <code>Double.toString</code>) are written as <code>null</code>.
+     *
+     * @param value Formatted number.
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter number(CharSequence value) {
+        char last = value.length() == 0 ? 'N' : value.charAt(value.length() - 1);
+        if (last == 'N' || last == 'y') // NaN and Infinity
+            return this.nullValue();
+
+        this.separate();
+        this.buffer.append(value);
+        this.writeIfFull();
+        return this;
+    }
+
+    /**
+     * Writes <code>null</code>.
+     *
+     * @return <code>this</code>, to chain calls.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public JsonWriter nullValue() {
+        this.separate();
+        this.buffer.append("null");
+        this.writeIfFull();
+        return this;
+    }
+
+    /**
+     * Writes all JSON given so far.
+     *
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public void flush() {
+        this.write();
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Writes a comma before a value or a name, unless it's the first one in its parent. */
+    private void separate() {
+        if (this.named) {
+            this.named = false;
+            return;
+        }
+
+        if (this.nonEmpty[this.depth])
+            this.buffer.append(',');
+        this.nonEmpty[this.depth] = true;
+    }
+
+    /** Enters a new object or array, after its opening character has been written. */
+    private void open() {
+        if (++this.depth == this.nonEmpty.length)
+            this.nonEmpty = Arrays.copyOf(this.nonEmpty, this.depth * 2);
+        this.nonEmpty[this.depth] = false;
+    }
+
+    /**
+     * Writes a quoted string, escaping the characters JSON requires to be escaped.
+     *
+     * @param value String to be written.
+     */
+    private void appendString(CharSequence value) {
+        this.buffer.append('"');
+        for (int i = 0; i < value.length(); ++i) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    this.buffer.append("\\\"");
+                    break;
+                case '\\':
+                    this.buffer.append("\\\\");
+                    break;
+                case '\n':
+                    this.buffer.append("\\n");
+                    break;
+                case '\r':
+                    this.buffer.append("\\r");
+                    break;
+                case '\t':
+                    this.buffer.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        this.buffer.append("\\u00");
+                        this.buffer.append(Character.forDigit(c >> 4, 16));
+                        this.buffer.append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        this.buffer.append(c);
+                    }
+            }
+        }
+        this.buffer.append('"');
+    }
+
+    /**
+     * Writes the JSON buffered so far, if the buffer is full.
+     *
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    private void writeIfFull() {
+        if (this.buffer.length() >= TableRenderer.BUFFER_SIZE)
+            this.write();
+    }
+
+    /**
+     * Writes the contents of the buffer to the output, without flushing it.
+     *
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    private void write() {
+        try {
+            this.out.append(this.buffer);
+            this.buffer.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks if this JSON writer is equal to another object.
+     *
+     * @param obj Object to be compared with this JSON writer.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        JsonWriter writer = (JsonWriter) obj;
+        return this.out == writer.out && this.depth == writer.depth &&
+            this.named == writer.named &&
+            this.buffer.toString().equals(writer.buffer.toString());
+    }
+
+    /**
+     * Calculates the hash code of this JSON writer.
+     *
+     * @return The hash code of this JSON writer.
+     */
+    @Override
+    public int hashCode() {
+        return this.depth * 31 + this.buffer.length();
+    }
+
+    /**
+     * Creates a copy of this JSON writer. See the copy constructor.
+     *
+     * @return A copy of this JSON writer.
+     */
+    @Override
+    public JsonWriter clone() {
+        return new JsonWriter(this);
+    }
+
+    /**
+     * Creates a debug string representation of this JSON writer.
+     *
+     * @return A debug string representation of this JSON writer.
+     */
+    @Override
+    public String toString() {
+        return String.format("JsonWriter(depth = %d, buffered = %d)",
+                             this.depth,
+                             this.buffer.length());
+    }
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/** A codec that stores the blocks of a snapshot file without compressing them. */
+public class PlainSnapshotCodec implements SnapshotCodec {
+    /** Creates a new codec. */
+    public PlainSnapshotCodec() {}
+
+    /**
+     * Copy constructor of a codec.
+     *
+     * @param codec Codec to be copied.
+     */
+    public PlainSnapshotCodec(PlainSnapshotCodec codec) {}
+
+    /**
+     * Gets the name of this codec.
+     *
+     * @return <code>"none"</code>.
+     */
+    @Override
+    public String getName() {
+        return "none";
+    }
+
+    /**
+     * Stores a block as it is.
+     *
+     * @param block Bytes in the block.
+     * @param length Number of bytes in the block, at the start of <code>block</code>.
+     * @return A copy of the bytes in the block.
+     */
+    @Override
+    public byte[] compress(byte[] block, int length) {
+        return Arrays.copyOf(block, length);
+    }
+
+    /**
+     * Restores a block stored as it is.
+     *
+     * @param data Stored block.
+     * @param block Where to place the bytes in the block.
+     * @param length Number of bytes in the block, placed at the start of <code>block</code>.
+     * @throws IOException Stored block of the wrong size.
+     */
+    @Override
+    public void decompress(byte[] data, byte[] block, int length) throws IOException {
+        if (data.length != length)
+            throw new IOException("Corrupt snapshot block!");
+        System.arraycopy(data, 0, block, 0, length);
+    }
+
+    /**
+     * Checks if this codec is equal to another object.
+     *
+     * @param obj Object to be compared with this codec.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj != null && this.getClass() == obj.getClass();
+    }
+
+    /**
+     * Calculates the hash code of this codec.
+     *
+     * @return The hash code of this codec.
+     */
+    @Override
+    public int hashCode() {
+        return this.getName().hashCode();
+    }
+
+    /**
+     * Creates a copy of this codec.
+     *
+     * @return A copy of this codec.
+     */
+    @Override
+    public PlainSnapshotCodec clone() {
+        return new PlainSnapshotCodec(this);
+    }
+
+    /**
+     * Creates a debug string representation of this codec.
+     *
+     * @return A debug string representation of this codec.
+     */
+    @Override
+    public String toString() {
+        return "PlainSnapshotCodec()";
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+/**
+ * Consumer of rows of fields, such as the ones created by <code>ActivityRowEncoder</code>. Rows are
+ * only valid during the call, so that their buffers can be reused for the next row.
+ */
+@FunctionalInterface
+public interface RowSink {
+    /**
+     * Consumes a row.
+     *
+     * @param row Fields of the row, that must not be kept after this method returns.
+     */
+    public void accept(CharSequence[] row);
+
+    /**
+     * Creates a sink that writes rows as lines of separated fields, without copying them.
+     *
+     * @param out Where to write the rows to.
+     * @param separator Character between consecutive fields.
+     * @return A sink that writes rows to <code>out</code>.
+     */
+    public static RowSink delimited(StringBuilder out, char separator) {
+        return row -> {
+            for (int i = 0; i < row.length; ++i) {
+                if (i > 0)
+                    out.append(separator);
+                out.append(row[i]);
+            }
+            out.append('\n');
+        };
+    }
+
+    /**
+     * Copies a row so that it can be kept.
+     *
+     * @param row Fields of the row.
+     * @return A copy of the fields of <code>row</code>.
+     */
+    public static String[] toStrings(CharSequence[] row) {
+        String[] ret = new String[row.length];
+        for (int i = 0; i < row.length; ++i)
+            ret[i] = row[i].toString();
+        return ret;
+    }
+}
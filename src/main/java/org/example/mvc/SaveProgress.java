@@ -0,0 +1,248 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The progress of saving a fitness application to a file, possibly in the background (see
+ * <code>FitnessModel.saveToFileAsync</code>). Progress is updated by the thread writing the file
+ * and can be read from any thread.
+ */
+public class SaveProgress {
+    /** Path of the file being written. */
+    private String path;
+
+    /** Number of users to be written. */
+    private long totalUsers;
+
+    /** Number of users written so far. */
+    private AtomicLong usersWritten;
+
+    /** Number of bytes written so far. */
+    private AtomicLong bytesWritten;
+
+    /** Completed when the file is fully written, or completed exceptionally if writing failed. */
+    private CompletableFuture<Void> future;
+
+    /** Creates a new progress of an empty save. */
+    public SaveProgress() {
+        this("", 0);
+    }
+
+    /**
+     * Creates a new progress of a save that hasn't written anything yet.
+     *
+     * @param path Path of the file being written.
+     * @param totalUsers Number of users to be written.
+     */
+    public SaveProgress(String path, long totalUsers) {
+        this.path         = path;
+        this.totalUsers   = totalUsers;
+        this.usersWritten = new AtomicLong();
+        this.bytesWritten = new AtomicLong();
+        this.future       = new CompletableFuture<Void>();
+    }
+
+    /**
+     * Copy constructor of the progress of a save. The copy has the counters of the original at the
+     * time of the copy, but completes with it.
+     *
+     * @param progress Progress to be copied.
+     */
+    public SaveProgress(SaveProgress progress) {
+        this.path         = progress.getPath();
+        this.totalUsers   = progress.getTotalUsers();
+        this.usersWritten = new AtomicLong(progress.getUsersWritten());
+        this.bytesWritten = new AtomicLong(progress.getBytesWritten());
+        this.future       = progress.future;
+    }
+
+    /**
+     * Gets the path of the file being written.
+     *
+     * @return The path of the file being written.
+     */
+    public String getPath() {
+        return this.path;
+    }
+
+    /**
+     * Gets the number of users to be written.
+     *
+     * @return The number of users to be written.
+     */
+    public long getTotalUsers() {
+        return this.totalUsers;
+    }
+
+    /**
+     * Gets the number of users written so far.
+     *
+     * @return The number of users written so far.
+     */
+    public long getUsersWritten() {
+        return this.usersWritten.get();
+    }
+
+    /**
+     * Gets the number of bytes written so far.
+     *
+     * @return The number of bytes written so far.
+     */
+    public long getBytesWritten() {
+        return this.bytesWritten.get();
+    }
+
+    /**
+     * Gets the fraction of the users written so far.
+     *
+     * @return A value between <code>0</code> and <code>1</code> (when the save is done).
+     */
+    public double getProgress() {
+        if (this.isDone())
+            return 1;
+        else if (this.totalUsers == 0)
+            return 0;
+        return Math.min(1, (double) this.getUsersWritten() / this.totalUsers);
+    }
+
+    /**
+     * Gets the future completed when the file is fully written.
+     *
+     * @return A future completed when the file is fully written, or completed exceptionally with
+     *     an <code>IOException</code> if writing failed.
+     */
+    public CompletableFuture<Void> getFuture() {
+        return this.future;
+    }
+
+    /**
+     * Checks if the save is over, successfully or not.
+     *
+     * @return Whether the save is over.
+     */
+    public boolean isDone() {
+        return this.future.isDone();
+    }
+
+    /**
+     * Waits for the save to be over.
+     *
+     * @throws IOException Failed to write to the file, or interrupted while waiting.
+     */
+    public void await() throws IOException {
+        try {
+            this.future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for save!");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Registers that a user was written. Called by the thread writing the file.
+     */
+    public void addUserWritten() {
+        this.usersWritten.incrementAndGet();
+    }
+
+    /**
+     * Registers that bytes were written. Called by the thread writing the file.
+     *
+     * @param bytes Number of bytes written.
+     */
+    public void addBytesWritten(long bytes) {
+        this.bytesWritten.addAndGet(bytes);
+    }
+
+    /**
+     * Calculates the hash code of this progress.
+     *
+     * @return The hash code of this progress.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.path,
+                            this.totalUsers,
+                            this.getUsersWritten(),
+                            this.getBytesWritten(),
+                            this.isDone());
+    }
+
+    /**
+     * Checks if this progress is equal to another object.
+     *
+     * @param obj Object to be compared with this progress.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        SaveProgress progress = (SaveProgress) obj;
+        return this.path.equals(progress.getPath()) &&
+            this.totalUsers == progress.getTotalUsers() &&
+            this.getUsersWritten() == progress.getUsersWritten() &&
+            this.getBytesWritten() == progress.getBytesWritten() &&
+            this.isDone() == progress.isDone();
+    }
+
+    /**
+     * Creates a copy of this progress.
+     *
+     * @return A copy of this progress.
+     */
+    @Override
+    public SaveProgress clone() {
+        return new SaveProgress(this);
+    }
+
+    /**
+     * Creates a debug string representation of this progress.
+     *
+     * @return A debug string representation of this progress.
+     */
+    @Override
+    public String toString() {
+        return String.format(
+            "SaveProgress(path = \"%s\", users = %d/%d, bytes = %d, done = %s)",
+            this.path,
+            this.getUsersWritten(),
+            this.totalUsers,
+            this.getBytesWritten(),
+            this.isDone() ? "true" : "false");
+    }
+}
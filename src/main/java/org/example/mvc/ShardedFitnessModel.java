@@ -0,0 +1,583 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.time.DayOfWeek;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+/**
+ * A fitness application whose users are partitioned between many independent
+ * <code>FitnessModel</code>s (shards). Shard <code>i</code> of <code>N</code> only attributes the
+ * codes <code>i + 1</code>, <code>i + 1 + N</code>, <code>i + 1 + 2N</code>, ..., so users are
+ * routed to shards by their codes, and shards attribute codes without coordination between them.
+ * Queries over all users are run on all shards in parallel and their partial results merged, and
+ * each shard is saved to its own file.
+ */
+public class ShardedFitnessModel {
+    /** Independent applications the users are partitioned between. */
+    private FitnessModel[] shards;
+
+    /** Index of the shard the next user is added to. */
+    private int nextShard;
+
+    /**
+     * Creates a new empty sharded fitness application.
+     *
+     * @param shardCount Number of shards to partition users between.
+     * @throws FitnessModelException Non-positive number of shards.
+     */
+    public ShardedFitnessModel(int shardCount) throws FitnessModelException {
+        if (shardCount < 1)
+            throw new FitnessModelException("Non-positive number of shards!");
+
+        LocalDateTime now = LocalDateTime.now();
+        this.shards       = new FitnessModel[shardCount];
+        this.nextShard    = 0;
+        for (int i = 0; i < shardCount; ++i) {
+            this.shards[i] = new FitnessModel(new TreeMap<Long, User>(), now);
+            this.shards[i].setCodeAllocation(i + 1, shardCount);
+        }
+    }
+
+    /**
+     * Creates a new sharded fitness application from the value of its fields.
+     *
+     * @param shards Shards to partition users between. Shard <code>i</code> must only contain and
+     *     attribute codes congruent to <code>i + 1</code> modulo the number of shards.
+     * @throws FitnessModelException No shards, or shard with the wrong codes.
+     */
+    public ShardedFitnessModel(List<FitnessModel> shards) throws FitnessModelException {
+        if (shards.isEmpty())
+            throw new FitnessModelException("Non-positive number of shards!");
+
+        this.shards    = new FitnessModel[shards.size()];
+        this.nextShard = 0;
+        for (int i = 0; i < this.shards.length; ++i) {
+            this.shards[i] = shards.get(i).clone();
+            this.checkShard(i, this.shards[i]);
+        }
+    }
+
+    /**
+     * Copy constructor of a sharded fitness application.
+     *
+     * @param fitness Sharded fitness application to be copied.
+     */
+    public ShardedFitnessModel(ShardedFitnessModel fitness) {
+        this.shards    = fitness.getShards();
+        this.nextShard = fitness.nextShard;
+    }
+
+    /**
+     * Gets the shards users are partitioned between.
+     *
+     * @return The shards users are partitioned between.
+     */
+    private FitnessModel[] getShards() {
+        FitnessModel[] ret = new FitnessModel[this.shards.length];
+        for (int i = 0; i < ret.length; ++i)
+            ret[i] = this.shards[i].clone();
+        return ret;
+    }
+
+    /**
+     * Gets the number of shards users are partitioned between.
+     *
+     * @return The number of shards users are partitioned between.
+     */
+    public int getShardCount() {
+        return this.shards.length;
+    }
+
+    /**
+     * Gets a shard of this application.
+     *
+     * @param index Index of the shard.
+     * @return A copy of the shard of index <code>index</code>.
+     */
+    public FitnessModel getShard(int index) {
+        return this.shards[index].clone();
+    }
+
+    /**
+     * Gets the index of the shard a user belongs to.
+     *
+     * @param userCode Identifier code of the user.
+     * @return The index of the shard the user of code <code>userCode</code> belongs to.
+     */
+    public int getShardIndex(long userCode) {
+        return (int) Math.floorMod(userCode - 1, (long) this.shards.length);
+    }
+
+    /**
+     * Gets the shard a user belongs to.
+     *
+     * @param userCode Identifier code of the user.
+     * @return The shard the user of code <code>userCode</code> belongs to (not copied).
+     */
+    private FitnessModel getShardOf(long userCode) {
+        return this.shards[this.getShardIndex(userCode)];
+    }
+
+    /**
+     * Gets the users (and their activities) in all shards.
+     *
+     * @return The users (and their activities) in all shards.
+     */
+    public SortedMap<Long, User> getUsers() {
+        SortedMap<Long, User> ret = new TreeMap<Long, User>();
+        for (FitnessModel shard : this.shards)
+            ret.putAll(shard.getUsers());
+        return ret;
+    }
+
+    /**
+     * Gets a user identified by its code.
+     *
+     * @param userCode Identifier code of the user.
+     * @return The user of code <code>userCode</code>, <code>null</code> if not found.
+     */
+    public User getUser(long userCode) {
+        return this.getShardOf(userCode).getUser(userCode);
+    }
+
+    /**
+     * Checks if a user with a given code exists, without copying it.
+     *
+     * @param userCode Identifier code of the user.
+     * @return Whether a user of code <code>userCode</code> exists.
+     */
+    public boolean containsUser(long userCode) {
+        return this.getShardOf(userCode).containsUser(userCode);
+    }
+
+    /**
+     * Gets the current time in this application (the same in all shards).
+     *
+     * @return The current time in this application.
+     */
+    public LocalDateTime getNow() {
+        return this.shards[0].getNow();
+    }
+
+    /**
+     * Checks if this application has no users.
+     *
+     * @return Whether no shard has users.
+     */
+    public boolean isEmpty() {
+        return Arrays.stream(this.shards).allMatch(FitnessModel::isEmpty);
+    }
+
+    /**
+     * Sets when completed activities are compacted, in all shards.
+     *
+     * @param policy Retention policy (<code>null</code> to keep completed activities forever).
+     */
+    public void setRetentionPolicy(RetentionPolicy policy) {
+        for (FitnessModel shard : this.shards)
+            shard.setRetentionPolicy(policy);
+    }
+
+    /**
+     * Sets whether completed activities are stored as columns outside of the Java heap, in all
+     * shards.
+     *
+     * @param columnarHistory Whether completed activities are stored as columns.
+     */
+    public void setColumnarHistory(boolean columnarHistory) {
+        for (FitnessModel shard : this.shards)
+            shard.setColumnarHistory(columnarHistory);
+    }
+
+    /**
+     * Adds an user to the application. Users are added to each shard in turn.
+     *
+     * @param user User to be added. Its identifier code will be ignored.
+     * @return The identifier code that was attributed to the user.
+     */
+    public long addUser(User user) {
+        long code      = this.shards[this.nextShard].addUser(user);
+        this.nextShard = (this.nextShard + 1) % this.shards.length;
+        return code;
+    }
+
+    /**
+     * Sets the days in which a user's training plan is executed.
+     *
+     * @param userCode Identifier code of the user.
+     * @param days Days in which the training plan is executed.
+     * @throws FitnessModelException User not found.
+     * @throws ActivityOverlapException Activity overlap.
+     */
+    public void setTrainingPlanDays(long userCode, SortedSet<DayOfWeek> days)
+        throws FitnessModelException, ActivityOverlapException {
+
+        this.getShardOf(userCode).setTrainingPlanDays(userCode, days);
+    }
+
+    /**
+     * Removes a user from from the application if it exists.
+     *
+     * @param userCode Identifier code of the user to be removed.
+     */
+    public void removeUser(long userCode) {
+        this.getShardOf(userCode).removeUser(userCode);
+    }
+
+    /**
+     * Adds an isolated activity to an user.
+     *
+     * @param userCode Identifier code of the user to add the activity to.
+     * @param activity Activity to be added to the user. Its bpm will be replaced by the user's.
+     * @throws FitnessModelException User not found.
+     * @throws FitnessModelException Activity starts before current date.
+     * @throws ActivityOverlapException Activity overlaps with existing activities.
+     */
+    public void addActivity(long userCode, Activity activity)
+        throws FitnessModelException, ActivityOverlapException {
+
+        this.getShardOf(userCode).addActivity(userCode, activity);
+    }
+
+    /**
+     * Adds many isolated activities to an user at once. Either all activities are added or none is.
+     *
+     * @param userCode Identifier code of the user to add the activities to.
+     * @param activities Activities to be added to the user. Their bpm will be replaced by the
+     *     user's.
+     * @throws FitnessModelException User not found.
+     * @throws FitnessModelException Activity starts before current date.
+     * @throws ActivityOverlapException Activity overlaps with existing activities or with another
+     *     activity in the batch.
+     */
+    public void addActivities(long userCode, List<Activity> activities)
+        throws FitnessModelException, ActivityOverlapException {
+
+        this.getShardOf(userCode).addActivities(userCode, activities);
+    }
+
+    /**
+     * Adds an isolated activity to an user's training plan.
+     *
+     * @param userCode Identifier code of the user to add the activity to.
+     * @param activity Activity to be added to the user's training plan. Its bpm will be replaced by
+     *     the user's and its YYYY/MM/DD part of the date will be ignored.
+     * @param times Number of time activity was repeated.
+     * @throws FitnessModelException User not found.
+     * @throws ActivityOverlapException Activity overlaps with existing activities.
+     */
+    public void addActivityToTrainingPlan(long userCode, Activity activity, int times)
+        throws FitnessModelException, ActivityOverlapException {
+
+        this.getShardOf(userCode).addActivityToTrainingPlan(userCode, activity, times);
+    }
+
+    /**
+     * Advances time to another date in all shards, in parallel.
+     *
+     * @param date Date to make the new current date.
+     * @throws FitnessModelException Date not after current date (of every shard). No shard is
+     *     changed.
+     * @throws FitnessModelException Failed to move activities to disk. The shards that didn't fail
+     *     keep the new date, and leaping to the same date again finishes the leap.
+     */
+    public void leapForward(LocalDateTime date) throws FitnessModelException {
+        // Checked on every shard before any leaps, as leaps can't be undone
+        boolean behind = false;
+        for (FitnessModel shard : this.shards) {
+            if (date.isBefore(shard.getNow()))
+                throw new FitnessModelException("Date not after current date!");
+            behind |= date.isAfter(shard.getNow());
+        }
+        if (!behind)
+            throw new FitnessModelException("Date not after current date!");
+
+        // Shards already at the date (after a failed leap) don't leap again
+        Exception error = this.forEachShard((i, shard) -> {
+            if (date.isAfter(shard.getNow()))
+                shard.leapForward(date);
+        });
+        if (error != null)
+            throw (FitnessModelException) error;
+    }
+
+    /**
+     * Runs a query that consumes all users, one shard after the other. Users aren't consumed in
+     * order of their codes.
+     *
+     * @param query Query to be run.
+     */
+    public void runQuery(Consumer<User> query) {
+        for (FitnessModel shard : this.shards)
+            shard.runQuery(query);
+    }
+
+    /**
+     * Runs a query that consumes a page of users, sorted by code, without copying them.
+     *
+     * @param query Query to be run, that must not modify nor keep the users.
+     * @param after Only consider users with codes greater than this one (the code of the last user
+     *     in the previous page).
+     * @param limit Maximum number of users to consume.
+     */
+    public void runQuery(Consumer<User> query, long after, int limit) {
+        // Each shard's page has all the users of the merged page that belong to it
+        SortedMap<Long, User> page = new TreeMap<Long, User>();
+        for (FitnessModel shard : this.shards)
+            shard.runQuery((u) -> { page.put(u.getCode(), u); }, after, limit);
+
+        int consumed = 0;
+        for (User u : page.values()) {
+            if (consumed++ >= limit)
+                break;
+            query.accept(u);
+        }
+    }
+
+    /**
+     * Runs a query that consumes only one user.
+     *
+     * @param query Query to be run.
+     * @param userCode Identifier code of the user to consider.
+     * @throws FitnessModelException User not found.
+     */
+    public void runQuery(Consumer<User> query, long userCode) throws FitnessModelException {
+        this.getShardOf(userCode).runQuery(query, userCode);
+    }
+
+    /**
+     * Runs a query that consumes all users, by running a copy of it on each shard in parallel and
+     * merging their results. Each shard keeps its result cached while its users don't change.
+     *
+     * @param <Q> Type of the query.
+     * @param query Query to be run, that must not have consumed any user. Not modified.
+     * @return A copy of <code>query</code> after consuming all users.
+     */
+    public <Q extends MergeableQuery<Q>> Q runMergedQuery(Q query) {
+        List<Q> partials = new ArrayList<Q>();
+        for (int i = 0; i < this.shards.length; ++i)
+            partials.add(null);
+        this.forEachShard((i, shard) -> { partials.set(i, shard.runCachedQuery(query.clone())); });
+
+        Q ret = query.clone();
+        for (Q partial : partials) {
+            try {
+                ret.merge(partial);
+            } catch (QueryException e) {} // Can't happen
+        }
+        return ret;
+    }
+
+    /**
+     * Runs an aggregation query over all users, by running it on each shard in parallel and merging
+     * their results.
+     *
+     * @param query Query to be run, that must not have consumed any user. Not modified.
+     * @return A copy of <code>query</code> after consuming all users.
+     */
+    public ActivityQuery runParallelQuery(ActivityQuery query) {
+        ActivityQuery[] partials = new ActivityQuery[this.shards.length];
+        this.forEachShard((i, shard) -> { partials[i] = shard.runParallelQuery(query); });
+
+        ActivityQuery ret = query.clone();
+        for (ActivityQuery partial : partials) {
+            try {
+                ret.merge(partial);
+            } catch (QueryException e) {} // Can't happen
+        }
+        return ret;
+    }
+
+    /**
+     * Gets the path of the file a shard is saved to.
+     *
+     * @param path Path of the application.
+     * @param index Index of the shard.
+     * @return The path of the file shard <code>index</code> is saved to.
+     */
+    public static String getShardPath(String path, int index) {
+        return path + "." + index;
+    }
+
+    /**
+     * Loads the data of this application from the files of its shards (see
+     * <code>getShardPath</code>), in parallel. Nothing is changed if any file fails to load.
+     *
+     * @param path Path of the application.
+     * @throws IOException Failed to read file.
+     * @throws IOException File with the wrong shard.
+     * @throws ClassNotFoundException Bad file type.
+     * @throws ClassCastException Bad file type.
+     */
+    public void loadFromFiles(String path)
+        throws IOException, ClassNotFoundException, ClassCastException {
+
+        FitnessModel[] loaded = new FitnessModel[this.shards.length];
+        Exception      error  = this.forEachShard((i, shard) -> {
+            loaded[i] = new FitnessModel();
+            loaded[i].loadFromFile(ShardedFitnessModel.getShardPath(path, i));
+            this.checkShard(i, loaded[i]);
+        });
+
+        if (error instanceof FitnessModelException)
+            throw new IOException(error.getMessage());
+        else if (error instanceof IOException)
+            throw (IOException) error;
+        else if (error != null)
+            throw (ClassNotFoundException) error;
+
+        this.shards    = loaded;
+        this.nextShard = 0;
+    }
+
+    /**
+     * Saves the data of this application, each shard to its own file (see
+     * <code>getShardPath</code>), in parallel.
+     *
+     * @param path Path of the application.
+     * @throws IOException Failed to write to file.
+     */
+    public void saveToFiles(String path) throws IOException {
+        Exception error = this.forEachShard(
+            (i, shard) -> { shard.saveToFile(ShardedFitnessModel.getShardPath(path, i)); });
+        if (error != null)
+            throw (IOException) error;
+    }
+
+    /**
+     * Checks that a shard only contains and attributes the codes of its index.
+     *
+     * @param index Index of the shard.
+     * @param shard Shard to be checked.
+     * @throws FitnessModelException Shard with the wrong codes.
+     */
+    private void checkShard(int index, FitnessModel shard) throws FitnessModelException {
+        if (shard.getCodeStride() != this.shards.length ||
+            this.getShardIndex(shard.getNextUserCode()) != index)
+            throw new FitnessModelException("Shard " + index + " has the wrong user codes!");
+
+        long[] wrong = new long[] { 0 };
+        shard.runQuery((u) -> {
+            if (this.getShardIndex(u.getCode()) != index)
+                wrong[0]++;
+        });
+        if (wrong[0] > 0)
+            throw new FitnessModelException("Shard " + index + " has the wrong user codes!");
+    }
+
+    /** Something done to a shard, that may fail. */
+    @FunctionalInterface
+    private interface ShardAction {
+        /**
+         * Does something to a shard.
+         *
+         * @param index Index of the shard.
+         * @param shard Shard to act on.
+         * @throws Exception Failure.
+         */
+        public void run(int index, FitnessModel shard) throws Exception;
+    }
+
+    /**
+     * Does something to all shards in parallel. Every shard is acted on, even if the action fails
+     * on another one.
+     *
+     * @param action What to do to each shard.
+     * @return The first checked exception thrown by <code>action</code>, <code>null</code> if none
+     *     was.
+     * @throws RuntimeException The first exception thrown by <code>action</code>, rethrown as is
+     *     when unchecked.
+     * @throws Error The first error thrown by <code>action</code>, rethrown as is.
+     */
+    private Exception forEachShard(ShardAction action) {
+        Throwable[] error = new Throwable[] { null };
+        IntStream.range(0, this.shards.length).parallel().forEach((i) -> {
+            try {
+                action.run(i, this.shards[i]);
+            } catch (Throwable e) {
+                synchronized (error) {
+                    if (error[0] == null)
+                        error[0] = e;
+                }
+            }
+        });
+
+        if (error[0] instanceof RuntimeException)
+            throw (RuntimeException) error[0];
+        else if (error[0] instanceof Error)
+            throw (Error) error[0];
+        return (Exception) error[0];
+    }
+
+    /**
+     * Checks if this sharded fitness application is equal to another object.
+     *
+     * @param obj Object to be compared with this sharded fitness application.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        ShardedFitnessModel fitness = (ShardedFitnessModel) obj;
+        return Arrays.equals(this.shards, fitness.shards);
+    }
+
+    /**
+     * Calculates the hash code of this sharded fitness application.
+     *
+     * @return The hash code of this sharded fitness application.
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.shards);
+    }
+
+    /**
+     * Creates a deep copy of this sharded fitness application.
+     *
+     * @return A deep copy of this sharded fitness application.
+     */
+    @Override
+    public ShardedFitnessModel clone() {
+        return new ShardedFitnessModel(this);
+    }
+
+    /**
+     * Creates a debug string representation of this sharded fitness application.
+     *
+     * @return A debug string representation of this sharded fitness application.
+     */
+    @Override
+    public String toString() {
+        return String.format("ShardedFitnessModel(shards = %d)", this.shards.length);
+    }
+}
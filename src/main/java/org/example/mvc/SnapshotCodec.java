@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+
+/**
+ * A way of compressing the blocks of a snapshot file (see <code>SnapshotFile</code>). Blocks are
+ * compressed and decompressed independently of each other, possibly by many threads at the same
+ * time, so codecs must be thread-safe.
+ */
+public interface SnapshotCodec {
+    /**
+     * Gets the name of this codec. It's written to files, so that they're decompressed by the
+     * codec registered with the same name (see <code>SnapshotFile.registerCodec</code>).
+     *
+     * @return The name of this codec.
+     */
+    public String getName();
+
+    /**
+     * Compresses a block.
+     *
+     * @param block Bytes in the block.
+     * @param length Number of bytes in the block, at the start of <code>block</code>.
+     * @return The compressed block.
+     * @throws IOException Failed to compress the block.
+     */
+    public byte[] compress(byte[] block, int length) throws IOException;
+
+    /**
+     * Decompresses a block.
+     *
+     * @param data Compressed block.
+     * @param block Where to place the bytes in the block.
+     * @param length Number of bytes in the block, placed at the start of <code>block</code>.
+     * @throws IOException Corrupt block.
+     */
+    public void decompress(byte[] data, byte[] block, int length) throws IOException;
+}
@@ -0,0 +1,750 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.function.LongConsumer;
+import java.util.zip.CRC32C;
+
+/**
+ * Writes and reads files as sequences of blocks, compressed independently of each other so that
+ * they can be compressed and decompressed in parallel, while the file is streamed. A file starts
+ * with the name of the codec its blocks were compressed with, and each block starts with its size
+ * before and after being compressed and a CRC32C checksum. An empty block marks the end of the
+ * file, so that truncated files are detected.
+ *
+ * <p>Files are written to a temporary file next to them, that only replaces them atomically once
+ * it's fully written and synced to disk. So, a crash while writing leaves the previous file
+ * intact. Files can be verified without being decompressed (see <code>verify</code>).</p>
+ */
+public class SnapshotFile {
+    /** Number of bytes in each block, before being compressed. */
+    public static final int BLOCK_SIZE = 1 << 18;
+
+    /** Default number of threads blocks are compressed and decompressed by. */
+    public static final int DEFAULT_THREADS = Runtime.getRuntime().availableProcessors();
+
+    /** Codec files are compressed with by default. */
+    public static final SnapshotCodec DEFAULT_CODEC = new DeflateSnapshotCodec();
+
+    /** First bytes of every snapshot file (<code>"FITS"</code>). */
+    private static final int MAGIC = 0x46495453;
+
+    /** Version of the format of snapshot files. */
+    private static final int FORMAT = 2;
+
+    /** Number of bytes before the data of each block: its sizes and checksum. */
+    private static final int BLOCK_HEADER_SIZE = 12;
+
+    /** Maximum size of a compressed block, so that corrupt sizes aren't allocated. */
+    private static final int MAX_STORED_SIZE = SnapshotFile.BLOCK_SIZE * 2 + 1024;
+
+    /** Codecs files can be decompressed with, by name. */
+    private static final Map<String, SnapshotCodec> CODECS =
+        new ConcurrentHashMap<String, SnapshotCodec>();
+
+    static {
+        SnapshotFile.registerCodec(new PlainSnapshotCodec());
+        SnapshotFile.registerCodec(new DeflateSnapshotCodec());
+    }
+
+    /**
+     * An output stream that compresses blocks, possibly in parallel, and writes them to a file.
+     * The file only replaces the original one when <code>commit</code> is called. Closing the
+     * stream without committing it discards everything written.
+     */
+    public static class BlockOutputStream extends OutputStream {
+        /** File written to, that replaces <code>path</code> once it's complete. */
+        private final FileChannel channel;
+
+        /** Path of the file written to. */
+        private final Path temporary;
+
+        /** Path of the file to be replaced. */
+        private final Path path;
+
+        /** Codec blocks are compressed with. */
+        private final SnapshotCodec codec;
+
+        /** Threads blocks are compressed by, <code>null</code> to compress them in this one. */
+        private final ExecutorService executor;
+
+        /** Blocks being compressed, in the order they're written to the file. */
+        private final Deque<Future<ByteBuffer[]>> pending;
+
+        /** Maximum number of blocks being compressed at the same time. */
+        private final int maxPending;
+
+        /** Called with the number of bytes each time they're written to the file. */
+        private final LongConsumer written;
+
+        /** Bytes of the block not yet compressed. */
+        private byte[] block;
+
+        /** Number of bytes in <code>block</code>. */
+        private int length;
+
+        /** Whether writing failed, so that the file must not be ended as if it were complete. */
+        private boolean failed;
+
+        /**
+         * Creates a new stream that writes to a temporary file, after its header.
+         *
+         * @param channel Temporary file to write to.
+         * @param temporary Path of the temporary file.
+         * @param path Path of the file the temporary file replaces once it's complete.
+         * @param codec Codec blocks are compressed with.
+         * @param threads Number of threads blocks are compressed by.
+         * @param written Called with the number of bytes each time they're written to the file.
+         */
+        public BlockOutputStream(FileChannel   channel,
+                                 Path          temporary,
+                                 Path          path,
+                                 SnapshotCodec codec,
+                                 int           threads,
+                                 LongConsumer  written) {
+
+            this.channel    = channel;
+            this.temporary  = temporary;
+            this.path       = path;
+            this.codec      = codec;
+            this.executor   = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+            this.pending    = new ArrayDeque<Future<ByteBuffer[]>>();
+            this.maxPending = threads * 2;
+            this.written    = written;
+            this.block      = new byte[SnapshotFile.BLOCK_SIZE];
+            this.length     = 0;
+            this.failed     = false;
+        }
+
+        /**
+         * Writes a byte.
+         *
+         * @param b Byte to be written.
+         * @throws IOException Failed to compress or write to the file.
+         */
+        @Override
+        public void write(int b) throws IOException {
+            if (this.length == this.block.length)
+                this.endBlock();
+            this.block[this.length++] = (byte) b;
+        }
+
+        /**
+         * Writes many bytes.
+         *
+         * @param b Bytes to be written.
+         * @param off Position of the first byte in <code>b</code>.
+         * @param len Number of bytes to write.
+         * @throws IOException Failed to compress or write to the file.
+         */
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (this.length == this.block.length)
+                    this.endBlock();
+
+                int n = Math.min(len, this.block.length - this.length);
+                System.arraycopy(b, off, this.block, this.length, n);
+                this.length += n;
+                off         += n;
+                len         -= n;
+            }
+        }
+
+        /**
+         * Compresses the current block and starts a new one. Blocks whose compression is over are
+         * written to the file, in order.
+         *
+         * @throws IOException Failed to compress or write to the file.
+         */
+        private void endBlock() throws IOException {
+            if (this.failed)
+                throw new IOException("Failed to write snapshot file!");
+            if (this.length == 0)
+                return;
+
+            try {
+                byte[] block  = this.block;
+                int    length = this.length;
+                if (this.executor == null) {
+                    this.writeBlock(this.compress(block, length));
+                } else {
+                    this.pending.add(this.executor.submit(() -> this.compress(block, length)));
+                    this.block = new byte[SnapshotFile.BLOCK_SIZE]; // Old one still being read
+                    while (this.pending.size() > this.maxPending)
+                        this.writeBlock(SnapshotFile.await(this.pending.remove()));
+                }
+                this.length = 0;
+            } catch (IOException | RuntimeException e) {
+                this.failed = true;
+                throw e;
+            }
+        }
+
+        /**
+         * Compresses a block.
+         *
+         * @param block Bytes in the block.
+         * @param length Number of bytes in the block.
+         * @return The header of the block, followed by its compressed data.
+         * @throws IOException Failed to compress the block.
+         */
+        private ByteBuffer[] compress(byte[] block, int length) throws IOException {
+            byte[] data = this.codec.compress(block, length);
+            return new ByteBuffer[] { SnapshotFile.getBlockHeader(length, data),
+                                      ByteBuffer.wrap(data) };
+        }
+
+        /**
+         * Writes a compressed block to the file.
+         *
+         * @param buffers The header of the block, followed by its compressed data.
+         * @throws IOException Failed to write to the file.
+         */
+        private void writeBlock(ByteBuffer[] buffers) throws IOException {
+            long n = 0;
+            for (ByteBuffer buffer : buffers)
+                while (buffer.hasRemaining())
+                    n += this.channel.write(buffers);
+            this.written.accept(n);
+        }
+
+        /**
+         * Writes all blocks to the file, followed by the empty block that ends it, syncs it to
+         * disk, and replaces the original file with it. Must only be called once everything has
+         * been written successfully. If it fails, the file is deleted, leaving the original one
+         * intact.
+         *
+         * @throws IOException Failed to compress or write to the file, or a previous write failed.
+         */
+        public void commit() throws IOException {
+            if (!this.channel.isOpen())
+                throw new IOException("Snapshot file already closed!");
+
+            boolean complete = false;
+            try {
+                this.endBlock();
+                while (!this.pending.isEmpty())
+                    this.writeBlock(SnapshotFile.await(this.pending.remove()));
+                this.writeBlock(new ByteBuffer[] { SnapshotFile.getBlockHeader(0, new byte[0]) });
+                this.channel.force(true);
+                complete = true;
+            } finally {
+                this.release(complete);
+            }
+
+            Files.move(this.temporary,
+                       this.path,
+                       StandardCopyOption.ATOMIC_MOVE,
+                       StandardCopyOption.REPLACE_EXISTING);
+            SnapshotFile.syncDirectory(this.path);
+        }
+
+        /**
+         * Closes the file. If it wasn't committed, it's deleted, leaving the original one intact.
+         *
+         * @throws IOException Failed to close or delete the file.
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.channel.isOpen())
+                this.release(false);
+        }
+
+        /**
+         * Stops the threads blocks are compressed by and closes the file.
+         *
+         * @param keep Whether to keep the file, or to delete it.
+         * @throws IOException Failed to close or delete the file.
+         */
+        private void release(boolean keep) throws IOException {
+            if (this.executor != null)
+                this.executor.shutdownNow();
+            this.channel.close();
+            if (!keep)
+                Files.deleteIfExists(this.temporary);
+        }
+    }
+
+    /** An input stream that reads blocks from a file and decompresses them, possibly ahead. */
+    private static class BlockInputStream extends InputStream {
+        /** File read from. */
+        private final FileChannel channel;
+
+        /** Codec blocks are decompressed with. */
+        private final SnapshotCodec codec;
+
+        /** Threads blocks are decompressed by, <code>null</code> to decompress them in this one. */
+        private final ExecutorService executor;
+
+        /** Blocks read from the file and being decompressed, in order. */
+        private final Deque<Future<byte[]>> pending;
+
+        /** Maximum number of blocks being decompressed at the same time. */
+        private final int maxPending;
+
+        /** Bytes of the block being consumed. */
+        private byte[] block;
+
+        /** Position of the next byte to be consumed in <code>block</code>. */
+        private int position;
+
+        /** Whether the empty block that ends the file has been read. */
+        private boolean ended;
+
+        /**
+         * Creates a new stream that reads from a file, after its header.
+         *
+         * @param channel File to read from.
+         * @param codec Codec blocks are decompressed with.
+         * @param threads Number of threads blocks are decompressed by.
+         */
+        public BlockInputStream(FileChannel channel, SnapshotCodec codec, int threads) {
+            this.channel    = channel;
+            this.codec      = codec;
+            this.executor   = threads > 1 ? Executors.newFixedThreadPool(threads) : null;
+            this.pending    = new ArrayDeque<Future<byte[]>>();
+            this.maxPending = Math.max(1, threads * 2);
+            this.block      = new byte[0];
+            this.position   = 0;
+            this.ended      = false;
+        }
+
+        /**
+         * Reads a byte.
+         *
+         * @return The byte read, <code>-1</code> at the end of the file.
+         * @throws IOException Failed to read from the file, or corrupt file.
+         */
+        @Override
+        public int read() throws IOException {
+            if (!this.fill())
+                return -1;
+            return this.block[this.position++] & 0xff;
+        }
+
+        /**
+         * Reads many bytes.
+         *
+         * @param b Where to place the bytes read.
+         * @param off Position of the first byte in <code>b</code>.
+         * @param len Maximum number of bytes to read.
+         * @return The number of bytes read, <code>-1</code> at the end of the file.
+         * @throws IOException Failed to read from the file, or corrupt file.
+         */
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0)
+                return 0;
+            if (!this.fill())
+                return -1;
+
+            int n = Math.min(len, this.block.length - this.position);
+            System.arraycopy(this.block, this.position, b, off, n);
+            this.position += n;
+            return n;
+        }
+
+        /**
+         * Moves on to the next block, if all bytes in the current one have been consumed. Blocks
+         * ahead are read from the file and start being decompressed.
+         *
+         * @return Whether there are bytes left to be consumed.
+         * @throws IOException Failed to read from the file, or corrupt file.
+         */
+        private boolean fill() throws IOException {
+            while (this.position == this.block.length) {
+                while (!this.ended && this.pending.size() < this.maxPending) {
+                    Callable<byte[]> block = this.readBlock();
+                    if (block == null)
+                        break;
+
+                    if (this.executor == null) {
+                        FutureTask<byte[]> task = new FutureTask<byte[]>(block);
+                        task.run();
+                        this.pending.add(task);
+                    } else {
+                        this.pending.add(this.executor.submit(block));
+                    }
+                }
+
+                if (this.pending.isEmpty())
+                    return false;
+                this.block    = SnapshotFile.await(this.pending.remove());
+                this.position = 0;
+            }
+            return true;
+        }
+
+        /**
+         * Reads the next block from the file.
+         *
+         * @return A task that decompresses the block, <code>null</code> at the end of the file.
+         * @throws IOException Failed to read from the file, or corrupt file.
+         */
+        private Callable<byte[]> readBlock() throws IOException {
+            ByteBuffer header =
+                SnapshotFile.readFully(this.channel, SnapshotFile.BLOCK_HEADER_SIZE);
+            int length = SnapshotFile.checkBlockHeader(header);
+            if (length == 0) {
+                SnapshotFile.checkChecksum(header, ByteBuffer.allocate(0));
+                SnapshotFile.checkEnd(this.channel);
+                this.ended = true;
+                return null;
+            }
+
+            ByteBuffer data = SnapshotFile.readFully(this.channel, header.getInt(4));
+            return () -> {
+                SnapshotFile.checkChecksum(header, data.duplicate());
+                byte[] block = new byte[length];
+                this.codec.decompress(data.array(), block, length);
+                return block;
+            };
+        }
+
+        /**
+         * Closes the file.
+         *
+         * @throws IOException Failed to close the file.
+         */
+        @Override
+        public void close() throws IOException {
+            if (this.executor != null)
+                this.executor.shutdownNow();
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Registers a codec, so that files compressed with it can be read. Replaces any other codec
+     * with the same name.
+     *
+     * @param codec Codec to be registered.
+     */
+    public static void registerCodec(SnapshotCodec codec) {
+        SnapshotFile.CODECS.put(codec.getName(), codec);
+    }
+
+    /**
+     * Gets a registered codec.
+     *
+     * @param name Name of the codec.
+     * @return The codec named <code>name</code>, <code>null</code> if there's none.
+     */
+    public static SnapshotCodec getCodec(String name) {
+        return SnapshotFile.CODECS.get(name);
+    }
+
+    /**
+     * Creates a new snapshot file and opens it for writing. Committing the stream ends the file and
+     * atomically replaces any existing one. Until then, the file is written to a temporary file in
+     * the same directory, that is deleted if the stream is closed without being committed.
+     *
+     * @param path Path to the file.
+     * @param codec Codec blocks are compressed with. It must be registered for the file to be
+     *              read.
+     * @param threads Number of threads blocks are compressed by.
+     * @param written Called with the number of bytes each time they're written to the file.
+     * @return A stream that writes to the file.
+     * @throws IOException Failed to create or write to the file.
+     */
+    public static BlockOutputStream newOutputStream(Path          path,
+                                                    SnapshotCodec codec,
+                                                    int           threads,
+                                                    LongConsumer  written) throws IOException {
+
+        Path        temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        FileChannel channel   = FileChannel.open(temporary,
+                                                 StandardOpenOption.CREATE,
+                                                 StandardOpenOption.TRUNCATE_EXISTING,
+                                                 StandardOpenOption.WRITE);
+        try {
+            byte[]     name   = codec.getName().getBytes(StandardCharsets.UTF_8);
+            ByteBuffer header = ByteBuffer.allocate(14 + name.length);
+            header.putInt(SnapshotFile.MAGIC).putInt(SnapshotFile.FORMAT);
+            header.putShort((short) name.length).put(name);
+            header.putInt(SnapshotFile.checksum(header.array(), 0, header.position())).flip();
+            while (header.hasRemaining())
+                channel.write(header);
+            written.accept(header.limit());
+        } catch (IOException e) {
+            channel.close();
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+        return new BlockOutputStream(channel, temporary, path, codec, threads, written);
+    }
+
+    /**
+     * Creates a new snapshot file and opens it for writing. See
+     * <code>newOutputStream(Path, SnapshotCodec, int, LongConsumer)</code>.
+     *
+     * @param path Path to the file.
+     * @param codec Codec blocks are compressed with. It must be registered for the file to be
+     *              read.
+     * @param threads Number of threads blocks are compressed by.
+     * @return A stream that writes to the file.
+     * @throws IOException Failed to create or write to the file.
+     */
+    public static BlockOutputStream newOutputStream(Path path, SnapshotCodec codec, int threads)
+        throws IOException {
+        return SnapshotFile.newOutputStream(path, codec, threads, n -> {});
+    }
+
+    /**
+     * Opens a snapshot file for reading. The stream fails if the file is truncated or corrupt.
+     *
+     * @param path Path to the file.
+     * @param threads Number of threads blocks are decompressed by.
+     * @return A stream that reads from the file.
+     * @throws IOException Failed to open or read from the file.
+     * @throws IOException Not a snapshot file, or compressed with an unknown codec.
+     */
+    public static InputStream newInputStream(Path path, int threads) throws IOException {
+        FileChannel channel = FileChannel.open(path);
+        try {
+            SnapshotCodec codec = SnapshotFile.getCodec(SnapshotFile.readHeader(channel));
+            if (codec == null)
+                throw new IOException("Unknown snapshot codec!");
+            return new BlockInputStream(channel, codec, threads);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Checks the integrity of a snapshot file, at the speed it's read from disk. Blocks are
+     * checked against their checksums, without being decompressed.
+     *
+     * @param path Path to the file.
+     * @return The number of bytes in the file, after being decompressed.
+     * @throws IOException Failed to open or read from the file.
+     * @throws IOException Not a snapshot file, or truncated or corrupt file.
+     */
+    public static long verify(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path)) {
+            SnapshotFile.readHeader(channel);
+
+            ByteBuffer header = ByteBuffer.allocate(SnapshotFile.BLOCK_HEADER_SIZE);
+            ByteBuffer data   = ByteBuffer.allocateDirect(SnapshotFile.MAX_STORED_SIZE);
+            long       ret    = 0;
+            while (true) {
+                SnapshotFile.readFully(channel, header.clear());
+                int length = SnapshotFile.checkBlockHeader(header);
+                SnapshotFile.readFully(channel, data.clear().limit(header.getInt(4)));
+                SnapshotFile.checkChecksum(header, data);
+
+                if (length == 0) {
+                    SnapshotFile.checkEnd(channel);
+                    return ret;
+                }
+                ret += length;
+            }
+        }
+    }
+
+    /**
+     * Reads the header of a snapshot file.
+     *
+     * @param channel File to read from, at its start.
+     * @return The name of the codec the file was compressed with.
+     * @throws IOException Failed to read from the file.
+     * @throws IOException Not a snapshot file, or corrupt header.
+     */
+    private static String readHeader(FileChannel channel) throws IOException {
+        ByteBuffer header = SnapshotFile.readFully(channel, 10);
+        if (header.getInt() != SnapshotFile.MAGIC || header.getInt() != SnapshotFile.FORMAT)
+            throw new IOException("Not a snapshot file!");
+
+        int        size = header.getShort() & 0xffff;
+        ByteBuffer name = SnapshotFile.readFully(channel, size + 4);
+
+        byte[] bytes = new byte[10 + size];
+        header.flip().get(bytes, 0, 10);
+        name.get(bytes, 10, size);
+        if (name.getInt() != SnapshotFile.checksum(bytes, 0, bytes.length))
+            throw new IOException("Corrupt snapshot file!");
+        return new String(bytes, 10, size, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Creates the header of a block.
+     *
+     * @param length Number of bytes in the block.
+     * @param data Compressed block.
+     * @return The header of the block, ready to be written.
+     */
+    private static ByteBuffer getBlockHeader(int length, byte[] data) {
+        ByteBuffer ret = ByteBuffer.allocate(SnapshotFile.BLOCK_HEADER_SIZE);
+        ret.putInt(length).putInt(data.length);
+
+        CRC32C crc = new CRC32C();
+        crc.update(ret.array(), 0, 8);
+        crc.update(data);
+        return ret.putInt((int) crc.getValue()).flip();
+    }
+
+    /**
+     * Checks the sizes in the header of a block.
+     *
+     * @param header Header of the block.
+     * @return The number of bytes in the block, <code>0</code> for the block that ends the file.
+     * @throws IOException Corrupt header.
+     */
+    private static int checkBlockHeader(ByteBuffer header) throws IOException {
+        int length = header.getInt(0);
+        int stored = header.getInt(4);
+        if (length < 0 || length > SnapshotFile.BLOCK_SIZE || stored < 0 ||
+            stored > SnapshotFile.MAX_STORED_SIZE || (length == 0 && stored != 0))
+            throw new IOException("Corrupt snapshot file!");
+        return length;
+    }
+
+    /**
+     * Checks a block against the checksum in its header.
+     *
+     * @param header Header of the block.
+     * @param data Compressed block, consumed by this method.
+     * @throws IOException Checksum mismatch.
+     */
+    private static void checkChecksum(ByteBuffer header, ByteBuffer data) throws IOException {
+        CRC32C crc = new CRC32C();
+        crc.update(header.array(), 0, 8);
+        crc.update(data);
+        if ((int) crc.getValue() != header.getInt(8))
+            throw new IOException("Snapshot file checksum mismatch!");
+    }
+
+    /**
+     * Checks that nothing follows the block that ends a file.
+     *
+     * @param channel File being read, after its last block.
+     * @throws IOException Failed to read from the file, or data after its end.
+     */
+    private static void checkEnd(FileChannel channel) throws IOException {
+        if (channel.position() != channel.size())
+            throw new IOException("Corrupt snapshot file!");
+    }
+
+    /**
+     * Calculates the CRC32C checksum of bytes.
+     *
+     * @param bytes Bytes to be checksummed.
+     * @param off Position of the first byte in <code>bytes</code>.
+     * @param len Number of bytes to checksum.
+     * @return The checksum of the bytes.
+     */
+    private static int checksum(byte[] bytes, int off, int len) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, off, len);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Syncs the directory of a file to disk, so that the file being renamed into it survives a
+     * crash. Not supported on every platform, where it's skipped.
+     *
+     * @param path Path to the file.
+     */
+    private static void syncDirectory(Path path) {
+        Path directory = path.toAbsolutePath().getParent();
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {} // Directories can't be opened on some platforms
+    }
+
+    /**
+     * Reads an exact number of bytes from a file.
+     *
+     * @param channel File to read from.
+     * @param length Number of bytes to read.
+     * @return A buffer with the bytes read, ready to be consumed.
+     * @throws IOException Failed to read from the file.
+     * @throws EOFException File ended before all bytes were read.
+     */
+    private static ByteBuffer readFully(FileChannel channel, int length) throws IOException {
+        return SnapshotFile.readFully(channel, ByteBuffer.allocate(length));
+    }
+
+    /**
+     * Reads bytes from a file until a buffer is full.
+     *
+     * @param channel File to read from.
+     * @param buffer Where to place the bytes read, up to its limit.
+     * @return <code>buffer</code>, flipped so that the bytes read are ready to be consumed.
+     * @throws IOException Failed to read from the file.
+     * @throws EOFException File ended before the buffer was full.
+     */
+    private static ByteBuffer readFully(FileChannel channel, ByteBuffer buffer)
+        throws IOException {
+
+        while (buffer.hasRemaining())
+            if (channel.read(buffer) < 0)
+                throw new EOFException("Truncated snapshot file!");
+        return buffer.flip();
+    }
+
+    /**
+     * Waits for a block to be compressed or decompressed by another thread.
+     *
+     * @param <T> Type of the result.
+     * @param future Compression or decompression of the block.
+     * @return The result of the compression or decompression.
+     * @throws IOException Failed to compress or decompress the block.
+     */
+    private static <T> T await(Future<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while accessing snapshot!");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+                throw (IOException) cause;
+            else if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            else if (cause instanceof Error)
+                throw (Error) cause;
+            throw new IOException(cause.getMessage(), cause);
+        }
+    }
+}
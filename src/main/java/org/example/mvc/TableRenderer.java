@@ -0,0 +1,249 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Renders rows as a text table. Rows are formatted into a large buffer that is only written when
+ * full (or when flushed), so that big tables are written in a few large chunks. In paging mode,
+ * the reader is asked whether to continue after each page of rows.
+ */
+public class TableRenderer implements RowSink {
+    /** Number of characters buffered before they're written. */
+    public static final int BUFFER_SIZE = 1 << 16;
+
+    /** Where rows are written to. */
+    private Writer out;
+
+    /**
+     * Minimum width of each column. Fields in columns of negative width are aligned to the left,
+     * like in <code>String.format</code>.
+     */
+    private int[] widths;
+
+    /** Number of rows in each page, or <code>0</code> not to page rows. */
+    private int pageSize;
+
+    /** Asked whether to continue after each page, once its rows have been written. */
+    private BooleanSupplier more;
+
+    /** Rows formatted but not yet written. */
+    private StringBuilder buffer;
+
+    /** Number of rows rendered in the current page. */
+    private int rows;
+
+    /** Whether the reader doesn't want any more rows. */
+    private boolean stopped;
+
+    /** Creates a new renderer that discards all rows. */
+    public TableRenderer() {
+        this(Writer.nullWriter(), new int[0]);
+    }
+
+    /**
+     * Creates a new renderer that doesn't page rows.
+     *
+     * @param out Where rows are written to. Not closed by this renderer.
+     * @param widths Minimum width of each column (negative for columns aligned to the left).
+     */
+    public TableRenderer(Writer out, int[] widths) {
+        this(out, widths, 0, () -> true);
+    }
+
+    /**
+     * Creates a new renderer from the value of its fields.
+     *
+     * @param out Where rows are written to. Not closed by this renderer.
+     * @param widths Minimum width of each column (negative for columns aligned to the left).
+     * @param pageSize Number of rows in each page, or <code>0</code> not to page rows.
+     * @param more Asked whether to continue after each page, once its rows have been written.
+     */
+    public TableRenderer(Writer out, int[] widths, int pageSize, BooleanSupplier more) {
+        this.out      = out;
+        this.widths   = widths.clone();
+        this.pageSize = pageSize;
+        this.more     = more;
+        this.buffer   = new StringBuilder(TableRenderer.BUFFER_SIZE);
+        this.rows     = 0;
+        this.stopped  = false;
+    }
+
+    /**
+     * Copy constructor of a renderer. Both renderers write to the same place, but rows not yet
+     * written by <code>renderer</code> aren't copied.
+     *
+     * @param renderer Renderer to be copied.
+     */
+    public TableRenderer(TableRenderer renderer) {
+        this(renderer.out, renderer.widths, renderer.pageSize, renderer.more);
+    }
+
+    /**
+     * Gets the minimum width of each column.
+     *
+     * @return The minimum width of each column (negative for columns aligned to the left).
+     */
+    public int[] getWidths() {
+        return this.widths.clone();
+    }
+
+    /**
+     * Gets the number of rows in each page.
+     *
+     * @return The number of rows in each page, or <code>0</code> if rows aren't paged.
+     */
+    public int getPageSize() {
+        return this.pageSize;
+    }
+
+    /**
+     * Checks if the reader doesn't want any more rows, so that they don't need to be produced.
+     *
+     * @return Whether the reader doesn't want any more rows.
+     */
+    public boolean isStopped() {
+        return this.stopped;
+    }
+
+    /**
+     * Renders a row. In paging mode, if the current page is full, it's written and the reader is
+     * asked whether to continue first. Rows after the reader stops are discarded.
+     *
+     * @param row Fields of the row. Missing fields are left blank.
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    @Override
+    public void accept(CharSequence[] row) {
+        if (this.stopped)
+            return;
+
+        if (this.pageSize > 0 && this.rows == this.pageSize) {
+            this.flush();
+            if (!this.more.getAsBoolean()) {
+                this.stopped = true;
+                return;
+            }
+            this.rows = 0;
+        }
+
+        for (int i = 0; i < this.widths.length; ++i) {
+            if (i > 0)
+                this.buffer.append(' ');
+
+            CharSequence field   = i < row.length ? row[i] : "";
+            int          padding = Math.abs(this.widths[i]) - field.length();
+            if (this.widths[i] < 0)
+                this.buffer.append(field);
+            for (int j = 0; j < padding; ++j)
+                this.buffer.append(' ');
+            if (this.widths[i] >= 0)
+                this.buffer.append(field);
+        }
+        this.buffer.append('\n');
+        this.rows++;
+
+        if (this.buffer.length() >= TableRenderer.BUFFER_SIZE)
+            this.write();
+    }
+
+    /**
+     * Writes all rows rendered so far.
+     *
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    public void flush() {
+        this.write();
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the contents of the buffer to the output, without flushing it.
+     *
+     * @throws UncheckedIOException Failed to write to the output.
+     */
+    private void write() {
+        try {
+            this.out.append(this.buffer);
+            this.buffer.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Checks if this renderer is equal to another object.
+     *
+     * @param obj Object to be compared with this renderer.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        TableRenderer renderer = (TableRenderer) obj;
+        return this.out == renderer.out && Arrays.equals(this.widths, renderer.widths) &&
+            this.pageSize == renderer.pageSize && this.rows == renderer.rows &&
+            this.stopped == renderer.stopped &&
+            this.buffer.toString().equals(renderer.buffer.toString());
+    }
+
+    /**
+     * Calculates the hash code of this renderer.
+     *
+     * @return The hash code of this renderer.
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.widths) * 31 + this.pageSize;
+    }
+
+    /**
+     * Creates a copy of this renderer. See the copy constructor.
+     *
+     * @return A copy of this renderer.
+     */
+    @Override
+    public TableRenderer clone() {
+        return new TableRenderer(this);
+    }
+
+    /**
+     * Creates a debug string representation of this renderer.
+     *
+     * @return A debug string representation of this renderer.
+     */
+    @Override
+    public String toString() {
+        return String.format("TableRenderer(widths = %s, pageSize = %d, buffered = %d)",
+                             Arrays.toString(this.widths),
+                             this.pageSize,
+                             this.buffer.length());
+    }
+}
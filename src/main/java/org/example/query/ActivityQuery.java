@@ -0,0 +1,1263 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A declarative query over the activities of users, that filters them, groups them and aggregates
+ * one of their fields. It's built by chaining methods that each return a modified copy, e.g.: the
+ * calories burned in mountain runs above 0.5 of altimetry by advanced users in January 2024:
+ *
+ * <pre>
+ * new ActivityQuery()
+ *     .ofType(ActivityMountainRun.class)
+ *     .where(ActivityQuery.Field.ALTIMETRY, ActivityQuery.Comparison.GREATER, 0.5)
+ *     .byUsers(AdvancedUser.class)
+ *     .between(LocalDateTime.of(2024, 1, 1, 0, 0, 0), LocalDateTime.of(2024, 2, 1, 0, 0, 0))
+ *     .aggregate(ActivityQuery.Aggregate.SUM, ActivityQuery.Field.CALORIES);
+ * </pre>
+ *
+ * <p>Each query is compiled when it's created. Its dates are pushed into the time index of each
+ * user, and sums that the storage of activities can calculate by itself (e.g.: the calories of all
+ * activities) don't go through activities one by one. Otherwise, a single scan filters, measures
+ * and aggregates each activity, without allocating memory for it.
+ *
+ * <p>Activities compacted into rollups (see <code>ActivityRollup</code>) are combined with the
+ * others transparently. The activities in a rollup are all considered to have ended when the last
+ * of them did, so dates are rounded to whole rollups (days or weeks), both when filtering and when
+ * grouping by date. Rollups can only answer counts, sums and averages of executions, distances and
+ * calories (without filtering nor grouping calories by activity type), with no field conditions.
+ * After consuming a user whose rollups can't answer a query, its results can't be read, and throw
+ * a <code>QueryException</code> instead of ignoring those activities.
+ */
+public class ActivityQuery implements CacheableQuery {
+    /** Message of the exception thrown when rollups can't answer a query. */
+    private static final String INEXACT =
+        "Query can't be answered exactly from compacted activities!";
+
+    /** Activities a query goes through. */
+    public enum Source {
+        /** Activities that users have completed. */
+        DONE,
+        /** Activities in the current training plan of users, each executed once per week. */
+        TRAINING_PLAN
+    }
+
+    /** Values that can be read from an activity. */
+    public enum Field {
+        /** Always 1, to count executions. */
+        EXECUTIONS,
+        /** Calories burned by the user. */
+        CALORIES,
+        /** Distance traversed, in kilometers (distance activities only). */
+        DISTANCE,
+        /** Altimetry (altimetry activities only). */
+        ALTIMETRY,
+        /** Execution time, in minutes. */
+        DURATION,
+        /** Heart rate. */
+        BPM,
+        /** Number of repetitions (repetition activities only). */
+        REPETITIONS,
+        /** Weight lifted (weighted repetition activities only). */
+        WEIGHT;
+
+        /**
+         * Reads this field from an activity.
+         *
+         * @param activity Activity to read from.
+         * @param user User that executed the activity.
+         * @return The value of this field in <code>activity</code>. <code>NaN</code> if it doesn't
+         *     have this field.
+         */
+        public double of(Activity activity, User user) {
+            switch (this) {
+                case EXECUTIONS:
+                    return 1;
+                case CALORIES:
+                    return activity.countCalories(user);
+                case DISTANCE:
+                    if (activity instanceof ActivityDistance)
+                        return ((ActivityDistance) activity).getDistanceToTraverse();
+                    return Double.NaN;
+                case ALTIMETRY:
+                    if (activity instanceof ActivityAltimetryDistance)
+                        return ((ActivityAltimetryDistance) activity).getAltimetry();
+                    return Double.NaN;
+                case DURATION:
+                    return activity.getExecutionTime().toMillis() / 60000.0;
+                case BPM:
+                    return activity.getBPM();
+                case REPETITIONS:
+                    if (activity instanceof ActivityRepetition)
+                        return ((ActivityRepetition) activity).getNumberOfReps();
+                    return Double.NaN;
+                case WEIGHT:
+                    if (activity instanceof ActivityRepetitionWeighted)
+                        return ((ActivityRepetitionWeighted) activity).getWeightsHeft();
+                    return Double.NaN;
+                default:
+                    return Double.NaN;
+            }
+        }
+    }
+
+    /** Comparisons between the value of a field and a constant. */
+    public enum Comparison {
+        /** The field is less than the constant. */
+        LESS,
+        /** The field is less than or equal to the constant. */
+        LESS_EQUAL,
+        /** The field is equal to the constant. */
+        EQUAL,
+        /** The field is greater than or equal to the constant. */
+        GREATER_EQUAL,
+        /** The field is greater than the constant. */
+        GREATER;
+
+        /**
+         * Compares the value of a field with a constant.
+         *
+         * @param value Value of the field.
+         * @param constant Constant to compare with.
+         * @return Whether the comparison holds. Always <code>false</code> for <code>NaN</code>.
+         */
+        public boolean test(double value, double constant) {
+            switch (this) {
+                case LESS:
+                    return value < constant;
+                case LESS_EQUAL:
+                    return value <= constant;
+                case EQUAL:
+                    return value == constant;
+                case GREATER_EQUAL:
+                    return value >= constant;
+                case GREATER:
+                    return value > constant;
+                default:
+                    return false;
+            }
+        }
+    }
+
+    /** Ways of aggregating the values of a field. */
+    public enum Aggregate {
+        /** Number of executions of activities that have the field. */
+        COUNT,
+        /** Sum of the field. */
+        SUM,
+        /** Minimum value of the field. */
+        MIN,
+        /** Maximum value of the field. */
+        MAX,
+        /** Average value of the field, per execution. */
+        AVERAGE;
+
+        /**
+         * Reads this aggregate from an accumulator.
+         *
+         * @param accumulator Count, sum, minimum and maximum of the values aggregated.
+         * @return The value of this aggregate. <code>NaN</code> for minimums, maximums and averages
+         *     of no values.
+         */
+        public double of(double[] accumulator) {
+            return this.of(accumulator[0], accumulator[1], accumulator[2], accumulator[3]);
+        }
+
+        /**
+         * Calculates this aggregate.
+         *
+         * @param count Number of values aggregated.
+         * @param sum Sum of the values aggregated.
+         * @param min Minimum of the values aggregated.
+         * @param max Maximum of the values aggregated.
+         * @return The value of this aggregate. <code>NaN</code> for minimums, maximums and averages
+         *     of no values.
+         */
+        public double of(double count, double sum, double min, double max) {
+            switch (this) {
+                case COUNT:
+                    return count;
+                case SUM:
+                    return sum;
+                case MIN:
+                    return count == 0 ? Double.NaN : min;
+                case MAX:
+                    return count == 0 ? Double.NaN : max;
+                case AVERAGE:
+                    return count == 0 ? Double.NaN : sum / count;
+                default:
+                    return Double.NaN;
+            }
+        }
+    }
+
+    /**
+     * Ways of grouping activities. Activities can be grouped in two ways at once (e.g.: per
+     * activity type and per week), as long as the keys of both fit in an <code>int</code>.
+     */
+    public enum GroupBy {
+        /** All activities are in the same group. */
+        NONE,
+        /** Activities are grouped by the code of the user that executed them. */
+        USER,
+        /** Activities are grouped by the class of the user that executed them. */
+        USER_TYPE,
+        /** Activities are grouped by their class. */
+        ACTIVITY_TYPE,
+        /** Activities are grouped by the day of the week they ended on. */
+        WEEKDAY,
+        /** Activities are grouped by the week (starting on Monday) they ended in. */
+        WEEK
+    }
+
+    /** A condition that the value of a field of an activity must satisfy. */
+    private static class Condition {
+        /** Field of the activity. */
+        private final Field field;
+
+        /** Comparison between the field and the constant. */
+        private final Comparison comparison;
+
+        /** Constant to compare with. */
+        private final double constant;
+
+        /**
+         * Creates a new condition.
+         *
+         * @param field Field of the activity.
+         * @param comparison Comparison between the field and the constant.
+         * @param constant Constant to compare with.
+         */
+        public Condition(Field field, Comparison comparison, double constant) {
+            this.field      = field;
+            this.comparison = comparison;
+            this.constant   = constant;
+        }
+
+        /**
+         * Checks if this condition is equal to another object.
+         *
+         * @param obj Object to be compared with this condition.
+         * @return Whether <code>this</code> is equal to <code>obj</code>.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || this.getClass() != obj.getClass())
+                return false;
+
+            Condition condition = (Condition) obj;
+            return this.field == condition.field && this.comparison == condition.comparison &&
+                Double.compare(this.constant, condition.constant) == 0;
+        }
+
+        /**
+         * Calculates the hash code of this condition.
+         *
+         * @return The hash code of this condition.
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.field, this.comparison, this.constant);
+        }
+
+        /**
+         * Creates a debug string representation of this condition.
+         *
+         * @return A debug string representation of this condition.
+         */
+        @Override
+        public String toString() {
+            return String.format("%s %s %s", this.field, this.comparison, this.constant);
+        }
+    }
+
+    /** Ways the storage of activities can answer a query without going through activities. */
+    private enum Kernel {
+        /** Activities must be gone through one by one. */
+        NONE,
+        /** Number of completed activities (see <code>User.countDone</code>). */
+        COUNT_DONE,
+        /** Calories of completed activities (see <code>User.countCalories</code>). */
+        CALORIES_DONE,
+        /** Distance of completed activities (see <code>User.countDistance</code>). */
+        DISTANCE_DONE,
+        /** Calories of the training plan (see <code>User.countTrainingPlanCalories</code>). */
+        TRAINING_PLAN_CALORIES
+    }
+
+    /** Activities this query goes through. */
+    private Source source;
+
+    /** Don't consider activities that ended before this date. */
+    private LocalDateTime start;
+
+    /** Don't consider activities that ended after this date. */
+    private LocalDateTime end;
+
+    /** Only consider activities of this class (or of its subclasses). */
+    private Class<? extends Activity> activityType;
+
+    /** Only consider users of this class (or of its subclasses). */
+    private Class<? extends User> userType;
+
+    /** Conditions activities must satisfy to be considered. */
+    private List<Condition> conditions;
+
+    /** How activities are grouped. */
+    private GroupBy groupBy;
+
+    /** How activities in the same group are further grouped. */
+    private GroupBy thenBy;
+
+    /** How the values of the measured field are aggregated. */
+    private Aggregate aggregate;
+
+    /** Field that is aggregated. */
+    private Field measure;
+
+    /** How the storage of activities can answer this query by itself (compiled). */
+    private Kernel kernel;
+
+    /** Whether rollups can answer this query (compiled). */
+    private boolean rollups;
+
+    /** Fields of the conditions (compiled). */
+    private Field[] conditionFields;
+
+    /** Comparisons of the conditions (compiled). */
+    private Comparison[] conditionComparisons;
+
+    /** Constants of the conditions (compiled). */
+    private double[] conditionConstants;
+
+    /** Count, sum, minimum and maximum of all values aggregated. */
+    private double[] total;
+
+    /** Relation between group keys and the count, sum, minimum and maximum of their values. */
+    private AggregationTable groups;
+
+    /** Classes of users or activities, whose positions are the keys of their groups. */
+    private List<Class<?>> types;
+
+    /** Whether a user consumed had rollups that can't answer this query. */
+    private boolean inexact;
+
+    /** Creates a new query that counts all executions of completed activities. */
+    public ActivityQuery() {
+        this(Source.DONE,
+             LocalDateTime.MIN,
+             LocalDateTime.MAX,
+             Activity.class,
+             User.class,
+             new ArrayList<Condition>(),
+             GroupBy.NONE,
+             GroupBy.NONE,
+             Aggregate.SUM,
+             Field.EXECUTIONS);
+    }
+
+    /**
+     * Creates a new query from the value of its fields.
+     *
+     * @param source Activities this query goes through.
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param activityType Only consider activities of this class.
+     * @param userType Only consider users of this class.
+     * @param conditions Conditions activities must satisfy to be considered.
+     * @param groupBy How activities are grouped.
+     * @param thenBy How activities in the same group are further grouped.
+     * @param aggregate How the values of the measured field are aggregated.
+     * @param measure Field that is aggregated.
+     */
+    private ActivityQuery(Source                    source,
+                          LocalDateTime             start,
+                          LocalDateTime             end,
+                          Class<? extends Activity> activityType,
+                          Class<? extends User>     userType,
+                          List<Condition>           conditions,
+                          GroupBy                   groupBy,
+                          GroupBy                   thenBy,
+                          Aggregate                 aggregate,
+                          Field                     measure) {
+        this.source       = source;
+        this.start        = start;
+        this.end          = end;
+        this.activityType = activityType;
+        this.userType     = userType;
+        this.conditions   = new ArrayList<Condition>(conditions);
+        this.groupBy      = groupBy;
+        this.thenBy       = thenBy;
+        this.aggregate    = aggregate;
+        this.measure      = measure;
+        this.total        = ActivityQuery.newAccumulator();
+        this.groups       = new AggregationTable();
+        this.types        = new ArrayList<Class<?>>();
+        this.inexact      = false;
+        this.compile();
+    }
+
+    /**
+     * Copy constructor of a query.
+     *
+     * @param query Query to be copied.
+     */
+    public ActivityQuery(ActivityQuery query) {
+        this(query.source,
+             query.start,
+             query.end,
+             query.activityType,
+             query.userType,
+             query.conditions,
+             query.groupBy,
+             query.thenBy,
+             query.aggregate,
+             query.measure);
+
+        this.total  = query.total.clone();
+        this.groups = query.groups.clone();
+        this.types.addAll(query.types);
+        this.inexact = query.inexact;
+    }
+
+    /**
+     * Creates a copy of this query that goes through other activities, without results.
+     *
+     * @param source Activities to go through.
+     * @return A copy of this query that goes through <code>source</code>.
+     */
+    public ActivityQuery from(Source source) {
+        return new ActivityQuery(source,
+                                 this.start,
+                                 this.end,
+                                 this.activityType,
+                                 this.userType,
+                                 this.conditions,
+                                 this.groupBy,
+                                 this.thenBy,
+                                 this.aggregate,
+                                 this.measure);
+    }
+
+    /**
+     * Creates a copy of this query that only considers activities that ended between two dates,
+     * without results. Dates are ignored when going through training plans.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return A copy of this query that only considers activities that ended between the dates.
+     */
+    public ActivityQuery between(LocalDateTime start, LocalDateTime end) {
+        return new ActivityQuery(this.source,
+                                 start,
+                                 end,
+                                 this.activityType,
+                                 this.userType,
+                                 this.conditions,
+                                 this.groupBy,
+                                 this.thenBy,
+                                 this.aggregate,
+                                 this.measure);
+    }
+
+    /**
+     * Creates a copy of this query that only considers activities of a class, without results.
+     *
+     * @param activityType Only consider activities of this class (or of its subclasses).
+     * @return A copy of this query that only considers activities of <code>activityType</code>.
+     */
+    public ActivityQuery ofType(Class<? extends Activity> activityType) {
+        return new ActivityQuery(this.source,
+                                 this.start,
+                                 this.end,
+                                 activityType,
+                                 this.userType,
+                                 this.conditions,
+                                 this.groupBy,
+                                 this.thenBy,
+                                 this.aggregate,
+                                 this.measure);
+    }
+
+    /**
+     * Creates a copy of this query that only considers users of a class, without results.
+     *
+     * @param userType Only consider users of this class (or of its subclasses).
+     * @return A copy of this query that only considers users of <code>userType</code>.
+     */
+    public ActivityQuery byUsers(Class<? extends User> userType) {
+        return new ActivityQuery(this.source,
+                                 this.start,
+                                 this.end,
+                                 this.activityType,
+                                 userType,
+                                 this.conditions,
+                                 this.groupBy,
+                                 this.thenBy,
+                                 this.aggregate,
+                                 this.measure);
+    }
+
+    /**
+     * Creates a copy of this query with another condition activities must satisfy, without
+     * results. Activities without the field never satisfy it.
+     *
+     * @param field Field of the activity.
+     * @param comparison Comparison between the field and the constant.
+     * @param constant Constant to compare with.
+     * @return A copy of this query with the new condition.
+     */
+    public ActivityQuery where(Field field, Comparison comparison, double constant) {
+        List<Condition> conditions = new ArrayList<Condition>(this.conditions);
+        conditions.add(new Condition(field, comparison, constant));
+        return new ActivityQuery(this.source,
+                                 this.start,
+                                 this.end,
+                                 this.activityType,
+                                 this.userType,
+                                 conditions,
+                                 this.groupBy,
+                                 this.thenBy,
+                                 this.aggregate,
+                                 this.measure);
+    }
+
+    /**
+     * Creates a copy of this query that groups activities in another way, without results.
+     *
+     * @param groupBy How activities are grouped.
+     * @return A copy of this query that groups activities by <code>groupBy</code>.
+     */
+    public ActivityQuery groupBy(GroupBy groupBy) {
+        return this.groupBy(groupBy, GroupBy.NONE);
+    }
+
+    /**
+     * Creates a copy of this query that groups activities in two ways at once, without results.
+     *
+     * @param groupBy How activities are grouped.
+     * @param thenBy How activities in the same group are further grouped.
+     * @return A copy of this query that groups activities by <code>groupBy</code> and then by
+     *     <code>thenBy</code>.
+     */
+    public ActivityQuery groupBy(GroupBy groupBy, GroupBy thenBy) {
+        return new ActivityQuery(this.source,
+                                 this.start,
+                                 this.end,
+                                 this.activityType,
+                                 this.userType,
+                                 this.conditions,
+                                 groupBy,
+                                 thenBy,
+                                 this.aggregate,
+                                 this.measure);
+    }
+
+    /**
+     * Creates a copy of this query that aggregates another field, without results. Activities
+     * without the field aren't considered.
+     *
+     * @param aggregate How the values of the field are aggregated.
+     * @param measure Field that is aggregated.
+     * @return A copy of this query that aggregates <code>measure</code>.
+     */
+    public ActivityQuery aggregate(Aggregate aggregate, Field measure) {
+        return new ActivityQuery(this.source,
+                                 this.start,
+                                 this.end,
+                                 this.activityType,
+                                 this.userType,
+                                 this.conditions,
+                                 this.groupBy,
+                                 this.thenBy,
+                                 aggregate,
+                                 measure);
+    }
+
+    /**
+     * Gets how activities are grouped.
+     *
+     * @return How activities are grouped.
+     */
+    public GroupBy getGroupBy() {
+        return this.groupBy;
+    }
+
+    /**
+     * Gets how activities in the same group are further grouped.
+     *
+     * @return How activities in the same group are further grouped.
+     */
+    public GroupBy getThenBy() {
+        return this.thenBy;
+    }
+
+    /**
+     * Gets how the values of the measured field are aggregated.
+     *
+     * @return How the values of the measured field are aggregated.
+     */
+    public Aggregate getAggregate() {
+        return this.aggregate;
+    }
+
+    /**
+     * Gets the field that is aggregated.
+     *
+     * @return The field that is aggregated.
+     */
+    public Field getMeasure() {
+        return this.measure;
+    }
+
+    /**
+     * Gets the aggregate of all activities considered, regardless of their groups.
+     *
+     * @return The aggregate of all activities considered.
+     * @throws QueryException A user consumed had rollups that can't answer this query.
+     */
+    public double getResult() throws QueryException {
+        this.checkExact();
+        return this.aggregate.of(this.total);
+    }
+
+    /**
+     * Gets the aggregate of the activities in each group.
+     *
+     * @return The relation between group keys (see <code>getGroupName</code>) and the aggregate of
+     *     the activities in each group. Empty when activities aren't grouped.
+     * @throws QueryException A user consumed had rollups that can't answer this query.
+     */
+    public SortedMap<Long, Double> getGroups() throws QueryException {
+        this.checkExact();
+        return this.collectGroups();
+    }
+
+    /**
+     * Checks that the rollups of all users consumed could answer this query.
+     *
+     * @throws QueryException A user consumed had rollups that can't answer this query.
+     */
+    private void checkExact() throws QueryException {
+        if (this.inexact)
+            throw new QueryException(ActivityQuery.INEXACT);
+    }
+
+    /**
+     * Gets the aggregate of the activities in each group, even if they aren't exact.
+     *
+     * @return The relation between group keys and the aggregate of the activities in each group.
+     */
+    private SortedMap<Long, Double> collectGroups() {
+        SortedMap<Long, Double> ret = new TreeMap<Long, Double>();
+        for (long key : this.groups.getKeys())
+            ret.put(key, this.groups.get(key, this.aggregate));
+        return ret;
+    }
+
+    /**
+     * Gets the name of a group.
+     *
+     * @param key Key of the group.
+     * @return The name of the group: a user code, a class name, a day of the week or the first day
+     *     of a week. Names are separated by a comma when activities are grouped in two ways.
+     */
+    public String getGroupName(long key) {
+        if (this.thenBy == GroupBy.NONE)
+            return this.getGroupName(this.groupBy, key);
+        return this.getGroupName(this.groupBy, key >> 32) + ", " +
+            this.getGroupName(this.thenBy, (int) key);
+    }
+
+    /**
+     * Gets the name of a group, in one of the ways activities are grouped.
+     *
+     * @param groupBy Way activities are grouped.
+     * @param key Key of the group.
+     * @return The name of the group.
+     */
+    private String getGroupName(GroupBy groupBy, long key) {
+        switch (groupBy) {
+            case USER_TYPE:
+            case ACTIVITY_TYPE:
+                return this.types.get((int) key).getSimpleName();
+            case WEEKDAY:
+                return DayOfWeek.of((int) key).toString();
+            case WEEK:
+                return LocalDate.ofEpochDay(key).toString();
+            default:
+                return Long.toString(key);
+        }
+    }
+
+    /**
+     * Consumes a user, aggregating its activities into the results of this query.
+     *
+     * @param user User to be consumed.
+     */
+    public void accept(User user) {
+        if (this.userType.isInstance(user))
+            this.inexact |= !this.run(user, this.total, this.groupBy != GroupBy.NONE);
+    }
+
+    /** Discards the results of this query, so that it can consume users from scratch again. */
+    public void clear() {
+        this.total   = ActivityQuery.newAccumulator();
+        this.inexact = false;
+        this.groups.clear();
+    }
+
+    /**
+     * Adds the results of another query to this one, so that users can be consumed by different
+     * queries (e.g.: in different threads) and then combined.
+     *
+     * @param query Query whose results are added.
+     * @throws QueryException Queries with different parameters.
+     */
+    public void merge(ActivityQuery query) throws QueryException {
+        if (!this.getKey().equals(query.getKey()))
+            throw new QueryException("Queries with different parameters!");
+
+        this.total[0] += query.total[0];
+        this.total[1] += query.total[1];
+        this.total[2]  = Math.min(this.total[2], query.total[2]);
+        this.total[3]  = Math.max(this.total[3], query.total[3]);
+        this.inexact  |= query.inexact;
+
+        // Classes may have been registered in another order
+        this.groups.merge(query.groups, (key) -> {
+            if (this.thenBy == GroupBy.NONE)
+                return this.remapKey(this.groupBy, key, query);
+            return this.packKey(this.remapKey(this.groupBy, key >> 32, query),
+                                this.remapKey(this.thenBy, (int) key, query));
+        });
+    }
+
+    /**
+     * Converts the key of a group of another query into the key of the same group in this query.
+     *
+     * @param groupBy Way activities are grouped.
+     * @param key Key of the group in <code>query</code>.
+     * @param query Query the key comes from.
+     * @return The key of the group in this query.
+     */
+    private long remapKey(GroupBy groupBy, long key, ActivityQuery query) {
+        if (groupBy == GroupBy.USER_TYPE || groupBy == GroupBy.ACTIVITY_TYPE)
+            return this.getTypeKey(query.types.get((int) key));
+        return key;
+    }
+
+    /**
+     * Evaluates this query over a single user, without grouping and without changing its results.
+     *
+     * @param user User whose activities are aggregated.
+     * @return The aggregate of the activities of <code>user</code> considered by this query.
+     * @throws QueryException <code>user</code> has rollups that can't answer this query.
+     */
+    public double evaluate(User user) throws QueryException {
+        double[] accumulator = ActivityQuery.newAccumulator();
+        if (this.userType.isInstance(user) && !this.run(user, accumulator, false))
+            throw new QueryException(ActivityQuery.INEXACT);
+        return this.aggregate.of(accumulator);
+    }
+
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups. When it can, its results can always be read.
+     *
+     * @throws QueryException Rollups can't answer this query (e.g.: it has field conditions).
+     */
+    public void validate() throws QueryException {
+        if (this.source == Source.DONE && !this.rollups)
+            throw new QueryException(ActivityQuery.INEXACT);
+    }
+
+    /**
+     * Gets what identifies this query among others: its class and everything it was built with.
+     *
+     * @return The key that identifies this query.
+     */
+    public QueryKey getKey() {
+        return new QueryKey(this.getClass(),
+                            this.source,
+                            this.start,
+                            this.end,
+                            this.activityType,
+                            this.userType,
+                            this.conditions,
+                            this.groupBy,
+                            this.thenBy,
+                            this.aggregate,
+                            this.measure);
+    }
+
+    /** Chooses how this query is answered and flattens its conditions, before it consumes users. */
+    private void compile() {
+        boolean plain = this.conditions.isEmpty() && this.aggregate == Aggregate.SUM &&
+            ActivityQuery.isPerUser(this.groupBy) && ActivityQuery.isPerUser(this.thenBy);
+
+        this.kernel = Kernel.NONE;
+        if (plain && this.source == Source.TRAINING_PLAN) {
+            if (this.measure == Field.CALORIES && this.activityType == Activity.class)
+                this.kernel = Kernel.TRAINING_PLAN_CALORIES;
+        } else if (plain) {
+            if (this.measure == Field.EXECUTIONS && this.activityType == Activity.class)
+                this.kernel = Kernel.COUNT_DONE;
+            else if (this.measure == Field.CALORIES && this.activityType == Activity.class)
+                this.kernel = Kernel.CALORIES_DONE;
+            else if (this.measure == Field.DISTANCE && this.isDistanceType())
+                this.kernel = Kernel.DISTANCE_DONE;
+        }
+
+        this.rollups = this.conditions.isEmpty() && this.aggregate != Aggregate.MIN &&
+            this.aggregate != Aggregate.MAX &&
+            (this.measure == Field.EXECUTIONS || this.measure == Field.DISTANCE ||
+             (this.measure == Field.CALORIES && this.activityType == Activity.class &&
+              !this.isGroupedBy(GroupBy.ACTIVITY_TYPE)));
+
+        int n                     = this.conditions.size();
+        this.conditionFields      = new Field[n];
+        this.conditionComparisons = new Comparison[n];
+        this.conditionConstants   = new double[n];
+        for (int i = 0; i < n; ++i) {
+            Condition c                  = this.conditions.get(i);
+            this.conditionFields[i]      = c.field;
+            this.conditionComparisons[i] = c.comparison;
+            this.conditionConstants[i]   = c.constant;
+        }
+    }
+
+    /**
+     * Checks if a way of grouping activities only depends on the user that executed them.
+     *
+     * @param groupBy Way of grouping activities.
+     * @return Whether activities grouped by <code>groupBy</code> are grouped per user.
+     */
+    private static boolean isPerUser(GroupBy groupBy) {
+        return groupBy == GroupBy.NONE || groupBy == GroupBy.USER || groupBy == GroupBy.USER_TYPE;
+    }
+
+    /**
+     * Checks if activities are grouped in a given way (possibly alongside another).
+     *
+     * @param groupBy Way of grouping activities.
+     * @return Whether activities are grouped by <code>groupBy</code>.
+     */
+    private boolean isGroupedBy(GroupBy groupBy) {
+        return this.groupBy == groupBy || this.thenBy == groupBy;
+    }
+
+    /**
+     * Checks if the distance of all activities of the considered type can be counted at once.
+     *
+     * @return Whether the considered type is <code>Activity</code> or a distance activity.
+     */
+    private boolean isDistanceType() {
+        return this.activityType == Activity.class ||
+            ActivityDistance.class.isAssignableFrom(this.activityType);
+    }
+
+    /**
+     * Gets the distance activity class that covers the considered type.
+     *
+     * @return The considered type if it's a distance activity, <code>ActivityDistance</code>
+     *     otherwise.
+     */
+    @SuppressWarnings("unchecked")
+    private Class<? extends ActivityDistance> getDistanceType() {
+        if (ActivityDistance.class.isAssignableFrom(this.activityType))
+            return (Class<? extends ActivityDistance>) this.activityType;
+        return ActivityDistance.class;
+    }
+
+    /**
+     * Aggregates the activities of a user.
+     *
+     * @param user User whose activities are aggregated.
+     * @param total Accumulator of all activities.
+     * @param grouped Whether activities are also aggregated into their groups.
+     * @return Whether the rollups of <code>user</code> could answer this query.
+     */
+    private boolean run(User user, double[] total, boolean grouped) {
+        if (this.kernel != Kernel.NONE) {
+            double value = this.runKernel(user);
+            total[1] += value;
+            if (grouped)
+                this.groups.addTotals(this.getKey(user, null, null, null), value, 0);
+        } else {
+            ObjLongConsumer<Activity> consumer = (a, n) -> this.consume(user, a, n, total, grouped);
+            if (this.source == Source.DONE)
+                user.forEachDone(this.start, this.end, consumer);
+            else
+                user.forEachTrainingPlanActivity(consumer);
+        }
+
+        boolean[] exact = { true }; // Array wrapper to allow for lambda modification
+        if (this.source == Source.DONE)
+            user.forEachRollup(this.start,
+                               this.end,
+                               (r) -> { exact[0] &= this.consumeRollup(user, r, total, grouped); });
+        return exact[0];
+    }
+
+    /**
+     * Asks the storage of activities of a user for the result of this query.
+     *
+     * @param user User whose activities are aggregated.
+     * @return The sum of the measured field of the activities of <code>user</code>.
+     */
+    private double runKernel(User user) {
+        switch (this.kernel) {
+            case COUNT_DONE:
+                return user.countDone(this.start, this.end);
+            case CALORIES_DONE:
+                return user.countCalories(this.start, this.end);
+            case DISTANCE_DONE:
+                return user.countDistance(this.start, this.end, this.getDistanceType());
+            case TRAINING_PLAN_CALORIES:
+                return user.countTrainingPlanCalories();
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Filters, measures and aggregates an activity.
+     *
+     * @param user User that executed the activity.
+     * @param activity Activity to be aggregated.
+     * @param n Number of executions of the activity.
+     * @param total Accumulator of all activities.
+     * @param grouped Whether the activity is also aggregated into its group.
+     */
+    private void consume(User user, Activity activity, long n, double[] total, boolean grouped) {
+        if (!this.activityType.isInstance(activity))
+            return;
+        for (int i = 0; i < this.conditionFields.length; ++i) {
+            double value = this.conditionFields[i].of(activity, user);
+            if (!this.conditionComparisons[i].test(value, this.conditionConstants[i]))
+                return;
+        }
+
+        double value = this.measure.of(activity, user);
+        if (Double.isNaN(value))
+            return;
+
+        ActivityQuery.add(total, value, n);
+        if (grouped)
+            this.groups.add(this.getKey(user, activity, null, activity.getClass()), value, n);
+    }
+
+    /**
+     * Aggregates the activities in a rollup.
+     *
+     * @param user User that executed the activities.
+     * @param rollup Summary of the activities, that ended between the dates.
+     * @param total Accumulator of all activities.
+     * @param grouped Whether the activities are also aggregated into their groups.
+     * @return Whether this query could be answered exactly from <code>rollup</code>. If not,
+     *     nothing is aggregated.
+     */
+    private boolean consumeRollup(User           user,
+                                  ActivityRollup rollup,
+                                  double[]       total,
+                                  boolean        grouped) {
+        boolean considered = false;
+        for (Class<? extends Activity> type : rollup.getCounts().keySet())
+            considered |= this.activityType.isAssignableFrom(type);
+        if (!considered)
+            return true;
+        if (!this.rollups)
+            return false;
+
+        if (this.measure == Field.CALORIES) {
+            double calories = rollup.countCalories(user);
+            this.addRollup(user, rollup, calories, rollup.countActivities(), total, grouped);
+            return true;
+        }
+
+        long                                   count     = 0;
+        Map<Class<? extends Activity>, Double> distances = rollup.getDistances();
+        for (Map.Entry<Class<? extends Activity>, Long> e : rollup.getCounts().entrySet()) {
+            Class<? extends Activity> type = e.getKey();
+            if (!this.activityType.isAssignableFrom(type))
+                continue;
+            if (this.measure == Field.DISTANCE && !ActivityDistance.class.isAssignableFrom(type))
+                continue;
+
+            if (this.isGroupedBy(GroupBy.ACTIVITY_TYPE)) {
+                double value = this.measure == Field.DISTANCE ? distances.getOrDefault(type, 0.0)
+                                                              : e.getValue();
+                ActivityQuery.addTotals(total, value, e.getValue());
+                if (grouped)
+                    this.groups.addTotals(this.getKey(user, null, rollup, type),
+                                          value,
+                                          e.getValue());
+            } else {
+                count += e.getValue();
+            }
+        }
+
+        if (!this.isGroupedBy(GroupBy.ACTIVITY_TYPE)) {
+            double sum = this.measure == Field.DISTANCE ? rollup.getDistance(this.getDistanceType())
+                                                        : count;
+            this.addRollup(user, rollup, sum, count, total, grouped);
+        }
+        return true;
+    }
+
+    /**
+     * Aggregates the sum of the measured field of the activities in a rollup.
+     *
+     * @param user User that executed the activities.
+     * @param rollup Summary of the activities.
+     * @param sum Sum of the measured field.
+     * @param count Number of executions.
+     * @param total Accumulator of all activities.
+     * @param grouped Whether the activities are also aggregated into the group of the user.
+     */
+    private void addRollup(User           user,
+                           ActivityRollup rollup,
+                           double         sum,
+                           long           count,
+                           double[]       total,
+                           boolean        grouped) {
+        ActivityQuery.addTotals(total, sum, count);
+        if (grouped)
+            this.groups.addTotals(this.getKey(user, null, rollup, null), sum, count);
+    }
+
+    /**
+     * Gets the key of the group of an activity.
+     *
+     * @param user User that executed the activity.
+     * @param activity Activity to get the group of (<code>null</code> for rollups, or when
+     *     grouping per user or per activity type only).
+     * @param rollup Rollup the activity was compacted into (<code>null</code> for activities, or
+     *     when grouping per user or per activity type only).
+     * @param activityType Class of the activity (<code>null</code> when grouping per user only).
+     * @return The key of the group.
+     */
+    private long getKey(User           user,
+                        Activity       activity,
+                        ActivityRollup rollup,
+                        Class<?>       activityType) {
+        long key = this.getKey(this.groupBy, user, activity, rollup, activityType);
+        if (this.thenBy == GroupBy.NONE)
+            return key;
+        return this.packKey(key, this.getKey(this.thenBy, user, activity, rollup, activityType));
+    }
+
+    /**
+     * Gets the key of the group of an activity, in one of the ways activities are grouped.
+     *
+     * @param groupBy Way activities are grouped.
+     * @param user User that executed the activity.
+     * @param activity Activity to get the group of.
+     * @param rollup Rollup the activity was compacted into (used when <code>activity</code> is
+     *     <code>null</code>).
+     * @param activityType Class of the activity.
+     * @return The key of the group.
+     */
+    private long getKey(GroupBy        groupBy,
+                        User           user,
+                        Activity       activity,
+                        ActivityRollup rollup,
+                        Class<?>       activityType) {
+        switch (groupBy) {
+            case USER:
+                return user.getCode();
+            case USER_TYPE:
+                return this.getTypeKey(user.getClass());
+            case ACTIVITY_TYPE:
+                return this.getTypeKey(activityType);
+            case WEEKDAY:
+                return ActivityQuery.getEndDate(activity, rollup).getDayOfWeek().getValue();
+            case WEEK:
+                long day = ActivityQuery.getEndDate(activity, rollup).toLocalDate().toEpochDay();
+                return day - Math.floorMod(day + 3, 7); // 1970-01-01 was a Thursday
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Gets when an activity ended, to group it by date. The activities in a rollup are all
+     * considered to have ended when the last of them did.
+     *
+     * @param activity Activity to get the date of.
+     * @param rollup Rollup the activity was compacted into (used when <code>activity</code> is
+     *     <code>null</code>).
+     * @return When <code>activity</code> or the last activity in <code>rollup</code> ended.
+     */
+    private static LocalDateTime getEndDate(Activity activity, ActivityRollup rollup) {
+        if (activity == null)
+            return rollup.getLastEnd();
+        return activity.getEndDate();
+    }
+
+    /**
+     * Combines the keys of the groups of an activity, when it's grouped in two ways.
+     *
+     * @param key Key of the group.
+     * @param thenKey Key of the group inside the group.
+     * @return A key with <code>key</code> in its upper half and <code>thenKey</code> in its lower
+     *     half.
+     */
+    private long packKey(long key, long thenKey) {
+        return (key << 32) | (thenKey & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Gets the key of the group of a class, registering the class if needed.
+     *
+     * @param type Class of a user or of an activity.
+     * @return The key of the group.
+     */
+    private long getTypeKey(Class<?> type) {
+        int index = this.types.indexOf(type);
+        if (index < 0) {
+            this.types.add(type);
+            index = this.types.size() - 1;
+        }
+        return index;
+    }
+
+    /**
+     * Creates an empty accumulator.
+     *
+     * @return An accumulator with no values: its count, sum, minimum and maximum.
+     */
+    private static double[] newAccumulator() {
+        return new double[] { 0, 0, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY };
+    }
+
+    /**
+     * Adds a value to an accumulator.
+     *
+     * @param accumulator Accumulator to add to.
+     * @param value Value to add.
+     * @param n Number of times the value is added.
+     */
+    private static void add(double[] accumulator, double value, long n) {
+        accumulator[0] += n;
+        accumulator[1] += value * n;
+        accumulator[2]  = Math.min(accumulator[2], value);
+        accumulator[3]  = Math.max(accumulator[3], value);
+    }
+
+    /**
+     * Adds a sum of values to an accumulator, leaving its minimum and maximum unchanged.
+     *
+     * @param accumulator Accumulator to add to.
+     * @param sum Sum of the values to add.
+     * @param n Number of values.
+     */
+    private static void addTotals(double[] accumulator, double sum, long n) {
+        accumulator[0] += n;
+        accumulator[1] += sum;
+    }
+
+    /**
+     * Checks if this query is equal to another object.
+     *
+     * @param obj Object to be compared with this query.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        ActivityQuery query = (ActivityQuery) obj;
+        return this.getKey().equals(query.getKey()) && Arrays.equals(this.total, query.total) &&
+            this.getNamedGroups().equals(query.getNamedGroups()) && this.inexact == query.inexact;
+    }
+
+    /**
+     * Gets the aggregate of the activities in each group, identified by name.
+     *
+     * @return The relation between group names and the aggregate of the activities in each group.
+     */
+    private Map<String, Double> getNamedGroups() {
+        Map<String, Double> ret = new HashMap<String, Double>();
+        this.collectGroups().forEach((key, value) -> ret.put(this.getGroupName(key), value));
+        return ret;
+    }
+
+    /**
+     * Calculates the hash code of this query.
+     *
+     * @return The hash code of this query.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.getKey(),
+                            Arrays.hashCode(this.total),
+                            this.getNamedGroups(),
+                            this.inexact);
+    }
+
+    /**
+     * Creates a deep copy of this query.
+     *
+     * @return A deep copy of this query.
+     */
+    @Override
+    public ActivityQuery clone() {
+        return new ActivityQuery(this);
+    }
+
+    /**
+     * Creates a debug string representation of this query.
+     *
+     * @return A debug string representation of this query.
+     */
+    @Override
+    public String toString() {
+        return String.format("ActivityQuery(source = %s, start = \"%s\", end = \"%s\", "
+                                 + "activityType = %s, userType = %s, conditions = %s, "
+                                 + "groupBy = %s, thenBy = %s, aggregate = %s, measure = %s)",
+                             this.source,
+                             this.start,
+                             this.end,
+                             this.activityType.getSimpleName(),
+                             this.userType.getSimpleName(),
+                             this.conditions.toString(),
+                             this.groupBy,
+                             this.thenBy,
+                             this.aggregate,
+                             this.measure);
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.Arrays;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * A hash table from <code>long</code> keys to the count, sum, minimum and maximum of the values
+ * added to them. Keys and accumulators are stored in primitive arrays (with open addressing), so
+ * that adding a value never allocates memory. Tables built by different threads can be merged.
+ */
+public class AggregationTable {
+    /** Keys in each slot. */
+    private long[] keys;
+
+    /** Whether each slot is in use. */
+    private boolean[] used;
+
+    /** Number of values added to the key of each slot. */
+    private double[] counts;
+
+    /** Sum of the values added to the key of each slot. */
+    private double[] sums;
+
+    /** Minimum of the values added to the key of each slot. */
+    private double[] mins;
+
+    /** Maximum of the values added to the key of each slot. */
+    private double[] maxs;
+
+    /** Number of keys in the table. */
+    private int size;
+
+    /** Creates a new empty table. */
+    public AggregationTable() {
+        this(16);
+    }
+
+    /**
+     * Creates a new empty table.
+     *
+     * @param capacity Number of keys the table is expected to hold.
+     */
+    public AggregationTable(int capacity) {
+        int slots = Integer.highestOneBit(Math.max(8, capacity) * 2 - 1) * 2;
+
+        this.keys   = new long[slots];
+        this.used   = new boolean[slots];
+        this.counts = new double[slots];
+        this.sums   = new double[slots];
+        this.mins   = new double[slots];
+        this.maxs   = new double[slots];
+        this.size   = 0;
+    }
+
+    /**
+     * Copy constructor of a table.
+     *
+     * @param table Table to be copied.
+     */
+    public AggregationTable(AggregationTable table) {
+        this.keys   = table.keys.clone();
+        this.used   = table.used.clone();
+        this.counts = table.counts.clone();
+        this.sums   = table.sums.clone();
+        this.mins   = table.mins.clone();
+        this.maxs   = table.maxs.clone();
+        this.size   = table.size();
+    }
+
+    /**
+     * Gets the number of keys in this table.
+     *
+     * @return The number of keys in this table.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if a key is in this table.
+     *
+     * @param key Key to look for.
+     * @return Whether <code>key</code> is in this table.
+     */
+    public boolean contains(long key) {
+        return this.used[this.find(key)];
+    }
+
+    /**
+     * Gets all keys in this table.
+     *
+     * @return The keys in this table, in ascending order.
+     */
+    public long[] getKeys() {
+        long[] ret = new long[this.size];
+        int    j   = 0;
+        for (int i = 0; i < this.keys.length; ++i)
+            if (this.used[i])
+                ret[j++] = this.keys[i];
+        Arrays.sort(ret);
+        return ret;
+    }
+
+    /**
+     * Gets an aggregate of the values added to a key.
+     *
+     * @param key Key to get the aggregate of.
+     * @param aggregate Aggregate to get.
+     * @return The aggregate of the values added to <code>key</code>. <code>NaN</code> if the key
+     *     isn't in this table.
+     */
+    public double get(long key, ActivityQuery.Aggregate aggregate) {
+        int slot = this.find(key);
+        if (!this.used[slot])
+            return Double.NaN;
+        return aggregate.of(this.counts[slot], this.sums[slot], this.mins[slot], this.maxs[slot]);
+    }
+
+    /**
+     * Adds a value to a key, inserting the key if needed.
+     *
+     * @param key Key to add to.
+     * @param value Value to add.
+     * @param n Number of times the value is added.
+     */
+    public void add(long key, double value, long n) {
+        int slot           = this.insert(key);
+        this.counts[slot] += n;
+        this.sums[slot]   += value * n;
+        this.mins[slot]    = Math.min(this.mins[slot], value);
+        this.maxs[slot]    = Math.max(this.maxs[slot], value);
+    }
+
+    /**
+     * Adds a sum of values to a key, inserting the key if needed but leaving its minimum and
+     * maximum unchanged.
+     *
+     * @param key Key to add to.
+     * @param sum Sum of the values to add.
+     * @param n Number of values.
+     */
+    public void addTotals(long key, double sum, long n) {
+        int slot           = this.insert(key);
+        this.counts[slot] += n;
+        this.sums[slot]   += sum;
+    }
+
+    /** Removes all keys from this table, keeping its slots. */
+    public void clear() {
+        Arrays.fill(this.used, false);
+        Arrays.fill(this.counts, 0);
+        Arrays.fill(this.sums, 0);
+        this.size = 0;
+    }
+
+    /**
+     * Adds all values of another table to this one.
+     *
+     * @param table Table whose values are added.
+     */
+    public void merge(AggregationTable table) {
+        this.merge(table, LongUnaryOperator.identity());
+    }
+
+    /**
+     * Adds all values of another table to this one, changing their keys.
+     *
+     * @param table Table whose values are added.
+     * @param remap Converts keys of <code>table</code> into keys of this table.
+     */
+    public void merge(AggregationTable table, LongUnaryOperator remap) {
+        for (int i = 0; i < table.keys.length; ++i) {
+            if (!table.used[i])
+                continue;
+
+            int slot           = this.insert(remap.applyAsLong(table.keys[i]));
+            this.counts[slot] += table.counts[i];
+            this.sums[slot]   += table.sums[i];
+            this.mins[slot]    = Math.min(this.mins[slot], table.mins[i]);
+            this.maxs[slot]    = Math.max(this.maxs[slot], table.maxs[i]);
+        }
+    }
+
+    /**
+     * Finds the slot of a key.
+     *
+     * @param key Key to look for.
+     * @return The slot where <code>key</code> is, or the empty slot where it would be inserted.
+     */
+    private int find(long key) {
+        int mask = this.keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+        while (this.used[slot] && this.keys[slot] != key)
+            slot = (slot + 1) & mask;
+        return slot;
+    }
+
+    /**
+     * Finds the slot of a key, inserting it with no values if needed.
+     *
+     * @param key Key to look for.
+     * @return The slot where <code>key</code> is.
+     */
+    private int insert(long key) {
+        int slot = this.find(key);
+        if (this.used[slot])
+            return slot;
+
+        if (2 * (this.size + 1) > this.keys.length) {
+            this.grow();
+            slot = this.find(key);
+        }
+
+        this.used[slot] = true;
+        this.keys[slot] = key;
+        this.mins[slot] = Double.POSITIVE_INFINITY;
+        this.maxs[slot] = Double.NEGATIVE_INFINITY;
+        this.size++;
+        return slot;
+    }
+
+    /** Doubles the number of slots of this table. */
+    private void grow() {
+        AggregationTable old = new AggregationTable(this);
+        int              n   = this.keys.length * 2;
+        this.keys            = new long[n];
+        this.used            = new boolean[n];
+        this.counts          = new double[n];
+        this.sums            = new double[n];
+        this.mins            = new double[n];
+        this.maxs            = new double[n];
+        this.size            = 0;
+        this.merge(old);
+    }
+
+    /**
+     * Checks if this table is equal to another object.
+     *
+     * @param obj Object to be compared with this table.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        AggregationTable table = (AggregationTable) obj;
+        if (this.size != table.size())
+            return false;
+        for (int i = 0; i < this.keys.length; ++i) {
+            if (!this.used[i])
+                continue;
+
+            int slot = table.find(this.keys[i]);
+            if (!table.used[slot] || this.counts[i] != table.counts[slot] ||
+                this.sums[i] != table.sums[slot] || this.mins[i] != table.mins[slot] ||
+                this.maxs[i] != table.maxs[slot])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Calculates the hash code of this table.
+     *
+     * @return The hash code of this table.
+     */
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        for (int i = 0; i < this.keys.length; ++i)
+            if (this.used[i])
+                hash += Long.hashCode(this.keys[i]) ^ Double.hashCode(this.sums[i]);
+        return hash;
+    }
+
+    /**
+     * Creates a deep copy of this table.
+     *
+     * @return A deep copy of this table.
+     */
+    @Override
+    public AggregationTable clone() {
+        return new AggregationTable(this);
+    }
+
+    /**
+     * Creates a debug string representation of this table.
+     *
+     * @return A debug string representation of this table.
+     */
+    @Override
+    public String toString() {
+        return String.format("AggregationTable(size = %d)", this.size);
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.function.Consumer;
+
+/**
+ * A query whose result only depends on its parameters and on the users it consumes, so that it can
+ * be kept in a <code>QueryCache</code> while those users don't change.
+ */
+public interface CacheableQuery extends Consumer<User> {
+    /**
+     * Gets what identifies this query among others: its class and its parameters.
+     *
+     * @return The key that identifies this query.
+     */
+    public QueryKey getKey();
+
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups (see <code>ActivityQuery</code>).
+     *
+     * @throws QueryException Rollups can't answer this query.
+     */
+    public void validate() throws QueryException;
+
+    /**
+     * Creates a deep copy of this query.
+     *
+     * @return A deep copy of this query.
+     */
+    public CacheableQuery clone();
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+/** A query that looks for the user for which some value (its score) is the highest. */
+public interface MaxQuery extends CacheableQuery {
+    /**
+     * Calculates the value this query maximizes for a user.
+     *
+     * @param user User to be scored.
+     * @return The score of <code>user</code>.
+     */
+    public double score(User user);
+
+    /**
+     * Creates a deep copy of this query.
+     *
+     * @return A deep copy of this query.
+     */
+    @Override
+    public MaxQuery clone();
+}
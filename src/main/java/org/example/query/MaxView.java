@@ -0,0 +1,228 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeSet;
+
+/**
+ * A standing view of a query that looks for the user with the highest score (e.g.:
+ * <code>QueryMostCalories</code>). The score of each user is kept in a set ordered by score, so
+ * that the leader can be replaced without scoring all users again when it's removed or loses its
+ * lead.
+ */
+public class MaxView extends StandingView {
+    /** Order of the ranking: highest score first, and lowest code first among equal scores. */
+    private static final Comparator<Map.Entry<Long, Double>> RANKING =
+        Map.Entry.<Long, Double>comparingByValue()
+            .reversed()
+            .thenComparing(Map.Entry.comparingByKey());
+
+    /** Query that scores users. */
+    private MaxQuery query;
+
+    /** Relation between user codes and their scores. */
+    private Map<Long, Double> scores;
+
+    /** Users and their scores, ordered from the leader to the last user. */
+    private TreeSet<Map.Entry<Long, Double>> ranking;
+
+    /** Identifier code of the user with the highest score (<code>null</code> if none). */
+    private Long maxUserCode;
+
+    /** Score of the user with the highest score. */
+    private double maxScore;
+
+    /** Creates a new view of the user with the most calories burned, without date restrictions. */
+    public MaxView() {
+        this(new QueryMostCalories());
+    }
+
+    /**
+     * Creates a new view of a query.
+     *
+     * @param query Query that scores users. Only its parameters are considered.
+     */
+    public MaxView(MaxQuery query) {
+        this.query       = query.clone();
+        this.scores      = new HashMap<Long, Double>();
+        this.ranking     = new TreeSet<Map.Entry<Long, Double>>(MaxView.RANKING);
+        this.maxUserCode = null;
+        this.maxScore    = -1;
+    }
+
+    /**
+     * Copy constructor of a view.
+     *
+     * @param view View to be copied.
+     */
+    public MaxView(MaxView view) {
+        this.query       = view.getQuery();
+        this.scores      = new HashMap<Long, Double>(view.scores);
+        this.ranking     = new TreeSet<Map.Entry<Long, Double>>(view.ranking);
+        this.maxUserCode = view.getMaxUserCode();
+        this.maxScore    = view.getMaxScore();
+    }
+
+    /**
+     * Gets the query that scores users.
+     *
+     * @return The query that scores users.
+     */
+    public MaxQuery getQuery() {
+        return this.query.clone();
+    }
+
+    /**
+     * Gets the identifier code of the user with the highest score.
+     *
+     * @return The identifier code of the user with the highest score. Can be <code>null</code> if
+     *     no users were provided.
+     */
+    public Long getMaxUserCode() {
+        return this.maxUserCode;
+    }
+
+    /**
+     * Gets the highest score among users.
+     *
+     * @return The highest score among users. This value is unspecified when no users were provided.
+     */
+    public double getMaxScore() {
+        return this.maxScore;
+    }
+
+    /**
+     * Takes into account a user that was added or changed, scoring it again.
+     *
+     * @param userCode Identifier code of the user in the application.
+     * @param user User that was added or changed.
+     */
+    public void update(long userCode, User user) {
+        // Scored first, so that the user isn't lost from the ranking if scoring fails
+        double score = this.query.score(user);
+        this.removeScore(userCode);
+        this.scores.put(userCode, score);
+        this.ranking.add(new AbstractMap.SimpleImmutableEntry<Long, Double>(userCode, score));
+        this.updateLeader();
+    }
+
+    /**
+     * Stops taking into account a user, if it was taken into account.
+     *
+     * @param userCode Identifier code of the user that was removed.
+     */
+    public void remove(long userCode) {
+        this.removeScore(userCode);
+        this.updateLeader();
+    }
+
+    /** Stops taking into account all users. */
+    public void clear() {
+        this.scores.clear();
+        this.ranking.clear();
+        this.updateLeader();
+    }
+
+    /**
+     * Checks that the query of this view can consume any user, including users whose old
+     * activities were compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer the query of this view.
+     */
+    public void validate() throws QueryException {
+        this.query.validate();
+    }
+
+    /**
+     * Removes the score of a user from the ranking.
+     *
+     * @param userCode Identifier code of the user.
+     */
+    private void removeScore(long userCode) {
+        Double score = this.scores.remove(userCode);
+        if (score != null)
+            this.ranking.remove(
+                new AbstractMap.SimpleImmutableEntry<Long, Double>(userCode, score));
+    }
+
+    /** Updates the leader after the ranking changes, so that it can be read in constant time. */
+    private void updateLeader() {
+        if (this.ranking.isEmpty()) {
+            this.maxUserCode = null;
+            this.maxScore    = -1;
+        } else {
+            Map.Entry<Long, Double> leader = this.ranking.first();
+            this.maxUserCode               = leader.getKey();
+            this.maxScore                  = leader.getValue();
+        }
+    }
+
+    /**
+     * Checks if this view is equal to another object.
+     *
+     * @param obj Object to be compared with this view.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        MaxView view = (MaxView) obj;
+        return this.query.getKey().equals(view.query.getKey()) && this.scores.equals(view.scores);
+    }
+
+    /**
+     * Calculates the hash code of this view.
+     *
+     * @return The hash code of this view.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.query.getKey(), this.scores);
+    }
+
+    /**
+     * Creates a deep copy of this view.
+     *
+     * @return A deep copy of this view.
+     */
+    @Override
+    public MaxView clone() {
+        return new MaxView(this);
+    }
+
+    /**
+     * Creates a debug string representation of this view.
+     *
+     * @return A debug string representation of this view.
+     */
+    @Override
+    public String toString() {
+        return String.format("MaxView(query = %s, maxUserCode = %s, maxScore = %.3f)",
+                             this.query.getKey().toString(),
+                             String.valueOf(this.maxUserCode),
+                             this.maxScore);
+    }
+}
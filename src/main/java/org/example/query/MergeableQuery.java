@@ -0,0 +1,43 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+/**
+ * A query that can consume different parts of the users separately, with its partial results
+ * combined at the end (e.g.: the users of each shard of a <code>ShardedFitnessModel</code>).
+ *
+ * @param <Q> Type of the query itself.
+ */
+public interface MergeableQuery<Q extends MergeableQuery<Q>> extends CacheableQuery {
+    /**
+     * Adds the results of another partial run of this query to this one. The result is the same as
+     * if this query had consumed the users consumed by both, in order of their codes.
+     *
+     * @param query Query whose results are added. Not modified.
+     * @throws QueryException Queries with different parameters.
+     */
+    public void merge(Q query) throws QueryException;
+
+    /**
+     * Creates a deep copy of this query.
+     *
+     * @return A deep copy of this query.
+     */
+    @Override
+    public Q clone();
+}
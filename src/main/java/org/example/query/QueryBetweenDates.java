@@ -18,10 +18,9 @@ package org.example.fitness;
 
 import java.time.LocalDateTime;
 import java.util.Objects;
-import java.util.function.Consumer;
 
 /** A query that only takes into account activities between two dates. */
-public abstract class QueryBetweenDates implements Consumer<User> {
+public abstract class QueryBetweenDates implements CacheableQuery {
     /** Don't consider activities that ended before this date. */
     private LocalDateTime start;
 
@@ -73,6 +72,15 @@ public abstract class QueryBetweenDates implements Consumer<User> {
         return this.end;
     }
 
+    /**
+     * Gets what identifies this query among others: its class and its dates.
+     *
+     * @return The key that identifies this query.
+     */
+    public QueryKey getKey() {
+        return new QueryKey(this.getClass(), this.start, this.end);
+    }
+
     /**
      * Checks if an activity fits the date criteria for this query.
      *
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of the results of queries, that keeps the most recently used ones. Each result is stored
+ * with the version of the data it was computed from, and is only returned while that version is
+ * current. It can be shared between threads.
+ */
+public class QueryCache {
+    /** A finished query and the version of the data it consumed. */
+    private static class Entry {
+        /** Version of the data the query consumed. */
+        private final long version;
+
+        /** Query that has already consumed the data. */
+        private final CacheableQuery query;
+
+        /**
+         * Creates a new entry.
+         *
+         * @param version Version of the data the query consumed.
+         * @param query Query that has already consumed the data.
+         */
+        public Entry(long version, CacheableQuery query) {
+            this.version = version;
+            this.query   = query;
+        }
+    }
+
+    /** Maximum number of results kept in memory. */
+    private int capacity;
+
+    /** Results of queries, from least to most recently used. */
+    private LinkedHashMap<QueryKey, Entry> results;
+
+    /** Creates a new query cache that keeps up to 64 results in memory. */
+    public QueryCache() {
+        this(64);
+    }
+
+    /**
+     * Creates a new empty query cache.
+     *
+     * @param capacity Maximum number of results kept in memory.
+     */
+    public QueryCache(int capacity) {
+        this.capacity = capacity;
+        this.results  = new LinkedHashMap<QueryKey, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QueryKey, Entry> eldest) {
+                return this.size() > QueryCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Copy constructor of a query cache. The cached results aren't copied.
+     *
+     * @param cache Query cache to be copied.
+     */
+    public QueryCache(QueryCache cache) {
+        this(cache.getCapacity());
+    }
+
+    /**
+     * Gets the maximum number of results kept in memory.
+     *
+     * @return The maximum number of results kept in memory.
+     */
+    public int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the number of results currently kept in memory.
+     *
+     * @return The number of results currently kept in memory.
+     */
+    public synchronized int getSize() {
+        return this.results.size();
+    }
+
+    /**
+     * Gets the result of a query, if it was computed from the current version of the data.
+     *
+     * @param key Key of the query.
+     * @param version Current version of the data the query consumes.
+     * @return The query after consuming the data, that must not be modified. <code>null</code> if
+     *     it isn't in the cache or if it was computed from another version of the data.
+     */
+    public synchronized CacheableQuery get(QueryKey key, long version) {
+        Entry entry = this.results.get(key);
+        if (entry == null)
+            return null;
+
+        if (entry.version != version) {
+            this.results.remove(key);
+            return null;
+        }
+        return entry.query;
+    }
+
+    /**
+     * Stores the result of a query, replacing any older result for the same key.
+     *
+     * @param key Key of the query.
+     * @param version Version of the data the query consumed.
+     * @param query Query after consuming the data, that mustn't be modified afterwards.
+     */
+    public synchronized void put(QueryKey key, long version, CacheableQuery query) {
+        this.results.put(key, new Entry(version, query));
+    }
+
+    /** Removes all results from memory. */
+    public synchronized void clear() {
+        this.results.clear();
+    }
+
+    /**
+     * Creates a new empty query cache with the same capacity as this one.
+     *
+     * @return A new empty query cache with the same capacity as this one.
+     */
+    @Override
+    public QueryCache clone() {
+        return new QueryCache(this);
+    }
+
+    /**
+     * Creates a debug string representation of this query cache.
+     *
+     * @return A debug string representation of this query cache.
+     */
+    @Override
+    public String toString() {
+        return String.format("QueryCache(capacity = %d, size = %d)", this.capacity, this.getSize());
+    }
+}
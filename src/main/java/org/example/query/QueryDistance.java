@@ -30,12 +30,16 @@ public class QueryDistance extends QueryBetweenDates {
     /** Distance run by the user that was considered. */
     private double distance;
 
+    /** This query, expressed as an <code>ActivityQuery</code> (created when first needed). */
+    private ActivityQuery expression;
+
     /** Creates a new query without date or distance activity restrictions. */
     public QueryDistance() {
         super();
         this.activityType = ActivityDistance.class;
         this.user         = null;
         this.distance     = -1.0;
+        this.expression   = null;
     }
 
     /**
@@ -49,6 +53,7 @@ public class QueryDistance extends QueryBetweenDates {
         this.activityType = activityType;
         this.user         = null;
         this.distance     = -1.0;
+        this.expression   = null;
     }
 
     /**
@@ -66,6 +71,7 @@ public class QueryDistance extends QueryBetweenDates {
         this.activityType = activityType;
         this.user         = null;
         this.distance     = -1.0;
+        this.expression   = null;
     }
 
     /**
@@ -78,6 +84,7 @@ public class QueryDistance extends QueryBetweenDates {
         this.activityType = query.getActivityType();
         this.user         = query.getUser();
         this.distance     = query.getDistance();
+        this.expression   = null;
     }
 
     /**
@@ -112,6 +119,17 @@ public class QueryDistance extends QueryBetweenDates {
         return this.distance;
     }
 
+    /**
+     * Gets what identifies this query among others: its class, its dates and the type of activity
+     * it's concerned with.
+     *
+     * @return The key that identifies this query.
+     */
+    @Override
+    public QueryKey getKey() {
+        return new QueryKey(this.getClass(), this.getStart(), this.getEnd(), this.activityType);
+    }
+
     /**
      * Calculates the hash code of this query.
      *
@@ -122,6 +140,21 @@ public class QueryDistance extends QueryBetweenDates {
         return Objects.hash(super.hashCode(), this.activityType, this.user, this.distance);
     }
 
+    /**
+     * Gets this query, expressed as an <code>ActivityQuery</code>.
+     *
+     * @return This query, expressed as an <code>ActivityQuery</code>.
+     */
+    private ActivityQuery getExpression() {
+        if (this.expression == null)
+            this.expression = new ActivityQuery()
+                                  .between(this.getStart(), this.getEnd())
+                                  .ofType(this.activityType)
+                                  .aggregate(ActivityQuery.Aggregate.SUM,
+                                             ActivityQuery.Field.DISTANCE);
+        return this.expression;
+    }
+
     /**
      * Consumes a user to gets the information about its training plan.
      *
@@ -129,13 +162,20 @@ public class QueryDistance extends QueryBetweenDates {
      */
     @Override
     public void accept(User user) {
-        this.user     = user.clone();
-        this.distance = user.getActivities()
-                            .getDone()
-                            .stream()
-                            .filter(a -> this.activityFits(a) && this.activityType.isInstance(a))
-                            .mapToDouble(a -> ((ActivityDistance) a).getDistanceToTraverse())
-                            .sum();
+        this.user = user.clone();
+        try {
+            this.distance = this.getExpression().evaluate(user);
+        } catch (QueryException e) {} // Can't happen
+    }
+
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer this query.
+     */
+    public void validate() throws QueryException {
+        this.getExpression().validate();
     }
 
     /**
@@ -0,0 +1,34 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+/** An exception thrown when a query can't be run or combined with another. */
+public class QueryException extends Exception {
+    /** Constructor for QueryException with the default message. */
+    public QueryException() {
+        super("Invalid query!");
+    }
+
+    /**
+     * Constructor for QueryException.
+     *
+     * @param msg Exception message.
+     */
+    public QueryException(String msg) {
+        super(msg);
+    }
+}
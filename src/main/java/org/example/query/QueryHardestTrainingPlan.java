@@ -17,20 +17,24 @@
 package org.example.fitness;
 
 import java.util.Objects;
-import java.util.function.Consumer;
 
 /** A query that determines the user that has the training plan that burns the most calories. */
-public class QueryHardestTrainingPlan implements Consumer<User> {
+public class QueryHardestTrainingPlan
+    implements MaxQuery, MergeableQuery<QueryHardestTrainingPlan> {
     /** User whose training plan burns the most calories. */
     private User maxUser;
 
     /** Calories burned by the hardest training plan. */
     private double maxCalories;
 
+    /** This query, expressed as an <code>ActivityQuery</code> (created when first needed). */
+    private ActivityQuery expression;
+
     /** Creates a new query. */
     public QueryHardestTrainingPlan() {
         this.maxUser     = null;
         this.maxCalories = -1;
+        this.expression  = null;
     }
 
     /**
@@ -41,6 +45,7 @@ public class QueryHardestTrainingPlan implements Consumer<User> {
     public QueryHardestTrainingPlan(QueryHardestTrainingPlan query) {
         this.maxUser     = query.getMaxUser();
         this.maxCalories = query.getMaxCalories();
+        this.expression  = null;
     }
 
     /**
@@ -66,19 +71,76 @@ public class QueryHardestTrainingPlan implements Consumer<User> {
         return this.maxCalories;
     }
 
+    /**
+     * Gets this query, expressed as an <code>ActivityQuery</code>.
+     *
+     * @return This query, expressed as an <code>ActivityQuery</code>.
+     */
+    private ActivityQuery getExpression() {
+        if (this.expression == null)
+            this.expression = new ActivityQuery()
+                                  .from(ActivityQuery.Source.TRAINING_PLAN)
+                                  .aggregate(ActivityQuery.Aggregate.SUM,
+                                             ActivityQuery.Field.CALORIES);
+        return this.expression;
+    }
+
+    /**
+     * Calculates the calories burned by a user's training plan.
+     *
+     * @param user User whose training plan is considered.
+     * @return The calories burned by the training plan of <code>user</code>.
+     */
+    public double score(User user) {
+        try {
+            return this.getExpression().evaluate(user);
+        } catch (QueryException e) {
+            return 0; // Can't happen
+        }
+    }
+
     /**
      * Consumes a user to gets the information about its training plan.
      *
      * @param user User to be consumed.
      */
     public void accept(User user) {
-        double calories = user.getActivities().getTrainingPlan().countCalories(user);
+        double calories = this.score(user);
         if (calories > this.maxCalories) {
             this.maxCalories = calories;
             this.maxUser     = user.clone();
         }
     }
 
+    /**
+     * Adds the results of another partial run of this query to this one, keeping the user with
+     * the hardest training plan among both (the one with the lowest code, in case of a tie).
+     *
+     * @param query Query whose results are added.
+     * @throws QueryException Queries with different parameters.
+     */
+    public void merge(QueryHardestTrainingPlan query) throws QueryException {
+        if (!this.getKey().equals(query.getKey()))
+            throw new QueryException("Queries with different parameters!");
+
+        if (query.maxUser != null &&
+            (this.maxUser == null || query.maxCalories > this.maxCalories ||
+             (query.maxCalories == this.maxCalories &&
+              query.maxUser.getCode() < this.maxUser.getCode()))) {
+            this.maxCalories = query.getMaxCalories();
+            this.maxUser     = query.getMaxUser();
+        }
+    }
+
+    /**
+     * Gets what identifies this query among others. It has no parameters, so only its class does.
+     *
+     * @return The key that identifies this query.
+     */
+    public QueryKey getKey() {
+        return new QueryKey(this.getClass());
+    }
+
     /**
      * Calculates the hash code of this query.
      *
@@ -107,6 +169,16 @@ public class QueryHardestTrainingPlan implements Consumer<User> {
             this.maxCalories == query.getMaxCalories();
     }
 
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer this query.
+     */
+    public void validate() throws QueryException {
+        this.getExpression().validate();
+    }
+
     /**
      * Creates a deep copy of this query.
      *
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+
+/** What identifies a query among others: its class and the parameters it was created with. */
+public class QueryKey {
+    /** Class of the query. */
+    private Class<?> type;
+
+    /** Parameters of the query (e.g.: dates). */
+    private List<Object> parameters;
+
+    /** Creates a new key for a query without a class nor parameters. */
+    public QueryKey() {
+        this.type       = Object.class;
+        this.parameters = new ArrayList<Object>();
+    }
+
+    /**
+     * Creates a new key from the value of its fields.
+     *
+     * @param type Class of the query.
+     * @param parameters Parameters of the query. They must be immutable.
+     */
+    public QueryKey(Class<?> type, Object... parameters) {
+        this.type       = type;
+        this.parameters = new ArrayList<Object>(Arrays.asList(parameters));
+    }
+
+    /**
+     * Copy constructor of a key.
+     *
+     * @param key Key to be copied.
+     */
+    public QueryKey(QueryKey key) {
+        this.type       = key.getType();
+        this.parameters = key.getParameters();
+    }
+
+    /**
+     * Gets the class of the query.
+     *
+     * @return The class of the query.
+     */
+    public Class<?> getType() {
+        return this.type;
+    }
+
+    /**
+     * Gets the parameters of the query.
+     *
+     * @return The parameters of the query.
+     */
+    public List<Object> getParameters() {
+        return new ArrayList<Object>(this.parameters);
+    }
+
+    /**
+     * Creates a key for the same query but that only considers one user.
+     *
+     * @param userCode Identifier code of the user considered.
+     * @return A key for the same query, with <code>userCode</code> as its last parameter.
+     */
+    public QueryKey forUser(long userCode) {
+        QueryKey key = new QueryKey(this);
+        key.parameters.add(userCode);
+        return key;
+    }
+
+    /**
+     * Checks if this key is equal to another object.
+     *
+     * @param obj Object to be compared with this key.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        QueryKey key = (QueryKey) obj;
+        return this.type.equals(key.type) && this.parameters.equals(key.parameters);
+    }
+
+    /**
+     * Calculates the hash code of this key.
+     *
+     * @return The hash code of this key.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.type, this.parameters);
+    }
+
+    /**
+     * Creates a deep copy of this key.
+     *
+     * @return A deep copy of this key.
+     */
+    @Override
+    public QueryKey clone() {
+        return new QueryKey(this);
+    }
+
+    /**
+     * Creates a debug string representation of this key.
+     *
+     * @return A debug string representation of this key.
+     */
+    @Override
+    public String toString() {
+        return String.format("QueryKey(type = %s, parameters = %s)",
+                             this.type.getSimpleName(),
+                             this.parameters.toString());
+    }
+}
@@ -20,18 +20,23 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 /** A query that determines the user that has executed the most activities. */
-public class QueryMostActivities extends QueryBetweenDates {
+public class QueryMostActivities extends QueryBetweenDates
+    implements MaxQuery, MergeableQuery<QueryMostActivities> {
     /** User with the most activities executed. */
     private User maxUser;
 
     /** Number of activities executed by the user with the most activities. */
     private long maxActivities;
 
+    /** This query, expressed as an <code>ActivityQuery</code> (created when first needed). */
+    private ActivityQuery expression;
+
     /** Creates a new query without date restrictions. */
     public QueryMostActivities() {
         super();
         this.maxUser       = null;
         this.maxActivities = -1;
+        this.expression    = null;
     }
 
     /**
@@ -44,6 +49,7 @@ public class QueryMostActivities extends QueryBetweenDates {
         super(start, end);
         this.maxUser       = null;
         this.maxActivities = -1;
+        this.expression    = null;
     }
 
     /**
@@ -55,6 +61,7 @@ public class QueryMostActivities extends QueryBetweenDates {
         super(query);
         this.maxUser       = query.getMaxUser();
         this.maxActivities = query.getMaxActivities();
+        this.expression    = null;
     }
 
     /**
@@ -80,21 +87,64 @@ public class QueryMostActivities extends QueryBetweenDates {
         return this.maxActivities;
     }
 
+    /**
+     * Gets this query, expressed as an <code>ActivityQuery</code>.
+     *
+     * @return This query, expressed as an <code>ActivityQuery</code>.
+     */
+    private ActivityQuery getExpression() {
+        if (this.expression == null)
+            this.expression = new ActivityQuery().between(this.getStart(), this.getEnd());
+        return this.expression;
+    }
+
+    /**
+     * Counts the activities a user executed between the dates of this query.
+     *
+     * @param user User whose activities are counted.
+     * @return The number of activities <code>user</code> executed between the dates of this query.
+     */
+    public double score(User user) {
+        try {
+            return this.getExpression().evaluate(user);
+        } catch (QueryException e) {
+            return 0; // Can't happen
+        }
+    }
+
     /**
      * Consumes a user to get the information about its activities.
      *
      * @param user User to be consumed.
      */
     public void accept(User user) {
-        long activityCount =
-            user.getActivities().getDone().stream().filter(a -> this.activityFits(a)).count();
-
+        long activityCount = (long) this.score(user);
         if (activityCount > this.maxActivities) {
             this.maxActivities = activityCount;
             this.maxUser       = user.clone();
         }
     }
 
+    /**
+     * Adds the results of another partial run of this query to this one, keeping the user with
+     * the most activities among both (the one with the lowest code, in case of a tie).
+     *
+     * @param query Query whose results are added.
+     * @throws QueryException Queries with different parameters.
+     */
+    public void merge(QueryMostActivities query) throws QueryException {
+        if (!this.getKey().equals(query.getKey()))
+            throw new QueryException("Queries with different parameters!");
+
+        if (query.maxUser != null &&
+            (this.maxUser == null || query.maxActivities > this.maxActivities ||
+             (query.maxActivities == this.maxActivities &&
+              query.maxUser.getCode() < this.maxUser.getCode()))) {
+            this.maxActivities = query.getMaxActivities();
+            this.maxUser       = query.getMaxUser();
+        }
+    }
+
     /**
      * Calculates the hash code of this query.
      *
@@ -123,6 +173,16 @@ public class QueryMostActivities extends QueryBetweenDates {
             this.maxActivities == query.getMaxActivities();
     }
 
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer this query.
+     */
+    public void validate() throws QueryException {
+        this.getExpression().validate();
+    }
+
     /**
      * Creates a deep copy of this query.
      *
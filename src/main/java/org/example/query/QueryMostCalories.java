@@ -20,18 +20,23 @@ import java.time.LocalDateTime;
 import java.util.Objects;
 
 /** A query that determines the user that burned the most calories. */
-public class QueryMostCalories extends QueryBetweenDates {
+public class QueryMostCalories extends QueryBetweenDates
+    implements MaxQuery, MergeableQuery<QueryMostCalories> {
     /** User that burned the most calories. */
     private User maxUser;
 
     /** Calories burned by the user with the most calories burned. */
     private double maxCalories;
 
+    /** This query, expressed as an <code>ActivityQuery</code> (created when first needed). */
+    private ActivityQuery expression;
+
     /** Creates a new query without date restrictions. */
     public QueryMostCalories() {
         super();
         this.maxUser     = null;
         this.maxCalories = -1;
+        this.expression  = null;
     }
 
     /**
@@ -44,6 +49,7 @@ public class QueryMostCalories extends QueryBetweenDates {
         super(start, end);
         this.maxUser     = null;
         this.maxCalories = -1;
+        this.expression  = null;
     }
 
     /**
@@ -55,6 +61,7 @@ public class QueryMostCalories extends QueryBetweenDates {
         super(query);
         this.maxUser     = query.getMaxUser();
         this.maxCalories = query.getMaxCalories();
+        this.expression  = null;
     }
 
     /**
@@ -80,25 +87,67 @@ public class QueryMostCalories extends QueryBetweenDates {
         return this.maxCalories;
     }
 
+    /**
+     * Gets this query, expressed as an <code>ActivityQuery</code>.
+     *
+     * @return This query, expressed as an <code>ActivityQuery</code>.
+     */
+    private ActivityQuery getExpression() {
+        if (this.expression == null)
+            this.expression = new ActivityQuery()
+                                  .between(this.getStart(), this.getEnd())
+                                  .aggregate(ActivityQuery.Aggregate.SUM,
+                                             ActivityQuery.Field.CALORIES);
+        return this.expression;
+    }
+
+    /**
+     * Calculates the calories a user burned between the dates of this query.
+     *
+     * @param user User whose activities are considered.
+     * @return The calories <code>user</code> burned between the dates of this query.
+     */
+    public double score(User user) {
+        try {
+            return this.getExpression().evaluate(user);
+        } catch (QueryException e) {
+            return 0; // Can't happen
+        }
+    }
+
     /**
      * Consumes a user to get the information about its activities.
      *
      * @param user User to be consumed.
      */
     public void accept(User user) {
-        double calories = user.getActivities()
-                              .getDone()
-                              .stream()
-                              .filter(a -> this.activityFits(a))
-                              .mapToDouble(a -> a.countCalories(user))
-                              .sum();
-
+        double calories = this.score(user);
         if (calories > this.maxCalories) {
             this.maxCalories = calories;
             this.maxUser     = user.clone();
         }
     }
 
+    /**
+     * Adds the results of another partial run of this query to this one, keeping the user with
+     * the most calories burned among both (the one with the lowest code, in case of a tie).
+     *
+     * @param query Query whose results are added.
+     * @throws QueryException Queries with different parameters.
+     */
+    public void merge(QueryMostCalories query) throws QueryException {
+        if (!this.getKey().equals(query.getKey()))
+            throw new QueryException("Queries with different parameters!");
+
+        if (query.maxUser != null &&
+            (this.maxUser == null || query.maxCalories > this.maxCalories ||
+             (query.maxCalories == this.maxCalories &&
+              query.maxUser.getCode() < this.maxUser.getCode()))) {
+            this.maxCalories = query.getMaxCalories();
+            this.maxUser     = query.getMaxUser();
+        }
+    }
+
     /**
      * Calculates the hash code of this query.
      *
@@ -127,6 +176,16 @@ public class QueryMostCalories extends QueryBetweenDates {
             this.maxCalories == query.getMaxCalories();
     }
 
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer this query.
+     */
+    public void validate() throws QueryException {
+        this.getExpression().validate();
+    }
+
     /**
      * Creates a deep copy of this activity.
      *
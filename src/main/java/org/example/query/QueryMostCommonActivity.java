@@ -20,17 +20,19 @@ import java.util.AbstractMap;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
-import java.util.function.Consumer;
 
 /** A query that determines the activity that was executed the most times. */
-public class QueryMostCommonActivity implements Consumer<User> {
+public class QueryMostCommonActivity implements MergeableQuery<QueryMostCommonActivity> {
     /** Relation between activity class names and their number of occurrences. */
     private Map<String, Integer> activities;
 
+    /** Query that counts the executions of each activity of a user (created when first needed). */
+    private ActivityQuery expression;
+
     /** Creates a new query. */
     public QueryMostCommonActivity() {
         this.activities = new HashMap<String, Integer>();
+        this.expression = null;
     }
 
     /**
@@ -40,6 +42,7 @@ public class QueryMostCommonActivity implements Consumer<User> {
      */
     public QueryMostCommonActivity(QueryMostCommonActivity query) {
         this.activities = query.getActivities();
+        this.expression = null;
     }
 
     /**
@@ -64,18 +67,68 @@ public class QueryMostCommonActivity implements Consumer<User> {
             Collections.max(this.activities.entrySet(), Map.Entry.comparingByValue()));
     }
 
+    /**
+     * Gets the query that counts the executions of each activity of a user, creating it if needed.
+     *
+     * @return The query that counts the executions of each activity of a user.
+     */
+    private ActivityQuery getExpression() {
+        if (this.expression == null)
+            this.expression = new ActivityQuery()
+                                  .groupBy(ActivityQuery.GroupBy.ACTIVITY_TYPE)
+                                  .aggregate(ActivityQuery.Aggregate.COUNT,
+                                             ActivityQuery.Field.EXECUTIONS);
+        return this.expression;
+    }
+
+    /**
+     * Counts how many times a user executed each activity.
+     *
+     * @param user User whose activities are counted.
+     * @return The relation between activity class names and the number of times <code>user</code>
+     *     executed them.
+     */
+    public Map<String, Integer> tally(User user) {
+        ActivityQuery query = this.getExpression();
+        query.clear();
+        query.accept(user);
+
+        Map<String, Integer> tally = new HashMap<String, Integer>();
+        try {
+            query.getGroups().forEach(
+                (key, n) -> { tally.put(query.getGroupName(key), (int) (double) n); });
+        } catch (QueryException e) {} // Can't happen
+        return tally;
+    }
+
     /**
      * Consumes a user to get the information about its activities.
      *
      * @param user User to be consumed.
      */
     public void accept(User user) {
-        int           activityCount = 0;
-        Set<Activity> activities    = user.getActivities().getDone();
-        for (Activity activity : activities) {
-            String name = activity.getClass().getSimpleName();
-            this.activities.put(name, this.activities.getOrDefault(name, 0) + 1);
-        }
+        this.tally(user).forEach(
+            (name, n) -> { this.activities.put(name, this.activities.getOrDefault(name, 0) + n); });
+    }
+
+    /**
+     * Adds the number of occurrences of each activity counted by another partial run of this query
+     * to this one.
+     *
+     * @param query Query whose occurrences are added.
+     */
+    public void merge(QueryMostCommonActivity query) {
+        query.getActivities().forEach(
+            (name, n) -> { this.activities.merge(name, n, Integer::sum); });
+    }
+
+    /**
+     * Gets what identifies this query among others. It has no parameters, so only its class does.
+     *
+     * @return The key that identifies this query.
+     */
+    public QueryKey getKey() {
+        return new QueryKey(this.getClass());
     }
 
     /**
@@ -88,6 +141,16 @@ public class QueryMostCommonActivity implements Consumer<User> {
         return this.activities.hashCode();
     }
 
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer this query.
+     */
+    public void validate() throws QueryException {
+        this.getExpression().validate();
+    }
+
     /**
      * Creates a deep copy of this activity.
      *
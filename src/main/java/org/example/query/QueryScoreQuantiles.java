@@ -0,0 +1,179 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.Objects;
+
+/**
+ * A query that estimates quantiles (e.g.: the median) of the scores of users according to another
+ * query (e.g.: the calories burned, using <code>QueryMostCalories</code>). Scores are summarized in
+ * a <code>ScoreSketch</code> as users are consumed, and users themselves aren't kept.
+ */
+public class QueryScoreQuantiles implements MergeableQuery<QueryScoreQuantiles> {
+    /** Query that scores users. */
+    private MaxQuery query;
+
+    /** Summary of the scores of the users consumed. */
+    private ScoreSketch sketch;
+
+    /** Creates a new query for the quantiles of the calories burned by users. */
+    public QueryScoreQuantiles() {
+        this(new QueryMostCalories(), 0.01);
+    }
+
+    /**
+     * Creates a new query.
+     *
+     * @param query Query that scores users. Only its parameters are considered.
+     * @param accuracy Maximum relative error of estimated quantiles.
+     * @throws IllegalArgumentException <code>accuracy</code> not between <code>0</code> and
+     *     <code>1</code>.
+     */
+    public QueryScoreQuantiles(MaxQuery query, double accuracy) {
+        this.query  = query.clone();
+        this.sketch = new ScoreSketch(accuracy);
+    }
+
+    /**
+     * Copy constructor of a query.
+     *
+     * @param query Query to be copied.
+     */
+    public QueryScoreQuantiles(QueryScoreQuantiles query) {
+        this.query  = query.getQuery();
+        this.sketch = query.getSketch();
+    }
+
+    /**
+     * Gets the query that scores users.
+     *
+     * @return The query that scores users.
+     */
+    public MaxQuery getQuery() {
+        return this.query.clone();
+    }
+
+    /**
+     * Gets the summary of the scores of the users consumed.
+     *
+     * @return The summary of the scores of the users consumed.
+     */
+    public ScoreSketch getSketch() {
+        return this.sketch.clone();
+    }
+
+    /**
+     * Estimates a quantile of the scores of the users consumed.
+     *
+     * @param quantile Quantile to estimate (e.g.: <code>0.99</code> for the 99th percentile).
+     * @return An estimate of the quantile. <code>NaN</code> if no users were provided.
+     */
+    public double getQuantile(double quantile) {
+        return this.sketch.getQuantile(quantile);
+    }
+
+    /**
+     * Consumes a user, adding its score to the summary.
+     *
+     * @param user User to be consumed.
+     */
+    public void accept(User user) {
+        this.sketch.add(this.query.score(user));
+    }
+
+    /**
+     * Adds the scores consumed by another query to this one, so that users can be consumed by
+     * different queries and then combined.
+     *
+     * @param query Query whose scores are added.
+     * @throws QueryException Queries with different parameters.
+     */
+    public void merge(QueryScoreQuantiles query) throws QueryException {
+        if (!this.getKey().equals(query.getKey()))
+            throw new QueryException("Queries with different parameters!");
+        this.sketch.merge(query.sketch);
+    }
+
+    /**
+     * Gets what identifies this query among others: its class, the query that scores users and the
+     * accuracy of the estimates.
+     *
+     * @return The key that identifies this query.
+     */
+    public QueryKey getKey() {
+        return new QueryKey(this.getClass(), this.query.getKey(), this.sketch.getAccuracy());
+    }
+
+    /**
+     * Calculates the hash code of this query.
+     *
+     * @return The hash code of this query.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.query.getKey(), this.sketch);
+    }
+
+    /**
+     * Checks if this query is equal to another object.
+     *
+     * @param obj Object to be compared with this query.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        QueryScoreQuantiles query = (QueryScoreQuantiles) obj;
+        return this.query.getKey().equals(query.query.getKey()) && this.sketch.equals(query.sketch);
+    }
+
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer the query that scores users.
+     */
+    public void validate() throws QueryException {
+        this.query.validate();
+    }
+
+    /**
+     * Creates a deep copy of this query.
+     *
+     * @return A deep copy of this query.
+     */
+    @Override
+    public QueryScoreQuantiles clone() {
+        return new QueryScoreQuantiles(this);
+    }
+
+    /**
+     * Creates a debug string representation of this query.
+     *
+     * @return A debug string representation of this query.
+     */
+    @Override
+    public String toString() {
+        return String.format("QueryScoreQuantiles(query = %s, sketch = %s)",
+                             this.query.toString(),
+                             this.sketch.toString());
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+
+/**
+ * A query that determines the users with the highest scores according to another query (e.g.: the
+ * users that burned the most calories, using <code>QueryMostCalories</code>). Only the codes and
+ * scores of the best users found so far are kept while users are consumed.
+ */
+public class QueryTopUsers implements MergeableQuery<QueryTopUsers> {
+    /** Order of users from the worst to the best: lowest score, and highest code among equals. */
+    private static final Comparator<Map.Entry<Long, Double>> WORST_FIRST =
+        Map.Entry.<Long, Double>comparingByValue().thenComparing(
+            Map.Entry.<Long, Double>comparingByKey().reversed());
+
+    /** Query that scores users. */
+    private MaxQuery query;
+
+    /** Maximum number of users determined. */
+    private int k;
+
+    /** Codes and scores of the best users found so far, with the worst one at the head. */
+    private PriorityQueue<Map.Entry<Long, Double>> top;
+
+    /** Creates a new query for the 10 users that burned the most calories. */
+    public QueryTopUsers() {
+        this(new QueryMostCalories(), 10);
+    }
+
+    /**
+     * Creates a new query.
+     *
+     * @param query Query that scores users. Only its parameters are considered.
+     * @param k Maximum number of users determined.
+     */
+    public QueryTopUsers(MaxQuery query, int k) {
+        this.query = query.clone();
+        this.k     = k;
+        this.top   = new PriorityQueue<Map.Entry<Long, Double>>(k + 1, QueryTopUsers.WORST_FIRST);
+    }
+
+    /**
+     * Copy constructor of a query.
+     *
+     * @param query Query to be copied.
+     */
+    public QueryTopUsers(QueryTopUsers query) {
+        this.query = query.getQuery();
+        this.k     = query.getK();
+        this.top   = new PriorityQueue<Map.Entry<Long, Double>>(query.top);
+    }
+
+    /**
+     * Gets the query that scores users.
+     *
+     * @return The query that scores users.
+     */
+    public MaxQuery getQuery() {
+        return this.query.clone();
+    }
+
+    /**
+     * Gets the maximum number of users determined.
+     *
+     * @return The maximum number of users determined.
+     */
+    public int getK() {
+        return this.k;
+    }
+
+    /**
+     * Gets the users with the highest scores.
+     *
+     * @return The codes and scores of the users with the highest scores, from the best to the
+     *     worst. Users with the same score are ordered by code.
+     */
+    public List<Map.Entry<Long, Double>> getTopUsers() {
+        List<Map.Entry<Long, Double>> ret = new ArrayList<Map.Entry<Long, Double>>(this.top);
+        ret.sort(QueryTopUsers.WORST_FIRST.reversed());
+        return ret;
+    }
+
+    /**
+     * Consumes a user, keeping it if it's among the best users found so far.
+     *
+     * @param user User to be consumed.
+     */
+    public void accept(User user) {
+        if (this.k <= 0)
+            return;
+
+        this.offer(new AbstractMap.SimpleImmutableEntry<Long, Double>(user.getCode(),
+                                                                      this.query.score(user)));
+    }
+
+    /**
+     * Adds the best users found by another partial run of this query to this one, keeping only the
+     * best among both.
+     *
+     * @param query Query whose best users are added.
+     * @throws QueryException Queries with different parameters.
+     */
+    public void merge(QueryTopUsers query) throws QueryException {
+        if (!this.getKey().equals(query.getKey()))
+            throw new QueryException("Queries with different parameters!");
+        for (Map.Entry<Long, Double> entry : query.top)
+            this.offer(entry);
+    }
+
+    /**
+     * Keeps a user if it's among the best users found so far.
+     *
+     * @param entry Code and score of the user.
+     */
+    private void offer(Map.Entry<Long, Double> entry) {
+        if (this.top.size() < this.k) {
+            this.top.add(entry);
+        } else if (QueryTopUsers.WORST_FIRST.compare(entry, this.top.peek()) > 0) {
+            this.top.poll();
+            this.top.add(entry);
+        }
+    }
+
+    /**
+     * Gets what identifies this query among others: its class, the query that scores users and the
+     * number of users determined.
+     *
+     * @return The key that identifies this query.
+     */
+    public QueryKey getKey() {
+        return new QueryKey(this.getClass(), this.query.getKey(), this.k);
+    }
+
+    /**
+     * Calculates the hash code of this query.
+     *
+     * @return The hash code of this query.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.getKey(), this.getTopUsers());
+    }
+
+    /**
+     * Checks if this query is equal to another object.
+     *
+     * @param obj Object to be compared with this query.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        QueryTopUsers query = (QueryTopUsers) obj;
+        return this.getKey().equals(query.getKey()) &&
+            this.getTopUsers().equals(query.getTopUsers());
+    }
+
+    /**
+     * Checks that this query can consume any user, including users whose old activities were
+     * compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer the query that scores users.
+     */
+    public void validate() throws QueryException {
+        this.query.validate();
+    }
+
+    /**
+     * Creates a deep copy of this query.
+     *
+     * @return A deep copy of this query.
+     */
+    @Override
+    public QueryTopUsers clone() {
+        return new QueryTopUsers(this);
+    }
+
+    /**
+     * Creates a debug string representation of this query.
+     *
+     * @return A debug string representation of this query.
+     */
+    @Override
+    public String toString() {
+        return String.format("QueryTopUsers(query = %s, k = %d)", this.query.toString(), this.k);
+    }
+}
@@ -0,0 +1,204 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+/**
+ * A compact summary of many scores, from which their quantiles can be estimated with bounded
+ * relative error. Scores are counted in buckets whose bounds grow geometrically, so the memory used
+ * only grows with the logarithm of the range of scores. Two summaries can be merged by adding their
+ * buckets.
+ */
+public class ScoreSketch {
+    /** Maximum relative error of estimated quantiles. */
+    private double accuracy;
+
+    /** Ratio between the upper and lower bounds of each bucket. */
+    private double gamma;
+
+    /** Relation between bucket indices and the number of scores in them. */
+    private TreeMap<Integer, Long> buckets;
+
+    /** Number of scores that aren't positive (they aren't kept in buckets). */
+    private long zeros;
+
+    /** Total number of scores. */
+    private long count;
+
+    /** Creates a new empty sketch with 1% of relative error. */
+    public ScoreSketch() {
+        this(0.01);
+    }
+
+    /**
+     * Creates a new empty sketch.
+     *
+     * @param accuracy Maximum relative error of estimated quantiles (between <code>0</code> and
+     *     <code>1</code>, exclusive).
+     * @throws IllegalArgumentException <code>accuracy</code> not between <code>0</code> and
+     *     <code>1</code>.
+     */
+    public ScoreSketch(double accuracy) {
+        if (!(accuracy > 0 && accuracy < 1)) // Also rejects NaN
+            throw new IllegalArgumentException("Invalid accuracy");
+
+        this.accuracy = accuracy;
+        this.gamma    = (1 + accuracy) / (1 - accuracy);
+        this.buckets  = new TreeMap<Integer, Long>();
+        this.zeros    = 0;
+        this.count    = 0;
+    }
+
+    /**
+     * Copy constructor of a sketch.
+     *
+     * @param sketch Sketch to be copied.
+     */
+    public ScoreSketch(ScoreSketch sketch) {
+        this.accuracy = sketch.getAccuracy();
+        this.gamma    = sketch.gamma;
+        this.buckets  = new TreeMap<Integer, Long>(sketch.buckets);
+        this.zeros    = sketch.zeros;
+        this.count    = sketch.getCount();
+    }
+
+    /**
+     * Gets the maximum relative error of estimated quantiles.
+     *
+     * @return The maximum relative error of estimated quantiles.
+     */
+    public double getAccuracy() {
+        return this.accuracy;
+    }
+
+    /**
+     * Gets the number of scores in this sketch.
+     *
+     * @return The number of scores in this sketch.
+     */
+    public long getCount() {
+        return this.count;
+    }
+
+    /**
+     * Adds a score to this sketch.
+     *
+     * @param score Score to be added.
+     */
+    public void add(double score) {
+        if (score > 0) {
+            int index = (int) Math.ceil(Math.log(score) / Math.log(this.gamma));
+            this.buckets.merge(index, 1L, Long::sum);
+        } else {
+            this.zeros++;
+        }
+        this.count++;
+    }
+
+    /**
+     * Adds all scores of another sketch to this one.
+     *
+     * @param sketch Sketch whose scores are added. Must have the same accuracy as this one.
+     * @throws QueryException Sketches with different accuracies.
+     */
+    public void merge(ScoreSketch sketch) throws QueryException {
+        if (sketch.getAccuracy() != this.accuracy)
+            throw new QueryException("Sketches with different accuracies!");
+
+        sketch.buckets.forEach((index, n) -> this.buckets.merge(index, n, Long::sum));
+        this.zeros += sketch.zeros;
+        this.count += sketch.getCount();
+    }
+
+    /**
+     * Estimates a quantile of the scores in this sketch.
+     *
+     * @param quantile Quantile to estimate (e.g.: <code>0.9</code> for the 90th percentile).
+     * @return An estimate of the quantile, within the accuracy of this sketch. <code>NaN</code> if
+     *     the sketch is empty.
+     */
+    public double getQuantile(double quantile) {
+        if (this.count == 0)
+            return Double.NaN;
+
+        long rank = (long) (Math.max(0, Math.min(1, quantile)) * (this.count - 1));
+        if (rank < this.zeros)
+            return 0;
+
+        long seen = this.zeros;
+        for (Map.Entry<Integer, Long> bucket : this.buckets.entrySet()) {
+            seen += bucket.getValue();
+            if (seen > rank)
+                return 2 * Math.pow(this.gamma, bucket.getKey()) / (this.gamma + 1);
+        }
+        return 2 * Math.pow(this.gamma, this.buckets.lastKey()) / (this.gamma + 1); // Can't happen
+    }
+
+    /**
+     * Checks if this sketch is equal to another object.
+     *
+     * @param obj Object to be compared with this sketch.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        ScoreSketch sketch = (ScoreSketch) obj;
+        return this.accuracy == sketch.getAccuracy() && this.buckets.equals(sketch.buckets) &&
+            this.zeros == sketch.zeros;
+    }
+
+    /**
+     * Calculates the hash code of this sketch.
+     *
+     * @return The hash code of this sketch.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.accuracy, this.buckets, this.zeros);
+    }
+
+    /**
+     * Creates a deep copy of this sketch.
+     *
+     * @return A deep copy of this sketch.
+     */
+    @Override
+    public ScoreSketch clone() {
+        return new ScoreSketch(this);
+    }
+
+    /**
+     * Creates a debug string representation of this sketch.
+     *
+     * @return A debug string representation of this sketch.
+     */
+    @Override
+    public String toString() {
+        return String.format("ScoreSketch(accuracy = %.3f, count = %d, buckets = %d)",
+                             this.accuracy,
+                             this.count,
+                             this.buckets.size());
+    }
+}
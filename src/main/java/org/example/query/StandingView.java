@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+/**
+ * The result of a query that is kept up to date as users change, instead of being recomputed by
+ * consuming all users. When registered in a <code>FitnessModel</code>, it's told of every user that
+ * is added, changed or removed, and only that user's contribution to the result is recomputed.
+ */
+public abstract class StandingView {
+    /**
+     * Takes into account a user that was added or changed, replacing its previous contribution.
+     *
+     * @param userCode Identifier code of the user in the application.
+     * @param user User that was added or changed. It mustn't be kept by the view.
+     */
+    public abstract void update(long userCode, User user);
+
+    /**
+     * Stops taking into account a user, if it was taken into account.
+     *
+     * @param userCode Identifier code of the user that was removed.
+     */
+    public abstract void remove(long userCode);
+
+    /** Stops taking into account all users. */
+    public abstract void clear();
+
+    /**
+     * Checks that this view can be kept up to date for any user, including users whose old
+     * activities were compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer the query of this view.
+     */
+    public abstract void validate() throws QueryException;
+
+    /**
+     * Creates a deep copy of this view.
+     *
+     * @return A deep copy of this view.
+     */
+    @Override
+    public abstract StandingView clone();
+
+    /**
+     * Creates a debug string representation of this view.
+     *
+     * @return A debug string representation of this view.
+     */
+    @Override
+    public abstract String toString();
+}
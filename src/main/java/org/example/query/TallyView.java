@@ -0,0 +1,199 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.AbstractMap;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A standing view of the activity that was executed the most times (see
+ * <code>QueryMostCommonActivity</code>). The executions of each user are kept apart, so that only
+ * the ones of a user that changed are counted again, and the totals are kept in a set ordered by
+ * number of executions.
+ */
+public class TallyView extends StandingView {
+    /** Order of the ranking: most executions first, and alphabetical among equal executions. */
+    private static final Comparator<Map.Entry<String, Integer>> RANKING =
+        Map.Entry.<String, Integer>comparingByValue()
+            .reversed()
+            .thenComparing(Map.Entry.comparingByKey());
+
+    /** Query that counts the executions of each activity. */
+    private QueryMostCommonActivity query;
+
+    /** Relation between user codes and the executions of each activity by that user. */
+    private Map<Long, Map<String, Integer>> tallies;
+
+    /** Relation between activity class names and their executions by all users. */
+    private Map<String, Integer> totals;
+
+    /** Activities and their executions, ordered from the most to the least executed. */
+    private TreeSet<Map.Entry<String, Integer>> ranking;
+
+    /** Creates a new empty view. */
+    public TallyView() {
+        this.query   = new QueryMostCommonActivity();
+        this.tallies = new HashMap<Long, Map<String, Integer>>();
+        this.totals  = new HashMap<String, Integer>();
+        this.ranking = new TreeSet<Map.Entry<String, Integer>>(TallyView.RANKING);
+    }
+
+    /**
+     * Copy constructor of a view.
+     *
+     * @param view View to be copied.
+     */
+    public TallyView(TallyView view) {
+        this();
+        view.tallies.forEach((code, tally) -> this.add(code, new HashMap<String, Integer>(tally)));
+    }
+
+    /**
+     * Gets the activity that was executed the most times.
+     *
+     * @return The activity that was executed the most times, along with the number of executions.
+     *     May be <code>null</code> if no activities have been provided.
+     */
+    public Map.Entry<String, Integer> getTopActivity() {
+        if (this.ranking.isEmpty())
+            return null;
+        return new AbstractMap.SimpleEntry<String, Integer>(this.ranking.first());
+    }
+
+    /**
+     * Takes into account a user that was added or changed, counting its activities again.
+     *
+     * @param userCode Identifier code of the user in the application.
+     * @param user User that was added or changed.
+     */
+    public void update(long userCode, User user) {
+        Map<String, Integer> tally = this.query.tally(user);
+        this.remove(userCode);
+        this.add(userCode, tally);
+    }
+
+    /**
+     * Stops taking into account a user, if it was taken into account.
+     *
+     * @param userCode Identifier code of the user that was removed.
+     */
+    public void remove(long userCode) {
+        Map<String, Integer> tally = this.tallies.remove(userCode);
+        if (tally != null)
+            tally.forEach((name, n) -> this.addTotal(name, -n));
+    }
+
+    /** Stops taking into account all users. */
+    public void clear() {
+        this.tallies.clear();
+        this.totals.clear();
+        this.ranking.clear();
+    }
+
+    /**
+     * Checks that the query of this view can consume any user, including users whose old
+     * activities were compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer the query of this view.
+     */
+    public void validate() throws QueryException {
+        this.query.validate();
+    }
+
+    /**
+     * Takes into account the executions of a user.
+     *
+     * @param userCode Identifier code of the user.
+     * @param tally Executions of each activity by the user.
+     */
+    private void add(long userCode, Map<String, Integer> tally) {
+        this.tallies.put(userCode, tally);
+        tally.forEach((name, n) -> this.addTotal(name, n));
+    }
+
+    /**
+     * Changes the total executions of an activity, keeping the ranking ordered.
+     *
+     * @param name Class name of the activity.
+     * @param n Number of executions to add (negative to subtract).
+     */
+    private void addTotal(String name, int n) {
+        Integer total = this.totals.get(name);
+        if (total != null)
+            this.ranking.remove(new AbstractMap.SimpleImmutableEntry<String, Integer>(name, total));
+
+        int newTotal = (total == null ? 0 : total) + n;
+        if (newTotal == 0) {
+            this.totals.remove(name);
+        } else {
+            this.totals.put(name, newTotal);
+            this.ranking.add(new AbstractMap.SimpleImmutableEntry<String, Integer>(name, newTotal));
+        }
+    }
+
+    /**
+     * Checks if this view is equal to another object.
+     *
+     * @param obj Object to be compared with this view.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        TallyView view = (TallyView) obj;
+        return this.tallies.equals(view.tallies);
+    }
+
+    /**
+     * Calculates the hash code of this view.
+     *
+     * @return The hash code of this view.
+     */
+    @Override
+    public int hashCode() {
+        return this.tallies.hashCode();
+    }
+
+    /**
+     * Creates a deep copy of this view.
+     *
+     * @return A deep copy of this view.
+     */
+    @Override
+    public TallyView clone() {
+        return new TallyView(this);
+    }
+
+    /**
+     * Creates a debug string representation of this view.
+     *
+     * @return A debug string representation of this view.
+     */
+    @Override
+    public String toString() {
+        return String.format("TallyView(users = %d, topActivity = %s)",
+                             this.tallies.size(),
+                             String.valueOf(this.getTopActivity()));
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.Objects;
+
+/**
+ * A standing view of a query that only consumes one user (e.g.: <code>QueryDistance</code>). The
+ * query is run again whenever that user changes, and other users are ignored.
+ */
+public class UserView extends StandingView {
+    /** Query to be run, before consuming any user. */
+    private CacheableQuery query;
+
+    /** Identifier code of the user to consider. */
+    private long userCode;
+
+    /** Query after consuming the user (<code>null</code> if the user wasn't provided). */
+    private CacheableQuery result;
+
+    /** Creates a new view of the distance traveled by the user of code <code>1</code>. */
+    public UserView() {
+        this(new QueryDistance(), 1);
+    }
+
+    /**
+     * Creates a new view of a query.
+     *
+     * @param query Query to be run, that mustn't have consumed any user.
+     * @param userCode Identifier code of the user to consider.
+     */
+    public UserView(CacheableQuery query, long userCode) {
+        this.query    = query.clone();
+        this.userCode = userCode;
+        this.result   = null;
+    }
+
+    /**
+     * Copy constructor of a view.
+     *
+     * @param view View to be copied.
+     */
+    public UserView(UserView view) {
+        this.query    = view.getQuery();
+        this.userCode = view.getUserCode();
+        this.result   = view.result == null ? null : view.result.clone();
+    }
+
+    /**
+     * Gets the query to be run, before consuming any user.
+     *
+     * @return The query to be run, before consuming any user.
+     */
+    public CacheableQuery getQuery() {
+        return this.query.clone();
+    }
+
+    /**
+     * Gets the identifier code of the user to consider.
+     *
+     * @return The identifier code of the user to consider.
+     */
+    public long getUserCode() {
+        return this.userCode;
+    }
+
+    /**
+     * Gets the query after consuming the user.
+     *
+     * @return The query after consuming the user, that must not be modified. Can be
+     *     <code>null</code> if the user wasn't provided.
+     */
+    public CacheableQuery getResult() {
+        return this.result;
+    }
+
+    /**
+     * Runs the query again if the user that was added or changed is the one to consider.
+     *
+     * @param userCode Identifier code of the user in the application.
+     * @param user User that was added or changed.
+     */
+    public void update(long userCode, User user) {
+        if (userCode == this.userCode) {
+            CacheableQuery result = this.query.clone();
+            result.accept(user);
+            this.result = result;
+        }
+    }
+
+    /**
+     * Forgets the result of the query if the user removed is the one to consider.
+     *
+     * @param userCode Identifier code of the user that was removed.
+     */
+    public void remove(long userCode) {
+        if (userCode == this.userCode)
+            this.result = null;
+    }
+
+    /** Forgets the result of the query. */
+    public void clear() {
+        this.result = null;
+    }
+
+    /**
+     * Checks that the query of this view can consume any user, including users whose old
+     * activities were compacted into rollups.
+     *
+     * @throws QueryException Rollups can't answer the query of this view.
+     */
+    public void validate() throws QueryException {
+        this.query.validate();
+    }
+
+    /**
+     * Checks if this view is equal to another object.
+     *
+     * @param obj Object to be compared with this view.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        UserView view = (UserView) obj;
+        return this.query.getKey().equals(view.query.getKey()) &&
+            this.userCode == view.getUserCode() && Objects.equals(this.result, view.result);
+    }
+
+    /**
+     * Calculates the hash code of this view.
+     *
+     * @return The hash code of this view.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.query.getKey(), this.userCode, this.result);
+    }
+
+    /**
+     * Creates a deep copy of this view.
+     *
+     * @return A deep copy of this view.
+     */
+    @Override
+    public UserView clone() {
+        return new UserView(this);
+    }
+
+    /**
+     * Creates a debug string representation of this view.
+     *
+     * @return A debug string representation of this view.
+     */
+    @Override
+    public String toString() {
+        return String.format("UserView(query = %s, userCode = %d, result = %s)",
+                             this.query.getKey().toString(),
+                             this.userCode,
+                             String.valueOf(this.result));
+    }
+}
@@ -16,7 +16,14 @@
 
 package org.example.fitness;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
 
 /** A user of the fitness application. */
 public abstract class User implements Comparable, Serializable {
@@ -138,6 +145,153 @@ public abstract class User implements Comparable, Serializable {
         return this.activities.clone();
     }
 
+    /**
+     * Gets a page of the activities this user still needs to execute. See
+     * <code>UserActivities.getTodoPage</code>.
+     *
+     * @param after Only consider activities executed after this date.
+     * @param limit Maximum number of activities in the page.
+     * @return The first <code>limit</code> activities to execute after <code>after</code>.
+     */
+    public SortedSet<Activity> getTodoPage(LocalDateTime after, int limit) {
+        return this.activities.getTodoPage(after, limit);
+    }
+
+    /**
+     * Gets a page of the activities this user has already completed. See
+     * <code>UserActivities.getDonePage</code>.
+     *
+     * @param after Only consider activities executed after this date.
+     * @param limit Maximum number of activities in the page.
+     * @return The first <code>limit</code> activities executed after <code>after</code>.
+     */
+    public SortedSet<Activity> getDonePage(LocalDateTime after, int limit) {
+        return this.activities.getDonePage(after, limit);
+    }
+
+    /**
+     * Gets a page of the activities in the training plan this user is currently executing. See
+     * <code>UserActivities.getTrainingPlanPage</code>.
+     *
+     * @param offset Number of activities before the page.
+     * @param limit Maximum number of activities in the page.
+     * @return The association between activities in the page and the number of times they're
+     *     executed.
+     */
+    public SortedMap<Activity, Integer> getTrainingPlanPage(int offset, int limit) {
+        return this.activities.getTrainingPlanPage(offset, limit);
+    }
+
+    /**
+     * Iterates over the activities this user has completed that ended between two dates, without
+     * copying them. See <code>UserActivities.forEachDone</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param consumer Called for every completed activity (that must not be modified) and its
+     *     number of executions.
+     */
+    public void forEachDone(LocalDateTime             start,
+                            LocalDateTime             end,
+                            ObjLongConsumer<Activity> consumer) {
+        this.activities.forEachDone(start, end, consumer);
+    }
+
+    /**
+     * Iterates over all the activities this user has completed, without copying them. See
+     * <code>UserActivities.forEachDone</code>.
+     *
+     * @param consumer Called for every completed activity (that must not be modified) and its
+     *     number of executions.
+     */
+    public void forEachDone(ObjLongConsumer<Activity> consumer) {
+        this.activities.forEachDone(consumer);
+    }
+
+    /**
+     * Counts the activities this user has completed that ended between two dates. See <code>
+     * UserActivities.countDone</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return The number of activities this user completed between the two dates.
+     */
+    public long countDone(LocalDateTime start, LocalDateTime end) {
+        return this.activities.countDone(start, end);
+    }
+
+    /**
+     * Calculates the calories this user burned in its completed activities that ended between two
+     * dates. See <code>UserActivities.countCalories</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return The calories this user burned in the activities between the two dates.
+     */
+    public double countCalories(LocalDateTime start, LocalDateTime end) {
+        return this.activities.countCalories(start, end, this);
+    }
+
+    /**
+     * Counts the calories this user burns by executing its current training plan, without copying
+     * it. See <code>UserActivities.countTrainingPlanCalories</code>.
+     *
+     * @return The calories this user burns by executing its current training plan.
+     */
+    public double countTrainingPlanCalories() {
+        return this.activities.countTrainingPlanCalories(this);
+    }
+
+    /**
+     * Iterates over the activities in the training plan this user is currently executing, without
+     * copying them. See <code>UserActivities.forEachTrainingPlanActivity</code>.
+     *
+     * @param consumer Called for every activity (that must not be modified) and its number of
+     *     executions per week.
+     */
+    public void forEachTrainingPlanActivity(ObjLongConsumer<Activity> consumer) {
+        this.activities.forEachTrainingPlanActivity(consumer);
+    }
+
+    /**
+     * Calculates the distance traversed in the activities of a given type this user has completed
+     * that ended between two dates. See <code>UserActivities.countDistance</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param activityType Type of activity to be considered.
+     * @return The distance traversed in activities of type <code>activityType</code>.
+     */
+    public double countDistance(LocalDateTime                     start,
+                                LocalDateTime                     end,
+                                Class<? extends ActivityDistance> activityType) {
+        return this.activities.countDistance(start, end, activityType);
+    }
+
+    /**
+     * Iterates over the summaries of old activities this user completed, that ended between two
+     * dates, without copying them. See <code>UserActivities.forEachRollup</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param consumer Called for every rollup (that must not be modified).
+     */
+    public void forEachRollup(LocalDateTime            start,
+                              LocalDateTime            end,
+                              Consumer<ActivityRollup> consumer) {
+        this.activities.forEachRollup(start, end, consumer);
+    }
+
+    /**
+     * Iterates over all the summaries of old activities this user completed, without copying
+     * them. See <code>UserActivities.forEachRollup</code>.
+     *
+     * @param consumer Called for every rollup (that must not be modified).
+     */
+    public void forEachRollup(Consumer<ActivityRollup> consumer) {
+        this.activities.forEachRollup(consumer);
+    }
+
     /**
      * Sets this user's identifier code.
      *
@@ -186,6 +340,75 @@ public abstract class User implements Comparable, Serializable {
         this.averageBPM = bpm;
     }
 
+    /**
+     * Adds isolated activities this user must execute, without copying the other activities of
+     * this user. See <code>UserActivities.addActivities</code>.
+     *
+     * @param activities Activities to be added. Either all are added or none is.
+     * @throws ActivityOverlapException An activity overlaps another activity of this user or in
+     *     <code>activities</code>.
+     */
+    public void addActivities(List<Activity> activities) throws ActivityOverlapException {
+        this.activities.addActivities(activities);
+    }
+
+    /**
+     * Checks how the isolated activities this user completed are stored. See <code>
+     * UserActivities.isColumnar</code>.
+     *
+     * @return Whether the isolated activities this user completed are stored as columns.
+     */
+    public boolean isColumnar() {
+        return this.activities.isColumnar();
+    }
+
+    /**
+     * Chooses how the isolated activities this user completed are stored, without copying them.
+     * See <code>UserActivities.setColumnar</code>.
+     *
+     * @param columnar Whether to store the isolated activities this user completed as columns.
+     */
+    public void setColumnar(boolean columnar) {
+        this.activities.setColumnar(columnar);
+    }
+
+    /**
+     * Advances the activities of this user in time, without copying them. See <code>
+     * UserActivities.leapForward</code>.
+     *
+     * @param now Current application time.
+     * @param goal Timestamp to leap to.
+     * @return Whether any activity was completed or anything else changed.
+     */
+    public boolean leapForward(LocalDateTime now, LocalDateTime goal) {
+        return this.activities.leapForward(now, goal);
+    }
+
+    /**
+     * Compacts old isolated activities this user completed into rollups, without copying the
+     * other activities of this user. See <code>UserActivities.compact</code>.
+     *
+     * @param before Compact activities that ended before (or at) this date.
+     * @param granularity Period of time summarized by each rollup.
+     * @return Whether any activity was compacted.
+     */
+    public boolean compact(LocalDateTime before, RetentionPolicy.Granularity granularity) {
+        return this.activities.compact(before, granularity);
+    }
+
+    /**
+     * Moves old isolated activities this user completed to disk, without copying the other
+     * activities of this user. See <code>UserActivities.spill</code>.
+     *
+     * @param before Move activities that ended before (or at) this date.
+     * @param storage Where to store activities, if none were moved before.
+     * @return Whether any activity was moved.
+     * @throws IOException Failed to write to disk. No activities are moved.
+     */
+    public boolean spill(LocalDateTime before, ColdStorage storage) throws IOException {
+        return this.activities.spill(before, storage, this.code);
+    }
+
     /**
      * Sets the activities this user must still execute and has already executed.
      *
@@ -0,0 +1,681 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A collection of completed activities stored outside of the Java heap, as parallel columns of
+ * primitive values (one element per activity). Each activity takes about 60 bytes, instead of the
+ * hundreds of bytes of an <code>Activity</code> object, and scans over the columns don't need to
+ * create any objects. Activities are kept in insertion order.
+ */
+public class ActivityColumns implements Serializable {
+    /** Classes of activities that can be stored. Their position is stored in the type column. */
+    private static final List<Class<? extends Activity>> TYPES =
+        List.of(ActivityTrackRun.class,
+                ActivityMountainRun.class,
+                ActivityPushUp.class,
+                ActivityDiamondPushUp.class,
+                ActivityWeightLifting.class);
+
+    /** Number of nanoseconds in a second. */
+    private static final int NANOS_PER_SECOND = 1000000000;
+
+    /** Number of activities stored. */
+    private int size;
+
+    /** Number of activities that fit in the columns before they need to grow. */
+    private transient int capacity;
+
+    /** Position of the class of each activity in <code>TYPES</code>. */
+    private transient ByteBuffer types;
+
+    /** Second (since the epoch, in UTC) each activity started at. */
+    private transient LongBuffer startSeconds;
+
+    /** Nanosecond (within the second) each activity started at. */
+    private transient IntBuffer startNanos;
+
+    /** Seconds each activity lasted for. */
+    private transient LongBuffer durationSeconds;
+
+    /** Nanoseconds (after the seconds) each activity lasted for. */
+    private transient IntBuffer durationNanos;
+
+    /** Average heart rate in each activity. */
+    private transient IntBuffer bpms;
+
+    /** Number of repetitions in each activity, 0 if not a repetition activity. */
+    private transient IntBuffer reps;
+
+    /** Heft of the weights in each activity, 0.0 if not a weighted activity. */
+    private transient DoubleBuffer weights;
+
+    /** Distance traversed in each activity, 0.0 if not a distance activity. */
+    private transient DoubleBuffer distances;
+
+    /** Altimetry of each activity, 0.0 if not an altimetry activity. */
+    private transient DoubleBuffer altimetries;
+
+    /** Creates a new empty collection of activities. */
+    public ActivityColumns() {
+        this(16);
+    }
+
+    /**
+     * Creates a new empty collection of activities with space for some activities.
+     *
+     * @param capacity Number of activities that fit before the columns need to grow.
+     */
+    public ActivityColumns(int capacity) {
+        this.size = 0;
+        this.allocate(Math.max(capacity, 1));
+    }
+
+    /**
+     * Copy constructor of a collection of activities.
+     *
+     * @param columns Collection of activities to be copied.
+     */
+    public ActivityColumns(ActivityColumns columns) {
+        this(columns.size());
+        this.size = columns.size();
+        this.copyFrom(columns);
+    }
+
+    /**
+     * Counts the activities in this collection.
+     *
+     * @return The number of activities in this collection.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Checks if there aren't activities in this collection.
+     *
+     * @return Whether there aren't activities in this collection.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Checks if an activity can be stored in a collection of activities.
+     *
+     * @param activity Activity to be checked.
+     * @return Whether <code>activity</code>'s class can be stored.
+     */
+    public static boolean supports(Activity activity) {
+        return ActivityColumns.TYPES.contains(activity.getClass());
+    }
+
+    /**
+     * Gets an activity in this collection.
+     *
+     * @param index Position of the activity, in insertion order.
+     * @return A new activity, equal to the one in position <code>index</code>.
+     */
+    public Activity get(int index) {
+        return this.view(index, ActivityColumns.newActivity(this.types.get(index)));
+    }
+
+    /**
+     * Gets all the activities in this collection.
+     *
+     * @return All the activities in this collection.
+     */
+    public SortedSet<Activity> getActivities() {
+        SortedSet<Activity> ret = new TreeSet<Activity>();
+        for (int i = 0; i < this.size; ++i)
+            ret.add(this.get(i));
+        return ret;
+    }
+
+    /**
+     * Adds an activity to this collection, if its class can be stored.
+     *
+     * @param activity Activity to be added.
+     * @return Whether <code>activity</code> was added (see <code>supports</code>).
+     */
+    public boolean add(Activity activity) {
+        int type = ActivityColumns.TYPES.indexOf(activity.getClass());
+        if (type < 0)
+            return false;
+
+        if (this.size == this.capacity)
+            this.grow();
+
+        int           i    = this.size;
+        LocalDateTime date = activity.getExecutionDate();
+        Duration      time = activity.getExecutionTime();
+        this.types.put(i, (byte) type);
+        this.startSeconds.put(i, date.toEpochSecond(ZoneOffset.UTC));
+        this.startNanos.put(i, date.getNano());
+        this.durationSeconds.put(i, time.getSeconds());
+        this.durationNanos.put(i, time.getNano());
+        this.bpms.put(i, activity.getBPM());
+
+        this.reps.put(i, 0);
+        this.weights.put(i, 0.0);
+        this.distances.put(i, 0.0);
+        this.altimetries.put(i, 0.0);
+        if (activity instanceof ActivityRepetition)
+            this.reps.put(i, ((ActivityRepetition) activity).getNumberOfReps());
+        if (activity instanceof ActivityRepetitionWeighted)
+            this.weights.put(i, ((ActivityRepetitionWeighted) activity).getWeightsHeft());
+        if (activity instanceof ActivityDistance)
+            this.distances.put(i, ((ActivityDistance) activity).getDistanceToTraverse());
+        if (activity instanceof ActivityAltimetryDistance)
+            this.altimetries.put(i, ((ActivityAltimetryDistance) activity).getAltimetry());
+
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Removes the activities in this collection that ended before (or at) a date.
+     *
+     * @param before Remove activities that ended before (or at) this date.
+     * @return The activities that were removed.
+     */
+    public List<Activity> removeEndingBefore(LocalDateTime before) {
+        List<Activity> removed = new ArrayList<Activity>();
+        long           second  = before.toEpochSecond(ZoneOffset.UTC);
+        int            nano    = before.getNano();
+
+        int kept = 0;
+        for (int i = 0; i < this.size; ++i) {
+            if (this.fits(i, second, nano, Long.MAX_VALUE, 0)) {
+                this.move(i, kept);
+                kept++;
+            } else {
+                removed.add(this.get(i));
+            }
+        }
+
+        this.size = kept;
+        return removed;
+    }
+
+    /**
+     * Iterates over the activities in this collection that ended between two dates. A single
+     * activity object is reused for all activities of the same class, so activities provided to
+     * <code>consumer</code> are only valid until it returns.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param consumer Called for every activity (that must not be modified nor kept) that ended
+     *     between the two dates, with an execution count of 1.
+     */
+    public void forEach(LocalDateTime             start,
+                        LocalDateTime             end,
+                        ObjLongConsumer<Activity> consumer) {
+        long       startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        int        startNano   = start.getNano();
+        long       endSecond   = end.toEpochSecond(ZoneOffset.UTC);
+        int        endNano     = end.getNano();
+        Activity[] views       = new Activity[ActivityColumns.TYPES.size()];
+
+        for (int i = 0; i < this.size; ++i) {
+            if (this.fits(i, startSecond, startNano, endSecond, endNano)) {
+                byte type = this.types.get(i);
+                if (views[type] == null)
+                    views[type] = ActivityColumns.newActivity(type);
+                consumer.accept(this.view(i, views[type]), 1);
+            }
+        }
+    }
+
+    /**
+     * Counts the activities in this collection that ended between two dates.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return The number of activities that ended between the two dates.
+     */
+    public long count(LocalDateTime start, LocalDateTime end) {
+        long startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        int  startNano   = start.getNano();
+        long endSecond   = end.toEpochSecond(ZoneOffset.UTC);
+        int  endNano     = end.getNano();
+
+        long count = 0;
+        for (int i = 0; i < this.size; ++i) {
+            if (this.fits(i, startSecond, startNano, endSecond, endNano))
+                count++;
+        }
+        return count;
+    }
+
+    /**
+     * Counts the activities of each class in this collection that ended between two dates.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return The number of activities of each class that ended between the two dates. Classes
+     *     without activities aren't present.
+     */
+    public Map<Class<? extends Activity>, Long> countByType(LocalDateTime start,
+                                                            LocalDateTime end) {
+        long   startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        int    startNano   = start.getNano();
+        long   endSecond   = end.toEpochSecond(ZoneOffset.UTC);
+        int    endNano     = end.getNano();
+        long[] counts      = new long[ActivityColumns.TYPES.size()];
+
+        for (int i = 0; i < this.size; ++i) {
+            if (this.fits(i, startSecond, startNano, endSecond, endNano))
+                counts[this.types.get(i)]++;
+        }
+
+        Map<Class<? extends Activity>, Long> ret = new HashMap<Class<? extends Activity>, Long>();
+        for (int type = 0; type < counts.length; ++type) {
+            if (counts[type] > 0)
+                ret.put(ActivityColumns.TYPES.get(type), counts[type]);
+        }
+        return ret;
+    }
+
+    /**
+     * Calculates the distance traversed in the activities of a given type in this collection that
+     * ended between two dates.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param activityType Type of activity to be considered (e.g.: <code>ActivityDistance.class
+     *     </code>).
+     * @return The distance traversed in activities of type <code>activityType</code>.
+     */
+    public double countDistance(LocalDateTime                     start,
+                                LocalDateTime                     end,
+                                Class<? extends ActivityDistance> activityType) {
+        long      startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        int       startNano   = start.getNano();
+        long      endSecond   = end.toEpochSecond(ZoneOffset.UTC);
+        int       endNano     = end.getNano();
+        boolean[] considered  = new boolean[ActivityColumns.TYPES.size()];
+        for (int type = 0; type < considered.length; ++type)
+            considered[type] = activityType.isAssignableFrom(ActivityColumns.TYPES.get(type));
+
+        double distance = 0.0;
+        for (int i = 0; i < this.size; ++i) {
+            if (considered[this.types.get(i)] &&
+                this.fits(i, startSecond, startNano, endSecond, endNano))
+                distance += this.distances.get(i);
+        }
+        return distance;
+    }
+
+    /**
+     * Calculates the calories a user burned in the activities in this collection that ended
+     * between two dates. The calories of each activity are equal (bit for bit) to the ones of
+     * <code>Activity.countCalories</code>, and are added in insertion order.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param calorieMultiplier Calorie multiplier of the user that executed the activities.
+     * @return The calories burned in the activities that ended between the two dates.
+     */
+    public double countCalories(LocalDateTime start, LocalDateTime end, double calorieMultiplier) {
+        boolean[] fitting  = new boolean[this.size];
+        double[]  calories = this.countBaseCalories(start, end, fitting);
+
+        double total = 0.0;
+        for (int i = 0; i < this.size; ++i) {
+            if (fitting[i])
+                total += calories[i] * calorieMultiplier;
+        }
+        return total;
+    }
+
+    /**
+     * Calculates the base calories of each activity in this collection that ended between two
+     * dates. Activities are grouped by class, and the calories of each group are calculated at once
+     * by <code>CalorieKernel</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param fitting Where to write whether each activity ended between the two dates to.
+     * @return The base calories of each activity (see <code>Activity.countBaseCalories</code>), in
+     *     insertion order. Activities that didn't end between the two dates have 0.0 calories.
+     */
+    public double[] countBaseCalories(LocalDateTime start, LocalDateTime end, boolean[] fitting) {
+        long  startSecond = start.toEpochSecond(ZoneOffset.UTC);
+        int   startNano   = start.getNano();
+        long  endSecond   = end.toEpochSecond(ZoneOffset.UTC);
+        int   endNano     = end.getNano();
+        int[] counts      = new int[ActivityColumns.TYPES.size()];
+
+        for (int i = 0; i < this.size; ++i) {
+            fitting[i] = this.fits(i, startSecond, startNano, endSecond, endNano);
+            if (fitting[i])
+                counts[this.types.get(i)]++;
+        }
+
+        double[] calories = new double[this.size];
+        for (byte type = 0; type < counts.length; ++type) {
+            int n = counts[type];
+            if (n > 0) {
+                int[]    rows        = new int[n];
+                long[]   seconds     = new long[n];
+                int[]    bpms        = new int[n];
+                int[]    reps        = new int[n];
+                double[] weights     = new double[n];
+                double[] distances   = new double[n];
+                double[] altimetries = new double[n];
+                double[] out         = new double[n];
+
+                int j = 0;
+                for (int i = 0; i < this.size; ++i) {
+                    if (fitting[i] && this.types.get(i) == type) {
+                        rows[j]        = i;
+                        seconds[j]     = this.durationSeconds.get(i);
+                        bpms[j]        = this.bpms.get(i);
+                        reps[j]        = this.reps.get(i);
+                        weights[j]     = this.weights.get(i);
+                        distances[j]   = this.distances.get(i);
+                        altimetries[j] = this.altimetries.get(i);
+                        j++;
+                    }
+                }
+
+                Class<? extends Activity> activityClass = ActivityColumns.TYPES.get(type);
+                if (activityClass == ActivityTrackRun.class)
+                    CalorieKernel.trackRun(n, seconds, bpms, distances, out);
+                else if (activityClass == ActivityMountainRun.class)
+                    CalorieKernel.mountainRun(n, seconds, bpms, distances, altimetries, out);
+                else if (activityClass == ActivityPushUp.class)
+                    CalorieKernel.pushUp(n, seconds, bpms, reps, out);
+                else if (activityClass == ActivityDiamondPushUp.class)
+                    CalorieKernel.diamondPushUp(n, seconds, bpms, reps, out);
+                else
+                    CalorieKernel.weightLifting(n, bpms, reps, weights, out);
+
+                for (j = 0; j < n; ++j)
+                    calories[rows[j]] = out[j];
+            }
+        }
+        return calories;
+    }
+
+    /**
+     * Checks if an activity in this collection ended between two instants, both given as a number
+     * of seconds since the epoch and a number of nanoseconds within that second.
+     *
+     * @param i Position of the activity.
+     * @param startSecond Second of the instant the activity must have ended after.
+     * @param startNano Nanosecond of the instant the activity must have ended after.
+     * @param endSecond Second of the instant the activity must have ended before.
+     * @param endNano Nanosecond of the instant the activity must have ended before.
+     * @return Whether the activity in position <code>i</code> ended between the two instants.
+     */
+    private boolean fits(int i, long startSecond, int startNano, long endSecond, int endNano) {
+        long second = this.startSeconds.get(i) + this.durationSeconds.get(i);
+        int  nano   = this.startNanos.get(i) + this.durationNanos.get(i);
+        if (nano >= ActivityColumns.NANOS_PER_SECOND) {
+            second++;
+            nano -= ActivityColumns.NANOS_PER_SECOND;
+        }
+
+        return (second > startSecond || (second == startSecond && nano > startNano)) &&
+            (second < endSecond || (second == endSecond && nano < endNano));
+    }
+
+    /**
+     * Creates a new activity to be filled with the values in the columns.
+     *
+     * @param type Position of the class of the activity in <code>TYPES</code>.
+     * @return A new activity of the class in position <code>type</code>.
+     */
+    private static Activity newActivity(byte type) {
+        Class<? extends Activity> activityClass = ActivityColumns.TYPES.get(type);
+        if (activityClass == ActivityTrackRun.class)
+            return new ActivityTrackRun();
+        else if (activityClass == ActivityMountainRun.class)
+            return new ActivityMountainRun();
+        else if (activityClass == ActivityPushUp.class)
+            return new ActivityPushUp();
+        else if (activityClass == ActivityDiamondPushUp.class)
+            return new ActivityDiamondPushUp();
+        else
+            return new ActivityWeightLifting();
+    }
+
+    /**
+     * Sets the fields of an activity to the values of an activity in this collection.
+     *
+     * @param i Position of the activity in this collection.
+     * @param activity Activity of the same class, whose fields are set.
+     * @return <code>activity</code>.
+     */
+    private Activity view(int i, Activity activity) {
+        activity.setExecutionDate(LocalDateTime.ofEpochSecond(this.startSeconds.get(i),
+                                                              this.startNanos.get(i),
+                                                              ZoneOffset.UTC));
+
+        try {
+            activity.setExecutionTime(
+                Duration.ofSeconds(this.durationSeconds.get(i), this.durationNanos.get(i)));
+            activity.setBPM(this.bpms.get(i));
+            if (activity instanceof ActivityRepetition)
+                ((ActivityRepetition) activity).setNumberOfReps(this.reps.get(i));
+            if (activity instanceof ActivityRepetitionWeighted)
+                ((ActivityRepetitionWeighted) activity).setWeightsHeft(this.weights.get(i));
+            if (activity instanceof ActivityDistance)
+                ((ActivityDistance) activity).setDistanceToTraverse(this.distances.get(i));
+            if (activity instanceof ActivityAltimetryDistance)
+                ((ActivityAltimetryDistance) activity).setAltimetry(this.altimetries.get(i));
+        } catch (ActivityException e) {} // Values came from a valid activity
+
+        return activity;
+    }
+
+    /**
+     * Moves an activity to another position in this collection, overwriting the one there.
+     *
+     * @param from Position of the activity to be moved.
+     * @param to Position to move the activity to.
+     */
+    private void move(int from, int to) {
+        this.types.put(to, this.types.get(from));
+        this.startSeconds.put(to, this.startSeconds.get(from));
+        this.startNanos.put(to, this.startNanos.get(from));
+        this.durationSeconds.put(to, this.durationSeconds.get(from));
+        this.durationNanos.put(to, this.durationNanos.get(from));
+        this.bpms.put(to, this.bpms.get(from));
+        this.reps.put(to, this.reps.get(from));
+        this.weights.put(to, this.weights.get(from));
+        this.distances.put(to, this.distances.get(from));
+        this.altimetries.put(to, this.altimetries.get(from));
+    }
+
+    /**
+     * Allocates new empty columns outside of the Java heap.
+     *
+     * @param capacity Number of activities that fit in the new columns.
+     */
+    private void allocate(int capacity) {
+        this.capacity        = capacity;
+        this.types           = ByteBuffer.allocateDirect(capacity);
+        this.startSeconds    = ActivityColumns.allocateDirect(capacity, 8).asLongBuffer();
+        this.startNanos      = ActivityColumns.allocateDirect(capacity, 4).asIntBuffer();
+        this.durationSeconds = ActivityColumns.allocateDirect(capacity, 8).asLongBuffer();
+        this.durationNanos   = ActivityColumns.allocateDirect(capacity, 4).asIntBuffer();
+        this.bpms            = ActivityColumns.allocateDirect(capacity, 4).asIntBuffer();
+        this.reps            = ActivityColumns.allocateDirect(capacity, 4).asIntBuffer();
+        this.weights         = ActivityColumns.allocateDirect(capacity, 8).asDoubleBuffer();
+        this.distances       = ActivityColumns.allocateDirect(capacity, 8).asDoubleBuffer();
+        this.altimetries     = ActivityColumns.allocateDirect(capacity, 8).asDoubleBuffer();
+    }
+
+    /** Doubles the number of activities that fit in the columns, keeping the ones stored. */
+    private void grow() {
+        ActivityColumns bigger = new ActivityColumns(this.capacity * 2);
+        bigger.size            = this.size;
+        bigger.copyFrom(this);
+
+        this.capacity        = bigger.capacity;
+        this.types           = bigger.types;
+        this.startSeconds    = bigger.startSeconds;
+        this.startNanos      = bigger.startNanos;
+        this.durationSeconds = bigger.durationSeconds;
+        this.durationNanos   = bigger.durationNanos;
+        this.bpms            = bigger.bpms;
+        this.reps            = bigger.reps;
+        this.weights         = bigger.weights;
+        this.distances       = bigger.distances;
+        this.altimetries     = bigger.altimetries;
+    }
+
+    /**
+     * Allocates a buffer outside of the Java heap, in the native byte order.
+     *
+     * @param capacity Number of elements in the buffer.
+     * @param elementSize Number of bytes in each element.
+     * @return The new buffer.
+     */
+    private static ByteBuffer allocateDirect(int capacity, int elementSize) {
+        return ByteBuffer.allocateDirect(capacity * elementSize).order(ByteOrder.nativeOrder());
+    }
+
+    /**
+     * Copies the first <code>this.size</code> activities of other columns into this collection.
+     *
+     * @param columns Where to copy the activities from.
+     */
+    private void copyFrom(ActivityColumns columns) {
+        int n = this.size;
+        this.types.put(0, columns.types, 0, n);
+        this.startSeconds.put(0, columns.startSeconds, 0, n);
+        this.startNanos.put(0, columns.startNanos, 0, n);
+        this.durationSeconds.put(0, columns.durationSeconds, 0, n);
+        this.durationNanos.put(0, columns.durationNanos, 0, n);
+        this.bpms.put(0, columns.bpms, 0, n);
+        this.reps.put(0, columns.reps, 0, n);
+        this.weights.put(0, columns.weights, 0, n);
+        this.distances.put(0, columns.distances, 0, n);
+        this.altimetries.put(0, columns.altimetries, 0, n);
+    }
+
+    /**
+     * Serializes this collection, writing the activities in its columns.
+     *
+     * @param out Where to write this collection to.
+     * @throws IOException Failed to write to <code>out</code>.
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        for (int i = 0; i < this.size; ++i)
+            ActivityCodec.encode(out, this.get(i));
+    }
+
+    /**
+     * Deserializes this collection, reading the activities into new columns.
+     *
+     * @param in Where to read this collection from.
+     * @throws IOException Failed to read from <code>in</code>.
+     * @throws ClassNotFoundException Bad stream contents.
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        int n     = this.size;
+        this.size = 0;
+        this.allocate(Math.max(n, 1));
+        for (int i = 0; i < n; ++i)
+            this.add(ActivityCodec.decode(in));
+    }
+
+    /**
+     * Calculates the hash code of this collection of activities.
+     *
+     * @return The hash code of this collection of activities.
+     */
+    @Override
+    public int hashCode() {
+        int hash = this.size;
+        for (int i = 0; i < this.size; ++i)
+            hash = 31 * hash + Long.hashCode(this.startSeconds.get(i)) + this.types.get(i);
+        return hash;
+    }
+
+    /**
+     * Checks if this collection of activities is equal to another object. Both collections must
+     * contain equal activities, in the same order.
+     *
+     * @param obj Object to be compared with this collection of activities.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        ActivityColumns columns = (ActivityColumns) obj;
+        if (this.size != columns.size())
+            return false;
+
+        for (int i = 0; i < this.size; ++i) {
+            if (!this.get(i).equals(columns.get(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Creates a deep copy of this collection of activities.
+     *
+     * @return A deep copy of this collection of activities.
+     */
+    @Override
+    public ActivityColumns clone() {
+        return new ActivityColumns(this);
+    }
+
+    /**
+     * Creates a debug string representation of this collection of activities.
+     *
+     * @return A debug string representation of this collection of activities.
+     */
+    @Override
+    public String toString() {
+        return String.format("ActivityColumns(size = %d)", this.size);
+    }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A summary of the activities a user completed in a period of time (a day or a week), that
+ * replaces those activities once they get old.
+ */
+public class ActivityRollup implements Serializable {
+    /** First day of the period of time summarized. */
+    private LocalDate start;
+
+    /** When the first activity summarized ended. */
+    private LocalDateTime firstEnd;
+
+    /** When the last activity summarized ended. */
+    private LocalDateTime lastEnd;
+
+    /** Number of activities summarized, for each activity class. */
+    private Map<Class<? extends Activity>, Long> counts;
+
+    /** Calories burned in the activities summarized, for a user with a calorie multiplier of 1. */
+    private double baseCalories;
+
+    /** Distance traversed in the activities summarized, for each distance activity class. */
+    private Map<Class<? extends Activity>, Double> distances;
+
+    /** Creates a new empty rollup. */
+    public ActivityRollup() {
+        this(LocalDate.MIN);
+    }
+
+    /**
+     * Creates a new empty rollup for a period of time.
+     *
+     * @param start First day of the period of time summarized.
+     */
+    public ActivityRollup(LocalDate start) {
+        this.start        = start;
+        this.firstEnd     = LocalDateTime.MAX;
+        this.lastEnd      = LocalDateTime.MIN;
+        this.counts       = new HashMap<Class<? extends Activity>, Long>();
+        this.baseCalories = 0.0;
+        this.distances    = new HashMap<Class<? extends Activity>, Double>();
+    }
+
+    /**
+     * Copy constructor of a rollup.
+     *
+     * @param rollup Rollup to be copied.
+     */
+    public ActivityRollup(ActivityRollup rollup) {
+        this.start        = rollup.getStart();
+        this.firstEnd     = rollup.getFirstEnd();
+        this.lastEnd      = rollup.getLastEnd();
+        this.counts       = rollup.getCounts();
+        this.baseCalories = rollup.getBaseCalories();
+        this.distances    = rollup.getDistances();
+    }
+
+    /**
+     * Gets the first day of the period of time summarized by this rollup.
+     *
+     * @return The first day of the period of time summarized by this rollup.
+     */
+    public LocalDate getStart() {
+        return this.start;
+    }
+
+    /**
+     * Gets when the first activity summarized by this rollup ended.
+     *
+     * @return When the first activity summarized by this rollup ended.
+     */
+    public LocalDateTime getFirstEnd() {
+        return this.firstEnd;
+    }
+
+    /**
+     * Gets when the last activity summarized by this rollup ended.
+     *
+     * @return When the last activity summarized by this rollup ended.
+     */
+    public LocalDateTime getLastEnd() {
+        return this.lastEnd;
+    }
+
+    /**
+     * Gets the number of activities summarized by this rollup, for each activity class.
+     *
+     * @return The number of activities summarized by this rollup, for each activity class.
+     */
+    public Map<Class<? extends Activity>, Long> getCounts() {
+        return new HashMap<Class<? extends Activity>, Long>(this.counts);
+    }
+
+    /**
+     * Gets the calories burned in the activities summarized by this rollup, by a user with a
+     * calorie multiplier of 1.
+     *
+     * @return The calories burned in the activities summarized by this rollup, by a user with a
+     *     calorie multiplier of 1.
+     */
+    public double getBaseCalories() {
+        return this.baseCalories;
+    }
+
+    /**
+     * Gets the distance traversed in the activities summarized by this rollup, for each distance
+     * activity class.
+     *
+     * @return The distance traversed in the activities summarized by this rollup, for each
+     *     distance activity class.
+     */
+    public Map<Class<? extends Activity>, Double> getDistances() {
+        return new HashMap<Class<? extends Activity>, Double>(this.distances);
+    }
+
+    /**
+     * Counts the activities summarized by this rollup.
+     *
+     * @return The number of activities summarized by this rollup.
+     */
+    public long countActivities() {
+        long count = 0;
+        for (long c : this.counts.values())
+            count += c;
+        return count;
+    }
+
+    /**
+     * Counts the calories a user burned in the activities summarized by this rollup.
+     *
+     * @param user User that executed the activities.
+     * @return The calories <code>user</code> burned in the activities summarized by this rollup.
+     */
+    public double countCalories(User user) {
+        return this.baseCalories * user.getCalorieMultiplier();
+    }
+
+    /**
+     * Gets the distance traversed in the activities of a given type summarized by this rollup.
+     *
+     * @param activityType Type of activity to be considered (e.g.: <code>ActivityDistance.class
+     *     </code>).
+     * @return The distance traversed in activities of type <code>activityType</code>.
+     */
+    public double getDistance(Class<? extends ActivityDistance> activityType) {
+        double distance = 0.0;
+        for (Map.Entry<Class<? extends Activity>, Double> entry : this.distances.entrySet()) {
+            if (activityType.isAssignableFrom(entry.getKey()))
+                distance += entry.getValue();
+        }
+        return distance;
+    }
+
+    /**
+     * Checks if this rollup fits the date criteria of a query. Because the activities in a rollup
+     * can't be told apart, it only fits when all of them ended between the two dates.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return Whether all the activities summarized ended between <code>start</code> and <code>end
+     *     </code>.
+     */
+    public boolean fits(LocalDateTime start, LocalDateTime end) {
+        return this.firstEnd.isAfter(start) && this.lastEnd.isBefore(end);
+    }
+
+    /**
+     * Checks if this rollup is considered by a query between two dates. Because the activities in
+     * a rollup can't be told apart, they're all considered to have ended when the last of them did.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return Whether the last activity summarized ended between <code>start</code> and <code>end
+     *     </code>.
+     */
+    public boolean endsBetween(LocalDateTime start, LocalDateTime end) {
+        return this.lastEnd.isAfter(start) && this.lastEnd.isBefore(end);
+    }
+
+    /**
+     * Adds an activity to this rollup. The activity isn't checked to belong to the period of time
+     * summarized.
+     *
+     * @param activity Activity to be summarized.
+     */
+    public void add(Activity activity) {
+        LocalDateTime end = activity.getEndDate();
+        if (end.isBefore(this.firstEnd))
+            this.firstEnd = end;
+        if (end.isAfter(this.lastEnd))
+            this.lastEnd = end;
+
+        this.counts.merge(activity.getClass(), 1L, Long::sum);
+        this.baseCalories += activity.countBaseCalories();
+        if (activity instanceof ActivityDistance) {
+            double distance = ((ActivityDistance) activity).getDistanceToTraverse();
+            this.distances.merge(activity.getClass(), distance, Double::sum);
+        }
+    }
+
+    /**
+     * Calculates the hash code of this rollup.
+     *
+     * @return The hash code of this rollup.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.start,
+                            this.firstEnd,
+                            this.lastEnd,
+                            this.counts,
+                            this.baseCalories,
+                            this.distances);
+    }
+
+    /**
+     * Checks if this rollup is equal to another object.
+     *
+     * @param obj Object to be compared with this rollup.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        ActivityRollup rollup = (ActivityRollup) obj;
+        return this.start.equals(rollup.getStart()) && this.firstEnd.equals(rollup.getFirstEnd()) &&
+            this.lastEnd.equals(rollup.getLastEnd()) && this.counts.equals(rollup.getCounts()) &&
+            this.baseCalories == rollup.getBaseCalories() &&
+            this.distances.equals(rollup.getDistances());
+    }
+
+    /**
+     * Creates a deep copy of this rollup.
+     *
+     * @return A deep copy of this rollup.
+     */
+    @Override
+    public ActivityRollup clone() {
+        return new ActivityRollup(this);
+    }
+
+    /**
+     * Creates a debug string representation of this rollup.
+     *
+     * @return A debug string representation of this rollup.
+     */
+    @Override
+    public String toString() {
+        return String.format(
+            "ActivityRollup(start = \"%s\", activities = %d, baseCalories = %.3f)",
+            this.start.toString(),
+            this.countActivities(),
+            this.baseCalories);
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A cache of blocks of files, that keeps the most recently used blocks in memory, up to a maximum
+ * number of bytes. It can be shared between threads.
+ */
+public class BlockCache {
+    /** Maximum number of bytes kept in memory. */
+    private long capacity;
+
+    /** Number of bytes currently kept in memory. */
+    private long size;
+
+    /** Blocks in memory, identified by file and offset, from least to most recently used. */
+    private LinkedHashMap<String, byte[]> blocks;
+
+    /** Creates a new block cache that keeps up to 64 MiB in memory. */
+    public BlockCache() {
+        this(64 * 1024 * 1024);
+    }
+
+    /**
+     * Creates a new empty block cache.
+     *
+     * @param capacity Maximum number of bytes kept in memory.
+     */
+    public BlockCache(long capacity) {
+        this.capacity = capacity;
+        this.size     = 0;
+        this.blocks   = new LinkedHashMap<String, byte[]>(16, 0.75f, true);
+    }
+
+    /**
+     * Copy constructor of a block cache. The cached blocks aren't copied.
+     *
+     * @param cache Block cache to be copied.
+     */
+    public BlockCache(BlockCache cache) {
+        this(cache.getCapacity());
+    }
+
+    /**
+     * Gets the maximum number of bytes kept in memory.
+     *
+     * @return The maximum number of bytes kept in memory.
+     */
+    public long getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the number of bytes currently kept in memory.
+     *
+     * @return The number of bytes currently kept in memory.
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Reads a block from a file, from memory if it has been recently read.
+     *
+     * @param path File to read from. Blocks can be appended to it, but must never be modified.
+     * @param offset Position of the block in the file.
+     * @param length Number of bytes in the block.
+     * @return The contents of the block, that must not be modified.
+     * @throws IOException Failed to read from the file.
+     */
+    public byte[] read(Path path, long offset, int length) throws IOException {
+        String key = path.toString() + ':' + offset;
+        synchronized (this) {
+            byte[] block = this.blocks.get(key);
+            if (block != null)
+                return block;
+        }
+
+        byte[] block = new byte[length];
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.wrap(block);
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, offset + buffer.position()) < 0)
+                    throw new IOException("Unexpected end of file: " + path.toString());
+            }
+        }
+
+        if (length <= this.capacity) {
+            synchronized (this) {
+                if (this.blocks.put(key, block) == null)
+                    this.size += length;
+                this.evict();
+            }
+        }
+        return block;
+    }
+
+    /** Removes the least recently used blocks from memory until they fit in the capacity. */
+    private void evict() {
+        Iterator<Map.Entry<String, byte[]>> i = this.blocks.entrySet().iterator();
+        while (this.size > this.capacity && i.hasNext()) {
+            this.size -= i.next().getValue().length;
+            i.remove();
+        }
+    }
+
+    /**
+     * Creates a new empty block cache with the same capacity as this one.
+     *
+     * @return A new empty block cache with the same capacity as this one.
+     */
+    @Override
+    public BlockCache clone() {
+        return new BlockCache(this);
+    }
+
+    /**
+     * Creates a debug string representation of this block cache.
+     *
+     * @return A debug string representation of this block cache.
+     */
+    @Override
+    public String toString() {
+        return String.format("BlockCache(capacity = %d, size = %d)", this.capacity, this.getSize());
+    }
+}
@@ -0,0 +1,314 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.function.Consumer;
+
+/**
+ * The completed activities of a user that were moved out of memory, to an append-only file on
+ * disk. The file is composed of blocks of activities in binary form, and only the position and
+ * dates of each block are kept in memory, so that only the blocks relevant to a query are read.
+ */
+public class ColdHistory implements Serializable {
+    /** A block of activities in the file, appended at once. */
+    private static class Block implements Serializable {
+        /** Position of the block in the file. */
+        private final long offset;
+
+        /** Number of bytes in the block. */
+        private final int length;
+
+        /** Number of activities in the block. */
+        private final int count;
+
+        /** When the first activity in the block ended. */
+        private final LocalDateTime firstEnd;
+
+        /** When the last activity in the block ended. */
+        private final LocalDateTime lastEnd;
+
+        /**
+         * Creates a new block from the value of its fields.
+         *
+         * @param offset Position of the block in the file.
+         * @param length Number of bytes in the block.
+         * @param count Number of activities in the block.
+         * @param firstEnd When the first activity in the block ended.
+         * @param lastEnd When the last activity in the block ended.
+         */
+        public Block(long          offset,
+                     int           length,
+                     int           count,
+                     LocalDateTime firstEnd,
+                     LocalDateTime lastEnd) {
+            this.offset   = offset;
+            this.length   = length;
+            this.count    = count;
+            this.firstEnd = firstEnd;
+            this.lastEnd  = lastEnd;
+        }
+
+        /**
+         * Checks if any activity in this block may have ended between two dates.
+         *
+         * @param start Don't consider activities that ended before this date.
+         * @param end Don't consider activities that ended after this date.
+         * @return Whether any activity in this block may have ended between the two dates.
+         */
+        public boolean overlaps(LocalDateTime start, LocalDateTime end) {
+            return this.lastEnd.isAfter(start) && this.firstEnd.isBefore(end);
+        }
+
+        /**
+         * Calculates the hash code of this block.
+         *
+         * @return The hash code of this block.
+         */
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.offset, this.length, this.count, this.firstEnd, this.lastEnd);
+        }
+
+        /**
+         * Checks if this block is equal to another object.
+         *
+         * @param obj Object to be compared with this block.
+         * @return Whether <code>this</code> is equal to <code>obj</code>.
+         */
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj)
+                return true;
+            if (obj == null || this.getClass() != obj.getClass())
+                return false;
+
+            Block block = (Block) obj;
+            return this.offset == block.offset && this.length == block.length &&
+                this.count == block.count && this.firstEnd.equals(block.firstEnd) &&
+                this.lastEnd.equals(block.lastEnd);
+        }
+    }
+
+    /** Configuration of where activities are stored, whose block cache is shared. */
+    private ColdStorage storage;
+
+    /** Path to the file where the activities are stored. */
+    private String path;
+
+    /** Blocks of activities in the file, in the order they were appended. */
+    private List<Block> blocks;
+
+    /** Creates a new empty history, stored in the working directory. */
+    public ColdHistory() {
+        this(new ColdStorage(), 0);
+    }
+
+    /**
+     * Creates a new empty history for a user.
+     *
+     * @param storage Where activities are stored. It's not copied, for its block cache to be
+     *     shared.
+     * @param userCode Identifier code of the user.
+     */
+    public ColdHistory(ColdStorage storage, long userCode) {
+        this.storage = storage;
+        this.path    = storage.getPath(userCode).toString();
+        this.blocks  = new ArrayList<Block>();
+    }
+
+    /**
+     * Copy constructor of a history. Both histories refer to the same file, which is safe because
+     * it can only be appended to.
+     *
+     * @param history History to be copied.
+     */
+    public ColdHistory(ColdHistory history) {
+        this.storage = history.storage;
+        this.path    = history.getPath().toString();
+        this.blocks  = new ArrayList<Block>(history.blocks);
+    }
+
+    /**
+     * Gets the path to the file where the activities are stored.
+     *
+     * @return The path to the file where the activities are stored.
+     */
+    public Path getPath() {
+        return Paths.get(this.path);
+    }
+
+    /**
+     * Counts the activities in this history.
+     *
+     * @return The number of activities in this history.
+     */
+    public long countActivities() {
+        long count = 0;
+        for (Block block : this.blocks)
+            count += block.count;
+        return count;
+    }
+
+    /**
+     * Gets all the activities in this history, reading them from disk.
+     *
+     * @return All the activities in this history.
+     * @throws IOException Failed to read from the file.
+     */
+    public SortedSet<Activity> getActivities() throws IOException {
+        SortedSet<Activity> ret = new TreeSet<Activity>();
+        this.forEach(LocalDateTime.MIN, LocalDateTime.MAX, ret::add);
+        return ret;
+    }
+
+    /**
+     * Iterates over the activities in this history that ended between two dates. Only the blocks
+     * that may contain such activities are read.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param consumer Called for every activity in this history that ended between the two dates.
+     * @throws IOException Failed to read from the file.
+     */
+    public void forEach(LocalDateTime start, LocalDateTime end, Consumer<Activity> consumer)
+        throws IOException {
+
+        for (Block block : this.blocks) {
+            if (block.overlaps(start, end)) {
+                byte[] data =
+                    this.storage.getCache().read(this.getPath(), block.offset, block.length);
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+
+                for (int i = 0; i < block.count; ++i) {
+                    Activity      a           = ActivityCodec.decode(in);
+                    LocalDateTime activityEnd = a.getEndDate();
+                    if (activityEnd.isAfter(start) && activityEnd.isBefore(end))
+                        consumer.accept(a);
+                }
+            }
+        }
+    }
+
+    /**
+     * Appends activities to this history, as a new block at the end of the file.
+     *
+     * @param activities Activities to be appended.
+     * @throws IOException Failed to write to the file.
+     */
+    public void append(Collection<Activity> activities) throws IOException {
+        if (activities.isEmpty())
+            return;
+
+        ByteArrayOutputStream bytes    = new ByteArrayOutputStream();
+        DataOutputStream      out      = new DataOutputStream(bytes);
+        LocalDateTime         firstEnd = LocalDateTime.MAX;
+        LocalDateTime         lastEnd  = LocalDateTime.MIN;
+        for (Activity a : activities) {
+            ActivityCodec.encode(out, a);
+
+            LocalDateTime end = a.getEndDate();
+            if (end.isBefore(firstEnd))
+                firstEnd = end;
+            if (end.isAfter(lastEnd))
+                lastEnd = end;
+        }
+        out.flush();
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        long       offset;
+        try (FileChannel channel = FileChannel.open(this.getPath(),
+                                                    StandardOpenOption.CREATE,
+                                                    StandardOpenOption.WRITE)) {
+            offset = channel.size();
+            while (buffer.hasRemaining())
+                channel.write(buffer, offset + buffer.position());
+            channel.force(false);
+        }
+
+        this.blocks.add(
+            new Block(offset, buffer.capacity(), activities.size(), firstEnd, lastEnd));
+    }
+
+    /**
+     * Calculates the hash code of this history.
+     *
+     * @return The hash code of this history.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.path, this.blocks);
+    }
+
+    /**
+     * Checks if this history is equal to another object.
+     *
+     * @param obj Object to be compared with this history.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        ColdHistory history = (ColdHistory) obj;
+        return this.path.equals(history.path) && this.blocks.equals(history.blocks);
+    }
+
+    /**
+     * Creates a copy of this history, that refers to the same file.
+     *
+     * @return A copy of this history.
+     */
+    @Override
+    public ColdHistory clone() {
+        return new ColdHistory(this);
+    }
+
+    /**
+     * Creates a debug string representation of this history.
+     *
+     * @return A debug string representation of this history.
+     */
+    @Override
+    public String toString() {
+        return String.format("ColdHistory(path = \"%s\", blocks = %d, activities = %d)",
+                             this.path,
+                             this.blocks.size(),
+                             this.countActivities());
+    }
+}
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.Serializable;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Objects;
+
+/**
+ * Where and when completed activities are moved out of memory, to per-user files on disk. These
+ * files are read through a block cache shared by all users.
+ */
+public class ColdStorage implements Serializable {
+    /** Directory where the files of every user are stored. */
+    private String directory;
+
+    /** How long completed activities are kept in memory after they end. */
+    private Duration horizon;
+
+    /** Maximum number of bytes of the files kept in memory by the block cache. */
+    private long cacheCapacity;
+
+    /** Cache of the blocks read from the files, created when first needed. */
+    private transient BlockCache cache;
+
+    /** Creates a new cold storage in the working directory, that keeps activities for 90 days. */
+    public ColdStorage() {
+        this(".", Duration.ofDays(90), 64 * 1024 * 1024);
+    }
+
+    /**
+     * Creates a new cold storage from the value of its fields.
+     *
+     * @param directory Directory where the files of every user are stored.
+     * @param horizon How long completed activities are kept in memory after they end.
+     * @param cacheCapacity Maximum number of bytes of the files kept in memory.
+     */
+    public ColdStorage(String directory, Duration horizon, long cacheCapacity) {
+        this.directory     = directory;
+        this.horizon       = horizon;
+        this.cacheCapacity = cacheCapacity;
+        this.cache         = null;
+    }
+
+    /**
+     * Copy constructor of a cold storage. The block cache isn't shared with the copy.
+     *
+     * @param storage Cold storage to be copied.
+     */
+    public ColdStorage(ColdStorage storage) {
+        this(storage.getDirectory(), storage.getHorizon(), storage.getCacheCapacity());
+    }
+
+    /**
+     * Gets the directory where the files of every user are stored.
+     *
+     * @return The directory where the files of every user are stored.
+     */
+    public String getDirectory() {
+        return this.directory;
+    }
+
+    /**
+     * Gets how long completed activities are kept in memory after they end.
+     *
+     * @return How long completed activities are kept in memory after they end.
+     */
+    public Duration getHorizon() {
+        return this.horizon;
+    }
+
+    /**
+     * Gets the maximum number of bytes of the files kept in memory by the block cache.
+     *
+     * @return The maximum number of bytes of the files kept in memory by the block cache.
+     */
+    public long getCacheCapacity() {
+        return this.cacheCapacity;
+    }
+
+    /**
+     * Gets the cache of the blocks read from the files (not a copy, as it's meant to be shared).
+     *
+     * @return The cache of the blocks read from the files.
+     */
+    public synchronized BlockCache getCache() {
+        if (this.cache == null)
+            this.cache = new BlockCache(this.cacheCapacity);
+        return this.cache;
+    }
+
+    /**
+     * Gets the file where the completed activities of a user are stored.
+     *
+     * @param userCode Identifier code of the user.
+     * @return The file where the completed activities of user <code>userCode</code> are stored.
+     */
+    public Path getPath(long userCode) {
+        return Paths.get(this.directory, String.format("user-%d.seg", userCode));
+    }
+
+    /**
+     * Gets the date before which completed activities should be moved to disk.
+     *
+     * @param now Current time.
+     * @return The date before which (or at which) completed activities should be moved to disk.
+     */
+    public LocalDateTime getSpillDate(LocalDateTime now) {
+        return now.minus(this.horizon);
+    }
+
+    /**
+     * Calculates the hash code of this cold storage.
+     *
+     * @return The hash code of this cold storage.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.directory, this.horizon, this.cacheCapacity);
+    }
+
+    /**
+     * Checks if this cold storage is equal to another object.
+     *
+     * @param obj Object to be compared with this cold storage.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        ColdStorage storage = (ColdStorage) obj;
+        return this.directory.equals(storage.getDirectory()) &&
+            this.horizon.equals(storage.getHorizon()) &&
+            this.cacheCapacity == storage.getCacheCapacity();
+    }
+
+    /**
+     * Creates a copy of this cold storage, that doesn't share its block cache.
+     *
+     * @return A copy of this cold storage.
+     */
+    @Override
+    public ColdStorage clone() {
+        return new ColdStorage(this);
+    }
+
+    /**
+     * Creates a debug string representation of this cold storage.
+     *
+     * @return A debug string representation of this cold storage.
+     */
+    @Override
+    public String toString() {
+        return String.format(
+            "ColdStorage(directory = \"%s\", horizon = \"%s\", cacheCapacity = %d)",
+            this.directory,
+            this.horizon.toString(),
+            this.cacheCapacity);
+    }
+}
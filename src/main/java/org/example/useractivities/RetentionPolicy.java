@@ -0,0 +1,182 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.Serializable;
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.temporal.TemporalAdjusters;
+import java.util.Objects;
+
+/**
+ * A policy that tells for how long completed activities are kept, before being compacted into
+ * rollups.
+ */
+public class RetentionPolicy implements Serializable {
+    /** Periods of time that rollups can summarize. */
+    public enum Granularity {
+        /** Activities are summarized per day. */
+        DAY,
+        /** Activities are summarized per week, starting on Monday. */
+        WEEK;
+
+        /**
+         * Gets the first day of the period of time a date belongs to.
+         *
+         * @param date Date to get the period of time of.
+         * @return The first day of the period of time <code>date</code> belongs to.
+         */
+        public LocalDate periodStart(LocalDateTime date) {
+            if (this == Granularity.DAY)
+                return date.toLocalDate();
+            else
+                return date.toLocalDate().with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+        }
+    }
+
+    /** How long completed activities are kept after they end. */
+    private Duration horizon;
+
+    /** Period of time summarized by each rollup. */
+    private Granularity granularity;
+
+    /** Creates a new retention policy that keeps activities for a year, summarized per week. */
+    public RetentionPolicy() {
+        this.horizon     = Duration.ofDays(365);
+        this.granularity = Granularity.WEEK;
+    }
+
+    /**
+     * Creates a new retention policy from the value of its fields.
+     *
+     * @param horizon How long completed activities are kept after they end.
+     * @param granularity Period of time summarized by each rollup.
+     */
+    public RetentionPolicy(Duration horizon, Granularity granularity) {
+        this.horizon     = horizon;
+        this.granularity = granularity;
+    }
+
+    /**
+     * Copy constructor of a retention policy.
+     *
+     * @param policy Retention policy to be copied.
+     */
+    public RetentionPolicy(RetentionPolicy policy) {
+        this.horizon     = policy.getHorizon();
+        this.granularity = policy.getGranularity();
+    }
+
+    /**
+     * Gets how long completed activities are kept after they end.
+     *
+     * @return How long completed activities are kept after they end.
+     */
+    public Duration getHorizon() {
+        return this.horizon;
+    }
+
+    /**
+     * Gets the period of time summarized by each rollup.
+     *
+     * @return The period of time summarized by each rollup.
+     */
+    public Granularity getGranularity() {
+        return this.granularity;
+    }
+
+    /**
+     * Sets how long completed activities are kept after they end.
+     *
+     * @param horizon How long completed activities are kept after they end.
+     */
+    public void setHorizon(Duration horizon) {
+        this.horizon = horizon;
+    }
+
+    /**
+     * Sets the period of time summarized by each rollup.
+     *
+     * @param granularity The period of time summarized by each rollup.
+     */
+    public void setGranularity(Granularity granularity) {
+        this.granularity = granularity;
+    }
+
+    /**
+     * Gets the date before which completed activities should be compacted.
+     *
+     * @param now Current time.
+     * @return The date before which (or at which) completed activities should be compacted.
+     */
+    public LocalDateTime getCompactionDate(LocalDateTime now) {
+        return now.minus(this.horizon);
+    }
+
+    /**
+     * Calculates the hash code of this retention policy.
+     *
+     * @return The hash code of this retention policy.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.horizon, this.granularity);
+    }
+
+    /**
+     * Checks if this retention policy is equal to another object.
+     *
+     * @param obj Object to be compared with this retention policy.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        RetentionPolicy policy = (RetentionPolicy) obj;
+        return this.horizon.equals(policy.getHorizon()) &&
+            this.granularity == policy.getGranularity();
+    }
+
+    /**
+     * Creates a deep copy of this retention policy.
+     *
+     * @return A deep copy of this retention policy.
+     */
+    @Override
+    public RetentionPolicy clone() {
+        return new RetentionPolicy(this);
+    }
+
+    /**
+     * Creates a debug string representation of this retention policy.
+     *
+     * @return A debug string representation of this retention policy.
+     */
+    @Override
+    public String toString() {
+        return String.format("RetentionPolicy(horizon = \"%s\", granularity = %s)",
+                             this.horizon.toString(),
+                             this.granularity.toString());
+    }
+}
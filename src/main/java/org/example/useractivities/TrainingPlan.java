@@ -19,7 +19,9 @@ package org.example.fitness;
 import java.io.Serializable;
 import java.time.DayOfWeek;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Objects;
@@ -28,6 +30,8 @@ import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.ObjLongConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -45,10 +49,17 @@ public class TrainingPlan implements Serializable {
     /** Days of the week when this training plan is executed. */
     private SortedSet<DayOfWeek> repetitions;
 
+    /**
+     * Calories burned by executing this training plan, for each user calorie multiplier. Cleared
+     * whenever the activities or the repetitions of this plan change.
+     */
+    private transient volatile Map<Double, Double> calorieCache;
+
     /** Creates a new empty training plan. */
     public TrainingPlan() {
-        this.activities  = new TreeMap<Activity, Integer>();
-        this.repetitions = new TreeSet<DayOfWeek>();
+        this.activities   = new TreeMap<Activity, Integer>();
+        this.repetitions  = new TreeSet<DayOfWeek>();
+        this.calorieCache = null;
     }
 
     /**
@@ -74,6 +85,10 @@ public class TrainingPlan implements Serializable {
     public TrainingPlan(TrainingPlan plan) {
         this.activities  = plan.getActivities();
         this.repetitions = plan.getRepetitions();
+
+        Map<Double, Double> cache = plan.calorieCache; // Calories stay the same in the copy
+        if (cache != null)
+            this.calorieCache = new ConcurrentHashMap<Double, Double>(cache);
     }
 
     /**
@@ -88,6 +103,21 @@ public class TrainingPlan implements Serializable {
                 .toMap(e -> e.getKey().clone(), e -> e.getValue(), (o1, o2) -> o1, TreeMap::new));
     }
 
+    /**
+     * Gets a page of the activities in this training plan. Only the activities in the page are
+     * copied.
+     *
+     * @param offset Number of activities (sorted by execution date) before the page.
+     * @param limit Maximum number of activities in the page.
+     * @return The association between activities in the page and the number of times they're
+     *     executed. See <code>getActivities()</code>.
+     */
+    public SortedMap<Activity, Integer> getActivities(int offset, int limit) {
+        return this.activities.entrySet().stream().skip(offset).limit(limit).collect(
+            Collectors
+                .toMap(e -> e.getKey().clone(), e -> e.getValue(), (o1, o2) -> o1, TreeMap::new));
+    }
+
     /**
      * Gets the days of the week when this training plan is executed.
      *
@@ -103,7 +133,17 @@ public class TrainingPlan implements Serializable {
      * @param repetitions The days of the week in which this training plan needs to be executed.
      */
     public void setRepetitions(Set<DayOfWeek> repetitions) {
-        this.repetitions = new TreeSet<DayOfWeek>(repetitions);
+        this.repetitions  = new TreeSet<DayOfWeek>(repetitions);
+        this.calorieCache = null;
+    }
+
+    /**
+     * Checks if this training plan doesn't lead to the execution of any activity.
+     *
+     * @return Whether this training plan has no activities or isn't executed on any day.
+     */
+    public boolean isEmpty() {
+        return this.activities.isEmpty() || this.repetitions.isEmpty();
     }
 
     /**
@@ -183,6 +223,7 @@ public class TrainingPlan implements Serializable {
             repeatActivity.setExecutionTime(activity.getExecutionTime());
         } catch (ActivityException e) {} // getExecutionTime() > 0
         this.activities.put(repeatActivity, times);
+        this.calorieCache = null;
     }
 
     /**
@@ -207,6 +248,7 @@ public class TrainingPlan implements Serializable {
         if (!removed) {
             throw new ActivityDoesntExistException();
         }
+        this.calorieCache = null;
     }
 
     /**
@@ -220,13 +262,15 @@ public class TrainingPlan implements Serializable {
     public void setActivities(Map<Activity, Integer> activities) throws ActivityOverlapException {
         SortedMap<Activity, Integer> previous = this.getActivities();
         this.activities                       = new TreeMap<Activity, Integer>();
+        this.calorieCache                     = null;
 
         try {
             for (Map.Entry<Activity, Integer> current : activities.entrySet()) {
                 this.addActivity(current.getKey(), current.getValue());
             }
         } catch (ActivityOverlapException e) {
-            this.activities = previous;
+            this.activities   = previous;
+            this.calorieCache = null;
             throw e;
         }
     }
@@ -263,12 +307,184 @@ public class TrainingPlan implements Serializable {
     }
 
     /**
-     * Counts the calories burned by executing this training plan.
+     * Gets the number of days after the day an activity is scheduled for in which it may still be
+     * executing.
+     *
+     * @return The number of days after the day an activity is scheduled for in which it may still
+     *     be executing.
+     */
+    private long getSpanDays() {
+        long span = 1;
+        for (Map.Entry<Activity, Integer> current : this.activities.entrySet()) {
+            Activity a   = current.getKey();
+            long     end = a.getExecutionDate().toLocalTime().toSecondOfDay() +
+                a.getExecutionTime().toSeconds() * current.getValue();
+            span = Math.max(span, end / 86400 + 1);
+        }
+        return span;
+    }
+
+    /**
+     * Gets the activities in the training plan that end in a time interval. Unlike
+     * <code>activitiesBetween</code>, activities scheduled for days before <code>after</code> are
+     * also considered, so that consecutive intervals never share activities.
+     *
+     * @param after Only consider activities that end after this date.
+     * @param until Only consider activities that end before or at this date.
+     * @return The set of activities that end between <code>after</code> and <code>until</code>.
+     */
+    public SortedSet<Activity> activitiesEndingBetween(LocalDateTime after, LocalDateTime until) {
+        SortedSet<Activity> ret = new TreeSet<Activity>();
+        if (!until.isAfter(after))
+            return ret;
+
+        LocalDate first = after.toLocalDate().minusDays(this.getSpanDays());
+        LocalDate last  = until.toLocalDate();
+        for (LocalDate d = first; !d.isAfter(last); d = d.plusDays(1)) {
+            if (this.repetitions.contains(d.getDayOfWeek())) {
+                for (Map.Entry<Activity, Integer> current : this.activities.entrySet()) {
+                    for (int i = 0; i < current.getValue(); ++i) {
+                        Activity a = current.getKey().clone();
+                        a.setExecutionDate(d.atTime(a.getExecutionDate().toLocalTime())
+                                               .plusSeconds(a.getExecutionTime().toSeconds() * i));
+
+                        LocalDateTime end = a.getEndDate();
+                        if (end.isAfter(after) && !end.isAfter(until)) {
+                            ret.add(a);
+                        }
+                    }
+                }
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Counts how many times each activity in the training plan ends in a time interval, without
+     * creating the executed activities. The same activities as in <code>activitiesEndingBetween
+     * </code> are considered, but this method takes time proportional to the size of the plan,
+     * not to the length of the interval.
+     *
+     * @param after Only consider activities that end after this date.
+     * @param until Only consider activities that end before or at this date.
+     * @param counter Called for every activity in this plan that ends in the interval, along with
+     *     the number of times it does so. The activity must not be modified, and the YYYY/MM/DD
+     *     part of its date is 0001/01/01.
+     */
+    public void countActivitiesBetween(LocalDateTime             after,
+                                       LocalDateTime             until,
+                                       ObjLongConsumer<Activity> counter) {
+        if (!until.isAfter(after))
+            return;
+
+        boolean[] days = new boolean[7];
+        for (DayOfWeek day : this.repetitions)
+            days[day.getValue() - 1] = true;
+
+        long afterSecond = after.toEpochSecond(ZoneOffset.UTC);
+        long untilSecond = until.toEpochSecond(ZoneOffset.UTC);
+        long span        = this.getSpanDays();
+        long first       = after.toLocalDate().toEpochDay() - span;
+        long last        = until.toLocalDate().toEpochDay();
+
+        // All activities scheduled for days in this range end in the interval, so these days only
+        // need to be counted, not iterated over.
+        long fullStart = after.toLocalDate().toEpochDay() + 1;
+        long fullEnd   = last - span;
+        long fullDays  = 0;
+        if (fullStart <= fullEnd) {
+            for (int i = 0; i < 7; ++i) {
+                if (days[i])
+                    fullDays += TrainingPlan.countWeekDays(fullStart, fullEnd, i);
+            }
+        } else {
+            fullStart = Long.MAX_VALUE;
+        }
+
+        for (Map.Entry<Activity, Integer> current : this.activities.entrySet()) {
+            Activity a        = current.getKey();
+            long     start    = a.getExecutionDate().toLocalTime().toSecondOfDay();
+            int      nano     = a.getExecutionDate().getNano();
+            long     duration = a.getExecutionTime().toSeconds();
+
+            long count = fullDays * current.getValue();
+            for (long d = first; d <= last; ++d) {
+                if (d == fullStart) {
+                    d = fullEnd; // Already counted
+                } else if (days[TrainingPlan.weekDay(d)]) {
+                    for (int i = 1; i <= current.getValue(); ++i) {
+                        long end = d * 86400 + start + duration * i;
+                        if ((end > afterSecond || (end == afterSecond && nano > after.getNano())) &&
+                            (end < untilSecond || (end == untilSecond && nano <= until.getNano())))
+                            count++;
+                    }
+                }
+            }
+
+            if (count > 0)
+                counter.accept(a, count);
+        }
+    }
+
+    /**
+     * Gets the day of the week of a day.
+     *
+     * @param epochDay Day, counted from 1970/01/01.
+     * @return The day of the week of <code>epochDay</code>, from 0 (Monday) to 6 (Sunday).
+     */
+    private static int weekDay(long epochDay) {
+        return Math.floorMod(epochDay + 3, 7); // 1970/01/01 was a Thursday
+    }
+
+    /**
+     * Counts the number of times a day of the week occurs in a range of days.
+     *
+     * @param first First day in the range, counted from 1970/01/01.
+     * @param last Last day in the range (inclusive), counted from 1970/01/01.
+     * @param weekDay Day of the week, from 0 (Monday) to 6 (Sunday).
+     * @return The number of days in the range that are <code>weekDay</code>.
+     */
+    private static long countWeekDays(long first, long last, int weekDay) {
+        long offset = Math.floorMod(weekDay - TrainingPlan.weekDay(first), 7);
+        long days   = last - first + 1;
+        return days > offset ? (days - offset - 1) / 7 + 1 : 0;
+    }
+
+    /**
+     * Iterates over the activities in this training plan, without copying them.
+     *
+     * @param consumer Called for every activity (that must not be modified) and its number of
+     *     executions per week.
+     */
+    public void forEachActivity(ObjLongConsumer<Activity> consumer) {
+        for (Map.Entry<Activity, Integer> e : this.activities.entrySet())
+            consumer.accept(e.getKey(), (long) e.getValue() * this.repetitions.size());
+    }
+
+    /**
+     * Counts the calories burned by executing this training plan. They're only calculated once for
+     * each user calorie multiplier, until this plan changes.
      *
      * @param user User executing the training plan.
      * @return The calories burned by executing this training plan.
      */
     public double countCalories(User user) {
+        Map<Double, Double> cache = this.calorieCache;
+        if (cache == null) {
+            cache             = new ConcurrentHashMap<Double, Double>();
+            this.calorieCache = cache;
+        }
+        return cache.computeIfAbsent(user.getCalorieMultiplier(), m -> this.computeCalories(user));
+    }
+
+    /**
+     * Calculates the calories burned by executing this training plan, without using the value
+     * calculated before.
+     *
+     * @param user User executing the training plan.
+     * @return The calories burned by executing this training plan.
+     */
+    private double computeCalories(User user) {
         return this.activities.entrySet()
                    .stream()
                    .mapToDouble(e -> e.getKey().countCalories(user) * e.getValue())
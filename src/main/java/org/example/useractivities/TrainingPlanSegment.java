@@ -0,0 +1,268 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+import java.util.Objects;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.function.ObjLongConsumer;
+
+/**
+ * A version of a training plan, along with the period of time during which it was executed. The
+ * activities executed in it are only created when they're needed.
+ */
+public class TrainingPlanSegment implements Serializable {
+    /** The training plan executed during this segment. */
+    private TrainingPlan plan;
+
+    /** Activities that ended before or at this date aren't part of this segment. */
+    private LocalDateTime start;
+
+    /** Activities that ended after this date aren't part of this segment. */
+    private LocalDateTime end;
+
+    /** Creates a new empty training plan segment. */
+    public TrainingPlanSegment() {
+        this.plan  = new TrainingPlan();
+        this.start = LocalDateTime.MIN;
+        this.end   = LocalDateTime.MIN;
+    }
+
+    /**
+     * Creates a new training plan segment from the value of its fields.
+     *
+     * @param plan The training plan executed during the segment.
+     * @param start Activities that ended before or at this date aren't part of the segment.
+     * @param end Activities that ended after this date aren't part of the segment.
+     */
+    public TrainingPlanSegment(TrainingPlan plan, LocalDateTime start, LocalDateTime end) {
+        this.plan  = plan.clone();
+        this.start = start;
+        this.end   = end;
+    }
+
+    /**
+     * Copy constructor of a training plan segment.
+     *
+     * @param segment Training plan segment to be copied.
+     */
+    public TrainingPlanSegment(TrainingPlanSegment segment) {
+        this.plan  = segment.getTrainingPlan();
+        this.start = segment.getStart();
+        this.end   = segment.getEnd();
+    }
+
+    /**
+     * Gets the training plan executed during this segment.
+     *
+     * @return The training plan executed during this segment.
+     */
+    public TrainingPlan getTrainingPlan() {
+        return this.plan.clone();
+    }
+
+    /**
+     * Gets the date before which (or at which) activities that ended aren't part of this segment.
+     *
+     * @return The date before which (or at which) activities that ended aren't part of this
+     *     segment.
+     */
+    public LocalDateTime getStart() {
+        return this.start;
+    }
+
+    /**
+     * Gets the date after which activities that ended aren't part of this segment.
+     *
+     * @return The date after which activities that ended aren't part of this segment.
+     */
+    public LocalDateTime getEnd() {
+        return this.end;
+    }
+
+    /**
+     * Sets the date before which (or at which) activities that ended aren't part of this segment.
+     *
+     * @param start The date before which (or at which) activities that ended aren't part of this
+     *     segment.
+     */
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+
+    /**
+     * Sets the date after which activities that ended aren't part of this segment.
+     *
+     * @param end The date after which activities that ended aren't part of this segment.
+     */
+    public void setEnd(LocalDateTime end) {
+        this.end = end;
+    }
+
+    /**
+     * Checks if the training plan of this segment doesn't lead to the execution of any activity,
+     * without copying it. See <code>TrainingPlan.isEmpty</code>.
+     *
+     * @return Whether the training plan of this segment has no activities or isn't executed on any
+     *     day.
+     */
+    public boolean isEmpty() {
+        return this.plan.isEmpty();
+    }
+
+    /**
+     * Counts the calories burned by executing the training plan of this segment, without copying
+     * it. See <code>TrainingPlan.countCalories</code>.
+     *
+     * @param user User executing the training plan.
+     * @return The calories burned by executing the training plan.
+     */
+    public double countCalories(User user) {
+        return this.plan.countCalories(user);
+    }
+
+    /**
+     * Iterates over the activities in the training plan of this segment, without copying them. See
+     * <code>TrainingPlan.forEachActivity</code>.
+     *
+     * @param consumer Called for every activity (that must not be modified) and its number of
+     *     executions per week.
+     */
+    public void forEachActivity(ObjLongConsumer<Activity> consumer) {
+        this.plan.forEachActivity(consumer);
+    }
+
+    /**
+     * Checks if an external activity overlaps with an activity in the training plan of this
+     * segment. See <code>TrainingPlan.overlaps</code>.
+     *
+     * @param activity Activity to be checked for overlapping.
+     * @return Whether <code>activity</code> overlaps with any activity in the training plan.
+     */
+    public boolean overlaps(Activity activity) {
+        return this.plan.overlaps(activity);
+    }
+
+    /**
+     * Creates the activities executed during this segment.
+     *
+     * @return The activities executed during this segment.
+     */
+    public SortedSet<Activity> getActivities() {
+        return this.plan.activitiesEndingBetween(this.start, this.end);
+    }
+
+    /**
+     * Creates the activities executed during this segment that ended in a time interval.
+     *
+     * @param after Only consider activities that end after this date.
+     * @param until Only consider activities that end before or at this date.
+     * @return The activities executed during this segment that ended between <code>after</code>
+     *     and <code>until</code>.
+     */
+    public SortedSet<Activity> getActivities(LocalDateTime after, LocalDateTime until) {
+        return this.plan.activitiesEndingBetween(after.isAfter(this.start) ? after : this.start,
+                                                 until.isAfter(this.end) ? this.end : until);
+    }
+
+    /**
+     * Gets a page of the activities in the training plan of this segment. See
+     * <code>TrainingPlan.getActivities(offset, limit)</code>.
+     *
+     * @param offset Number of activities before the page.
+     * @param limit Maximum number of activities in the page.
+     * @return The association between activities in the page and the number of times they're
+     *     executed.
+     */
+    public SortedMap<Activity, Integer> getPlanActivities(int offset, int limit) {
+        return this.plan.getActivities(offset, limit);
+    }
+
+    /**
+     * Counts how many times each activity of the training plan was executed during this segment,
+     * only considering the executions that ended between two dates.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param counter Called for every activity in the training plan that was executed, along with
+     *     the number of executions. See <code>TrainingPlan.countActivitiesBetween</code>.
+     */
+    public void countActivities(LocalDateTime             start,
+                                LocalDateTime             end,
+                                ObjLongConsumer<Activity> counter) {
+        if (!end.isAfter(this.start))
+            return;
+
+        LocalDateTime after = start.isAfter(this.start) ? start : this.start;
+        LocalDateTime until = end.isAfter(this.end) ? this.end : end.minusNanos(1);
+        this.plan.countActivitiesBetween(after, until, counter);
+    }
+
+    /**
+     * Calculates the hash code of this training plan segment.
+     *
+     * @return The hash code of this training plan segment.
+     */
+    @Override
+    public int hashCode() {
+        return Objects.hash(this.plan, this.start, this.end);
+    }
+
+    /**
+     * Checks if this training plan segment is equal to another object.
+     *
+     * @param obj Object to be compared with this training plan segment.
+     * @return Whether <code>this</code> is equal to <code>obj</code>.
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null || this.getClass() != obj.getClass())
+            return false;
+
+        TrainingPlanSegment segment = (TrainingPlanSegment) obj;
+        return this.plan.equals(segment.getTrainingPlan()) &&
+            this.start.equals(segment.getStart()) && this.end.equals(segment.getEnd());
+    }
+
+    /**
+     * Creates a deep copy of this training plan segment.
+     *
+     * @return A deep copy of this training plan segment.
+     */
+    @Override
+    public TrainingPlanSegment clone() {
+        return new TrainingPlanSegment(this);
+    }
+
+    /**
+     * Creates a debug string representation of this training plan segment.
+     *
+     * @return A debug string representation of this training plan segment.
+     */
+    @Override
+    public String toString() {
+        return String.format("TrainingPlanSegment(plan = %s, start = \"%s\", end = \"%s\")",
+                             this.plan.toString(),
+                             this.start.toString(),
+                             this.end.toString());
+    }
+}
@@ -16,13 +16,22 @@
 
 package org.example.fitness;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Objects;
 import java.util.Set;
+import java.util.SortedMap;
 import java.util.SortedSet;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.ObjLongConsumer;
 import java.util.stream.Collectors;
 
 /**
@@ -33,17 +42,41 @@ public class UserActivities implements Serializable {
     /** The activities the user still needs to execute. */
     private SortedSet<Activity> todo;
 
-    /** The activities the user has already completed. */
+    /** The isolated activities the user has already completed. */
     private SortedSet<Activity> done;
 
-    /** The training plan the user is executing. */
-    private TrainingPlan plan;
+    /**
+     * Versions of the training plan, each associated with the period of time in which it was
+     * executed, and sorted by date. This history can only be appended to, and its last element is
+     * the training plan the user is currently executing. Activities from the training plan are
+     * only created when needed.
+     */
+    private List<TrainingPlanSegment> planHistory;
+
+    /** Summaries of old isolated activities, that replace them, sorted by period of time. */
+    private SortedMap<LocalDate, ActivityRollup> rollups;
+
+    /**
+     * Old isolated activities the user has already completed, moved out of memory to disk.
+     * <code>null</code> if no activities were ever moved.
+     */
+    private ColdHistory cold;
+
+    /**
+     * Isolated activities the user has already completed, stored as columns outside of the Java
+     * heap instead of in <code>done</code>. <code>null</code> if this storage isn't used.
+     */
+    private ActivityColumns columns;
 
     /** Creates a new empty collection of user activities. */
     public UserActivities() {
-        this.todo = new TreeSet<Activity>();
-        this.done = new TreeSet<Activity>();
-        this.plan = new TrainingPlan();
+        this.todo        = new TreeSet<Activity>();
+        this.done        = new TreeSet<Activity>();
+        this.planHistory = new ArrayList<TrainingPlanSegment>();
+        this.planHistory.add(new TrainingPlanSegment());
+        this.rollups = new TreeMap<LocalDate, ActivityRollup>();
+        this.cold    = null;
+        this.columns = null;
     }
 
     /**
@@ -69,9 +102,12 @@ public class UserActivities implements Serializable {
      * @param activities Collection of activities to be copied.
      */
     public UserActivities(UserActivities activities) {
-        this.todo = activities.getTodo();
-        this.done = activities.getDone();
-        this.plan = activities.getTrainingPlan();
+        this.todo        = activities.getTodo();
+        this.done        = activities.getIsolatedDone();
+        this.planHistory = activities.getTrainingPlanHistory();
+        this.rollups     = activities.getRollups();
+        this.cold        = activities.getColdHistory();
+        this.columns     = activities.columns == null ? null : activities.columns.clone();
     }
 
     /**
@@ -86,23 +122,423 @@ public class UserActivities implements Serializable {
     }
 
     /**
-     * Gets the activities this user has already completed.
+     * Gets the activities this user has already completed. Activities from the training plan are
+     * created by this method, so prefer <code>forEachDone</code> when they only need to be counted.
+     * Activities that were compacted into rollups aren't included, and activities moved to disk
+     * are read from it.
      *
      * @return The activities this user has already completed.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
      */
     public SortedSet<Activity> getDone() {
+        SortedSet<Activity> ret = this.getIsolatedDone();
+        for (TrainingPlanSegment segment : this.planHistory)
+            ret.addAll(segment.getActivities());
+
+        if (this.columns != null)
+            ret.addAll(this.columns.getActivities());
+        if (this.cold != null) {
+            try {
+                ret.addAll(this.cold.getActivities());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Gets a page of the activities this user still needs to execute, sorted by execution date.
+     * Only the activities in the page are copied.
+     *
+     * @param after Only consider activities executed after this date (the execution date of the
+     *     last activity in the previous page).
+     * @param limit Maximum number of activities in the page.
+     * @return The first <code>limit</code> activities to execute after <code>after</code>.
+     */
+    public SortedSet<Activity> getTodoPage(LocalDateTime after, int limit) {
+        SortedSet<Activity> ret = new TreeSet<Activity>();
+        for (Activity a : this.todo.tailSet(UserActivities.seek(after))) {
+            if (ret.size() >= limit)
+                break;
+            if (a.getExecutionDate().isAfter(after))
+                ret.add(a.clone());
+        }
+        return ret;
+    }
+
+    /**
+     * Gets a page of the activities this user has already completed, sorted by execution date.
+     * Only the activities in the page are copied, and activities from the training plan are only
+     * created one week at a time. See <code>getDone</code>.
+     *
+     * @param after Only consider activities executed after this date (the execution date of the
+     *     last activity in the previous page).
+     * @param limit Maximum number of activities in the page.
+     * @return The first <code>limit</code> activities executed after <code>after</code>.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
+     */
+    public SortedSet<Activity> getDonePage(LocalDateTime after, int limit) {
+        SortedSet<Activity> ret = new TreeSet<Activity>();
+        for (Activity a : this.done.tailSet(UserActivities.seek(after)))
+            if (a.getExecutionDate().isAfter(after) && !UserActivities.offer(ret, a, limit))
+                break; // Sorted: no later activity will fit either
+
+        for (TrainingPlanSegment segment : this.planHistory) {
+            LocalDateTime from = after.isAfter(segment.getStart()) ? after : segment.getStart();
+            while (from.isBefore(segment.getEnd()) &&
+                   (ret.size() < limit || from.isBefore(ret.last().getEndDate()))) {
+
+                // Activities in the plan don't overlap, so later ones end after the page
+                LocalDateTime until = from.plusWeeks(1);
+                for (Activity a : segment.getActivities(from, until))
+                    if (a.getExecutionDate().isAfter(after))
+                        UserActivities.offer(ret, a, limit);
+                from = until;
+            }
+        }
+
+        ObjLongConsumer<Activity> consumer = (a, n) -> {
+            if (a.getExecutionDate().isAfter(after))
+                UserActivities.offer(ret, a, limit);
+        };
+        if (this.columns != null)
+            this.columns.forEach(after, LocalDateTime.MAX, consumer);
+        if (this.cold != null) {
+            try {
+                this.cold.forEach(after, LocalDateTime.MAX, a -> consumer.accept(a, 1));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return ret;
+    }
+
+    /**
+     * Creates an activity sorted before all activities executed after a date, so that pages don't
+     * go through the activities of previous pages.
+     *
+     * @param after Date of the last activity in the previous page.
+     * @return An activity executed at <code>after</code>, as short as possible.
+     */
+    private static Activity seek(LocalDateTime after) {
+        Activity ret = new ActivityPushUp();
+        ret.setExecutionDate(after);
+        return ret;
+    }
+
+    /**
+     * Adds a copy of an activity to a page of activities, if it's among the first ones.
+     *
+     * @param page Page of activities, sorted by execution date.
+     * @param activity Activity to be added.
+     * @param limit Maximum number of activities in the page.
+     * @return Whether the activity was added to the page.
+     */
+    private static boolean offer(SortedSet<Activity> page, Activity activity, int limit) {
+        if (page.size() >= limit && (limit <= 0 || activity.compareTo(page.last()) >= 0))
+            return false;
+
+        page.add(activity.clone());
+        if (page.size() > limit)
+            page.remove(page.last());
+        return true;
+    }
+
+    /**
+     * Gets the isolated activities this user has already completed.
+     *
+     * @return The isolated activities this user has already completed.
+     */
+    private SortedSet<Activity> getIsolatedDone() {
         return this.done.stream()
             .map(Activity::clone)
             .collect(Collectors.toCollection(TreeSet::new));
     }
 
+    /**
+     * Gets the isolated activities this user has already completed that are kept in memory,
+     * whether they're stored as objects or as columns, without copying the former.
+     *
+     * @return The isolated activities this user completed that weren't moved to disk.
+     */
+    private SortedSet<Activity> getStoredDone() {
+        if (this.columns == null)
+            return this.done;
+
+        SortedSet<Activity> ret = new TreeSet<Activity>(this.done);
+        ret.addAll(this.columns.getActivities());
+        return ret;
+    }
+
+    /**
+     * Gets the versions of the training plan this user executed, each associated with the period
+     * of time in which it was executed.
+     *
+     * @return The versions of the training plan this user executed, sorted by date. The last one
+     *     is the training plan the user is currently executing.
+     */
+    public List<TrainingPlanSegment> getTrainingPlanHistory() {
+        return this.planHistory.stream()
+            .map(TrainingPlanSegment::clone)
+            .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Iterates over the activities this user has completed that ended between two dates, without
+     * copying them. Activities from the training plan aren't created: each one is only provided
+     * once, along with the number of times it was executed. Activities that were compacted into
+     * rollups aren't included (see <code>forEachRollup</code>). Activities moved to disk are only
+     * read from it if they may have ended between the two dates.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param consumer Called for every completed activity (that must not be modified nor kept) and
+     *     its number of executions. The date of activities from the training plan is unspecified.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
+     */
+    public void forEachDone(LocalDateTime             start,
+                            LocalDateTime             end,
+                            ObjLongConsumer<Activity> consumer) {
+        this.forEachObjectDone(start, end, consumer);
+        if (this.columns != null)
+            this.columns.forEach(start, end, consumer);
+    }
+
+    /**
+     * Iterates over all the activities this user has completed. See <code>forEachDone(start, end,
+     * consumer)</code>.
+     *
+     * @param consumer Called for every completed activity (that must not be modified nor kept) and
+     *     its number of executions. The date of activities from the training plan is unspecified.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
+     */
+    public void forEachDone(ObjLongConsumer<Activity> consumer) {
+        this.forEachDone(LocalDateTime.MIN, LocalDateTime.MAX, consumer);
+    }
+
+    /**
+     * Counts the activities this user has completed that ended between two dates. Activities stored
+     * as columns are counted without creating any objects. See <code>forEachDone</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @return The number of activities this user completed between the two dates.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
+     */
+    public long countDone(LocalDateTime start, LocalDateTime end) {
+        long[] count = { 0 }; // Array wrapper to allow for lambda modification
+        this.forEachObjectDone(start, end, (a, n) -> { count[0] += n; });
+        if (this.columns != null)
+            count[0] += this.columns.count(start, end);
+        return count[0];
+    }
+
+    /**
+     * Calculates the calories burned in the activities this user has completed that ended between
+     * two dates. Activities stored as columns are considered in batches, by <code>CalorieKernel
+     * </code>, without creating any objects. See <code>forEachDone</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param user User that executed the activities.
+     * @return The calories <code>user</code> burned in the activities between the two dates.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
+     */
+    public double countCalories(LocalDateTime start, LocalDateTime end, User user) {
+        double[] calories = { 0.0 }; // Array wrapper to allow for lambda modification
+        this.forEachObjectDone(start, end, (a, n) -> { calories[0] += a.countCalories(user) * n; });
+        if (this.columns != null)
+            calories[0] += this.columns.countCalories(start, end, user.getCalorieMultiplier());
+        return calories[0];
+    }
+
+    /**
+     * Calculates the distance traversed in the activities of a given type this user has completed
+     * that ended between two dates. Activities stored as columns are considered without creating
+     * any objects. See <code>forEachDone</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param activityType Type of activity to be considered (e.g.: <code>ActivityDistance.class
+     *     </code>).
+     * @return The distance traversed in activities of type <code>activityType</code>.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
+     */
+    public double countDistance(LocalDateTime                     start,
+                                LocalDateTime                     end,
+                                Class<? extends ActivityDistance> activityType) {
+        double[] distance = { 0.0 }; // Array wrapper to allow for lambda modification
+        this.forEachObjectDone(start, end, (a, n) -> {
+            if (activityType.isInstance(a))
+                distance[0] += ((ActivityDistance) a).getDistanceToTraverse() * n;
+        });
+        if (this.columns != null)
+            distance[0] += this.columns.countDistance(start, end, activityType);
+        return distance[0];
+    }
+
+    /**
+     * Iterates over the activities this user has completed that ended between two dates, except for
+     * the ones stored as columns. See <code>forEachDone</code>.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param consumer Called for every completed activity (that must not be modified) and its
+     *     number of executions.
+     * @throws UncheckedIOException Failed to read activities moved to disk.
+     */
+    private void forEachObjectDone(LocalDateTime             start,
+                                   LocalDateTime             end,
+                                   ObjLongConsumer<Activity> consumer) {
+        for (Activity a : this.done) {
+            LocalDateTime activityEnd = a.getEndDate();
+            if (activityEnd.isAfter(start) && activityEnd.isBefore(end))
+                consumer.accept(a, 1);
+        }
+
+        for (TrainingPlanSegment segment : this.planHistory)
+            segment.countActivities(start, end, consumer);
+
+        if (this.cold != null) {
+            try {
+                this.cold.forEach(start, end, (a) -> { consumer.accept(a, 1); });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Checks if the isolated activities this user completed are stored as columns outside of the
+     * Java heap.
+     *
+     * @return Whether the isolated activities this user completed are stored as columns.
+     */
+    public boolean isColumnar() {
+        return this.columns != null;
+    }
+
+    /**
+     * Gets the old isolated activities this user completed that were moved to disk.
+     *
+     * @return The old isolated activities this user completed that were moved to disk. <code>null
+     *     </code> if no activities were ever moved.
+     */
+    public ColdHistory getColdHistory() {
+        if (this.cold == null)
+            return null;
+        else
+            return this.cold.clone();
+    }
+
+    /**
+     * Gets the summaries of old isolated activities this user completed.
+     *
+     * @return The summaries of old isolated activities this user completed, sorted by period of
+     *     time.
+     */
+    public SortedMap<LocalDate, ActivityRollup> getRollups() {
+        SortedMap<LocalDate, ActivityRollup> ret = new TreeMap<LocalDate, ActivityRollup>();
+        for (ActivityRollup r : this.rollups.values())
+            ret.put(r.getStart(), r.clone());
+        return ret;
+    }
+
+    /**
+     * Iterates over the summaries of old activities that ended between two dates, without copying
+     * them. All the activities in a rollup are considered to have ended when the last of them did
+     * (see <code>ActivityRollup.endsBetween</code>), so dates are rounded to whole rollups.
+     *
+     * @param start Don't consider activities that ended before this date.
+     * @param end Don't consider activities that ended after this date.
+     * @param consumer Called for every rollup (that must not be modified).
+     */
+    public void forEachRollup(LocalDateTime            start,
+                              LocalDateTime            end,
+                              Consumer<ActivityRollup> consumer) {
+        for (ActivityRollup r : this.rollups.values()) {
+            if (r.endsBetween(start, end))
+                consumer.accept(r);
+        }
+    }
+
+    /**
+     * Iterates over all the summaries of old activities. See <code>forEachRollup(start, end,
+     * consumer)</code>.
+     *
+     * @param consumer Called for every rollup (that must not be modified).
+     */
+    public void forEachRollup(Consumer<ActivityRollup> consumer) {
+        this.forEachRollup(LocalDateTime.MIN, LocalDateTime.MAX, consumer);
+    }
+
     /**
      * Gets the training plan this user is currently executing.
      *
      * @return The training plan this user is currently executing.
      */
     public TrainingPlan getTrainingPlan() {
-        return this.plan.clone();
+        return this.getCurrentSegment().getTrainingPlan();
+    }
+
+    /**
+     * Gets a page of the activities in the training plan this user is currently executing, without
+     * copying the rest of the plan. See <code>TrainingPlan.getActivities(offset, limit)</code>.
+     *
+     * @param offset Number of activities before the page.
+     * @param limit Maximum number of activities in the page.
+     * @return The association between activities in the page and the number of times they're
+     *     executed.
+     */
+    public SortedMap<Activity, Integer> getTrainingPlanPage(int offset, int limit) {
+        return this.getCurrentSegment().getPlanActivities(offset, limit);
+    }
+
+    /**
+     * Counts the calories burned by executing the training plan this user is currently executing,
+     * without copying it. See <code>TrainingPlan.countCalories</code>.
+     *
+     * @param user User executing the training plan.
+     * @return The calories burned by executing the current training plan.
+     */
+    public double countTrainingPlanCalories(User user) {
+        return this.getCurrentSegment().countCalories(user);
+    }
+
+    /**
+     * Iterates over the activities in the training plan this user is currently executing, without
+     * copying them. See <code>TrainingPlan.forEachActivity</code>.
+     *
+     * @param consumer Called for every activity (that must not be modified) and its number of
+     *     executions per week.
+     */
+    public void forEachTrainingPlanActivity(ObjLongConsumer<Activity> consumer) {
+        this.getCurrentSegment().forEachActivity(consumer);
+    }
+
+    /**
+     * Gets the version of the training plan this user was executing at a given date.
+     *
+     * @param date Date to get the training plan for.
+     * @return The training plan whose activities ending at <code>date</code> were executed. For
+     *     dates not yet leapt over, this is the training plan the user is currently executing.
+     */
+    public TrainingPlan getTrainingPlan(LocalDateTime date) {
+        for (TrainingPlanSegment segment : this.planHistory) {
+            if (!date.isAfter(segment.getEnd()))
+                return segment.getTrainingPlan();
+        }
+        return this.getTrainingPlan();
+    }
+
+    /**
+     * Gets the version of the training plan this user is currently executing.
+     *
+     * @return The last element of the training plan history (not a copy).
+     */
+    private TrainingPlanSegment getCurrentSegment() {
+        return this.planHistory.get(this.planHistory.size() - 1);
     }
 
     /**
@@ -114,19 +550,45 @@ public class UserActivities implements Serializable {
      *     collection.
      */
     public void addActivity(Activity activity) throws ActivityOverlapException {
-        if (this.plan.overlaps(activity)) {
+        if (this.getCurrentSegment().overlaps(activity)) {
             throw new ActivityOverlapException();
         }
 
-        for (Activity a : this.todo) {
-            if (activity.overlaps(a)) {
-                throw new ActivityOverlapException();
-            }
+        // Activities in todo don't overlap, so the ones sorted before activity also end in order,
+        // and only its neighbours can overlap it
+        SortedSet<Activity> before = this.todo.headSet(activity);
+        SortedSet<Activity> after  = this.todo.tailSet(activity);
+        if ((!before.isEmpty() && activity.overlaps(before.last())) ||
+            (!after.isEmpty() && activity.overlaps(after.first()))) {
+            throw new ActivityOverlapException();
         }
 
         this.todo.add(activity.clone());
     }
 
+    /**
+     * Adds many activities to the collection of activities this user still has to execute. Either
+     * all activities are added or none is.
+     *
+     * @param activities Activities to be added to the collection of activities this user still has
+     *     to execute.
+     * @throws ActivityOverlapException An activity in <code>activities</code> overlaps another
+     *     activity in this collection or in <code>activities</code>.
+     */
+    public void addActivities(List<Activity> activities) throws ActivityOverlapException {
+        int added = 0;
+        try {
+            for (Activity activity : activities) {
+                this.addActivity(activity);
+                added++;
+            }
+        } catch (ActivityOverlapException e) {
+            for (Activity activity : activities.subList(0, added))
+                this.todo.remove(activity);
+            throw e;
+        }
+    }
+
     /**
      * Sets the activities this user still has to execute.
      *
@@ -151,23 +613,79 @@ public class UserActivities implements Serializable {
     /**
      * Sets the activities this user has already executed. No overlapping checks are performed.
      *
-     * @param done The activities this user has already executed.
+     * @param done The activities this user has already executed. These replace any activities
+     *     executed as part of the training plan, whose history is also cleared, any rollups and
+     *     any activities moved to disk.
      */
     public void setDone(Set<Activity> done) {
-        this.done =
-            done.stream().map(Activity::clone).collect(Collectors.toCollection(TreeSet::new));
+        this.done = new TreeSet<Activity>();
+        if (this.columns != null)
+            this.columns = new ActivityColumns();
+        for (Activity a : done)
+            this.addDone(a.clone());
+        this.rollups = new TreeMap<LocalDate, ActivityRollup>();
+        this.cold    = null;
+
+        TrainingPlanSegment current = this.getCurrentSegment();
+        this.planHistory            = new ArrayList<TrainingPlanSegment>();
+        this.planHistory.add(
+            new TrainingPlanSegment(current.getTrainingPlan(), current.getEnd(), current.getEnd()));
+    }
+
+    /**
+     * Chooses how the isolated activities this user completed are stored, moving them if needed.
+     *
+     * @param columnar Whether to store the isolated activities this user completed as columns
+     *     outside of the Java heap (see <code>ActivityColumns</code>), instead of as objects.
+     *     Activities of classes that can't be stored as columns are always stored as objects.
+     */
+    public void setColumnar(boolean columnar) {
+        if (columnar && this.columns == null) {
+            this.columns = new ActivityColumns(this.done.size());
+            this.done.removeIf(a -> this.columns.add(a));
+        } else if (!columnar && this.columns != null) {
+            this.done.addAll(this.columns.getActivities());
+            this.columns = null;
+        }
+    }
+
+    /**
+     * Adds an activity to the isolated activities this user completed, as columns if possible.
+     *
+     * @param activity Activity to be added (not copied).
+     */
+    private void addDone(Activity activity) {
+        if (this.columns == null || !this.columns.add(activity))
+            this.done.add(activity);
     }
 
     /**
-     * Sets the training plan this user is currently executing.
+     * Sets the training plan this user is currently executing. If the current training plan has
+     * already been executed and is different from <code>plan</code>, a new version is added to the
+     * training plan history, effective from the last date leapt to. If it was never executed, it's
+     * replaced.
      *
      * @param plan The training plan this user is currently executing.
      * @throws ActivityOverlapException There are overlapping activities between <code>plan
      *     </code> and the isolated activities in this collection.
      */
     public void setTrainingPlan(TrainingPlan plan) throws ActivityOverlapException {
-        this.plan = plan.clone();
-        this.setTodo(this.getTodo());
+        List<TrainingPlanSegment> previous = this.getTrainingPlanHistory();
+        TrainingPlanSegment       current  = this.getCurrentSegment();
+        TrainingPlanSegment       version  =
+            new TrainingPlanSegment(plan, current.getEnd(), current.getEnd());
+
+        if (current.getStart().equals(current.getEnd()))
+            this.planHistory.set(this.planHistory.size() - 1, version);
+        else if (!current.getTrainingPlan().equals(plan))
+            this.planHistory.add(version);
+
+        try {
+            this.setTodo(this.getTodo());
+        } catch (ActivityOverlapException e) {
+            this.planHistory = previous;
+            throw e;
+        }
     }
 
     /**
@@ -196,23 +714,121 @@ public class UserActivities implements Serializable {
 
     /**
      * Advances time to a given date and updates which activities have and have not been completed.
+     * Activities from the training plan are stored by extending the period of time in which the
+     * current version of the training plan was executed, and only created when needed.
      *
      * @param now Current application time.
      * @param goal Timestamp to leap to.
+     * @return Whether any activity was completed or anything else changed, other than extending
+     *     the period of a training plan that isn't executed. When nothing changes, leaping from
+     *     <code>now</code> to <code>goal</code> has the same effect as any sequence of leaps
+     *     between those dates.
      */
-    public void leapForward(LocalDateTime now, LocalDateTime goal) {
-        Iterator<Activity> i = this.todo.iterator();
+    public boolean leapForward(LocalDateTime now, LocalDateTime goal) {
+        boolean            changed = false;
+        Iterator<Activity> i       = this.todo.iterator();
         while (i.hasNext()) {
             Activity      a   = i.next();
             LocalDateTime end = a.getEndDate();
 
             if (end.isBefore(goal) || end.isEqual(goal)) {
-                this.done.add(a);
+                this.addDone(a);
                 i.remove();
+                changed = true;
+            }
+        }
+
+        TrainingPlanSegment current = this.getCurrentSegment();
+        if (current.getStart().equals(current.getEnd())) {
+            if (now.isAfter(current.getStart())) {
+                current.setStart(now);
+                current.setEnd(now);
+                changed = true;
             }
+        } else if (now.isAfter(current.getEnd())) {
+            // Time this collection didn't leap over: no activities were executed in it
+            current = new TrainingPlanSegment(current.getTrainingPlan(), now, now);
+            this.planHistory.add(current);
+            changed = true;
         }
 
-        this.done.addAll(this.plan.activitiesBetween(now, goal));
+        if (goal.isAfter(current.getEnd())) { // Don't execute the same activities twice
+            current.setEnd(goal);
+            changed |= !current.isEmpty();
+        }
+        return changed;
+    }
+
+    /**
+     * Compacts old isolated activities this user completed into rollups, that summarize them per
+     * period of time. Activities from the training plan aren't compacted, as they're already stored
+     * as periods of time in the training plan history.
+     *
+     * @param before Compact activities that ended before (or at) this date.
+     * @param granularity Period of time summarized by each rollup.
+     * @return Whether any activity was compacted.
+     */
+    public boolean compact(LocalDateTime before, RetentionPolicy.Granularity granularity) {
+        boolean            changed = false;
+        Iterator<Activity> i       = this.done.iterator();
+        while (i.hasNext()) {
+            Activity      a   = i.next();
+            LocalDateTime end = a.getEndDate();
+
+            if (!end.isAfter(before)) {
+                this.rollups.computeIfAbsent(granularity.periodStart(end), ActivityRollup::new)
+                    .add(a);
+                i.remove();
+                changed = true;
+            }
+        }
+
+        if (this.columns != null) {
+            for (Activity a : this.columns.removeEndingBefore(before)) {
+                LocalDateTime end = a.getEndDate();
+                this.rollups.computeIfAbsent(granularity.periodStart(end), ActivityRollup::new)
+                    .add(a);
+                changed = true;
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Moves old isolated activities this user completed out of memory, appending them to a file on
+     * disk. Activities from the training plan aren't moved, as they're already stored as periods of
+     * time in the training plan history.
+     *
+     * @param before Move activities that ended before (or at) this date.
+     * @param storage Where to store activities, if none were moved before. Its block cache is
+     *     shared with this collection.
+     * @param userCode Identifier code of the user, to choose the file activities are moved to.
+     * @return Whether any activity was moved.
+     * @throws IOException Failed to write to the file. No activities are moved.
+     */
+    public boolean spill(LocalDateTime before, ColdStorage storage, long userCode)
+        throws IOException {
+
+        SortedSet<Activity> old = new TreeSet<Activity>();
+        for (Activity a : this.done) {
+            if (!a.getEndDate().isAfter(before))
+                old.add(a);
+        }
+        if (this.columns != null) {
+            this.columns.forEach(LocalDateTime.MIN,
+                                 before.plusNanos(1),
+                                 (a, n) -> { old.add(a.clone()); });
+        }
+
+        if (!old.isEmpty()) {
+            if (this.cold == null)
+                this.cold = new ColdHistory(storage, userCode);
+            this.cold.append(old);
+            this.done.removeIf(a -> !a.getEndDate().isAfter(before));
+            if (this.columns != null)
+                this.columns.removeEndingBefore(before);
+        }
+        return !old.isEmpty();
     }
 
     /**
@@ -222,11 +838,17 @@ public class UserActivities implements Serializable {
      */
     @Override
     public int hashCode() {
-        return Objects.hash(this.todo, this.done, this.plan);
+        return Objects.hash(this.todo,
+                            this.getStoredDone(),
+                            this.planHistory,
+                            this.rollups,
+                            this.cold);
     }
 
     /**
-     * Checks if two collections of user activities are equal.
+     * Checks if two collections of user activities are equal. Their stored representations are
+     * compared, so activities from the training plan aren't created and the activities moved to
+     * disk aren't read.
      *
      * @return Whether two collections of user activities are equal.
      */
@@ -238,8 +860,10 @@ public class UserActivities implements Serializable {
             return false;
 
         UserActivities activities = (UserActivities) obj;
-        return this.todo.equals(activities.getTodo()) && this.done.equals(activities.getDone()) &&
-            this.plan.equals(activities.getTrainingPlan());
+        return this.todo.equals(activities.todo) &&
+            this.getStoredDone().equals(activities.getStoredDone()) &&
+            this.planHistory.equals(activities.planHistory) &&
+            this.rollups.equals(activities.rollups) && Objects.equals(this.cold, activities.cold);
     }
 
     /**
@@ -261,7 +885,7 @@ public class UserActivities implements Serializable {
     public String toString() {
         return String.format("UserActivities(todo = %s, done = %s, plan = %s)",
                              this.todo.toString(),
-                             this.done.toString(),
-                             this.plan.toString());
+                             this.getStoredDone().toString(),
+                             this.getTrainingPlan().toString());
     }
 }
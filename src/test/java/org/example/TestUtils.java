@@ -21,11 +21,34 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
+import java.time.Duration;
+import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TestUtils {
+    public static final LocalDateTime START = LocalDateTime.of(2100, 1, 1, 0, 0);
+
+    public static FitnessModel populate(int users) throws UserException,
+                                                          ActivityException,
+                                                          FitnessModelException,
+                                                          ActivityOverlapException {
+
+        FitnessModel fitness = new FitnessModel();
+        for (int i = 0; i < users; ++i) {
+            long code = fitness.addUser(
+                new BeginnerUser(0, "U" + i, "A", "E", 80 + i % 7, new UserActivities()));
+            for (int j = 0; j < i % 5; ++j)
+                fitness.addActivity(code,
+                                    new ActivityPushUp(Duration.ofMinutes(10),
+                                                       TestUtils.START.plusHours(j),
+                                                       80,
+                                                       10 + i));
+        }
+        return fitness;
+    }
+
     public static void serialize(Object obj) {
         try {
             ByteArrayOutputStream byteOutputStream   = new ByteArrayOutputStream();
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class ActivityCodecTest {
+    private Activity roundTrip(Activity activity) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ActivityCodec.encode(new DataOutputStream(bytes), activity);
+        return ActivityCodec.decode(
+            new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+
+    @Test
+    public void roundTrip() throws ActivityException, IOException {
+        LocalDateTime date = LocalDateTime.of(2024, 5, 6, 10, 30, 15, 500);
+        Activity[]    activities = {
+            new ActivityTrackRun(Duration.ofMinutes(30), date, 90, 5.0),
+            new ActivityMountainRun(Duration.ofMinutes(50), date, 90, 8.0, 0.3),
+            new ActivityPushUp(Duration.ofMinutes(10), date, 100, 20),
+            new ActivityDiamondPushUp(Duration.ofSeconds(61, 7), date, 100, 20),
+            new ActivityWeightLifting(Duration.ofMinutes(20), date, 80, 12, 40.5)
+        };
+
+        for (Activity a : activities)
+            assertEquals(this.roundTrip(a), a);
+    }
+
+    @Test
+    public void decodeCorrupted() {
+        byte[] bytes = new byte[32];
+        bytes[0]     = 42;
+        assertThrows(IOException.class, () -> {
+            ActivityCodec.decode(new DataInputStream(new ByteArrayInputStream(bytes)));
+        });
+    }
+}
@@ -22,6 +22,7 @@ import java.time.LocalDateTime;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -44,6 +45,29 @@ public class ActivityTest {
         assertDoesNotThrow(() -> { this.activity.setExecutionTime(Duration.ofSeconds(1)); });
     }
 
+    @Test
+    public void countBaseCalories() throws ActivityException {
+        final ActivityMountainRun run =
+            new ActivityMountainRun(Duration.ofMinutes(20), LocalDateTime.MIN, 69, 20, 0.5);
+        final double calories = run.countBaseCalories();
+        assertEquals(run.countBaseCalories(), calories);
+        assertEquals(run.clone().countBaseCalories(), calories);
+
+        // Every setter must invalidate the calories calculated before
+        run.setAltimetry(0.0);
+        assertNotEquals(run.countBaseCalories(), calories);
+        run.setAltimetry(0.5);
+        assertEquals(run.countBaseCalories(), calories);
+        run.setBPM(70);
+        assertNotEquals(run.countBaseCalories(), calories);
+        run.setBPM(69);
+        run.setExecutionTime(Duration.ofMinutes(40));
+        assertNotEquals(run.countBaseCalories(), calories);
+        run.setExecutionTime(Duration.ofMinutes(20));
+        run.setDistanceToTraverse(1);
+        assertNotEquals(run.countBaseCalories(), calories);
+    }
+
     @Test
     public void overlaps() throws ActivityException {
         final Activity a1 =
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class CalorieKernelTest {
+    private static final int N = 1000;
+
+    @Test
+    public void matchesActivities() throws ActivityException {
+        Random        random = new Random(42);
+        LocalDateTime date   = LocalDateTime.of(2024, 5, 6, 8, 0, 0);
+
+        long[]   seconds     = new long[N];
+        int[]    bpms        = new int[N];
+        int[]    reps        = new int[N];
+        double[] weights     = new double[N];
+        double[] distances   = new double[N];
+        double[] altimetries = new double[N];
+        for (int i = 0; i < N; ++i) {
+            seconds[i]     = 60 + random.nextInt(7200);
+            bpms[i]        = 60 + random.nextInt(120);
+            reps[i]        = 1 + random.nextInt(60);
+            weights[i]     = 1.0 + random.nextDouble() * 100.0;
+            distances[i]   = 0.1 + random.nextDouble() * 40.0;
+            altimetries[i] = random.nextDouble();
+        }
+
+        double[] out = new double[N];
+        CalorieKernel.trackRun(N, seconds, bpms, distances, out);
+        for (int i = 0; i < N; ++i) {
+            Activity a = new ActivityTrackRun(Duration.ofSeconds(seconds[i]),
+                                              date,
+                                              bpms[i],
+                                              distances[i]);
+            assertEquals(Double.doubleToRawLongBits(out[i]),
+                         Double.doubleToRawLongBits(a.countBaseCalories()));
+        }
+
+        CalorieKernel.mountainRun(N, seconds, bpms, distances, altimetries, out);
+        for (int i = 0; i < N; ++i) {
+            Activity a = new ActivityMountainRun(Duration.ofSeconds(seconds[i]),
+                                                 date,
+                                                 bpms[i],
+                                                 distances[i],
+                                                 altimetries[i]);
+            assertEquals(Double.doubleToRawLongBits(out[i]),
+                         Double.doubleToRawLongBits(a.countBaseCalories()));
+        }
+
+        CalorieKernel.pushUp(N, seconds, bpms, reps, out);
+        for (int i = 0; i < N; ++i) {
+            Activity a = new ActivityPushUp(Duration.ofSeconds(seconds[i]), date, bpms[i], reps[i]);
+            assertEquals(Double.doubleToRawLongBits(out[i]),
+                         Double.doubleToRawLongBits(a.countBaseCalories()));
+        }
+
+        CalorieKernel.diamondPushUp(N, seconds, bpms, reps, out);
+        for (int i = 0; i < N; ++i) {
+            Activity a =
+                new ActivityDiamondPushUp(Duration.ofSeconds(seconds[i]), date, bpms[i], reps[i]);
+            assertEquals(Double.doubleToRawLongBits(out[i]),
+                         Double.doubleToRawLongBits(a.countBaseCalories()));
+        }
+
+        CalorieKernel.weightLifting(N, bpms, reps, weights, out);
+        for (int i = 0; i < N; ++i) {
+            Activity a = new ActivityWeightLifting(Duration.ofSeconds(seconds[i]),
+                                                   date,
+                                                   bpms[i],
+                                                   reps[i],
+                                                   weights[i]);
+            assertEquals(Double.doubleToRawLongBits(out[i]),
+                         Double.doubleToRawLongBits(a.countBaseCalories()));
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class ActivityRowEncoderTest {
+    @Test
+    public void encode() throws UserException, ActivityException {
+        User user = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, new UserActivities());
+        Activity run = new ActivityMountainRun(Duration.ofMinutes(30),
+                                              LocalDateTime.of(987, 1, 2, 3, 4, 5),
+                                              90,
+                                              5.5,
+                                              0.25);
+
+        ActivityRowEncoder encoder = new ActivityRowEncoder();
+        String[]           row     = RowSink.toStrings(encoder.encode(user, run));
+        assertArrayEquals(row,
+                          new String[] {
+                              run.getExecutionDate().format(
+                                  DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm")),
+                              "30",
+                              Double.toString(run.countCalories(user)),
+                              "ActivityMountainRun",
+                              "90",
+                              "",
+                              "",
+                              "5.5",
+                              "0.25" });
+
+        Activity pushUp = new ActivityPushUp(Duration.ofMinutes(10),
+                                             LocalDateTime.of(1, 1, 1, 18, 30, 0),
+                                             100,
+                                             20);
+        row = RowSink.toStrings(encoder.encodePlan(user, pushUp, 3));
+        assertEquals(row.length, ActivityRowEncoder.PLAN_FIELDS);
+        assertEquals(row[0], "18:30");
+        assertEquals(row[2], Double.toString(pushUp.countCalories(user) * 3));
+        assertEquals(row[3], "3");
+        assertEquals(row[4], "ActivityPushUp");
+        assertEquals(row[6], "20");
+        assertEquals(row[8], "");
+    }
+
+    @Test
+    public void delimited() {
+        StringBuilder out  = new StringBuilder();
+        RowSink       sink = RowSink.delimited(out, ';');
+        sink.accept(new CharSequence[] { "a", new StringBuilder("b"), "" });
+        sink.accept(new CharSequence[] { "c" });
+        assertEquals(out.toString(), "a;b;\nc\n");
+    }
+}
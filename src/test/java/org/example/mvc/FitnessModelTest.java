@@ -16,13 +16,24 @@
 
 package org.example.fitness;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class FitnessModelTest {
@@ -62,6 +73,49 @@ public class FitnessModelTest {
         assertEquals(this.fitness.getNow(), copy.getNow());
     }
 
+    @Test
+    public void runQueryPage() {
+        List<Long> codes = new ArrayList<Long>();
+        this.fitness.runQuery(u -> codes.add(u.getCode()), Long.MIN_VALUE, 2);
+        assertEquals(codes, List.of(1L, 2L));
+
+        codes.clear();
+        this.fitness.runQuery(u -> codes.add(u.getCode()), 2, 2);
+        assertEquals(codes, List.of(2L)); // The user with key 3 has code 2
+
+        codes.clear();
+        this.fitness.runQuery(u -> codes.add(u.getCode()), 3, 2);
+        assertTrue(codes.isEmpty());
+    }
+
+    @Test
+    public void addActivities() throws FitnessModelException, ActivityException {
+        FitnessModel   copy       = this.fitness.clone();
+        List<Activity> activities = new ArrayList<Activity>();
+        for (int i = 0; i < 3; ++i)
+            activities.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                              LocalDateTime.of(2024, 1, 2, 10 + i, 0, 0),
+                                              100,
+                                              20));
+
+        long version = copy.getVersion();
+        try {
+            copy.addActivities(1, activities);
+        } catch (ActivityOverlapException e) {
+            assertTrue(false);
+        }
+        assertEquals(copy.getUser(1).getActivities().getTodo().size(), 3);
+        assertEquals(copy.getVersion(), version + 1);
+
+        // Overlapping batches aren't added at all
+        activities.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                          LocalDateTime.of(2024, 1, 2, 11, 5, 0),
+                                          100,
+                                          20));
+        assertThrows(ActivityOverlapException.class, () -> { copy.addActivities(2, activities); });
+        assertTrue(copy.getUser(2).getActivities().getTodo().isEmpty());
+    }
+
     @Test
     public void serialize() {
         FitnessModel copy = fitness.clone();
@@ -74,4 +128,132 @@ public class FitnessModelTest {
             assertTrue(false);
         }
     }
+
+    @Test
+    public void runCachedQuery()
+        throws FitnessModelException, ActivityException, ActivityOverlapException {
+
+        FitnessModel            copy   = this.fitness.clone();
+        QueryMostCommonActivity common = copy.runCachedQuery(new QueryMostCommonActivity());
+        assertSame(copy.runCachedQuery(new QueryMostCommonActivity()), common);
+
+        QueryDistance distance = copy.runCachedQuery(new QueryDistance(), 2);
+        assertSame(copy.runCachedQuery(new QueryDistance(), 2), distance);
+        assertNotSame(copy.runCachedQuery(new QueryDistance(ActivityAltimetryDistance.class), 2),
+                      distance);
+
+        // Only user 1 changes
+        long version = copy.getVersion();
+        copy.addActivity(1,
+                         new ActivityPushUp(Duration.ofMinutes(10),
+                                            LocalDateTime.of(2024, 1, 2, 0, 0, 0),
+                                            100,
+                                            50));
+        assertTrue(copy.getVersion() > version);
+        assertEquals(copy.getUserVersion(1), copy.getVersion());
+        assertNotSame(copy.runCachedQuery(new QueryMostCommonActivity()), common);
+        assertSame(copy.runCachedQuery(new QueryDistance(), 2), distance);
+
+        // All users change
+        copy.leapForward(LocalDateTime.of(2024, 1, 3, 0, 0, 0));
+        assertNotSame(copy.runCachedQuery(new QueryDistance(), 2), distance);
+        assertEquals(copy.runCachedQuery(new QueryMostCommonActivity()).getTopActivity().getKey(),
+                     "ActivityPushUp");
+
+        copy.removeUser(2);
+        try {
+            copy.runCachedQuery(new QueryDistance(), 2);
+            assertTrue(false);
+        } catch (FitnessModelException e) {}
+    }
+
+    @Test
+    public void registerView()
+        throws FitnessModelException, ActivityException, ActivityOverlapException, QueryException {
+
+        FitnessModel copy  = this.fitness.clone();
+        MaxView      most  = new MaxView(new QueryMostActivities());
+        TallyView    tally = new TallyView();
+        copy.registerView(most);
+        copy.registerView(tally);
+        assertEquals((long) most.getMaxUserCode(), 1L);
+        assertEquals(most.getMaxScore(), 0.0);
+
+        copy.addActivity(2,
+                         new ActivityPushUp(Duration.ofMinutes(10),
+                                            LocalDateTime.of(2024, 1, 2, 0, 0, 0),
+                                            100,
+                                            50));
+        copy.leapForward(LocalDateTime.of(2024, 1, 3, 0, 0, 0));
+        assertEquals((long) most.getMaxUserCode(), 2L);
+        assertEquals(most.getMaxScore(), 1.0);
+        assertEquals(tally.getTopActivity().getKey(), "ActivityPushUp");
+
+        copy.removeUser(2);
+        assertEquals((long) most.getMaxUserCode(), 1L);
+        assertEquals(tally.getTopActivity(), null);
+
+        copy.unregisterView(most);
+        copy.removeUser(1);
+        assertEquals((long) most.getMaxUserCode(), 1L);
+
+        // Views that rollups can't answer are rejected before any user is provided
+        ActivityQuery longest = new ActivityQuery().aggregate(ActivityQuery.Aggregate.MAX,
+                                                              ActivityQuery.Field.DISTANCE);
+        UserView      view    = new UserView(longest, 3);
+        assertThrows(QueryException.class, () -> copy.registerView(view));
+        assertNull(view.getResult());
+    }
+
+    @Test
+    public void runParallelQuery()
+        throws FitnessModelException, ActivityException, ActivityOverlapException, QueryException {
+
+        FitnessModel copy = this.fitness.clone();
+        for (int i = 0; i < 10; ++i)
+            copy.addActivity(1 + i % 2,
+                             new ActivityTrackRun(Duration.ofMinutes(10),
+                                                  LocalDateTime.of(2024, 1, 2 + i, 0, 0, 0),
+                                                  100,
+                                                  i + 1));
+        copy.leapForward(LocalDateTime.of(2024, 2, 1, 0, 0, 0));
+
+        ActivityQuery query =
+            new ActivityQuery()
+                .groupBy(ActivityQuery.GroupBy.USER_TYPE, ActivityQuery.GroupBy.WEEKDAY)
+                .aggregate(ActivityQuery.Aggregate.AVERAGE, ActivityQuery.Field.DISTANCE);
+        ActivityQuery sequential = query.clone();
+        copy.runQuery(sequential);
+
+        ActivityQuery parallel = copy.runParallelQuery(query);
+        assertEquals(parallel, sequential);
+        assertEquals(parallel.getResult(), 5.5);
+        assertTrue(query.getGroups().isEmpty());
+    }
+
+    @Test
+    public void leapForwardFailure(@TempDir Path dir) throws IOException,
+                                                             UserException,
+                                                             ActivityException,
+                                                             FitnessModelException,
+                                                             ActivityOverlapException {
+
+        FitnessModel fitness = TestUtils.populate(4);
+        fitness.setColdStorage(new ColdStorage(dir.toString(), Duration.ofHours(1), 1024));
+
+        // The file of the last user can't be written
+        Files.createDirectory(dir.resolve("user-4.seg"));
+        long version = fitness.getUserVersion(3);
+        FitnessModelException e = assertThrows(
+            FitnessModelException.class,
+            () -> { fitness.leapForward(TestUtils.START.plusDays(1)); });
+        assertTrue(e.getCause() instanceof IOException);
+        assertTrue(e.getMessage().contains(e.getCause().getMessage()));
+        assertTrue(fitness.getNow().isBefore(TestUtils.START));
+        assertTrue(fitness.getUserVersion(3) > version);
+
+        Files.delete(dir.resolve("user-4.seg"));
+        fitness.leapForward(TestUtils.START.plusDays(1));
+        assertTrue(Files.exists(dir.resolve("user-4.seg")));
+    }
 }
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class FitnessRpcServerTest {
+    private static final LocalDateTime START = LocalDateTime.of(2100, 1, 1, 0, 0);
+
+    private static FitnessRpcServer startServer(int users)
+        throws IOException, FitnessControllerException {
+
+        FitnessController controller = new FitnessController();
+        for (int i = 0; i < users; ++i)
+            controller.addUser("BeginnerUser", "U" + i, "A", "E", 80);
+
+        FitnessRpcServer server =
+            new FitnessRpcServer(controller,
+                                 new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        server.start();
+        return server;
+    }
+
+    private static FitnessRpcClient connect(FitnessRpcServer server) throws IOException {
+        return new FitnessRpcClient(
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), server.getPort()));
+    }
+
+    private static Activity pushUp(int minute) throws ActivityException {
+        return new ActivityPushUp(Duration.ofMinutes(1),
+                                  FitnessRpcServerTest.START.plusMinutes(minute),
+                                  80,
+                                  10);
+    }
+
+    @Test
+    public void frames() throws IOException,
+                                InterruptedException,
+                                ActivityException,
+                                FitnessControllerException,
+                                FitnessRpcException {
+
+        FitnessRpcServer server = FitnessRpcServerTest.startServer(1);
+        try (FitnessRpcClient client = FitnessRpcServerTest.connect(server)) {
+            client.addActivity(1, FitnessRpcServerTest.pushUp(0));
+            client.addActivity(1, new ActivityMountainRun(Duration.ofMinutes(30),
+                                                          FitnessRpcServerTest.START.plusHours(1),
+                                                          80,
+                                                          5.0,
+                                                          0.5));
+            client.addActivity(2, FitnessRpcServerTest.pushUp(0));
+            client.addActivityToTrainingPlan(1, FitnessRpcServerTest.pushUp(600), 3);
+            client.addActivities(
+                new long[] { 1, 1, 2 },
+                List.of(FitnessRpcServerTest.pushUp(2),
+                        FitnessRpcServerTest.pushUp(4),
+                        FitnessRpcServerTest.pushUp(6)));
+
+            assertEquals(client.receive(), new FitnessRpcClient.Response(0, 1, null));
+            assertEquals(client.receive(), new FitnessRpcClient.Response(1, 1, null));
+            assertFalse(client.receive().isSuccess());
+            assertEquals(client.receive(), new FitnessRpcClient.Response(3, 1, null));
+
+            FitnessRpcClient.Response batch = client.receive();
+            assertEquals(batch.getId(), 4);
+            assertEquals(batch.getAccepted(), 2);
+            assertFalse(batch.isSuccess());
+            assertEquals(client.getInFlight(), 0);
+        } finally {
+            server.stop();
+        }
+
+        FitnessController controller = server.getController();
+        List<String[]>    todo       = controller.getTodoActivities(1);
+        assertEquals(todo.size(), 4);
+        assertEquals(todo.get(3)[3], "ActivityMountainRun");
+        assertEquals(todo.get(3)[8], "0.5");
+        assertEquals(controller.getPlanActivities(1).size(), 1);
+    }
+
+    @Test
+    public void batchFallback() throws IOException,
+                                       InterruptedException,
+                                       ActivityException,
+                                       FitnessControllerException,
+                                       FitnessRpcException {
+
+        FitnessRpcServer server = FitnessRpcServerTest.startServer(1);
+        try (FitnessRpcClient client = FitnessRpcServerTest.connect(server)) {
+            // Sent together, so likely to be applied in the same batch
+            for (int i = 0; i < 10; ++i)
+                client.addActivity(1, FitnessRpcServerTest.pushUp(i == 5 ? 0 : i * 2));
+            client.flush();
+
+            for (int i = 0; i < 10; ++i)
+                assertEquals(client.receive().isSuccess(), i != 5);
+        } finally {
+            server.stop();
+        }
+        assertEquals(server.getController().getTodoActivities(1).size(), 9);
+    }
+
+    @Test
+    public void order() throws IOException,
+                               InterruptedException,
+                               ActivityException,
+                               FitnessControllerException,
+                               FitnessRpcException {
+
+        FitnessRpcServer server = FitnessRpcServerTest.startServer(3);
+        try (FitnessRpcClient client = FitnessRpcServerTest.connect(server)) {
+            // Users interleaved, so that requests are batched by user out of order
+            for (int i = 0; i < 30; ++i)
+                client.addActivity(i % 3 + 1,
+                                   FitnessRpcServerTest.pushUp(i == 16 ? 2 : (i / 3) * 2));
+            client.flush();
+
+            for (int i = 0; i < 30; ++i) {
+                FitnessRpcClient.Response response = client.receive();
+                assertEquals(response.getId(), i);
+                assertEquals(response.isSuccess(), i != 16);
+            }
+        } finally {
+            server.stop();
+        }
+
+        FitnessController controller = server.getController();
+        assertEquals(controller.getTodoActivities(1).size(), 10);
+        assertEquals(controller.getTodoActivities(2).size(), 9);
+        assertEquals(controller.getTodoActivities(3).size(), 10);
+    }
+}
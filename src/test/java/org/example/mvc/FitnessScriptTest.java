@@ -0,0 +1,101 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FitnessScriptTest {
+    private static final String SCRIPT =
+        "# Users\n"
+        + "user BeginnerUser \"Ana Silva\" Braga ana@x.pt 80\n"
+        + "user AdvancedUser Bruno Porto b@x.pt 90\n"
+        + "\n"
+        + "activity 1 ActivityPushUp 2100-01-04T10:00 10 repetitions=20\n"
+        + "activity 1 ActivityTrackRun 2100-01-05T10:00 30 distance=5\n"
+        + "activity 2 ActivityTrackRun 2100-01-05T10:00 30 distance=8\n"
+        + "leap 2100-02-01T00:00\n"
+        + "query QueryMostActivities 2100-01-01T00:00 2100-03-01T00:00\n"
+        + "query QueryDistance 2100-01-01T00:00 2100-03-01T00:00 user=2\n"
+        + "list users\n";
+
+    @Test
+    public void run() throws FitnessScriptException, IOException, FitnessControllerException {
+        FitnessController controller = new FitnessController();
+        StringWriter      out        = new StringWriter();
+        new FitnessScript(controller, out).run(new StringReader(FitnessScriptTest.SCRIPT));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(lines.length, 4);
+        assertEquals(lines[0], "(1) Ana Silva - 2 completed activities");
+        assertEquals(lines[1], String.format("%f km", 8.0));
+        assertEquals(lines[2], "1\tAna Silva\tBeginnerUser\tBraga\tana@x.pt\t80");
+        assertEquals(controller.getDoneActivities(1).size(), 2);
+    }
+
+    @Test
+    public void aggregate() throws FitnessScriptException, IOException {
+        StringWriter out = new StringWriter();
+        new FitnessScript(new FitnessController(), out).run(new StringReader(
+            FitnessScriptTest.SCRIPT
+            + "aggregate count executions\n"
+            + "aggregate sum distance 2100-01-01T00:00 2100-03-01T00:00 by=user_type\n"));
+
+        String[] lines = out.toString().split("\n");
+        assertEquals(lines.length, 7);
+        assertEquals(lines[4], String.format("Total - %f", 3.0));
+        assertEquals(lines[5], String.format("BeginnerUser - %f", 5.0));
+        assertEquals(lines[6], String.format("AdvancedUser - %f", 8.0));
+
+        assertThrows(FitnessScriptException.class, () -> {
+            new FitnessScript().run(new StringReader("aggregate median distance\n"));
+        });
+    }
+
+    @Test
+    public void errors() throws FitnessScriptException, IOException, FitnessControllerException {
+        FitnessController controller = new FitnessController();
+        FitnessScript     script     = new FitnessScript(controller, new StringWriter());
+        script.run(new StringReader("user BeginnerUser A B C 80\n"));
+
+        FitnessScriptException e = assertThrows(FitnessScriptException.class, () -> {
+            script.run(new StringReader("\nactivity 1 ActivityPushUp 2100-01-04T10:00 10\n"));
+        });
+        assertTrue(e.getMessage().startsWith("Line 2: "));
+
+        assertThrows(FitnessScriptException.class,
+                     () -> { script.run(new StringReader("jump 2100-01-04T10:00\n")); });
+
+        // A failed batch reports the line that failed, after adding the activities before it
+        e = assertThrows(FitnessScriptException.class, () -> {
+            script.run(new StringReader(
+                "activity 1 ActivityPushUp 2100-01-04T10:00 10 repetitions=20\n"
+                + "activity 1 ActivityPushUp 2100-01-04T10:20 10 repetitions=20\n"
+                + "activity 1 ActivityPushUp 2100-01-04T10:25 10 repetitions=20\n"
+                + "activity 1 ActivityPushUp 2100-01-04T11:00 10 repetitions=20\n"));
+        });
+        assertTrue(e.getMessage().startsWith("Line 3: "));
+        assertEquals(controller.getTodoActivities(1).size(), 2);
+    }
+}
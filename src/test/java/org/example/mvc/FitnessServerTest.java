@@ -0,0 +1,221 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FitnessServerTest {
+    private static FitnessServer startServer() throws IOException {
+        FitnessServer server =
+            new FitnessServer(new FitnessController(),
+                              new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                              8);
+        server.start();
+        return server;
+    }
+
+    private static HttpResponse<String>
+    request(HttpClient client, FitnessServer server, String method, String path, String body)
+        throws IOException, InterruptedException {
+
+        HttpRequest request =
+            HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + server.getPort() + path))
+                .method(method,
+                        body == null ? HttpRequest.BodyPublishers.noBody()
+                                     : HttpRequest.BodyPublishers.ofString(body))
+                .build();
+        return client.send(request, HttpResponse.BodyHandlers.ofString());
+    }
+
+    @Test
+    public void endpoints() throws IOException, InterruptedException {
+        FitnessServer server = FitnessServerTest.startServer();
+        HttpClient    client = HttpClient.newHttpClient();
+        try {
+            HttpResponse<String> r = FitnessServerTest.request(
+                client, server, "POST",
+                "/users?class=BeginnerUser&name=Ana%20Silva&address=Braga&email=a@x.pt&bpm=80",
+                null);
+            assertEquals(r.statusCode(), 201);
+            assertEquals(r.body(), "{\"code\":1}");
+
+            r = FitnessServerTest.request(
+                client, server, "POST",
+                "/users/1/activities?class=ActivityTrackRun&date=2100-01-05T10:00&minutes=30"
+                    + "&distance=5",
+                null);
+            assertEquals(r.statusCode(), 201);
+
+            r = FitnessServerTest.request(client, server, "GET", "/users/1", null);
+            assertEquals(r.body(),
+                         "{\"code\":1,\"name\":\"Ana Silva\",\"class\":\"BeginnerUser\","
+                             + "\"address\":\"Braga\",\"email\":\"a@x.pt\",\"bpm\":80}");
+
+            r = FitnessServerTest.request(client, server, "GET", "/users/1/todo", null);
+            assertTrue(r.body().startsWith("{\"activities\":[{\"date\":\"2100/01/05 10:00\","
+                                           + "\"duration\":30,"));
+            assertTrue(r.body().contains("\"class\":\"ActivityTrackRun\""));
+            assertTrue(r.body().contains("\"distance\":5.0}],\"next\":null}"));
+
+            r = FitnessServerTest.request(client, server, "GET", "/users/1/todo?limit=1", null);
+            assertTrue(r.body().endsWith("\"next\":\"2100-01-05T10:00\"}"));
+
+            r = FitnessServerTest.request(client, server, "POST", "/leap?date=2100-02-01T00:00",
+                                          null);
+            assertEquals(r.body(), "{\"now\":\"2100-02-01T00:00\"}");
+
+            r = FitnessServerTest.request(client, server, "GET", "/users/1/done", null);
+            assertTrue(r.body().contains("\"duration\":30"));
+
+            r = FitnessServerTest.request(
+                client, server, "GET",
+                "/query/QueryDistance?start=2100-01-01T00:00&end=2100-03-01T00:00&user=1", null);
+            assertEquals(r.body(),
+                         "{\"query\":\"QueryDistance\",\"result\":\"" +
+                             String.format("%f km", 5.0) + "\"}");
+
+            r = FitnessServerTest.request(client, server, "PUT", "/users/1/days?days=monday",
+                                          null);
+            assertEquals(r.body(), "{\"days\":[\"MONDAY\"]}");
+
+            r = FitnessServerTest.request(client, server, "DELETE", "/users/1", null);
+            assertEquals(r.statusCode(), 200);
+            r = FitnessServerTest.request(client, server, "GET", "/users", null);
+            assertEquals(r.body(), "{\"users\":[],\"next\":null}");
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void errors() throws IOException, InterruptedException {
+        FitnessServer server = FitnessServerTest.startServer();
+        HttpClient    client = HttpClient.newHttpClient();
+        try {
+            HttpResponse<String> r =
+                FitnessServerTest.request(client, server, "GET", "/users/1", null);
+            assertEquals(r.statusCode(), 404);
+            assertEquals(r.body(), "{\"error\":\"User doesn't exist!\"}");
+
+            assertEquals(FitnessServerTest.request(client, server, "GET", "/nothing", null)
+                             .statusCode(),
+                         404);
+            assertEquals(FitnessServerTest.request(client, server, "GET", "/leap", null)
+                             .statusCode(),
+                         405);
+            assertEquals(FitnessServerTest.request(client, server, "GET", "/users?limit=0", null)
+                             .statusCode(),
+                         400);
+            assertEquals(FitnessServerTest.request(client, server, "POST", "/leap?date=x", null)
+                             .statusCode(),
+                         400);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void batch() throws IOException, InterruptedException {
+        FitnessServer server = FitnessServerTest.startServer();
+        HttpClient    client = HttpClient.newHttpClient();
+        try {
+            HttpResponse<String> r = FitnessServerTest.request(
+                client, server, "POST", "/batch",
+                "user BeginnerUser A B C 80\n"
+                    + "activity 1 ActivityPushUp 2100-01-04T10:00 10 repetitions=20\n"
+                    + "activity 1 ActivityPushUp 2100-01-04T11:00 10 repetitions=20\n"
+                    + "list users\n");
+            assertEquals(r.statusCode(), 200);
+            assertEquals(r.body(), "{\"output\":\"1\\tA\\tBeginnerUser\\tB\\tC\\t80\\n\"}");
+            assertEquals(server.getController().getTodoActivities(1).size(), 2);
+
+            r = FitnessServerTest.request(client, server, "POST", "/batch", "save /tmp/x\n");
+            assertEquals(r.statusCode(), 400);
+        } catch (FitnessControllerException e) {
+            throw new RuntimeException(e);
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void concurrent() throws IOException, InterruptedException {
+        final int clients  = 4;
+        final int requests = 10;
+
+        FitnessServer server = FitnessServerTest.startServer();
+        HttpClient    client = HttpClient.newHttpClient();
+        try {
+            StringBuilder script = new StringBuilder();
+            for (int i = 0; i < clients; ++i)
+                script.append("user BeginnerUser U").append(i).append(" A E 80\n");
+            FitnessServerTest.request(client, server, "POST", "/batch", script.toString());
+
+            // Each client adds activities to its own user, while reading them back
+            AtomicInteger failures = new AtomicInteger();
+            Thread[]      threads  = new Thread[clients];
+            for (int t = 0; t < clients; ++t) {
+                int user = t + 1;
+                threads[t] = new Thread(() -> {
+                    for (int i = 0; i < requests; ++i) {
+                        String add = "/users/" + user + "/activities?class=ActivityPushUp&date="
+                            + String.format("2100-01-01T%02d:00", i) + "&minutes=10&repetitions=5";
+                        try {
+                            HttpResponse<String> r =
+                                FitnessServerTest.request(client, server, "POST", add, null);
+                            if (r.statusCode() != 201)
+                                failures.incrementAndGet();
+
+                            r = FitnessServerTest.request(
+                                client, server, "GET", "/users/" + user + "/todo", null);
+                            if (r.statusCode() != 200 || !r.body().endsWith("\"next\":null}") ||
+                                r.body().split("ActivityPushUp", -1).length != i + 2)
+                                failures.incrementAndGet();
+                        } catch (IOException | InterruptedException e) {
+                            failures.incrementAndGet();
+                        }
+                    }
+                });
+            }
+
+            for (Thread thread : threads)
+                thread.start();
+            for (Thread thread : threads)
+                thread.join();
+            assertEquals(failures.get(), 0);
+
+            HttpResponse<String> r = FitnessServerTest.request(client, server, "GET", "/users",
+                                                               null);
+            assertEquals(r.body().split("BeginnerUser", -1).length, clients + 1);
+        } finally {
+            server.stop();
+        }
+    }
+}
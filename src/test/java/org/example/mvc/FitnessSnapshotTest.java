@@ -0,0 +1,212 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class FitnessSnapshotTest {
+    private static final LocalDateTime START = LocalDateTime.of(2100, 1, 1, 0, 0);
+
+    private static int countFiles(Path dir) throws IOException {
+        return (int) Files.list(dir).count();
+    }
+
+    @Test
+    public void saveLoad(@TempDir Path dir) throws IOException,
+                                                   ClassNotFoundException,
+                                                   UserException,
+                                                   ActivityException,
+                                                   FitnessModelException,
+                                                   ActivityOverlapException {
+
+        FitnessModel fitness = TestUtils.populate(1000);
+        fitness.leapForward(FitnessSnapshotTest.START.plusHours(2));
+
+        String path = dir.resolve("fitness").toString();
+        new FitnessSnapshot(path, 7, 3, 0, new PlainSnapshotCodec())
+            .save(fitness.clone(), fitness.getUsers());
+        assertEquals(FitnessSnapshotTest.countFiles(dir), 8);
+
+        FitnessModel loaded = new FitnessModel();
+        loaded.loadSnapshot(path);
+        assertEquals(loaded, fitness);
+        assertEquals(loaded.addUser(new BeginnerUser(0, "V", "A", "E", 80, new UserActivities())),
+                     1001);
+    }
+
+    @Test
+    public void replace(@TempDir Path dir) throws IOException,
+                                                  ClassNotFoundException,
+                                                  UserException,
+                                                  ActivityException,
+                                                  FitnessModelException,
+                                                  ActivityOverlapException {
+
+        String path = dir.resolve("fitness").toString();
+
+        FitnessModel fitness = TestUtils.populate(100);
+        fitness.saveSnapshot(path);
+        fitness.removeUser(50);
+        fitness.saveSnapshot(path);
+
+        // Only the new manifest and its segments are left
+        int segments = Math.min(FitnessSnapshot.DEFAULT_SEGMENTS, 99);
+        assertEquals(FitnessSnapshotTest.countFiles(dir), segments + 1);
+        assertFalse(new File(path + ".tmp").exists());
+
+        FitnessModel loaded = new FitnessModel();
+        loaded.loadSnapshot(path);
+        assertEquals(loaded, fitness);
+
+        FitnessModel empty = new FitnessModel();
+        empty.saveSnapshot(path);
+        loaded.loadSnapshot(path);
+        assertTrue(loaded.isEmpty());
+        assertEquals(FitnessSnapshotTest.countFiles(dir), 1);
+    }
+
+    @Test
+    public void delta(@TempDir Path dir) throws IOException,
+                                                ClassNotFoundException,
+                                                UserException,
+                                                ActivityException,
+                                                FitnessModelException,
+                                                ActivityOverlapException {
+
+        String path = dir.resolve("fitness").toString();
+
+        FitnessModel fitness = TestUtils.populate(200);
+        fitness.saveSnapshot(path);
+        int files = FitnessSnapshotTest.countFiles(dir);
+
+        // Only users with activities that completed change, the others are brought up to date
+        fitness.leapForward(FitnessSnapshotTest.START.plusMinutes(30));
+        fitness.removeUser(7);
+        fitness.addActivity(10,
+                            new ActivityPushUp(Duration.ofMinutes(10),
+                                               FitnessSnapshotTest.START.plusDays(1),
+                                               80,
+                                               10));
+        fitness.saveSnapshotDelta(path);
+        assertEquals(FitnessSnapshotTest.countFiles(dir),
+                     files + Math.min(FitnessSnapshot.DEFAULT_SEGMENTS, 160));
+
+        fitness.leapForward(FitnessSnapshotTest.START.plusDays(2));
+        fitness.addUser(new BeginnerUser(0, "V", "A", "E", 80, new UserActivities()));
+        fitness.saveSnapshotDelta(path);
+
+        FitnessModel loaded = new FitnessModel();
+        loaded.loadSnapshot(path);
+        assertEquals(loaded, fitness);
+        assertEquals(loaded.getUser(1).getActivities(), fitness.getUser(1).getActivities());
+
+        // Another application replaced the snapshot, so it's saved in full
+        TestUtils.populate(3).saveSnapshot(path);
+        fitness.removeUser(8);
+        fitness.saveSnapshotDelta(path);
+        loaded.loadSnapshot(path);
+        assertEquals(loaded, fitness);
+        assertEquals(FitnessSnapshotTest.countFiles(dir),
+                     Math.min(FitnessSnapshot.DEFAULT_SEGMENTS, 198) + 1);
+    }
+
+    @Test
+    public void rebase(@TempDir Path dir) throws IOException,
+                                                 UserException,
+                                                 ActivityException,
+                                                 FitnessModelException,
+                                                 ActivityOverlapException {
+
+        FitnessModel          fitness  = TestUtils.populate(10);
+        SortedMap<Long, User> users    = fitness.getUsers();
+        FitnessSnapshot       snapshot = new FitnessSnapshot(dir.resolve("fitness").toString(),
+                                                             2,
+                                                             2,
+                                                             1,
+                                                             SnapshotFile.DEFAULT_CODEC);
+
+        assertFalse(snapshot.saveDelta(fitness, users.headMap(3L), new TreeSet<Long>()));
+        snapshot.save(fitness, users);
+        assertTrue(snapshot.saveDelta(fitness, users.headMap(3L), new TreeSet<Long>()));
+        assertFalse(snapshot.saveDelta(fitness, users.headMap(3L), new TreeSet<Long>()));
+
+        // The deltas would hold more users than the full snapshot
+        snapshot = new FitnessSnapshot(snapshot.getPath(), 2, 2, 5, snapshot.getCodec());
+        snapshot.save(fitness, users);
+        assertTrue(snapshot.saveDelta(fitness, users.headMap(3L), new TreeSet<Long>(Set.of(9L))));
+        assertFalse(snapshot.saveDelta(fitness, users, new TreeSet<Long>()));
+    }
+
+    @Test
+    public void corrupt(@TempDir Path dir) throws IOException,
+                                                  UserException,
+                                                  ActivityException,
+                                                  FitnessModelException,
+                                                  ActivityOverlapException {
+
+        String path = dir.resolve("fitness").toString();
+        TestUtils.populate(10).saveSnapshot(path);
+        assertTrue(FitnessModel.verifySnapshot(path) > 0);
+
+        try (var files = Files.list(dir)) {
+            Files.delete(files.filter(p -> !p.toString().equals(path)).findFirst().get());
+        }
+        assertThrows(IOException.class, () -> FitnessModel.verifySnapshot(path));
+        assertThrows(IOException.class, () -> new FitnessModel().loadSnapshot(path));
+        assertThrows(IOException.class, () -> new FitnessModel().loadSnapshot(path + "x"));
+    }
+
+    @Test
+    public void sameAsFile(@TempDir Path dir) throws IOException,
+                                                     ClassNotFoundException,
+                                                     UserException,
+                                                     ActivityException,
+                                                     FitnessModelException,
+                                                     ActivityOverlapException {
+
+        FitnessModel fitness = TestUtils.populate(200);
+        String       file    = dir.resolve("single").toString();
+        String       path    = dir.resolve("snapshot").toString();
+        fitness.saveToFile(file);
+        fitness.saveSnapshot(path);
+
+        // Loading a snapshot replaces whatever the model held before
+        FitnessModel loaded = new FitnessModel();
+        loaded.loadFromFile(file);
+        assertEquals(loaded, fitness);
+        loaded.removeUser(1);
+        loaded.loadSnapshot(path);
+        assertEquals(loaded, fitness);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class JsonWriterTest {
+    @Test
+    public void nesting() {
+        StringWriter out  = new StringWriter();
+        JsonWriter   json = new JsonWriter(out);
+        json.beginObject().name("a").value(1).name("b").beginArray();
+        json.value(true).nullValue().beginObject().endObject().beginArray().endArray();
+        json.endArray().name("c").value(0.5).endObject();
+        json.flush();
+
+        assertEquals(out.toString(), "{\"a\":1,\"b\":[true,null,{},[]],\"c\":0.5}");
+    }
+
+    @Test
+    public void escaping() {
+        StringWriter out = new StringWriter();
+        new JsonWriter(out).value("a\"b\\c\nd\u0001é").flush();
+        assertEquals(out.toString(), "\"a\\\"b\\\\c\\nd\\u0001é\"");
+    }
+
+    @Test
+    public void numbers() {
+        StringWriter out  = new StringWriter();
+        JsonWriter   json = new JsonWriter(out);
+        json.beginArray().value(Double.NaN).value(Double.NEGATIVE_INFINITY);
+        json.number("12.5").number("Infinity").number("").endArray().flush();
+        assertEquals(out.toString(), "[null,null,12.5,null,null]");
+    }
+
+    @Test
+    public void largeOutput() {
+        StringWriter out  = new StringWriter();
+        JsonWriter   json = new JsonWriter(out);
+        json.beginArray();
+        for (int i = 0; i < 100000; ++i)
+            json.value(i);
+        json.endArray().flush();
+
+        String result = out.toString();
+        assertEquals(result.split(",").length, 100000);
+        assertEquals(result.substring(result.length() - 7), ",99999]");
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SaveProgressTest {
+    private static final LocalDateTime START = LocalDateTime.of(2100, 1, 1, 0, 0);
+
+    @Test
+    public void copyOnWrite(@TempDir Path dir) throws IOException,
+                                                      ClassNotFoundException,
+                                                      UserException,
+                                                      ActivityException,
+                                                      FitnessModelException,
+                                                      ActivityOverlapException {
+
+        String       path     = dir.resolve("fitness.bin").toString();
+        FitnessModel fitness  = TestUtils.populate(10);
+        FitnessModel expected = fitness.clone();
+
+        // Changed while being saved, without affecting the file
+        SaveProgress progress = fitness.saveToFileAsync(path);
+        fitness.addActivity(1,
+                            new ActivityPushUp(Duration.ofMinutes(10),
+                                               SaveProgressTest.START.plusDays(1),
+                                               80,
+                                               10));
+        fitness.leapForward(SaveProgressTest.START.plusHours(2));
+        fitness.removeUser(2);
+        FitnessModel changed = fitness.clone();
+
+        progress.await();
+        assertTrue(progress.isDone());
+        assertEquals(progress.getProgress(), 1.0);
+        assertEquals(progress.getUsersWritten(), 10);
+        assertEquals(progress.getBytesWritten(), Files.size(Path.of(path)));
+
+        FitnessModel loaded = new FitnessModel();
+        loaded.loadFromFile(path);
+        assertEquals(loaded, expected);
+        assertEquals(loaded.getUser(1).getActivities(), expected.getUser(1).getActivities());
+        assertNotEquals(loaded, fitness);
+        assertEquals(fitness, changed);
+
+        // Once the save is over, users are changed in place again
+        fitness.saveToFile(path);
+        loaded.loadFromFile(path);
+        assertEquals(loaded, fitness);
+    }
+
+    @Test
+    public void failure(@TempDir Path dir) {
+        SaveProgress progress =
+            new FitnessModel().saveToFileAsync(dir.resolve("none/fitness.bin").toString());
+        assertThrows(IOException.class, () -> progress.await());
+        assertTrue(progress.getFuture().isCompletedExceptionally());
+    }
+}
@@ -0,0 +1,282 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ShardedFitnessModelTest {
+    private static final LocalDateTime START = LocalDateTime.of(2100, 1, 1, 0, 0);
+
+    private static User user(int i) throws UserException {
+        return new BeginnerUser(0, "U" + i, "A", "E", 80 + i % 7, new UserActivities());
+    }
+
+    private static void populate(ShardedFitnessModel sharded, FitnessModel single, int users)
+        throws UserException, ActivityException, FitnessModelException, ActivityOverlapException {
+
+        for (int i = 0; i < users; ++i) {
+            long code = sharded.addUser(ShardedFitnessModelTest.user(i));
+            assertEquals(single.addUser(ShardedFitnessModelTest.user(i)), code);
+
+            for (int j = 0; j < (i * 7) % 5; ++j) {
+                Activity activity =
+                    j % 2 == 0 ? new ActivityPushUp(Duration.ofMinutes(10 + i),
+                                                    ShardedFitnessModelTest.START.plusHours(j),
+                                                    80,
+                                                    10)
+                               : new ActivityTrackRun(Duration.ofMinutes(30),
+                                                      ShardedFitnessModelTest.START.plusHours(j),
+                                                      80,
+                                                      i);
+                sharded.addActivity(code, activity);
+                single.addActivity(code, activity);
+            }
+        }
+    }
+
+    @Test
+    public void routing() throws UserException, FitnessModelException {
+        ShardedFitnessModel fitness = new ShardedFitnessModel(3);
+        for (int i = 0; i < 7; ++i)
+            assertEquals(fitness.addUser(ShardedFitnessModelTest.user(i)), i + 1);
+
+        assertEquals(fitness.getUsers().keySet(), Set.of(1L, 2L, 3L, 4L, 5L, 6L, 7L));
+        assertEquals(fitness.getShard(0).getUsers().keySet(), Set.of(1L, 4L, 7L));
+        assertEquals(fitness.getShard(2).getUsers().keySet(), Set.of(3L, 6L));
+        assertEquals(fitness.getUser(5).getName(), "U4");
+
+        fitness.removeUser(5);
+        assertFalse(fitness.containsUser(5));
+        assertNull(fitness.getUser(5));
+        assertEquals(fitness.getShardIndex(5), 1);
+
+        assertThrows(FitnessModelException.class, () -> new ShardedFitnessModel(0));
+        assertThrows(FitnessModelException.class,
+                     () -> new ShardedFitnessModel(List.of(new FitnessModel(),
+                                                           new FitnessModel())));
+    }
+
+    @Test
+    public void scatterGather() throws UserException,
+                                       ActivityException,
+                                       FitnessModelException,
+                                       ActivityOverlapException,
+                                       QueryException {
+
+        ShardedFitnessModel sharded = new ShardedFitnessModel(4);
+        FitnessModel        single  = new FitnessModel();
+        ShardedFitnessModelTest.populate(sharded, single, 50);
+
+        QueryMostCalories calories = sharded.runMergedQuery(new QueryMostCalories());
+        assertEquals(calories.getMaxUser(), single.runCachedQuery(new QueryMostCalories())
+                                                .getMaxUser());
+
+        QueryMostActivities activities = sharded.runMergedQuery(new QueryMostActivities());
+        assertEquals(activities.getMaxUser().getCode(),
+                     single.runCachedQuery(new QueryMostActivities()).getMaxUser().getCode());
+
+        assertEquals(sharded.runMergedQuery(new QueryMostCommonActivity()).getTopActivity(),
+                     single.runCachedQuery(new QueryMostCommonActivity()).getTopActivity());
+
+        assertEquals(sharded.runMergedQuery(new QueryTopUsers()).getTopUsers(),
+                     single.runCachedQuery(new QueryTopUsers()).getTopUsers());
+
+        ActivityQuery sum = new ActivityQuery().aggregate(ActivityQuery.Aggregate.SUM,
+                                                          ActivityQuery.Field.CALORIES);
+        assertEquals(sharded.runParallelQuery(sum).getResult(),
+                     single.runParallelQuery(sum).getResult(),
+                     1e-6);
+
+        List<Long> page = new ArrayList<Long>();
+        sharded.runQuery((u) -> { page.add(u.getCode()); }, 10, 5);
+        assertEquals(page, List.of(11L, 12L, 13L, 14L, 15L));
+    }
+
+    @Test
+    public void leapForward() throws UserException,
+                                     ActivityException,
+                                     FitnessModelException,
+                                     ActivityOverlapException {
+
+        // Same starting date, for users' training plan histories to be the same
+        ShardedFitnessModel sharded = new ShardedFitnessModel(3);
+        FitnessModel        single  = new FitnessModel(new TreeMap<Long, User>(), sharded.getNow());
+        ShardedFitnessModelTest.populate(sharded, single, 20);
+
+        sharded.leapForward(ShardedFitnessModelTest.START.plusDays(1));
+        single.leapForward(ShardedFitnessModelTest.START.plusDays(1));
+        assertEquals(sharded.getNow(), ShardedFitnessModelTest.START.plusDays(1));
+        assertEquals(sharded.getUsers(), single.getUsers());
+
+        assertThrows(FitnessModelException.class,
+                     () -> sharded.leapForward(ShardedFitnessModelTest.START));
+    }
+
+    @Test
+    public void leapForwardFailure(@TempDir Path dir) throws IOException,
+                                                             UserException,
+                                                             ActivityException,
+                                                             FitnessModelException,
+                                                             ActivityOverlapException {
+
+        ShardedFitnessModel model = new ShardedFitnessModel(2);
+        ShardedFitnessModelTest.populate(model, new FitnessModel(), 10);
+
+        // The file of user 2 (in the second shard) can't be written
+        FitnessModel second = model.getShard(1);
+        second.setColdStorage(new ColdStorage(dir.toString(), Duration.ofHours(1), 1024));
+        Files.createDirectory(dir.resolve("user-2.seg"));
+
+        ShardedFitnessModel sharded = new ShardedFitnessModel(List.of(model.getShard(0), second));
+        LocalDateTime       date    = ShardedFitnessModelTest.START.plusDays(1);
+        assertThrows(FitnessModelException.class, () -> sharded.leapForward(date));
+        assertEquals(sharded.getShard(0).getNow(), date);
+        assertTrue(sharded.getShard(1).getNow().isBefore(date));
+
+        // Checked on every shard before leaping any
+        assertThrows(FitnessModelException.class, () -> sharded.leapForward(date.minusHours(1)));
+        assertTrue(sharded.getShard(1).getNow().isBefore(date));
+
+        Files.delete(dir.resolve("user-2.seg"));
+        sharded.leapForward(date);
+        assertEquals(sharded.getShard(1).getNow(), date);
+    }
+
+    @Test
+    public void uncheckedFailure() throws UserException,
+                                          ActivityException,
+                                          FitnessModelException,
+                                          ActivityOverlapException {
+
+        ShardedFitnessModel sharded = new ShardedFitnessModel(3);
+        ShardedFitnessModelTest.populate(sharded, new FitnessModel(), 20);
+        sharded.setRetentionPolicy(
+            new RetentionPolicy(Duration.ofHours(1), RetentionPolicy.Granularity.DAY));
+        sharded.leapForward(ShardedFitnessModelTest.START.plusDays(1));
+
+        // Failures that aren't checked exceptions are rethrown as they are
+        class FailingQuery extends QueryMostCommonActivity {
+            @Override
+            public void accept(User user) {
+                throw new IllegalStateException();
+            }
+
+            @Override
+            public FailingQuery clone() {
+                return new FailingQuery();
+            }
+        }
+        assertThrows(IllegalStateException.class, () -> sharded.runMergedQuery(new FailingQuery()));
+
+        // Queries compacted activities can't answer fail after merging shards
+        ActivityQuery max = new ActivityQuery().aggregate(ActivityQuery.Aggregate.MAX,
+                                                          ActivityQuery.Field.DISTANCE);
+        assertThrows(QueryException.class, () -> sharded.runParallelQuery(max).getResult());
+    }
+
+    @Test
+    public void saveLoad(@TempDir Path dir) throws IOException,
+                                                   ClassNotFoundException,
+                                                   UserException,
+                                                   ActivityException,
+                                                   FitnessModelException,
+                                                   ActivityOverlapException {
+
+        ShardedFitnessModel sharded = new ShardedFitnessModel(3);
+        ShardedFitnessModelTest.populate(sharded, new FitnessModel(), 20);
+
+        String path = dir.resolve("fitness").toString();
+        sharded.saveToFiles(path);
+        for (int i = 0; i < 3; ++i)
+            assertTrue(new File(ShardedFitnessModel.getShardPath(path, i)).exists());
+
+        ShardedFitnessModel loaded = new ShardedFitnessModel(3);
+        loaded.loadFromFiles(path);
+        assertEquals(loaded, sharded);
+
+        ShardedFitnessModel wrong = new ShardedFitnessModel(2);
+        assertThrows(IOException.class, () -> wrong.loadFromFiles(path));
+        assertTrue(wrong.isEmpty());
+    }
+
+    @Test
+    public void processes(@TempDir Path dir) throws IOException,
+                                                    InterruptedException,
+                                                    ClassNotFoundException,
+                                                    UserException,
+                                                    FitnessModelException {
+
+        ShardedFitnessModel sharded = new ShardedFitnessModel(3);
+        for (int i = 0; i < 3; ++i)
+            sharded.addUser(ShardedFitnessModelTest.user(i));
+
+        String path = dir.resolve("fitness").toString();
+        sharded.saveToFiles(path);
+
+        // Each shard is changed by its own process, that attributes user codes independently
+        String        java      = System.getProperty("java.home") + "/bin/java";
+        List<Process> processes = new ArrayList<Process>();
+        for (int i = 0; i < 3; ++i) {
+            String shardPath = ShardedFitnessModel.getShardPath(path, i);
+            File   script    = dir.resolve("script" + i).toFile();
+            try (FileWriter writer = new FileWriter(script)) {
+                writer.write("load " + shardPath + "\n");
+                writer.write("user BeginnerUser P" + i + " A E 80\n");
+                writer.write("user BeginnerUser Q" + i + " A E 80\n");
+                writer.write("save " + shardPath + "\n");
+            }
+
+            processes.add(new ProcessBuilder(java,
+                                             "-cp",
+                                             System.getProperty("java.class.path"),
+                                             "org.example.fitness.Application",
+                                             script.toString())
+                              .redirectErrorStream(true)
+                              .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                              .start());
+        }
+        for (Process process : processes)
+            assertEquals(process.waitFor(), 0);
+
+        sharded.loadFromFiles(path);
+        assertEquals(sharded.getUsers().size(), 9);
+        for (int i = 0; i < 3; ++i) {
+            assertEquals(sharded.getUser(4 + i).getName(), "P" + i);
+            assertEquals(sharded.getUser(7 + i).getName(), "Q" + i);
+        }
+    }
+}
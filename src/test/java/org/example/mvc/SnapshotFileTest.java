@@ -0,0 +1,254 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class SnapshotFileTest {
+    private static class XorCodec implements SnapshotCodec {
+        public String getName() {
+            return "xor";
+        }
+
+        public byte[] compress(byte[] block, int length) {
+            byte[] ret = Arrays.copyOf(block, length);
+            for (int i = 0; i < length; ++i)
+                ret[i] ^= 0x5a;
+            return ret;
+        }
+
+        public void decompress(byte[] data, byte[] block, int length) {
+            for (int i = 0; i < length; ++i)
+                block[i] = (byte) (data[i] ^ 0x5a);
+        }
+    }
+
+    private static byte[] generate(int length) {
+        byte[] ret    = new byte[length];
+        Random random = new Random(42);
+        for (int i = 0; i < length; ++i)
+            ret[i] = (byte) (i % 1000 < 500 ? i % 7 : random.nextInt());
+        return ret;
+    }
+
+    private static void write(Path path, SnapshotCodec codec, int threads, byte[] data)
+        throws IOException {
+
+        try (SnapshotFile.BlockOutputStream out =
+                 SnapshotFile.newOutputStream(path, codec, threads)) {
+            out.write(data);
+            out.commit();
+        }
+    }
+
+    private static byte[] roundTrip(Path path, byte[] data, SnapshotCodec codec, int threads)
+        throws IOException {
+
+        AtomicLong written = new AtomicLong();
+        try (SnapshotFile.BlockOutputStream out =
+                 SnapshotFile.newOutputStream(path, codec, threads, written::addAndGet)) {
+            int half = data.length / 2;
+            out.write(data, 0, half);
+            if (half < data.length)
+                out.write(data[half]);
+            out.write(data, half + 1, Math.max(0, data.length - half - 1));
+            out.commit();
+        }
+        assertEquals(written.get(), Files.size(path));
+
+        try (InputStream in = SnapshotFile.newInputStream(path, threads)) {
+            byte[] ret = in.readAllBytes();
+            assertEquals(in.read(), -1);
+            return ret;
+        }
+    }
+
+    @Test
+    public void codecs(@TempDir Path dir) throws IOException {
+        byte[] data = SnapshotFileTest.generate(SnapshotFile.BLOCK_SIZE * 5 + 123);
+        Path   path = dir.resolve("snapshot.bin");
+        for (int threads : new int[] { 1, 4 }) {
+            assertArrayEquals(
+                SnapshotFileTest.roundTrip(path, data, new PlainSnapshotCodec(), threads),
+                data);
+            for (int level = 0; level <= 9; level += 3) {
+                SnapshotCodec codec = new DeflateSnapshotCodec(level);
+                assertArrayEquals(SnapshotFileTest.roundTrip(path, data, codec, threads), data);
+            }
+        }
+        assertArrayEquals(
+            SnapshotFileTest.roundTrip(path, new byte[0], new PlainSnapshotCodec(), 1),
+            new byte[0]);
+        assertEquals(new DeflateSnapshotCodec(42).getLevel(), 9);
+    }
+
+    @Test
+    public void pluggable(@TempDir Path dir) throws IOException {
+        byte[] data = SnapshotFileTest.generate(SnapshotFile.BLOCK_SIZE + 1);
+        Path   path = dir.resolve("snapshot.bin");
+        SnapshotFileTest.write(path, new XorCodec(), 2, data);
+
+        // Can't be read before its codec is registered
+        assertThrows(IOException.class, () -> SnapshotFile.newInputStream(path, 2));
+        SnapshotFile.registerCodec(new XorCodec());
+        try (InputStream in = SnapshotFile.newInputStream(path, 2)) {
+            assertArrayEquals(in.readAllBytes(), data);
+        }
+    }
+
+    @Test
+    public void corrupt(@TempDir Path dir) throws IOException {
+        byte[] data = SnapshotFileTest.generate(SnapshotFile.BLOCK_SIZE * 3);
+        Path   path = dir.resolve("snapshot.bin");
+        SnapshotFileTest.write(path, new DeflateSnapshotCodec(), 2, data);
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.truncate(Files.size(path) - 8);
+        }
+        try (InputStream in = SnapshotFile.newInputStream(path, 2)) {
+            assertThrows(EOFException.class, () -> in.readAllBytes());
+        }
+
+        Files.write(path, new byte[] { 1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12 });
+        assertThrows(IOException.class, () -> SnapshotFile.newInputStream(path, 2));
+    }
+
+    @Test
+    public void failedWrite(@TempDir Path dir) throws IOException {
+        Path          path  = dir.resolve("snapshot.bin");
+        SnapshotCodec codec = new XorCodec() {
+            private int blocks = 0;
+
+            @Override
+            public synchronized byte[] compress(byte[] block, int length) {
+                if (++this.blocks == 2)
+                    throw new IllegalStateException("Failed");
+                return super.compress(block, length);
+            }
+        };
+        SnapshotFile.registerCodec(codec);
+
+        byte[] previous = SnapshotFileTest.generate(1000);
+        SnapshotFileTest.write(path, new PlainSnapshotCodec(), 1, previous);
+
+        byte[] data = SnapshotFileTest.generate(SnapshotFile.BLOCK_SIZE * 4);
+        assertThrows(IllegalStateException.class, () -> {
+            try (SnapshotFile.BlockOutputStream out =
+                     SnapshotFile.newOutputStream(path, codec, 1)) {
+                out.write(data);
+                out.commit();
+            }
+        });
+
+        // The previous file is left intact, and the temporary one is deleted
+        try (InputStream in = SnapshotFile.newInputStream(path, 1)) {
+            assertArrayEquals(in.readAllBytes(), previous);
+        }
+        assertFalse(Files.exists(Path.of(path + ".tmp")));
+    }
+
+    @Test
+    public void uncommitted(@TempDir Path dir) throws IOException {
+        Path   path     = dir.resolve("snapshot.bin");
+        byte[] previous = SnapshotFileTest.generate(1000);
+        SnapshotFileTest.write(path, new PlainSnapshotCodec(), 1, previous);
+
+        // The writer fails after writing part of the file, so it's never committed
+        assertThrows(IllegalStateException.class, () -> {
+            try (OutputStream out =
+                     SnapshotFile.newOutputStream(path, new PlainSnapshotCodec(), 1)) {
+                out.write(new byte[] { 1, 2, 3, 4 });
+                throw new IllegalStateException("Failed");
+            }
+        });
+
+        try (InputStream in = SnapshotFile.newInputStream(path, 1)) {
+            assertArrayEquals(in.readAllBytes(), previous);
+        }
+        assertFalse(Files.exists(Path.of(path + ".tmp")));
+    }
+
+    @Test
+    public void checksums(@TempDir Path dir) throws IOException {
+        byte[] data = SnapshotFileTest.generate(SnapshotFile.BLOCK_SIZE * 3);
+        Path   path = dir.resolve("snapshot.bin");
+        SnapshotFileTest.write(path, new PlainSnapshotCodec(), 2, data);
+        assertEquals(SnapshotFile.verify(path), data.length);
+
+        // Flip a bit in the data of the second block
+        try (FileChannel channel = FileChannel.open(path,
+                                                    StandardOpenOption.READ,
+                                                    StandardOpenOption.WRITE)) {
+            ByteBuffer b = ByteBuffer.allocate(1);
+            channel.read(b, SnapshotFile.BLOCK_SIZE + 1000);
+            b.put(0, (byte) (b.get(0) ^ 4));
+            channel.write(b.flip(), SnapshotFile.BLOCK_SIZE + 1000);
+        }
+        assertThrows(IOException.class, () -> SnapshotFile.verify(path));
+        try (InputStream in = SnapshotFile.newInputStream(path, 2)) {
+            assertThrows(IOException.class, () -> in.readAllBytes());
+        }
+
+        // Data after the end of the file
+        SnapshotFileTest.write(path, new PlainSnapshotCodec(), 2, data);
+        Files.write(path, new byte[] { 0 }, StandardOpenOption.APPEND);
+        assertThrows(IOException.class, () -> SnapshotFile.verify(path));
+    }
+
+    @Test
+    public void verify(@TempDir Path dir) throws IOException,
+                                                 UserException,
+                                                 ActivityException,
+                                                 FitnessModelException,
+                                                 ActivityOverlapException {
+
+        FitnessModel fitness = new FitnessModel();
+        for (int i = 0; i < 200; ++i)
+            fitness.addUser(
+                new BeginnerUser(0, "U" + i, "A", "E", 80, new UserActivities()));
+
+        String path = dir.resolve("fitness.bin").toString();
+        fitness.saveToFile(path, new PlainSnapshotCodec());
+        long size = Files.size(Path.of(path));
+        FitnessModel.verifyFile(path);
+
+        try (FileChannel channel = FileChannel.open(Path.of(path), StandardOpenOption.WRITE)) {
+            channel.truncate(size - 1);
+        }
+        assertThrows(EOFException.class, () -> FitnessModel.verifyFile(path));
+    }
+}
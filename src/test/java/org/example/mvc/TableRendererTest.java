@@ -0,0 +1,74 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.io.StringWriter;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TableRendererTest {
+    @Test
+    public void render() {
+        StringWriter  out      = new StringWriter();
+        TableRenderer renderer = new TableRenderer(out, new int[] { 5, -8, 3 });
+        renderer.accept(new CharSequence[] { "12", "abc", "toolong" });
+        renderer.accept(new CharSequence[] { "1" });
+
+        assertEquals(out.toString(), ""); // Still buffered
+        renderer.flush();
+        assertEquals(out.toString(),
+                     String.format("%5s %-8s %3s\n", "12", "abc", "toolong") +
+                         String.format("%5s %-8s %3s\n", "1", "", ""));
+    }
+
+    @Test
+    public void largeOutput() {
+        StringWriter  out      = new StringWriter();
+        TableRenderer renderer = new TableRenderer(out, new int[] { -100 });
+        for (int i = 0; i < 1000; ++i)
+            renderer.accept(new CharSequence[] { "row" });
+
+        // Full buffers are written without flushing
+        assertTrue(out.getBuffer().length() >= TableRenderer.BUFFER_SIZE);
+        renderer.flush();
+        assertEquals(out.getBuffer().length(), 1000 * 101);
+    }
+
+    @Test
+    public void paging() {
+        StringWriter  out      = new StringWriter();
+        int[]         asked    = { 0 };
+        TableRenderer renderer = new TableRenderer(out, new int[] { 1 }, 2, () -> ++asked[0] < 2);
+
+        for (int i = 0; i < 4; ++i)
+            renderer.accept(new CharSequence[] { Integer.toString(i) });
+        assertEquals(asked[0], 1);
+        assertEquals(out.toString(), "0\n1\n"); // Page written before asking
+        assertFalse(renderer.isStopped());
+
+        renderer.accept(new CharSequence[] { "4" });
+        assertTrue(renderer.isStopped());
+        renderer.accept(new CharSequence[] { "5" });
+        renderer.flush();
+        assertEquals(asked[0], 2);
+        assertEquals(out.toString(), "0\n1\n2\n3\n");
+    }
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ActivityQueryTest {
+    private UserActivities activities() throws ActivityException {
+        UserActivities      activities = new UserActivities();
+        SortedSet<Activity> done       = activities.getDone();
+        done.add(new ActivityMountainRun(Duration.ofMinutes(30),
+                                         LocalDateTime.of(2024, 1, 1, 10, 0, 0), // Monday
+                                         100,
+                                         5,
+                                         0.7));
+        done.add(new ActivityMountainRun(Duration.ofMinutes(30),
+                                         LocalDateTime.of(2024, 1, 2, 10, 0, 0),
+                                         100,
+                                         3,
+                                         0.2));
+        done.add(new ActivityTrackRun(Duration.ofMinutes(20),
+                                      LocalDateTime.of(2024, 1, 8, 10, 0, 0), // Monday
+                                      100,
+                                      4));
+        done.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                    LocalDateTime.of(2024, 2, 1, 10, 0, 0),
+                                    100,
+                                    50));
+        activities.setDone(done);
+        return activities;
+    }
+
+    @Test
+    public void evaluate() throws UserException, ActivityException, QueryException {
+        User advanced = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+        User beginner = new BeginnerUser(2, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery query =
+            new ActivityQuery()
+                .ofType(ActivityMountainRun.class)
+                .where(ActivityQuery.Field.ALTIMETRY, ActivityQuery.Comparison.GREATER, 0.5)
+                .byUsers(AdvancedUser.class)
+                .between(LocalDateTime.of(2024, 1, 1, 0, 0, 0),
+                         LocalDateTime.of(2024, 2, 1, 0, 0, 0))
+                .aggregate(ActivityQuery.Aggregate.SUM, ActivityQuery.Field.CALORIES);
+
+        Activity expected = new ActivityMountainRun(Duration.ofMinutes(30),
+                                                    LocalDateTime.of(2024, 1, 1, 10, 0, 0),
+                                                    100,
+                                                    5,
+                                                    0.7);
+        assertEquals(query.evaluate(advanced), expected.countCalories(advanced));
+        assertEquals(query.evaluate(beginner), 0.0);
+
+        ActivityQuery count = new ActivityQuery();
+        assertEquals(count.evaluate(advanced), 4.0);
+        assertEquals(count.between(LocalDateTime.MIN, LocalDateTime.of(2024, 1, 31, 0, 0, 0))
+                         .evaluate(advanced),
+                     3.0);
+    }
+
+    @Test
+    public void aggregates() throws UserException, ActivityException, QueryException {
+        User user = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+        ActivityQuery query = new ActivityQuery();
+
+        query = query.aggregate(ActivityQuery.Aggregate.SUM, ActivityQuery.Field.DISTANCE);
+        assertEquals(query.evaluate(user), 12.0);
+        query = query.aggregate(ActivityQuery.Aggregate.COUNT, ActivityQuery.Field.DISTANCE);
+        assertEquals(query.evaluate(user), 3.0);
+        query = query.aggregate(ActivityQuery.Aggregate.MIN, ActivityQuery.Field.DISTANCE);
+        assertEquals(query.evaluate(user), 3.0);
+        query = query.aggregate(ActivityQuery.Aggregate.MAX, ActivityQuery.Field.DISTANCE);
+        assertEquals(query.evaluate(user), 5.0);
+        query = query.aggregate(ActivityQuery.Aggregate.AVERAGE, ActivityQuery.Field.DISTANCE);
+        assertEquals(query.evaluate(user), 4.0);
+        query = query.aggregate(ActivityQuery.Aggregate.MAX, ActivityQuery.Field.REPETITIONS);
+        assertEquals(query.evaluate(user), 50.0);
+
+        query = query.ofType(ActivityWeightLifting.class);
+        assertTrue(Double.isNaN(query.evaluate(user)));
+    }
+
+    @Test
+    public void kernelSameAsScan() throws UserException, ActivityException, QueryException {
+        User user = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+        ActivityQuery kernel = new ActivityQuery().aggregate(ActivityQuery.Aggregate.SUM,
+                                                             ActivityQuery.Field.CALORIES);
+        ActivityQuery scan =
+            kernel.where(ActivityQuery.Field.BPM, ActivityQuery.Comparison.GREATER_EQUAL, 0);
+        assertEquals(kernel.evaluate(user), scan.evaluate(user), 1e-9);
+    }
+
+    @Test
+    public void groupBy() throws UserException, ActivityException, QueryException {
+        User u1 = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+        User u2 = new BeginnerUser(2, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery query = new ActivityQuery().groupBy(ActivityQuery.GroupBy.ACTIVITY_TYPE);
+        query.accept(u1);
+        query.accept(u2);
+        assertEquals(query.getResult(), 8.0);
+
+        SortedMap<Long, Double> groups = query.getGroups();
+        assertEquals(groups.size(), 3);
+        groups.forEach((key, n) -> {
+            if (query.getGroupName(key).equals("ActivityMountainRun"))
+                assertEquals((double) n, 4.0);
+            else
+                assertEquals((double) n, 2.0);
+        });
+
+        ActivityQuery weeks = new ActivityQuery().groupBy(ActivityQuery.GroupBy.WEEK);
+        weeks.accept(u1);
+        assertEquals(weeks.getGroups().size(), 3);
+        assertEquals(weeks.getGroupName(weeks.getGroups().firstKey()), "2024-01-01");
+        assertEquals((double) weeks.getGroups().get(weeks.getGroups().firstKey()), 2.0);
+
+        ActivityQuery days = new ActivityQuery().groupBy(ActivityQuery.GroupBy.WEEKDAY);
+        days.accept(u1);
+        assertEquals(days.getGroupName(days.getGroups().firstKey()), "MONDAY");
+        assertEquals((double) days.getGroups().get(1L), 2.0);
+
+        ActivityQuery users = new ActivityQuery().groupBy(ActivityQuery.GroupBy.USER_TYPE);
+        users.accept(u1);
+        users.accept(u2);
+        assertEquals(users.getGroupName(0), "AdvancedUser");
+        assertEquals((double) users.getGroups().get(1L), 4.0);
+    }
+
+    @Test
+    public void groupByTwice() throws UserException, ActivityException, QueryException {
+        User user = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery query =
+            new ActivityQuery()
+                .ofType(ActivityDistance.class)
+                .groupBy(ActivityQuery.GroupBy.ACTIVITY_TYPE, ActivityQuery.GroupBy.WEEK)
+                .aggregate(ActivityQuery.Aggregate.SUM, ActivityQuery.Field.DISTANCE);
+        query.accept(user);
+
+        SortedMap<Long, Double> groups = query.getGroups();
+        assertEquals(groups.size(), 2);
+        assertEquals(query.getGroupName(groups.firstKey()), "ActivityMountainRun, 2024-01-01");
+        assertEquals((double) groups.get(groups.firstKey()), 8.0);
+        assertEquals(query.getGroupName(groups.lastKey()), "ActivityTrackRun, 2024-01-08");
+        assertEquals((double) groups.get(groups.lastKey()), 4.0);
+    }
+
+    @Test
+    public void merge() throws UserException, ActivityException, QueryException {
+        User u1 = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+        User u2 = new BeginnerUser(2, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery empty =
+            new ActivityQuery().groupBy(ActivityQuery.GroupBy.USER_TYPE,
+                                        ActivityQuery.GroupBy.ACTIVITY_TYPE);
+        ActivityQuery sequential = empty.clone();
+        sequential.accept(u1);
+        sequential.accept(u2);
+
+        // Classes are registered in a different order in each part
+        ActivityQuery first  = empty.clone();
+        ActivityQuery second = empty.clone();
+        first.accept(u1);
+        second.accept(u2);
+        second.merge(first);
+        assertEquals(second, sequential);
+        assertEquals(second.getResult(), 8.0);
+
+        boolean thrown = false;
+        try {
+            second.merge(new ActivityQuery());
+        } catch (QueryException e) {
+            thrown = true;
+        }
+        assertTrue(thrown);
+    }
+
+    @Test
+    public void rollups() throws UserException, ActivityException, QueryException {
+        UserActivities activities = this.activities();
+        activities.compact(LocalDateTime.of(2024, 1, 5, 0, 0, 0), RetentionPolicy.Granularity.WEEK);
+        User compacted = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+        User user      = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery query = new ActivityQuery();
+        assertEquals(query.evaluate(compacted), query.evaluate(user));
+        query = query.aggregate(ActivityQuery.Aggregate.SUM, ActivityQuery.Field.DISTANCE);
+        assertEquals(query.evaluate(compacted), query.evaluate(user), 1e-9);
+        query = query.groupBy(ActivityQuery.GroupBy.ACTIVITY_TYPE)
+                    .aggregate(ActivityQuery.Aggregate.COUNT, ActivityQuery.Field.EXECUTIONS);
+        assertEquals(query.evaluate(compacted), query.evaluate(user));
+    }
+
+    @Test
+    public void rollupsBetweenDates() throws UserException, ActivityException, QueryException {
+        UserActivities activities = this.activities();
+        activities.compact(LocalDateTime.of(2024, 1, 5, 0, 0, 0), RetentionPolicy.Granularity.WEEK);
+        User compacted = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+        User user      = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery aligned = new ActivityQuery().between(LocalDateTime.of(2024, 1, 1, 0, 0, 0),
+                                                            LocalDateTime.of(2024, 2, 1, 0, 0, 0));
+        assertEquals(aligned.evaluate(compacted), aligned.evaluate(user));
+        ActivityQuery after = new ActivityQuery().between(LocalDateTime.of(2024, 1, 3, 0, 0, 0),
+                                                          LocalDateTime.MAX);
+        assertEquals(after.evaluate(compacted), after.evaluate(user));
+
+        // Compacted activities are considered to have ended when the last of them did
+        ActivityQuery unaligned =
+            new ActivityQuery().between(LocalDateTime.of(2024, 1, 2, 0, 0, 0), LocalDateTime.MAX);
+        assertEquals(unaligned.evaluate(user), 3.0);
+        assertEquals(unaligned.evaluate(compacted), 4.0);
+        ActivityQuery before =
+            new ActivityQuery().between(LocalDateTime.MIN, LocalDateTime.of(2024, 1, 2, 0, 0, 0));
+        assertEquals(before.evaluate(user), 1.0);
+        assertEquals(before.evaluate(compacted), 0.0);
+    }
+
+    @Test
+    public void rollupsAggregates() throws UserException, ActivityException, QueryException {
+        UserActivities activities = this.activities();
+        activities.compact(LocalDateTime.of(2024, 1, 5, 0, 0, 0), RetentionPolicy.Granularity.WEEK);
+        User compacted = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+        User user      = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery average = new ActivityQuery().aggregate(ActivityQuery.Aggregate.AVERAGE,
+                                                              ActivityQuery.Field.DISTANCE);
+        assertEquals(average.evaluate(compacted), average.evaluate(user), 1e-9);
+
+        ActivityQuery max = new ActivityQuery().aggregate(ActivityQuery.Aggregate.MAX,
+                                                          ActivityQuery.Field.DISTANCE);
+        assertThrows(QueryException.class, () -> max.evaluate(compacted));
+        assertThrows(QueryException.class, () -> max.validate());
+        average.validate();
+        max.from(ActivityQuery.Source.TRAINING_PLAN).validate();
+        ActivityQuery condition = new ActivityQuery().where(ActivityQuery.Field.DISTANCE,
+                                                            ActivityQuery.Comparison.LESS,
+                                                            4);
+        assertThrows(QueryException.class, () -> condition.evaluate(compacted));
+
+        // Results can't be read after consuming the user, nor after merging them into others
+        condition.accept(user);
+        assertEquals(condition.getResult(), 1.0);
+        ActivityQuery merged = condition.clone();
+        condition.accept(compacted);
+        assertThrows(QueryException.class, () -> condition.getResult());
+        assertThrows(QueryException.class, () -> condition.getGroups());
+        merged.merge(condition);
+        assertThrows(QueryException.class, () -> merged.getResult());
+        condition.clear();
+        condition.accept(user);
+        assertEquals(condition.getResult(), 1.0);
+
+        // No push-ups were compacted
+        ActivityQuery pushUps = max.ofType(ActivityPushUp.class);
+        assertEquals(pushUps.evaluate(compacted), pushUps.evaluate(user));
+    }
+
+    @Test
+    public void rollupsGroupedByDate() throws UserException, ActivityException, QueryException {
+        UserActivities activities = this.activities();
+        activities.compact(LocalDateTime.of(2024, 1, 5, 0, 0, 0), RetentionPolicy.Granularity.WEEK);
+        User compacted = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+        User user      = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, this.activities());
+
+        ActivityQuery weekly = new ActivityQuery().groupBy(ActivityQuery.GroupBy.WEEK);
+        ActivityQuery expected = weekly.clone();
+        weekly.accept(compacted);
+        expected.accept(user);
+        assertEquals(weekly.getGroups(), expected.getGroups());
+
+        // Compacted activities are grouped by the day the last of them ended (a Tuesday)
+        ActivityQuery weekday = new ActivityQuery().groupBy(ActivityQuery.GroupBy.WEEKDAY);
+        weekday.accept(compacted);
+        SortedMap<Long, Double> days = weekday.getGroups();
+        assertEquals(days.size(), 3);
+        assertEquals((double) days.get((long) DayOfWeek.MONDAY.getValue()), 1.0);
+        assertEquals((double) days.get((long) DayOfWeek.TUESDAY.getValue()), 2.0);
+        assertEquals((double) days.get((long) DayOfWeek.THURSDAY.getValue()), 1.0);
+    }
+
+    @Test
+    public void trainingPlan() throws UserException,
+                                      ActivityException,
+                                      ActivityOverlapException,
+                                      QueryException {
+
+        UserActivities activities = new UserActivities();
+        TrainingPlan   plan       = activities.getTrainingPlan();
+        plan.addActivity(new ActivityPushUp(Duration.ofMinutes(10),
+                                            LocalDateTime.of(2023, 1, 1, 0, 0, 0),
+                                            100,
+                                            50),
+                         2);
+        plan.setRepetitions(new TreeSet<DayOfWeek>(List.of(DayOfWeek.MONDAY, DayOfWeek.FRIDAY)));
+        activities.setTrainingPlan(plan);
+        User user = new AdvancedUser(1, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+
+        ActivityQuery query = new ActivityQuery().from(ActivityQuery.Source.TRAINING_PLAN);
+        assertEquals(query.evaluate(user), 4.0);
+        query = query.aggregate(ActivityQuery.Aggregate.SUM, ActivityQuery.Field.CALORIES);
+        assertEquals(query.evaluate(user), user.countTrainingPlanCalories());
+    }
+
+    @Test
+    public void key() {
+        ActivityQuery query = new ActivityQuery().groupBy(ActivityQuery.GroupBy.USER);
+        assertEquals(query.getKey(),
+                     new ActivityQuery().groupBy(ActivityQuery.GroupBy.USER).getKey());
+        assertNotEquals(query.getKey(),
+                        query.where(ActivityQuery.Field.BPM, ActivityQuery.Comparison.LESS, 100)
+                            .getKey());
+        assertEquals(query, query.clone());
+    }
+}
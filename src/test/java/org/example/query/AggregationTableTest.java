@@ -0,0 +1,108 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AggregationTableTest {
+    @Test
+    public void add() {
+        AggregationTable table = new AggregationTable();
+        table.add(7, 2.0, 1);
+        table.add(7, 4.0, 2);
+        table.addTotals(-3, 10.0, 5);
+
+        assertEquals(table.size(), 2);
+        assertTrue(table.contains(7));
+        assertFalse(table.contains(8));
+        assertEquals(table.get(7, ActivityQuery.Aggregate.COUNT), 3.0);
+        assertEquals(table.get(7, ActivityQuery.Aggregate.SUM), 10.0);
+        assertEquals(table.get(7, ActivityQuery.Aggregate.MIN), 2.0);
+        assertEquals(table.get(7, ActivityQuery.Aggregate.MAX), 4.0);
+        assertEquals(table.get(-3, ActivityQuery.Aggregate.AVERAGE), 2.0);
+        assertTrue(Double.isNaN(table.get(8, ActivityQuery.Aggregate.SUM)));
+    }
+
+    @Test
+    public void grow() {
+        AggregationTable table = new AggregationTable(1);
+        for (long i = 0; i < 1000; ++i)
+            table.add(i << 32, i, 1);
+
+        assertEquals(table.size(), 1000);
+        long[] keys = table.getKeys();
+        for (int i = 0; i < 1000; ++i) {
+            assertEquals(keys[i], (long) i << 32);
+            assertEquals(table.get(keys[i], ActivityQuery.Aggregate.SUM), (double) i);
+        }
+    }
+
+    @Test
+    public void clear() {
+        AggregationTable table = new AggregationTable(1);
+        for (long i = 0; i < 100; ++i)
+            table.add(i, i, 1);
+        table.clear();
+
+        assertEquals(table.size(), 0);
+        assertFalse(table.contains(5));
+        table.add(5, 1.0, 1);
+        assertEquals(table.get(5, ActivityQuery.Aggregate.COUNT), 1.0);
+        assertEquals(table.get(5, ActivityQuery.Aggregate.SUM), 1.0);
+        assertEquals(table.getKeys().length, 1);
+    }
+
+    @Test
+    public void merge() {
+        AggregationTable a = new AggregationTable();
+        AggregationTable b = new AggregationTable();
+        a.add(1, 5.0, 1);
+        b.add(1, 3.0, 1);
+        b.add(2, 8.0, 1);
+
+        AggregationTable merged = a.clone();
+        merged.merge(b);
+        assertEquals(merged.get(1, ActivityQuery.Aggregate.SUM), 8.0);
+        assertEquals(merged.get(1, ActivityQuery.Aggregate.MIN), 3.0);
+        assertEquals(merged.get(2, ActivityQuery.Aggregate.MAX), 8.0);
+        assertEquals(a.size(), 1);
+
+        AggregationTable remapped = a.clone();
+        remapped.merge(b, (key) -> key + 1);
+        assertEquals(remapped.get(2, ActivityQuery.Aggregate.COUNT), 1.0);
+        assertEquals(remapped.get(3, ActivityQuery.Aggregate.SUM), 8.0);
+        assertEquals(remapped.size(), 3);
+    }
+
+    @Test
+    public void testEquals() {
+        AggregationTable a = new AggregationTable(1);
+        AggregationTable b = new AggregationTable(100);
+        for (long i = 0; i < 20; ++i) {
+            a.add(i, i, 1);
+            b.add(19 - i, 19 - i, 1);
+        }
+
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+        assertEquals(a, a.clone());
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.SortedSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class MaxViewTest {
+    private User user(long code, int pushUps) throws UserException, ActivityException {
+        UserActivities      activities = new UserActivities();
+        SortedSet<Activity> done       = activities.getDone();
+        for (int i = 0; i < pushUps; ++i)
+            done.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                        LocalDateTime.of(2023, 1, 1 + i, 0, 0, 0),
+                                        100,
+                                        50));
+        activities.setDone(done);
+        return new BeginnerUser(code, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+    }
+
+    @Test
+    public void update() throws UserException, ActivityException {
+        MaxView view = new MaxView(new QueryMostActivities());
+        assertNull(view.getMaxUserCode());
+
+        view.update(1, this.user(1, 2));
+        view.update(2, this.user(2, 3));
+        view.update(3, this.user(3, 3));
+        assertEquals((long) view.getMaxUserCode(), 2L);
+        assertEquals(view.getMaxScore(), 3.0);
+
+        // The leader loses its lead
+        view.update(2, this.user(2, 1));
+        assertEquals((long) view.getMaxUserCode(), 3L);
+
+        // The leader is removed
+        view.remove(3);
+        assertEquals((long) view.getMaxUserCode(), 1L);
+        assertEquals(view.getMaxScore(), 2.0);
+
+        view.clear();
+        assertNull(view.getMaxUserCode());
+    }
+
+    @Test
+    public void failedUpdate() throws UserException, ActivityException {
+        boolean[] fail = { false };
+        class FailingQuery extends QueryMostActivities {
+            @Override
+            public double score(User user) {
+                if (fail[0])
+                    throw new IllegalStateException();
+                return super.score(user);
+            }
+
+            @Override
+            public FailingQuery clone() {
+                return new FailingQuery();
+            }
+        }
+
+        MaxView view = new MaxView(new FailingQuery());
+        view.update(1, this.user(1, 2));
+        view.update(2, this.user(2, 1));
+
+        // The previous score is kept when scoring fails
+        fail[0] = true;
+        assertThrows(IllegalStateException.class, () -> view.update(1, this.user(1, 0)));
+        assertEquals((long) view.getMaxUserCode(), 1L);
+        assertEquals(view.getMaxScore(), 2.0);
+    }
+
+    @Test
+    public void sameAsQuery() throws UserException, ActivityException {
+        QueryMostCalories query = new QueryMostCalories();
+        MaxView           view  = new MaxView(query);
+        for (int i = 1; i <= 5; ++i) {
+            User u = this.user(i, (i * 7) % 5);
+            query.accept(u);
+            view.update(i, u);
+        }
+
+        assertEquals((long) view.getMaxUserCode(), query.getMaxUser().getCode());
+        assertEquals(view.getMaxScore(), query.getMaxCalories());
+    }
+
+    @Test
+    public void testClone() throws UserException, ActivityException {
+        MaxView view = new MaxView(new QueryHardestTrainingPlan());
+        view.update(1, this.user(1, 0));
+        assertEquals(view, view.clone());
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class QueryCacheTest {
+    @Test
+    public void key() {
+        LocalDateTime start = LocalDateTime.of(2024, 1, 1, 0, 0, 0);
+        LocalDateTime end   = LocalDateTime.of(2024, 2, 1, 0, 0, 0);
+
+        assertEquals(new QueryMostCalories(start, end).getKey(),
+                     new QueryMostCalories(start, end).getKey());
+        assertNotEquals(new QueryMostCalories(start, end).getKey(),
+                        new QueryMostActivities(start, end).getKey());
+        assertNotEquals(new QueryDistance(ActivityDistance.class, start, end).getKey(),
+                        new QueryDistance(ActivityAltimetryDistance.class, start, end).getKey());
+        assertNotEquals(new QueryDistance().getKey().forUser(1),
+                        new QueryDistance().getKey().forUser(2));
+    }
+
+    @Test
+    public void getPut() {
+        QueryCache               cache = new QueryCache(2);
+        QueryHardestTrainingPlan q1    = new QueryHardestTrainingPlan();
+        QueryMostCommonActivity  q2    = new QueryMostCommonActivity();
+        QueryDistance            q3    = new QueryDistance();
+
+        cache.put(q1.getKey(), 1, q1);
+        assertSame(cache.get(q1.getKey(), 1), q1);
+        assertNull(cache.get(q1.getKey(), 2)); // Outdated
+        assertEquals(cache.getSize(), 0);
+
+        // Evicts the least recently used result
+        cache.put(q1.getKey(), 2, q1);
+        cache.put(q2.getKey(), 2, q2);
+        cache.get(q1.getKey(), 2);
+        cache.put(q3.getKey(), 2, q3);
+        assertSame(cache.get(q1.getKey(), 2), q1);
+        assertNull(cache.get(q2.getKey(), 2));
+        assertSame(cache.get(q3.getKey(), 2), q3);
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals((new QueryCache(10)).toString(), "QueryCache(capacity = 10, size = 0)");
+    }
+}
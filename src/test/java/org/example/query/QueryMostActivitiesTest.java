@@ -89,6 +89,28 @@ public class QueryMostActivitiesTest {
         assertEquals(query.getMaxActivities(), 2);
     }
 
+    @Test
+    public void acceptCompacted() throws UserException, ActivityException {
+        UserActivities      activities = new UserActivities();
+        SortedSet<Activity> done       = activities.getDone();
+        done.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                    LocalDateTime.of(2023, 1, 1, 0, 0, 0),
+                                    100,
+                                    50));
+        done.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                    LocalDateTime.of(2023, 1, 2, 0, 0, 0),
+                                    100,
+                                    50));
+        activities.setDone(done);
+        activities.compact(LocalDateTime.of(2023, 1, 1, 12, 0, 0), RetentionPolicy.Granularity.DAY);
+
+        User user = new BeginnerUser(1, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+        QueryMostActivities query =
+            new QueryMostActivities(LocalDateTime.MIN, LocalDateTime.of(2023, 12, 31, 23, 59, 59));
+        query.accept(user);
+        assertEquals(query.getMaxActivities(), 2);
+    }
+
     @Test
     public void testToString() {
         LocalDateTime date = LocalDateTime.of(2030, 12, 25, 00, 00);
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.SortedSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryScoreQuantilesTest {
+    @Test
+    public void accept() throws UserException, ActivityException, QueryException {
+        QueryScoreQuantiles query = new QueryScoreQuantiles(new QueryMostActivities(), 0.01);
+        QueryScoreQuantiles other = query.clone();
+        assertTrue(Double.isNaN(query.getQuantile(0.5)));
+
+        for (int i = 1; i <= 11; ++i) {
+            UserActivities      activities = new UserActivities();
+            SortedSet<Activity> done       = activities.getDone();
+            for (int j = 0; j < i; ++j)
+                done.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                            LocalDateTime.of(2023, 1, 1 + j, 0, 0, 0),
+                                            100,
+                                            50));
+            activities.setDone(done);
+
+            User u = new BeginnerUser(i, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+            (i % 2 == 0 ? query : other).accept(u);
+        }
+
+        query.merge(other);
+        assertEquals(query.getSketch().getCount(), 11);
+        assertEquals(query.getQuantile(0.5), 6.0, 0.06);
+        assertEquals(query.getQuantile(0.9), 10.0, 0.1);
+
+        try {
+            query.merge(new QueryScoreQuantiles(new QueryMostCalories(), 0.01));
+            assertTrue(false);
+        } catch (QueryException e) {}
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class QueryTopUsersTest {
+    private User user(long code, int pushUps) throws UserException, ActivityException {
+        UserActivities      activities = new UserActivities();
+        SortedSet<Activity> done       = activities.getDone();
+        for (int i = 0; i < pushUps; ++i)
+            done.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                        LocalDateTime.of(2023, 1, 1 + i, 0, 0, 0),
+                                        100,
+                                        50));
+        activities.setDone(done);
+        return new BeginnerUser(code, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+    }
+
+    @Test
+    public void accept() throws UserException, ActivityException {
+        QueryTopUsers query = new QueryTopUsers(new QueryMostActivities(), 3);
+        assertTrue(query.getTopUsers().isEmpty());
+
+        int[] pushUps = { 1, 4, 2, 4, 0, 3 };
+        for (int i = 0; i < pushUps.length; ++i)
+            query.accept(this.user(i + 1, pushUps[i]));
+
+        List<Map.Entry<Long, Double>> top = query.getTopUsers();
+        assertEquals(top.size(), 3);
+        assertEquals((long) top.get(0).getKey(), 2L);
+        assertEquals((long) top.get(1).getKey(), 4L);
+        assertEquals((long) top.get(2).getKey(), 6L);
+        assertEquals((double) top.get(2).getValue(), 3.0);
+    }
+
+    @Test
+    public void sameAsQuery() throws UserException, ActivityException {
+        QueryMostCalories max = new QueryMostCalories();
+        QueryTopUsers     top = new QueryTopUsers(max, 1);
+        for (int i = 1; i <= 5; ++i) {
+            User u = this.user(i, (i * 3) % 4);
+            max.accept(u);
+            top.accept(u);
+        }
+
+        assertEquals((long) top.getTopUsers().get(0).getKey(), max.getMaxUser().getCode());
+        assertEquals((double) top.getTopUsers().get(0).getValue(), max.getMaxCalories());
+    }
+
+    @Test
+    public void testClone() throws UserException, ActivityException {
+        QueryTopUsers query = new QueryTopUsers(new QueryHardestTrainingPlan(), 2);
+        query.accept(this.user(1, 0));
+        assertEquals(query, query.clone());
+        assertEquals(query.getKey(), new QueryTopUsers(new QueryHardestTrainingPlan(), 2).getKey());
+    }
+}
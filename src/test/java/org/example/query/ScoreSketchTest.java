@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ScoreSketchTest {
+    @Test
+    public void getQuantile() {
+        ScoreSketch sketch = new ScoreSketch(0.01);
+        assertTrue(Double.isNaN(sketch.getQuantile(0.5)));
+
+        for (int i = 0; i <= 1000; ++i)
+            sketch.add(i);
+        assertEquals(sketch.getCount(), 1001);
+        assertEquals(sketch.getQuantile(0.0), 0.0);
+        assertEquals(sketch.getQuantile(0.5), 500.0, 5.0);
+        assertEquals(sketch.getQuantile(0.9), 900.0, 9.0);
+        assertEquals(sketch.getQuantile(0.99), 990.0, 9.9);
+        assertEquals(sketch.getQuantile(1.0), 1000.0, 10.0);
+    }
+
+    @Test
+    public void accuracy() {
+        assertEquals(new ScoreSketch(0.5).getAccuracy(), 0.5);
+        assertThrows(IllegalArgumentException.class, () -> new ScoreSketch(0));
+        assertThrows(IllegalArgumentException.class, () -> new ScoreSketch(1));
+        assertThrows(IllegalArgumentException.class, () -> new ScoreSketch(-0.01));
+        assertThrows(IllegalArgumentException.class, () -> new ScoreSketch(Double.NaN));
+    }
+
+    @Test
+    public void merge() throws QueryException {
+        Random      random = new Random(34);
+        ScoreSketch all    = new ScoreSketch();
+        ScoreSketch first  = new ScoreSketch();
+        ScoreSketch second = new ScoreSketch();
+        for (int i = 0; i < 1000; ++i) {
+            double score = random.nextDouble() * 500;
+            all.add(score);
+            (i % 2 == 0 ? first : second).add(score);
+        }
+
+        first.merge(second);
+        assertEquals(first, all);
+        assertEquals(first.getQuantile(0.5), all.getQuantile(0.5));
+
+        try {
+            first.merge(new ScoreSketch(0.05));
+            assertTrue(false);
+        } catch (QueryException e) {}
+    }
+
+    @Test
+    public void testClone() {
+        ScoreSketch sketch = new ScoreSketch();
+        sketch.add(12.5);
+        assertEquals(sketch, sketch.clone());
+    }
+}
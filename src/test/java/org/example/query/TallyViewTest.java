@@ -0,0 +1,65 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.SortedSet;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class TallyViewTest {
+    @Test
+    public void update() throws UserException, ActivityException {
+        UserActivities      activities = new UserActivities();
+        SortedSet<Activity> done       = activities.getDone();
+        done.add(new ActivityPushUp(Duration.ofMinutes(10), LocalDateTime.now(), 100, 50));
+        done.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                    LocalDateTime.now().plusDays(1),
+                                    100,
+                                    50));
+        activities.setDone(done);
+        User u1 = new BeginnerUser(1, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+
+        activities = new UserActivities();
+        done       = activities.getDone();
+        done.add(new ActivityTrackRun(Duration.ofMinutes(50), LocalDateTime.now(), 100, 10));
+        activities.setDone(done);
+        User u2 = new BeginnerUser(2, "Eu", "Quarto", "123@abc.xyz", 100, activities);
+
+        TallyView view = new TallyView();
+        assertNull(view.getTopActivity());
+
+        view.update(1, u1);
+        view.update(2, u2);
+        assertEquals(view.getTopActivity().getKey(), "ActivityPushUp");
+        assertEquals((int) view.getTopActivity().getValue(), 2);
+        assertEquals(view, view.clone());
+
+        view.remove(1);
+        assertEquals(view.getTopActivity().getKey(), "ActivityTrackRun");
+
+        view.update(2, u2); // No change
+        assertEquals((int) view.getTopActivity().getValue(), 1);
+
+        view.remove(2);
+        assertNull(view.getTopActivity());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.example.fitness;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class UserViewTest {
+    @Test
+    public void update() throws UserException {
+        User u1 = new BeginnerUser(1, "Eu", "Quarto", "123@abc.xyz", 100, new UserActivities());
+        User u2 = new BeginnerUser(2, "Eu", "Quarto", "123@abc.xyz", 100, new UserActivities());
+
+        UserView view = new UserView(new QueryDistance(), 2);
+        assertNull(view.getResult());
+
+        view.update(1, u1);
+        assertNull(view.getResult());
+
+        view.update(2, u2);
+        assertEquals(((QueryDistance) view.getResult()).getUser(), u2);
+        assertEquals(view, view.clone());
+
+        view.remove(1);
+        assertEquals(((QueryDistance) view.getResult()).getDistance(), 0.0);
+        view.remove(2);
+        assertNull(view.getResult());
+    }
+}
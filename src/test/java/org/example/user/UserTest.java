@@ -16,12 +16,17 @@
 
 package org.example.fitness;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class UserTest {
     private User reference;
@@ -88,4 +93,19 @@ public class UserTest {
         assertThrows(UserException.class, () -> { this.reference.setAverageBPM(-1); });
         assertDoesNotThrow(() -> { this.reference.setAverageBPM(60); });
     }
+
+    @Test
+    public void leapForward() throws ActivityException, ActivityOverlapException {
+        LocalDateTime start = LocalDateTime.of(2100, 1, 1, 0, 0);
+        this.reference.addActivities(
+            List.of(new ActivityPushUp(Duration.ofMinutes(10), start, 80, 10)));
+
+        // Changed in place, without setting the activities again
+        assertTrue(this.reference.leapForward(start, start.plusHours(1)));
+        assertEquals(this.reference.getActivities().getDone().size(), 1);
+        this.reference.setColumnar(true);
+        assertTrue(this.reference.isColumnar());
+        assertTrue(this.reference.compact(start.plusHours(1), RetentionPolicy.Granularity.DAY));
+        assertEquals(this.reference.getActivities().getRollups().size(), 1);
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ActivityColumnsTest {
+    private final ActivityColumns columns;
+    private final Activity[]      activities;
+
+    public ActivityColumnsTest() throws ActivityException {
+        LocalDateTime date = LocalDateTime.of(2024, 5, 6, 8, 0, 0);
+        this.activities    = new Activity[] {
+            new ActivityTrackRun(Duration.ofMinutes(30), date, 90, 5.0),
+            new ActivityMountainRun(Duration.ofMinutes(50), date.plusDays(1), 90, 8.0, 0.3),
+            new ActivityPushUp(Duration.ofMinutes(10), date.plusDays(2), 100, 20),
+            new ActivityDiamondPushUp(Duration.ofMinutes(10), date.plusDays(3), 100, 20),
+            new ActivityWeightLifting(Duration.ofMinutes(20), date.plusDays(4), 80, 12, 40.5)
+        };
+
+        this.columns = new ActivityColumns(1);
+        for (Activity a : this.activities)
+            this.columns.add(a);
+    }
+
+    @Test
+    public void get() {
+        assertEquals(this.columns.size(), this.activities.length);
+        for (int i = 0; i < this.activities.length; ++i)
+            assertEquals(this.columns.get(i), this.activities[i]);
+    }
+
+    @Test
+    public void forEach() {
+        long[] count = { 0 };
+        this.columns.forEach(LocalDateTime.of(2024, 5, 6, 8, 30, 0),
+                             LocalDateTime.MAX,
+                             (a, n) -> { count[0] += n; });
+        assertEquals(count[0], 4);
+        assertEquals(this.columns.count(LocalDateTime.of(2024, 5, 6, 8, 30, 0),
+                                        LocalDateTime.of(2024, 5, 8, 8, 10, 0)),
+                     1);
+        assertEquals(this.columns.count(LocalDateTime.MIN, LocalDateTime.MAX), 5);
+    }
+
+    @Test
+    public void countByType() {
+        Map<Class<? extends Activity>, Long> counts =
+            this.columns.countByType(LocalDateTime.MIN, LocalDateTime.MAX);
+        assertEquals(counts.size(), 5);
+        assertEquals((long) counts.get(ActivityPushUp.class), 1);
+    }
+
+    @Test
+    public void countDistance() {
+        assertEquals(this.columns.countDistance(LocalDateTime.MIN,
+                                                LocalDateTime.MAX,
+                                                ActivityDistance.class),
+                     13.0);
+        assertEquals(this.columns.countDistance(LocalDateTime.MIN,
+                                                LocalDateTime.MAX,
+                                                ActivityMountainRun.class),
+                     8.0);
+    }
+
+    @Test
+    public void countCalories() {
+        User      user     = new AdvancedUser();
+        boolean[] fitting  = new boolean[this.activities.length];
+        double[]  calories = this.columns.countBaseCalories(LocalDateTime.MIN,
+                                                            LocalDateTime.MAX,
+                                                            fitting);
+
+        double total = 0.0;
+        for (int i = 0; i < this.activities.length; ++i) {
+            assertEquals(calories[i], this.activities[i].countBaseCalories());
+            total += this.activities[i].countCalories(user);
+        }
+        assertEquals(this.columns.countCalories(LocalDateTime.MIN,
+                                                LocalDateTime.MAX,
+                                                user.getCalorieMultiplier()),
+                     total);
+    }
+
+    @Test
+    public void removeEndingBefore() {
+        List<Activity> removed =
+            this.columns.removeEndingBefore(LocalDateTime.of(2024, 5, 7, 8, 50, 0));
+        assertEquals(removed.size(), 2);
+        assertEquals(this.columns.size(), 3);
+        assertEquals(this.columns.get(0), this.activities[2]);
+    }
+
+    @Test
+    public void testEquals() {
+        ActivityColumns copy = this.columns.clone();
+        assertEquals(this.columns, copy);
+        copy.add(this.activities[0]);
+        assertNotEquals(this.columns, copy);
+    }
+
+    @Test
+    public void serialize() {
+        TestUtils.serialize(this.columns);
+    }
+}
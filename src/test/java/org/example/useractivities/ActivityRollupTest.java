@@ -0,0 +1,116 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ActivityRollupTest {
+    private final ActivityRollup rollup;
+    private final Activity       run;
+    private final Activity       pushUp;
+
+    public ActivityRollupTest() throws ActivityException {
+        this.run    = new ActivityTrackRun(Duration.ofMinutes(30),
+                                        LocalDateTime.of(2024, 5, 6, 8, 0, 0),
+                                        90,
+                                        5.0);
+        this.pushUp = new ActivityPushUp(Duration.ofMinutes(10),
+                                         LocalDateTime.of(2024, 5, 8, 11, 0, 0),
+                                         100,
+                                         20);
+
+        this.rollup = new ActivityRollup(LocalDate.of(2024, 5, 6));
+        this.rollup.add(this.run);
+        this.rollup.add(this.pushUp);
+    }
+
+    @Test
+    public void add() {
+        assertEquals(this.rollup.countActivities(), 2);
+        assertEquals((long) this.rollup.getCounts().get(ActivityTrackRun.class), 1);
+        assertEquals(this.rollup.getFirstEnd(), LocalDateTime.of(2024, 5, 6, 8, 30, 0));
+        assertEquals(this.rollup.getLastEnd(), LocalDateTime.of(2024, 5, 8, 11, 10, 0));
+    }
+
+    @Test
+    public void countCalories() {
+        User user = new AdvancedUser();
+        assertEquals(this.rollup.countCalories(user),
+                     this.run.countCalories(user) + this.pushUp.countCalories(user),
+                     1e-9);
+    }
+
+    @Test
+    public void getDistance() {
+        assertEquals(this.rollup.getDistance(ActivityDistance.class), 5.0);
+        assertEquals(this.rollup.getDistance(ActivityTrackRun.class), 5.0);
+        assertEquals(this.rollup.getDistance(ActivityAltimetryDistance.class), 0.0);
+    }
+
+    @Test
+    public void fits() {
+        assertTrue(this.rollup.fits(LocalDateTime.MIN, LocalDateTime.MAX));
+        assertTrue(this.rollup.fits(LocalDateTime.of(2024, 5, 6, 8, 29, 0),
+                                    LocalDateTime.of(2024, 5, 8, 11, 11, 0)));
+        assertFalse(this.rollup.fits(LocalDateTime.of(2024, 5, 6, 8, 30, 0), LocalDateTime.MAX));
+        assertFalse(this.rollup.fits(LocalDateTime.MIN, LocalDateTime.of(2024, 5, 7, 0, 0, 0)));
+    }
+
+    @Test
+    public void endsBetween() {
+        assertTrue(this.rollup.endsBetween(LocalDateTime.MIN, LocalDateTime.MAX));
+        assertTrue(this.rollup.endsBetween(LocalDateTime.of(2024, 5, 7, 0, 0, 0),
+                                           LocalDateTime.MAX));
+        assertFalse(this.rollup.endsBetween(LocalDateTime.of(2024, 5, 8, 11, 10, 0),
+                                            LocalDateTime.MAX));
+        assertFalse(this.rollup.endsBetween(LocalDateTime.MIN,
+                                            LocalDateTime.of(2024, 5, 8, 11, 0, 0)));
+        assertFalse(new ActivityRollup().endsBetween(LocalDateTime.MIN, LocalDateTime.MAX));
+    }
+
+    @Test
+    public void testEquals() {
+        ActivityRollup copy = this.rollup.clone();
+        assertEquals(this.rollup, copy);
+        copy.add(this.run);
+        assertNotEquals(this.rollup, copy);
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals((new ActivityRollup()).toString(),
+                     String.format("ActivityRollup(start = \"%s\", activities = 0, " +
+                                       "baseCalories = %.3f)",
+                                   LocalDate.MIN.toString(),
+                                   0.0));
+    }
+
+    @Test
+    public void serialize() {
+        TestUtils.serialize(this.rollup);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+public class BlockCacheTest {
+    @Test
+    public void read(@TempDir Path dir) throws IOException {
+        Path   path  = dir.resolve("BlockCacheTest.bin");
+        byte[] bytes = { 1, 2, 3, 4, 5, 6, 7, 8 };
+        Files.write(path, bytes);
+
+        BlockCache cache = new BlockCache(6);
+        byte[]     first = cache.read(path, 0, 4);
+        assertArrayEquals(first, new byte[] { 1, 2, 3, 4 });
+        assertSame(cache.read(path, 0, 4), first);
+        assertEquals(cache.getSize(), 4);
+
+        // Evicts the first block
+        assertArrayEquals(cache.read(path, 4, 2), new byte[] { 5, 6 });
+        assertArrayEquals(cache.read(path, 6, 2), new byte[] { 7, 8 });
+        assertEquals(cache.getSize(), 4);
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals((new BlockCache(10)).toString(), "BlockCache(capacity = 10, size = 0)");
+    }
+}
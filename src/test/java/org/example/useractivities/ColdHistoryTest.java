@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class ColdHistoryTest {
+    private final ColdHistory history;
+
+    public ColdHistoryTest(@TempDir Path directory) throws ActivityException, IOException {
+        this.history = new ColdHistory(
+            new ColdStorage(directory.toString(), Duration.ofDays(30), 1024), 1);
+
+        for (int week = 0; week < 3; ++week) {
+            List<Activity> block = new ArrayList<Activity>();
+            for (int day = 0; day < 7; ++day) {
+                block.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                             LocalDateTime.of(2024, 1, 1 + week * 7 + day, 8, 0),
+                                             100,
+                                             20));
+            }
+            this.history.append(block);
+        }
+    }
+
+    private long count(LocalDateTime start, LocalDateTime end) throws IOException {
+        long[] count = { 0 };
+        this.history.forEach(start, end, (a) -> { count[0]++; });
+        return count[0];
+    }
+
+    @Test
+    public void forEach() throws IOException {
+        assertEquals(this.history.countActivities(), 21);
+        assertEquals(this.history.getActivities().size(), 21);
+        assertEquals(this.count(LocalDateTime.of(2024, 1, 7, 8, 10), LocalDateTime.MAX), 14);
+        assertEquals(this.count(LocalDateTime.of(2024, 1, 7, 8, 10),
+                                LocalDateTime.of(2024, 1, 9, 8, 10)),
+                     1);
+        assertEquals(this.count(LocalDateTime.MIN, LocalDateTime.of(2024, 1, 1, 8, 10)), 0);
+    }
+
+    @Test
+    public void testEquals() throws ActivityException, IOException {
+        ColdHistory copy = this.history.clone();
+        assertEquals(this.history, copy);
+
+        List<Activity> block = new ArrayList<Activity>();
+        block.add(new ActivityPushUp(Duration.ofMinutes(10),
+                                     LocalDateTime.of(2024, 2, 1, 8, 0),
+                                     100,
+                                     20));
+        copy.append(block);
+        assertNotEquals(this.history, copy);
+        assertEquals(this.history.getActivities().size(), 21);
+        assertEquals(copy.getActivities().size(), 22);
+    }
+
+    @Test
+    public void serialize() {
+        TestUtils.serialize(this.history);
+    }
+}
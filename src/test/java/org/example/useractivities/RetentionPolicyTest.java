@@ -0,0 +1,64 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class RetentionPolicyTest {
+    @Test
+    public void periodStart() {
+        LocalDateTime date = LocalDateTime.of(2024, 5, 9, 10, 0, 0); // Thursday
+        assertEquals(RetentionPolicy.Granularity.DAY.periodStart(date), LocalDate.of(2024, 5, 9));
+        assertEquals(RetentionPolicy.Granularity.WEEK.periodStart(date), LocalDate.of(2024, 5, 6));
+    }
+
+    @Test
+    public void getCompactionDate() {
+        RetentionPolicy policy =
+            new RetentionPolicy(Duration.ofDays(30), RetentionPolicy.Granularity.DAY);
+        assertEquals(policy.getCompactionDate(LocalDateTime.of(2024, 5, 31, 0, 0, 0)),
+                     LocalDateTime.of(2024, 5, 1, 0, 0, 0));
+    }
+
+    @Test
+    public void testEquals() {
+        RetentionPolicy policy = new RetentionPolicy();
+        RetentionPolicy copy   = policy.clone();
+        assertEquals(policy, copy);
+        copy.setGranularity(RetentionPolicy.Granularity.DAY);
+        assertNotEquals(policy, copy);
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals((new RetentionPolicy()).toString(),
+                     "RetentionPolicy(horizon = \"PT8760H\", granularity = WEEK)");
+    }
+
+    @Test
+    public void serialize() {
+        TestUtils.serialize(new RetentionPolicy());
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2024 Diogo Costa, Humberto Gomes, José Lopes
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.example.fitness;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+
+public class TrainingPlanSegmentTest {
+    private final TrainingPlanSegment segment;
+
+    public TrainingPlanSegmentTest() throws ActivityException, ActivityOverlapException {
+        SortedMap<Activity, Integer> activities = new TreeMap<Activity, Integer>();
+        activities.put(new ActivityMountainRun(Duration.ofMinutes(50),
+                                               LocalDateTime.of(1, 1, 1, 10, 0, 0),
+                                               90,
+                                               8.0,
+                                               0.3),
+                       1);
+        activities.put(new ActivityPushUp(Duration.ofMinutes(10),
+                                          LocalDateTime.of(1, 1, 1, 23, 40, 0),
+                                          100,
+                                          20),
+                       3);
+
+        DayOfWeek[]  days = { DayOfWeek.MONDAY, DayOfWeek.FRIDAY };
+        TrainingPlan plan = new TrainingPlan(activities, new HashSet<DayOfWeek>(Arrays.asList(days)));
+        this.segment      = new TrainingPlanSegment(plan,
+                                               LocalDateTime.of(2024, 5, 6, 10, 50, 0),
+                                               LocalDateTime.of(2024, 5, 14, 0, 0, 0));
+    }
+
+    private long count(LocalDateTime start, LocalDateTime end) {
+        long[] count = { 0 };
+        this.segment.countActivities(start, end, (a, n) -> { count[0] += n; });
+        return count[0];
+    }
+
+    @Test
+    public void getActivities() {
+        // The first mountain run ends at the start, and the last push-up ends after the end
+        assertEquals(this.segment.getActivities().size(), 10);
+        assertEquals(this.segment.getActivities().last().getExecutionDate(),
+                     LocalDateTime.of(2024, 5, 13, 23, 50, 0));
+    }
+
+    @Test
+    public void countActivities() {
+        assertEquals(this.count(LocalDateTime.MIN, LocalDateTime.MAX),
+                     this.segment.getActivities().size());
+        assertEquals(this.count(LocalDateTime.of(2024, 5, 11, 0, 0, 0), LocalDateTime.MAX), 4);
+        assertEquals(this.count(LocalDateTime.of(2024, 5, 11, 0, 0, 0),
+                                LocalDateTime.of(2024, 5, 11, 0, 10, 0)),
+                     0);
+        assertEquals(this.count(LocalDateTime.of(2024, 5, 11, 0, 0, 0),
+                                LocalDateTime.of(2024, 5, 11, 0, 10, 1)),
+                     1);
+        assertEquals(this.count(LocalDateTime.MIN, LocalDateTime.of(2024, 5, 6, 10, 50, 0)), 0);
+    }
+
+    @Test
+    public void testEquals() {
+        TrainingPlanSegment copy = this.segment.clone();
+        assertEquals(this.segment, copy);
+        copy.setEnd(LocalDateTime.of(2024, 5, 15, 0, 0, 0));
+        assertNotEquals(this.segment, copy);
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals((new TrainingPlanSegment()).toString(),
+                     String.format(
+                         "TrainingPlanSegment(plan = %s, start = \"%s\", end = \"%s\")",
+                         (new TrainingPlan()).toString(),
+                         LocalDateTime.MIN.toString(),
+                         LocalDateTime.MIN.toString()));
+    }
+
+    @Test
+    public void serialize() {
+        TestUtils.serialize(this.segment);
+    }
+}
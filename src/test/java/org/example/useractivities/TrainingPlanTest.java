@@ -159,12 +159,42 @@ public class TrainingPlanTest {
         assertEquals(this.plan.activitiesBetween(start2, end2).size(), 3);
     }
 
+    @Test
+    public void countActivitiesBetween() {
+        LocalDateTime[] dates = { LocalDateTime.of(2024, 5, 6, 10, 50, 0),
+                                  LocalDateTime.of(2024, 5, 6, 10, 50, 0, 1),
+                                  LocalDateTime.of(2024, 5, 10, 11, 20, 0),
+                                  LocalDateTime.of(2024, 6, 3, 0, 0, 0),
+                                  LocalDateTime.of(2024, 9, 27, 11, 29, 59) };
+
+        for (LocalDateTime after : dates) {
+            for (LocalDateTime until : dates) {
+                long[] count = { 0 };
+                this.plan.countActivitiesBetween(after, until, (a, n) -> { count[0] += n; });
+                assertEquals(count[0], this.plan.activitiesEndingBetween(after, until).size());
+            }
+        }
+    }
+
     @Test
     public void countCalories() {
         assertEquals((new TrainingPlan()).countCalories(new BeginnerUser()), 0);
         assertEquals(this.plan.countCalories(new BeginnerUser()), 2973.5, 0.1);
     }
 
+    @Test
+    public void countCaloriesCache() throws ActivityDoesntExistException {
+        double beginner = this.plan.countCalories(new BeginnerUser());
+        double advanced = this.plan.countCalories(new AdvancedUser());
+        assertEquals(this.plan.countCalories(new BeginnerUser()), beginner);
+        assertEquals(this.plan.clone().countCalories(new AdvancedUser()), advanced);
+
+        this.plan.setRepetitions(new HashSet<DayOfWeek>(Arrays.asList(DayOfWeek.MONDAY)));
+        assertEquals(this.plan.countCalories(new BeginnerUser()), beginner / 2, 0.1);
+        this.plan.removeActivity(0);
+        assertNotEquals(this.plan.countCalories(new BeginnerUser()), beginner / 2);
+    }
+
     @Test
     public void testEquals() throws ActivityException, ActivityOverlapException {
         this.activities.put(new ActivityMountainRun(Duration.ofMinutes(50),
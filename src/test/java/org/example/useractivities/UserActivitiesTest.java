@@ -16,9 +16,13 @@
 
 package org.example.fitness;
 
+import java.io.IOException;
+import java.nio.file.Path;
 import java.time.DayOfWeek;
 import java.time.Duration;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
@@ -26,9 +30,11 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
@@ -78,6 +84,47 @@ public class UserActivitiesTest {
         });
     }
 
+    @Test
+    public void addActivityNeighbours() {
+        // Overlaps the activity before it (11:00 to 11:10) and the one after it (11:20 to 11:30)
+        assertThrows(ActivityOverlapException.class, () -> {
+            this.activities.addActivity(new ActivityPushUp(Duration.ofMinutes(5),
+                                                           LocalDateTime.of(2024, 5, 6, 11, 8, 0),
+                                                           100,
+                                                           20));
+        });
+        assertThrows(ActivityOverlapException.class, () -> {
+            this.activities.addActivity(new ActivityPushUp(Duration.ofMinutes(5),
+                                                           LocalDateTime.of(2024, 5, 6, 11, 17, 0),
+                                                           100,
+                                                           20));
+        });
+        assertDoesNotThrow(() -> {
+            this.activities.addActivity(new ActivityPushUp(Duration.ofMinutes(10),
+                                                           LocalDateTime.of(2024, 5, 6, 11, 10, 0),
+                                                           100,
+                                                           20));
+        });
+    }
+
+    @Test
+    public void addActivities() throws ActivityException {
+        Activity first  = new ActivityPushUp(Duration.ofMinutes(10),
+                                            LocalDateTime.of(2024, 5, 7, 10, 0, 0),
+                                            100,
+                                            20);
+        Activity second = new ActivityPushUp(Duration.ofMinutes(10),
+                                             LocalDateTime.of(2024, 5, 7, 10, 5, 0),
+                                             100,
+                                             20);
+        assertThrows(ActivityOverlapException.class,
+                     () -> { this.activities.addActivities(List.of(first, second)); });
+        assertEquals(this.activities.getTodo().size(), 2);
+
+        assertDoesNotThrow(() -> { this.activities.addActivities(List.of(first)); });
+        assertEquals(this.activities.getTodo().size(), 3);
+    }
+
     @Test
     public void setTodo() throws ActivityException {
         SortedSet<Activity> todo = this.activities.getTodo();
@@ -145,6 +192,158 @@ public class UserActivitiesTest {
 
         this.activities.leapForward(d6, d7);
         assertEquals(this.activities.getDone().size(), 3);
+        assertEquals(this.activities.getTrainingPlanHistory().size(), 1);
+    }
+
+    @Test
+    public void trainingPlanHistory() throws ActivityException, ActivityOverlapException {
+        LocalDateTime d1 = LocalDateTime.of(2024, 5, 6, 0, 0, 0);
+        LocalDateTime d2 = LocalDateTime.of(2024, 5, 13, 0, 0, 0);
+        LocalDateTime d3 = LocalDateTime.of(2024, 5, 20, 0, 0, 0);
+
+        TrainingPlan first = this.activities.getTrainingPlan();
+        this.activities.leapForward(d1, d2);
+
+        TrainingPlan   second = this.activities.getTrainingPlan();
+        Set<DayOfWeek> days   = second.getRepetitions();
+        days.add(DayOfWeek.SATURDAY);
+        second.setRepetitions(days);
+        this.activities.setTrainingPlan(second);
+        this.activities.setTrainingPlan(second);
+        this.activities.leapForward(d2, d3);
+
+        // The training plan change doesn't affect activities before it
+        assertEquals(this.activities.getTrainingPlanHistory().size(), 2);
+        assertEquals(this.activities.getTrainingPlan(d2), first);
+        assertEquals(this.activities.getTrainingPlan(d3), second);
+        assertEquals(this.activities.getDone().size(), 5);
+    }
+
+    @Test
+    public void forEachDone() {
+        this.activities.leapForward(LocalDateTime.of(2024, 5, 6, 0, 0, 0),
+                                    LocalDateTime.of(2024, 5, 20, 0, 0, 0));
+
+        long[] count = { 0 };
+        this.activities.forEachDone((a, n) -> { count[0] += n; });
+        assertEquals(count[0], this.activities.getDone().size());
+
+        count[0] = 0;
+        this.activities.forEachDone(LocalDateTime.of(2024, 5, 6, 11, 10, 0),
+                                    LocalDateTime.of(2024, 5, 10, 8, 50, 1),
+                                    (a, n) -> { count[0] += n; });
+        assertEquals(count[0], 2);
+    }
+
+    private SortedSet<Activity> getDonePages() {
+        SortedSet<Activity> pages = new TreeSet<Activity>();
+        LocalDateTime       after = LocalDateTime.MIN;
+        SortedSet<Activity> page;
+        do {
+            page = this.activities.getDonePage(after, 3);
+            assertTrue(page.size() <= 3);
+            if (!page.isEmpty())
+                after = page.last().getExecutionDate();
+            pages.addAll(page);
+        } while (page.size() == 3);
+        return pages;
+    }
+
+    @Test
+    public void getDonePage() {
+        this.activities.leapForward(LocalDateTime.of(2024, 5, 6, 0, 0, 0),
+                                    LocalDateTime.of(2024, 7, 1, 0, 0, 0));
+        assertEquals(this.getDonePages(), this.activities.getDone());
+        assertEquals(this.getDonePages().size(), 10);
+
+        this.activities.setColumnar(true);
+        assertEquals(this.getDonePages(), this.activities.getDone());
+        assertEquals(this.getDonePages().size(), 10);
+    }
+
+    @Test
+    public void getTodoPage() {
+        SortedSet<Activity> page = this.activities.getTodoPage(LocalDateTime.MIN, 1);
+        assertEquals(page.size(), 1);
+        assertEquals(page.first().getExecutionDate(), LocalDateTime.of(2024, 5, 6, 11, 0, 0));
+
+        page = this.activities.getTodoPage(page.first().getExecutionDate(), 5);
+        assertEquals(page.size(), 1);
+        assertEquals(page.first().getExecutionDate(), LocalDateTime.of(2024, 5, 6, 11, 20, 0));
+        assertEquals(this.activities.getTrainingPlanPage(0, 5).size(), 1);
+        assertTrue(this.activities.getTrainingPlanPage(1, 5).isEmpty());
+    }
+
+    @Test
+    public void compact() {
+        this.activities.leapForward(LocalDateTime.of(2024, 5, 6, 0, 0, 0),
+                                    LocalDateTime.of(2024, 5, 20, 0, 0, 0));
+        this.activities.compact(LocalDateTime.of(2024, 5, 7, 0, 0, 0),
+                                RetentionPolicy.Granularity.DAY);
+
+        // Only isolated activities are compacted
+        assertEquals(this.activities.getDone().size(), 2);
+        assertEquals(this.activities.getRollups().size(), 1);
+        assertEquals(this.activities.getRollups().firstKey(), LocalDate.of(2024, 5, 6));
+        assertEquals(this.activities.getRollups().get(LocalDate.of(2024, 5, 6)).countActivities(),
+                     2);
+
+        // Rollups are provided whole, when the last activity in them ended between the dates
+        long[]        count = { 0 };
+        LocalDateTime start = LocalDateTime.of(2024, 5, 6, 11, 10, 0);
+        this.activities.forEachRollup(start, LocalDateTime.MAX, (r) -> {
+            assertFalse(r.fits(start, LocalDateTime.MAX));
+            count[0] += r.countActivities();
+        });
+        assertEquals(count[0], 2);
+        this.activities.forEachRollup(LocalDateTime.MIN,
+                                      LocalDateTime.of(2024, 5, 6, 11, 25, 0),
+                                      (r) -> { count[0] += r.countActivities(); });
+        assertEquals(count[0], 2);
+        this.activities.forEachRollup(LocalDateTime.of(2024, 5, 7, 0, 0, 0),
+                                      LocalDateTime.MAX,
+                                      (r) -> { count[0] += r.countActivities(); });
+        assertEquals(count[0], 2);
+        this.activities.forEachRollup((r) -> { count[0] += r.countActivities(); });
+        assertEquals(count[0], 4);
+    }
+
+    @Test
+    public void spill(@TempDir Path directory) throws IOException {
+        this.activities.leapForward(LocalDateTime.of(2024, 5, 6, 0, 0, 0),
+                                    LocalDateTime.of(2024, 5, 20, 0, 0, 0));
+        SortedSet<Activity> done = this.activities.getDone();
+
+        ColdStorage storage = new ColdStorage(directory.toString(), Duration.ofDays(1), 1024);
+        this.activities.spill(LocalDateTime.of(2024, 5, 7, 0, 0, 0), storage, 1);
+
+        assertEquals(this.activities.getColdHistory().countActivities(), 2);
+        assertEquals(this.activities.getDone(), done);
+
+        long[] count = { 0 };
+        this.activities.forEachDone(LocalDateTime.of(2024, 5, 6, 11, 10, 0),
+                                    LocalDateTime.of(2024, 5, 10, 8, 50, 1),
+                                    (a, n) -> { count[0] += n; });
+        assertEquals(count[0], 2);
+    }
+
+    @Test
+    public void columnar() {
+        this.activities.leapForward(LocalDateTime.of(2024, 5, 6, 0, 0, 0),
+                                    LocalDateTime.of(2024, 5, 20, 0, 0, 0));
+        UserActivities objects = this.activities.clone();
+        this.activities.setColumnar(true);
+
+        assertTrue(this.activities.isColumnar());
+        assertEquals(this.activities, objects);
+        assertEquals(this.activities.countDone(LocalDateTime.MIN, LocalDateTime.MAX), 4);
+        assertEquals(this.activities.countDistance(LocalDateTime.MIN,
+                                                   LocalDateTime.MAX,
+                                                   ActivityDistance.class),
+                     16.0);
+
+        this.activities.setColumnar(false);
+        assertEquals(this.activities, objects);
     }
 
     @Test